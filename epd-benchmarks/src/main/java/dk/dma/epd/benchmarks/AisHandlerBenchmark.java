@@ -0,0 +1,144 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.message.AisMessage18;
+import dk.dma.ais.message.AisPositionMessage;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.ais.AisHandlerCommon;
+import dk.dma.epd.common.prototype.settings.AisSettings;
+
+/**
+ * Throughput of received AIS messages in {@linkplain AisHandlerCommon} with a large target population.
+ * <p>
+ * {@code AisHandlerCommon.receive} only queues the messages, so the benchmark measures the batches applied by the ingest
+ * thread. The handler is populated with the first round of the recorded position reports and static data, and the second
+ * round of position reports is then applied in batches. The score is per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AisHandlerBenchmark {
+
+    /** The number of messages applied per batch, as by the ingest thread */
+    static final int BATCH_SIZE = 2048;
+
+    @Param({ "1000", "5000" })
+    public int population;
+
+    private BenchmarkAisHandler aisHandler;
+    private List<List<AisMessage>> batches;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkEnvironment.init();
+
+        // Split the sample into the messages populating the handler and the following position reports
+        List<AisMessage> initial = new ArrayList<>();
+        List<AisMessage> updates = new ArrayList<>();
+        Set<Integer> vessels = new HashSet<>();
+        Set<Integer> reported = new HashSet<>();
+        for (AisMessage message : Samples.readAisMessages(Samples.AIS_POPULATION)) {
+            Integer mmsi = message.getUserId();
+            if (!vessels.contains(mmsi)) {
+                if (vessels.size() >= population) {
+                    continue;
+                }
+                vessels.add(mmsi);
+            }
+            boolean positionReport = message instanceof AisPositionMessage || message instanceof AisMessage18;
+            if (positionReport && !reported.add(mmsi)) {
+                updates.add(message);
+            } else {
+                initial.add(message);
+            }
+        }
+
+        aisHandler = new BenchmarkAisHandler(new AisSettings());
+        for (List<AisMessage> batch : split(initial, 0)) {
+            aisHandler.apply(batch);
+        }
+        batches = split(updates, BATCH_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int applyBatch() {
+        List<AisMessage> batch = batches.get(next);
+        next = (next + 1 == batches.size()) ? 0 : next + 1;
+        aisHandler.apply(batch);
+        return aisHandler.getVesselTargets().size();
+    }
+
+    /**
+     * Splits the messages into batches. If a fixed batch size is given, the messages are repeated as needed to fill the
+     * last batch
+     */
+    private static List<List<AisMessage>> split(List<AisMessage> messages, int fixedSize) {
+        int size = (fixedSize > 0) ? fixedSize : BATCH_SIZE;
+        List<List<AisMessage>> result = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i += size) {
+            List<AisMessage> batch = new ArrayList<>(size);
+            for (int j = i; j < i + size && (fixedSize > 0 || j < messages.size()); j++) {
+                batch.add(messages.get(j % messages.size()));
+            }
+            result.add(batch);
+        }
+        return result;
+    }
+
+    /**
+     * AIS handler accepting targets at any position
+     */
+    static final class BenchmarkAisHandler extends AisHandlerCommon {
+
+        BenchmarkAisHandler(AisSettings aisSettings) {
+            super(aisSettings);
+        }
+
+        void apply(List<AisMessage> batch) {
+            applyBatch(batch);
+        }
+
+        @Override
+        protected boolean isWithinRange(Position pos) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import net.maritimecloud.core.id.MaritimeId;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.gui.MainFrameCommon;
+import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
+
+/**
+ * Sets up the minimal, headless EPD environment needed by the benchmarked components.
+ * <p>
+ * Several components look up the {@linkplain EPD} instance, e.g. for the home path, so a headless instance without GUI,
+ * sensors or services is registered before the benchmarks are run.
+ */
+public final class BenchmarkEnvironment {
+
+    private static boolean initialized;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Initializes the benchmark environment. Subsequent calls have no effect
+     */
+    public static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        try {
+            new HeadlessEPD(Files.createTempDirectory("epd-benchmarks"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create home folder", e);
+        }
+        PntTime.init(false);
+        initialized = true;
+    }
+
+    /**
+     * EPD instance without GUI, sensors and services
+     */
+    private static final class HeadlessEPD extends EPD {
+
+        HeadlessEPD(Path homePath) {
+            this.homePath = homePath;
+        }
+
+        @Override
+        public EPDType getType() {
+            return EPDType.SHIP;
+        }
+
+        @Override
+        public Path getHomePath() {
+            return homePath;
+        }
+
+        @Override
+        protected String getPropertyFileName() {
+            return "epd-benchmarks.properties";
+        }
+
+        @Override
+        protected void propertyLoadError(String msg, IOException e) {
+            throw new IllegalStateException(msg, e);
+        }
+
+        @Override
+        protected void startSensors() {
+        }
+
+        @Override
+        protected void stopSensors() {
+        }
+
+        @Override
+        public MainFrameCommon getMainFrame() {
+            return null;
+        }
+
+        @Override
+        public Position getPosition() {
+            return null;
+        }
+
+        @Override
+        public Long getMmsi() {
+            return null;
+        }
+
+        @Override
+        public MaritimeId getMaritimeId() {
+            return null;
+        }
+
+        @Override
+        public String[] getDefaultMouseModeServiceList() {
+            return new String[0];
+        }
+
+        @Override
+        public void closeApp(boolean restart) {
+        }
+
+        @Override
+        public void settingsChanged(Type type) {
+        }
+    }
+}
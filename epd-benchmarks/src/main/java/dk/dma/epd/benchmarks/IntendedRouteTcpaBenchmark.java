@@ -0,0 +1,134 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.model.intendedroute.FilteredIntendedRoute;
+import dk.dma.epd.common.prototype.model.route.IntendedRoute;
+import dk.dma.epd.common.prototype.model.route.Route;
+import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
+import dk.dma.epd.common.prototype.service.IntendedRouteHandlerCommon;
+import dk.dma.epd.common.prototype.settings.EnavSettings;
+
+/**
+ * Pairwise TCPA search of {@linkplain IntendedRouteHandlerCommon#findTCPA(Route, Route)} over a fleet of intended routes.
+ * <p>
+ * Half of the routes sail eastwards and half westwards along parallel tracks 1.2 nautical miles apart, so most route pairs
+ * come within filter distance of each other. The routes start a few minutes apart and every pair is compared once per
+ * invocation, as when the intended route filter is recomputed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IntendedRouteTcpaBenchmark {
+
+    @Param({ "10", "40" })
+    public int routeCount;
+
+    @Param({ "100" })
+    public int legs;
+
+    private BenchmarkIntendedRouteHandler handler;
+    private Route[] routes;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        handler = new BenchmarkIntendedRouteHandler();
+        handler.updateSettings(new EnavSettings());
+
+        long now = PntTime.getDate().getTime();
+        routes = new Route[routeCount];
+        for (int i = 0; i < routeCount; i++) {
+            boolean eastwards = i % 2 == 0;
+            Position start = Position.create(55.0 + 0.02 * (i / 2), eastwards ? 10.0 : 15.5);
+            // Routes are ordered by start time, as required by findTCPA()
+            Date starttime = new Date(now - (routeCount - i) * 2 * 60 * 1000L);
+            routes[i] = Samples.createRoute(start, legs, 10.0, starttime, eastwards);
+            handler.register(routes[i], 219000000L + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        handler.shutdown();
+    }
+
+    @Benchmark
+    public int findTcpaPairwise() {
+        int filterMessages = 0;
+        for (int i = 0; i < routes.length; i++) {
+            for (int j = i + 1; j < routes.length; j++) {
+                filterMessages += handler.findTcpa(routes[i], routes[j]).getFilterMessages().size();
+            }
+        }
+        return filterMessages;
+    }
+
+    /**
+     * Intended route handler comparing plain routes registered with an MMSI
+     */
+    static final class BenchmarkIntendedRouteHandler extends IntendedRouteHandlerCommon {
+
+        private final Map<Route, Long> mmsis = new IdentityHashMap<>();
+
+        void register(Route route, long mmsi) {
+            mmsis.put(route, mmsi);
+        }
+
+        FilteredIntendedRoute findTcpa(Route route1, Route route2) {
+            return findTCPA(route1, route2);
+        }
+
+        @Override
+        public Long getMmsi(Route route) {
+            return mmsis.get(route);
+        }
+
+        @Override
+        protected void updateFilter() {
+        }
+
+        @Override
+        protected void applyFilter(IntendedRoute route) {
+        }
+
+        @Override
+        protected String formatNotificationDescription(FilteredIntendedRoute filteredIntendedRoute) {
+            return "";
+        }
+    }
+}
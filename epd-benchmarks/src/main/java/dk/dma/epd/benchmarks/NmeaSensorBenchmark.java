@@ -0,0 +1,141 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.reader.SendException;
+import dk.dma.ais.reader.SendRequest;
+import dk.dma.ais.sentence.Abk;
+import dk.dma.enav.util.function.Consumer;
+import dk.dma.epd.common.prototype.sensor.nmea.IAisSensorListener;
+import dk.dma.epd.common.prototype.sensor.nmea.IPntSensorListener;
+import dk.dma.epd.common.prototype.sensor.nmea.IResilientPntSensorListener;
+import dk.dma.epd.common.prototype.sensor.nmea.NmeaSensor;
+import dk.dma.epd.common.prototype.sensor.nmea.PntMessage;
+import dk.dma.epd.common.prototype.sensor.rpnt.ResilientPntData;
+
+/**
+ * Throughput of {@code NmeaSensor.handleSentence} per sentence type.
+ * <p>
+ * The sentences of the recorded samples are handled one by one, in the order received, with a listener registered for
+ * each kind of data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NmeaSensorBenchmark {
+
+    @Param({ "VDM", "RMC", "PRPNT" })
+    public String sentenceType;
+
+    private BenchmarkSensor sensor;
+    private String[] sentences;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkEnvironment.init();
+        List<String> list;
+        switch (sentenceType) {
+        case "VDM":
+            list = Samples.readSentences(Samples.AIS_POPULATION, "!AIVDM");
+            break;
+        case "RMC":
+            list = Samples.readSentences(Samples.OWN_SHIP, "$GPRMC");
+            break;
+        case "PRPNT":
+            list = Samples.readSentences(Samples.OWN_SHIP, "$PRPNT");
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown sentence type " + sentenceType);
+        }
+        sentences = list.toArray(new String[list.size()]);
+        sensor = new BenchmarkSensor();
+    }
+
+    @Benchmark
+    public int handleSentence() {
+        String sentence = sentences[next];
+        next = (next + 1 == sentences.length) ? 0 : next + 1;
+        sensor.handle(sentence);
+        return sensor.received;
+    }
+
+    /**
+     * Sensor that is fed directly by the benchmark and counts the data received by its listeners
+     */
+    static final class BenchmarkSensor extends NmeaSensor implements IPntSensorListener, IResilientPntSensorListener,
+            IAisSensorListener {
+
+        int received;
+
+        BenchmarkSensor() {
+            addPntListener(this);
+            addMsPntListener(this);
+            addAisListener(this);
+        }
+
+        void handle(String sentence) {
+            handleSentence(sentence);
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public void send(SendRequest sendRequest, Consumer<Abk> resultListener) throws SendException {
+            throw new SendException("Not supported by the benchmark sensor");
+        }
+
+        @Override
+        public void receive(PntMessage pntMessage) {
+            received++;
+        }
+
+        @Override
+        public void receive(ResilientPntData rpntData) {
+            received++;
+        }
+
+        @Override
+        public void receive(AisMessage aisMessage) {
+            received++;
+        }
+
+        @Override
+        public void receiveOwnMessage(AisMessage aisMessage) {
+            received++;
+        }
+    }
+}
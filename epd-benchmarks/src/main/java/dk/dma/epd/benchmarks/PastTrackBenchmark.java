@@ -0,0 +1,86 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.ais.IPastTrack;
+import dk.dma.epd.common.prototype.ais.PastTrackRingBuffer;
+import dk.dma.epd.common.prototype.ais.PastTrackSortedSet;
+
+/**
+ * Adding positions to and cleaning up the past-track implementations.
+ * <p>
+ * Every invocation fills a new past-track with a vessel track of {@value #POINTS} positions, cleaning up the track for every
+ * {@value #CLEANUP_INTERVAL} positions as the AIS handler does periodically. The score is per added position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PastTrackBenchmark {
+
+    static final int POINTS = 1000;
+    static final int CLEANUP_INTERVAL = 100;
+
+    /** Minimum distance between past-track points in meters */
+    static final int MIN_DIST = 100;
+
+    /** Time to live of past-track points in seconds */
+    static final int TTL = 3600;
+
+    @Param({ "sortedSet", "ringBuffer" })
+    public String implementation;
+
+    private Position[] positions;
+
+    @Setup
+    public void setup() {
+        // Positions roughly 150 meters apart, so every position is added to the past-track
+        positions = new Position[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            positions[i] = Position.create(55.0 + i * 0.001, 11.0 + (i % 2) * 0.001);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public IPastTrack addAndCleanup() {
+        IPastTrack pastTrack = "ringBuffer".equals(implementation) ? new PastTrackRingBuffer() : new PastTrackSortedSet();
+        for (int i = 0; i < POINTS; i++) {
+            pastTrack.addPosition(positions[i], MIN_DIST);
+            if (i % CLEANUP_INTERVAL == 0) {
+                pastTrack.cleanup(TTL);
+            }
+        }
+        return pastTrack;
+    }
+}
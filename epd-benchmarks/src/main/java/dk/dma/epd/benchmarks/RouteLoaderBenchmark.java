@@ -0,0 +1,83 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.epd.common.prototype.model.route.Route;
+import dk.dma.epd.common.prototype.model.route.RouteLoadException;
+import dk.dma.epd.common.prototype.model.route.RouteLoader;
+import dk.dma.epd.common.prototype.settings.NavSettings;
+
+/**
+ * Parsing of the supported route file formats with {@linkplain RouteLoader}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RouteLoaderBenchmark {
+
+    private NavSettings navSettings;
+    private File rt3File;
+    private File rouFile;
+    private File kmlFile;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkEnvironment.init();
+        navSettings = new NavSettings();
+        rt3File = Samples.toFile(Samples.ROUTE_RT3);
+        rouFile = Samples.toFile(Samples.ROUTE_ROU);
+        kmlFile = Samples.toFile(Samples.ROUTE_KML);
+    }
+
+    @TearDown
+    public void tearDown() {
+        rt3File.delete();
+        rouFile.delete();
+        kmlFile.delete();
+    }
+
+    @Benchmark
+    public Route loadRt3() throws RouteLoadException {
+        return RouteLoader.loadRt3(rt3File, navSettings);
+    }
+
+    @Benchmark
+    public Route loadRou() throws RouteLoadException {
+        return RouteLoader.loadRou(rouFile, navSettings);
+    }
+
+    @Benchmark
+    public Route loadKml() throws RouteLoadException {
+        return RouteLoader.loadKml(kmlFile, navSettings);
+    }
+}
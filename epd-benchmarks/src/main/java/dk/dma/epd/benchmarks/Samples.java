@@ -0,0 +1,188 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.packet.AisPacketParser;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.model.route.Route;
+import dk.dma.epd.common.prototype.model.route.RouteLeg;
+import dk.dma.epd.common.prototype.model.route.RouteWaypoint;
+
+/**
+ * Access to the recorded sample inputs of the benchmarks.
+ * <p>
+ * The samples are kept unchanged between releases, so that results can be compared:
+ * <ul>
+ * <li>{@code ais-population.nmea.gz}: two rounds of position reports from 5000 vessels, and static data for every 5th vessel</li>
+ * <li>{@code own-ship.nmea}: 10 minutes of $GPRMC at 1 Hz and $PRPNT every 10 secs</li>
+ * <li>{@code route.rt3}, {@code route.rou} and {@code route.kml}: routes in the supported file formats</li>
+ * </ul>
+ */
+public final class Samples {
+
+    public static final String AIS_POPULATION = "ais-population.nmea.gz";
+    public static final String OWN_SHIP = "own-ship.nmea";
+    public static final String ROUTE_RT3 = "route.rt3";
+    public static final String ROUTE_ROU = "route.rou";
+    public static final String ROUTE_KML = "route.kml";
+
+    private Samples() {
+    }
+
+    /**
+     * Returns the sentences of the given sample, skipping empty lines and comments
+     *
+     * @param name
+     *            the name of the sample
+     * @return the sentences of the sample
+     */
+    public static List<String> readSentences(String name) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(name), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    result.add(line);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sentences of the given sample starting with the given prefix
+     *
+     * @param name
+     *            the name of the sample
+     * @param prefix
+     *            the prefix, e.g. "$GPRMC"
+     * @return the matching sentences
+     */
+    public static List<String> readSentences(String name, String prefix) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (String sentence : readSentences(name)) {
+            if (sentence.startsWith(prefix)) {
+                result.add(sentence);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the AIS messages of the given sample
+     *
+     * @param name
+     *            the name of the sample
+     * @return the decoded AIS messages in the order received
+     */
+    public static List<AisMessage> readAisMessages(String name) throws Exception {
+        AisPacketParser parser = new AisPacketParser();
+        List<AisMessage> result = new ArrayList<>();
+        for (String sentence : readSentences(name)) {
+            AisPacket packet = parser.readLine(sentence);
+            if (packet != null) {
+                result.add(AisMessage.getInstance(packet.getVdm()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the given sample to a temporary file, for the components that read from files
+     *
+     * @param name
+     *            the name of the sample
+     * @return the temporary file
+     */
+    public static File toFile(String name) throws IOException {
+        String suffix = name.substring(name.lastIndexOf('.'));
+        File file = File.createTempFile("epd-sample", suffix);
+        file.deleteOnExit();
+        try (InputStream in = Samples.class.getResourceAsStream("/samples/" + name)) {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    /**
+     * Creates a route of the given number of legs, zigzagging eastwards from the start position.
+     * <p>
+     * Every leg is 2 nautical miles long and sailed at the given speed.
+     *
+     * @param start
+     *            the position of the first way point
+     * @param legs
+     *            the number of legs
+     * @param speed
+     *            the speed in knots
+     * @param starttime
+     *            the start time of the route
+     * @param eastwards
+     *            whether to sail eastwards or westwards
+     * @return the route
+     */
+    public static Route createRoute(Position start, int legs, double speed, Date starttime, boolean eastwards) {
+        Route route = new Route();
+        route.setName("Benchmark route");
+        LinkedList<RouteWaypoint> waypoints = new LinkedList<>();
+        double lat = start.getLatitude();
+        double lon = start.getLongitude();
+        RouteWaypoint previous = null;
+        for (int i = 0; i <= legs; i++) {
+            RouteWaypoint wp = new RouteWaypoint();
+            wp.setName("WP_" + i);
+            wp.setPos(Position.create(lat, lon));
+            if (previous != null) {
+                RouteLeg leg = new RouteLeg(previous, wp);
+                leg.setSpeed(speed);
+            }
+            waypoints.add(wp);
+            previous = wp;
+
+            // 2 nm legs at +/- 30 degrees from east or west
+            double bearing = Math.toRadians((eastwards ? 90 : 270) + ((i % 2 == 0) ? 30 : -30));
+            lat += 2.0 / 60.0 * Math.cos(bearing);
+            lon += 2.0 / 60.0 * Math.sin(bearing) / Math.cos(Math.toRadians(lat));
+        }
+        route.setWaypoints(waypoints);
+        route.setStarttime(starttime);
+        route.calcValues(true);
+        return route;
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream in = Samples.class.getResourceAsStream("/samples/" + name);
+        if (in == null) {
+            throw new IOException("Unknown sample " + name);
+        }
+        return name.endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+}
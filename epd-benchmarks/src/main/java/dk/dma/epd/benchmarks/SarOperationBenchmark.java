@@ -0,0 +1,110 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.model.voct.SAROperation;
+import dk.dma.epd.common.prototype.model.voct.SAR_TYPE;
+import dk.dma.epd.common.prototype.model.voct.sardata.DatumLineData;
+import dk.dma.epd.common.prototype.model.voct.sardata.DatumPointData;
+import dk.dma.epd.common.prototype.model.voct.sardata.RapidResponseData;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARWeatherData;
+
+/**
+ * Datum calculations of the {@linkplain SAROperation} search types.
+ * <p>
+ * The calculations update the SAR data they are given, so new SAR data is created for every invocation. The parameters are
+ * those of {@code SarOperationTest}, with an hourly weather point since the last known position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SarOperationBenchmark {
+
+    /** Hours between the last known position and commence search start */
+    static final int HOURS = 6;
+
+    static final double X = 0.011;
+    static final double Y = 0.068;
+    static final double SAFETY_FACTOR = 1.0;
+
+    private DateTime lkpTime;
+    private DateTime cssTime;
+    private Position lkp;
+
+    @Setup
+    public void setup() {
+        cssTime = DateTime.now();
+        lkpTime = cssTime.minusHours(HOURS);
+        lkp = Position.create(61, -51);
+    }
+
+    @Benchmark
+    public RapidResponseData rapidResponse() {
+        RapidResponseData data = new RapidResponseData("1", lkpTime, cssTime, lkp, X, Y, SAFETY_FACTOR, 0);
+        data.setWeatherPoints(weatherPoints(lkpTime));
+        return new SAROperation(SAR_TYPE.RAPID_RESPONSE).startRapidResponseCalculations(data);
+    }
+
+    @Benchmark
+    public DatumPointData datumPoint() {
+        DatumPointData data = datumPointData(lkpTime, lkp);
+        return new SAROperation(SAR_TYPE.DATUM_POINT).startDatumPointCalculations(data);
+    }
+
+    @Benchmark
+    public DatumLineData datumLine() {
+        DatumLineData data = new DatumLineData("1", lkpTime, cssTime, lkp, X, Y, SAFETY_FACTOR, 0);
+        for (int i = 0; i < 3; i++) {
+            // Last known positions along the track of the missing vessel, one hour apart
+            DateTime time = lkpTime.plusHours(i);
+            data.addDatumData(datumPointData(time, Position.create(lkp.getLatitude() + 0.1 * i, lkp.getLongitude() + 0.1 * i)));
+        }
+        return new SAROperation(SAR_TYPE.DATUM_LINE).startDatumLineCalculations(data);
+    }
+
+    private DatumPointData datumPointData(DateTime time, Position pos) {
+        DatumPointData data = new DatumPointData("1", time, cssTime, pos, X, Y, SAFETY_FACTOR, 0);
+        data.setWeatherPoints(weatherPoints(time));
+        return data;
+    }
+
+    private List<SARWeatherData> weatherPoints(DateTime from) {
+        List<SARWeatherData> weatherPoints = new ArrayList<>();
+        for (DateTime time = from; !time.isAfter(cssTime); time = time.plusHours(1)) {
+            weatherPoints.add(new SARWeatherData(45.0, 5.0, 15.0, 30.0, time));
+        }
+        return weatherPoints;
+    }
+}
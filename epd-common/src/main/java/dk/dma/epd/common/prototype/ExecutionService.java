@@ -0,0 +1,604 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Central execution service shared by the EPD components.
+ * <p>
+ * A small scheduler pool only keeps track of when tasks are due. The tasks themselves are executed by a bounded pool of
+ * worker threads that terminate when idle, so slow tasks never delay the triggering of other tasks. Periodic tasks use
+ * fixed-delay semantics and keep running if an execution fails.
+ * <p>
+ * Every task is named, and the number of runs, failures and the run time is recorded per name. Components that need a
+ * {@linkplain ScheduledExecutorService} of their own can use a {@linkplain #createGroup(String) task group}, which runs
+ * its tasks on the shared pools and can be shut down without affecting other components.
+ */
+@ThreadSafe
+public final class ExecutionService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutionService.class);
+
+    /** The number of threads triggering scheduled tasks */
+    public static final int SCHEDULER_THREADS = 2;
+
+    /** The max number of threads executing tasks */
+    public static final int WORKER_THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutionService INSTANCE = new ExecutionService(SCHEDULER_THREADS, WORKER_THREADS);
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentHashMap<String, TaskMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param schedulerThreads
+     *            the number of threads triggering scheduled tasks
+     * @param workerThreads
+     *            the max number of threads executing tasks
+     */
+    ExecutionService(int schedulerThreads, int workerThreads) {
+        scheduler = new ScheduledThreadPoolExecutor(schedulerThreads, new NamedThreadFactory("EPD-Scheduler"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("EPD-Worker"));
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the shared execution service
+     *
+     * @return the shared execution service
+     */
+    public static ExecutionService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules the task to run periodically, with the given delay between the end of one run and the start of the next
+     *
+     * @param name
+     *            the name of the task
+     * @param task
+     *            the task to run
+     * @param initialDelay
+     *            the delay before the first run
+     * @param delay
+     *            the delay between runs
+     * @param unit
+     *            the unit of the delays
+     * @return the scheduled task, which can be used for cancelling it
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(String name, Runnable task, long initialDelay, long delay, TimeUnit unit) {
+        return start(new ScheduledTask<>(name, Executors.callable(task), unit.toNanos(delay), false), unit.toNanos(initialDelay));
+    }
+
+    /**
+     * Schedules the task to run once after the given delay
+     *
+     * @param name
+     *            the name of the task
+     * @param task
+     *            the task to run
+     * @param delay
+     *            the delay before running the task
+     * @param unit
+     *            the unit of the delay
+     * @return the scheduled task
+     */
+    public ScheduledFuture<?> schedule(String name, Runnable task, long delay, TimeUnit unit) {
+        return start(new ScheduledTask<>(name, Executors.callable(task), 0, false), unit.toNanos(delay));
+    }
+
+    /**
+     * Submits the task for execution by the worker threads
+     *
+     * @param name
+     *            the name of the task
+     * @param task
+     *            the task to run
+     * @return the future completion of the task
+     */
+    public Future<?> submit(String name, Runnable task) {
+        return start(new ScheduledTask<>(name, Executors.callable(task), 0, false), 0);
+    }
+
+    /**
+     * Submits the task for execution by the worker threads
+     *
+     * @param name
+     *            the name of the task
+     * @param task
+     *            the task to run
+     * @return the future result of the task
+     */
+    public <V> Future<V> submit(String name, Callable<V> task) {
+        return start(new ScheduledTask<>(name, task, 0, false), 0);
+    }
+
+    /**
+     * Creates a new task group with the given name. The metrics of all tasks of the group are recorded under the group name.
+     *
+     * @param name
+     *            the name of the group
+     * @return the new task group
+     */
+    public ScheduledExecutorService createGroup(String name) {
+        return new TaskGroup(name);
+    }
+
+    /**
+     * Returns the metrics of all tasks that have been run, sorted by name
+     *
+     * @return the task metrics
+     */
+    public List<TaskMetrics> getMetrics() {
+        List<TaskMetrics> result = new ArrayList<>(metrics.values());
+        Collections.sort(result, new Comparator<TaskMetrics>() {
+            @Override
+            public int compare(TaskMetrics m1, TaskMetrics m2) {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns a report of the task metrics
+     *
+     * @return a report of the task metrics
+     */
+    public String getMetricsReport() {
+        StringBuilder report = new StringBuilder("Task metrics (runs / failures / mean / max / total, ms):");
+        for (TaskMetrics m : getMetrics()) {
+            report.append(String.format("%n  %-40s %7d %5d %8.2f %8.2f %10d", m.getName(), m.getRuns(), m.getFailures(),
+                    m.getMeanTime(), m.getMaxTime(), m.getTotalTime()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Stops triggering scheduled tasks and waits for the running tasks to complete
+     *
+     * @param timeout
+     *            the max time to wait for running tasks
+     * @param unit
+     *            the unit of the timeout
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        scheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeout, unit)) {
+                LOG.warn("Interrupting tasks still running after " + timeout + " " + unit);
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        LOG.info(getMetricsReport());
+    }
+
+    /**
+     * Returns if the execution service has been shut down
+     *
+     * @return if the execution service has been shut down
+     */
+    public boolean isShutdown() {
+        return workers.isShutdown();
+    }
+
+    private <V> ScheduledTask<V> start(ScheduledTask<V> task, long initialDelayNanos) {
+        task.schedule(initialDelayNanos);
+        return task;
+    }
+
+    private TaskMetrics metrics(String name) {
+        TaskMetrics m = metrics.get(name);
+        if (m == null) {
+            m = new TaskMetrics(name);
+            TaskMetrics existing = metrics.putIfAbsent(name, m);
+            if (existing != null) {
+                m = existing;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Run metrics of a named task
+     */
+    @ThreadSafe
+    public static final class TaskMetrics {
+        private final String name;
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile long lastRun;
+
+        TaskMetrics(String name) {
+            this.name = name;
+        }
+
+        void record(long start, long nanos, boolean failed) {
+            lastRun = start;
+            runs.incrementAndGet();
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRuns() {
+            return runs.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Returns the total run time in milliseconds
+         *
+         * @return the total run time in milliseconds
+         */
+        public long getTotalTime() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+        }
+
+        /**
+         * Returns the mean run time in milliseconds
+         *
+         * @return the mean run time in milliseconds
+         */
+        public double getMeanTime() {
+            long n = runs.get();
+            return (n == 0) ? 0.0 : totalNanos.get() / 1e6 / n;
+        }
+
+        /**
+         * Returns the max run time in milliseconds
+         *
+         * @return the max run time in milliseconds
+         */
+        public double getMaxTime() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /**
+         * Returns the start time of the latest run in milliseconds since the epoch, or 0 if never run
+         *
+         * @return the start time of the latest run
+         */
+        public long getLastRun() {
+            return lastRun;
+        }
+    }
+
+    /**
+     * A named task triggered by the scheduler and executed by the workers.
+     * <p>
+     * Periodic tasks are re-scheduled when a run has completed. Cancelling a task does not interrupt a running execution.
+     */
+    private final class ScheduledTask<V> implements ScheduledFuture<V>, Runnable {
+        /** The name the metrics are recorded under */
+        final String name;
+        /** The label of this particular task, used when logging */
+        final String label;
+        final Callable<V> body;
+        final long period;
+        final boolean fixedRate;
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        volatile ScheduledFuture<?> trigger;
+
+        ScheduledTask(String name, Callable<V> body, long period, boolean fixedRate) {
+            this(name, name, body, period, fixedRate);
+        }
+
+        ScheduledTask(String name, String label, Callable<V> body, long period, boolean fixedRate) {
+            this.name = name;
+            this.label = label;
+            this.body = body;
+            this.period = period;
+            this.fixedRate = fixedRate;
+        }
+
+        /**
+         * Schedules the next run of the task
+         */
+        void schedule(long delayNanos) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                if (delayNanos <= 0) {
+                    dispatch();
+                } else {
+                    trigger = scheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            dispatch();
+                        }
+                    }, delayNanos, TimeUnit.NANOSECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                result.cancel(false);
+            }
+        }
+
+        /**
+         * Hands the task over to the workers
+         */
+        void dispatch() {
+            if (!result.isDone()) {
+                try {
+                    workers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    result.cancel(false);
+                }
+            }
+        }
+
+        /**
+         * Executes the task and records the metrics
+         */
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            long t0 = System.nanoTime();
+            boolean failed = false;
+            try {
+                V value = body.call();
+                if (period == 0) {
+                    result.complete(value);
+                }
+            } catch (Throwable e) {
+                failed = true;
+                if (period == 0) {
+                    result.completeExceptionally(e);
+                } else {
+                    LOG.error("Task " + label + " failed: " + e, e);
+                }
+            } finally {
+                long elapsed = System.nanoTime() - t0;
+                metrics(name).record(start, elapsed, failed);
+                if (period > 0) {
+                    schedule(fixedRate ? period - elapsed : period);
+                }
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            ScheduledFuture<?> t = trigger;
+            return (t == null) ? 0 : t.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = result.cancel(mayInterruptIfRunning);
+            ScheduledFuture<?> t = trigger;
+            if (t != null) {
+                t.cancel(false);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return result.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return result.get(timeout, unit);
+        }
+    }
+
+    /**
+     * A group of tasks owned by a single component, running on the shared pools.
+     * <p>
+     * Shutting down the group cancels the tasks of the group only.
+     */
+    private final class TaskGroup extends AbstractExecutorService implements ScheduledExecutorService {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+        private final Set<ScheduledTask<?>> tasks = ConcurrentHashMap.newKeySet();
+        private volatile boolean shutdown;
+
+        TaskGroup(String name) {
+            this.name = name;
+        }
+
+        private <V> ScheduledTask<V> add(Callable<V> body, long period, boolean fixedRate, long initialDelayNanos) {
+            if (shutdown) {
+                throw new RejectedExecutionException(name + " has been shut down");
+            }
+            // The metrics are recorded per group, the sequence number only tells the tasks apart in the log
+            final ScheduledTask<V> task = new ScheduledTask<>(name, name + "#" + count.incrementAndGet(), body, period,
+                    fixedRate);
+            tasks.add(task);
+            task.result.whenComplete((V value, Throwable error) -> tasks.remove(task));
+            return start(task, initialDelayNanos);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return add(Executors.callable(command), 0, false, unit.toNanos(delay));
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return add(callable, 0, false, unit.toNanos(delay));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            return add(Executors.callable(command), unit.toNanos(period), true, unit.toNanos(initialDelay));
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            return add(Executors.callable(command), unit.toNanos(delay), false, unit.toNanos(initialDelay));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            add(Executors.callable(command), 0, false, 0);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return add(Executors.callable(task), 0, false, 0);
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return add(Executors.callable(task, result), 0, false, 0);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return add(task, 0, false, 0);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            for (ScheduledTask<?> task : tasks) {
+                if (task.period > 0) {
+                    task.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            for (ScheduledTask<?> task : tasks) {
+                task.cancel(false);
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            Collection<ScheduledTask<?>> pending = new ArrayList<>(tasks);
+            for (ScheduledTask<?> task : pending) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    task.result.get(remaining, TimeUnit.NANOSECONDS);
+                } catch (ExecutionException | CancellationException | TimeoutException e) {
+                    // Completion is all that matters here
+                }
+            }
+            return isTerminated();
+        }
+    }
+
+    /**
+     * Creates named daemon threads
+     */
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
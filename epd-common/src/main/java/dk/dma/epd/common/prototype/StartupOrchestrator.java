@@ -0,0 +1,309 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Orchestrates the start-up of the EPD components.
+ * <p>
+ * Components are registered by name, either as steps executed on the calling thread or as tasks executed on a small pool
+ * of background threads once the components they depend on have completed. Independent stores can thereby be loaded in
+ * parallel while the main thread carries on creating the handlers and the GUI.
+ * <p>
+ * The start and duration of every component, along with the time the main thread spent waiting for it, is recorded and
+ * logged as a timing breakdown once all components have completed.
+ */
+@ThreadSafe
+public class StartupOrchestrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupOrchestrator.class);
+
+    private final String name;
+    private final long startTime = System.nanoTime();
+    private final ExecutorService executor;
+
+    @GuardedBy("this")
+    private final Map<String, Component> components = new LinkedHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param name
+     *            the name used in the timing report
+     * @param threads
+     *            the number of background threads
+     */
+    public StartupOrchestrator(final String name, int threads) {
+        this.name = name;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Startup-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Executes the step on the calling thread and records its timing
+     *
+     * @param component
+     *            the name of the component
+     * @param step
+     *            the step to execute
+     */
+    public void run(String component, Runnable step) {
+        Component c = register(component);
+        c.started();
+        try {
+            step.run();
+            c.completed(null);
+        } catch (RuntimeException e) {
+            c.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Submits the task for execution in the background once the given components have completed
+     *
+     * @param component
+     *            the name of the component
+     * @param task
+     *            the task to execute
+     * @param dependencies
+     *            the names of the components the task depends on
+     * @return the future result of the task
+     */
+    public <T> CompletableFuture<T> submit(String component, final Callable<T> task, String... dependencies) {
+        final Component c = register(component);
+        CompletableFuture<Void> ready = CompletableFuture.allOf(futures(dependencies));
+        ready.whenCompleteAsync((Void v, Throwable error) -> {
+            if (error != null) {
+                c.failed(error);
+                return;
+            }
+            c.started();
+            try {
+                c.completed(task.call());
+            } catch (Throwable e) {
+                LOG.error("Failed starting " + c.name + ": " + e, e);
+                c.failed(e);
+            }
+        }, executor);
+        return c.typedFuture();
+    }
+
+    /**
+     * Submits the task for execution in the background once the given components have completed
+     *
+     * @param component
+     *            the name of the component
+     * @param task
+     *            the task to execute
+     * @param dependencies
+     *            the names of the components the task depends on
+     * @return the future completion of the task
+     */
+    public CompletableFuture<Void> submit(String component, final Runnable task, String... dependencies) {
+        return submit(component, new Callable<Void>() {
+            @Override
+            public Void call() {
+                task.run();
+                return null;
+            }
+        }, dependencies);
+    }
+
+    /**
+     * Records the timing of a component started elsewhere, e.g. by the component itself
+     *
+     * @param component
+     *            the name of the component
+     * @param future
+     *            the future completion of the component
+     * @return the future result of the component
+     */
+    public <T> CompletableFuture<T> track(String component, CompletableFuture<T> future) {
+        final Component c = register(component);
+        c.started();
+        future.whenComplete((T result, Throwable error) -> {
+            if (error != null) {
+                c.failed(error);
+            } else {
+                c.completed(result);
+            }
+        });
+        return c.typedFuture();
+    }
+
+    /**
+     * Waits for the component to complete and returns its result. The time spent waiting is recorded.
+     *
+     * @param component
+     *            the name of the component
+     * @return the result of the component
+     */
+    public <T> T get(String component) {
+        Component c = lookup(component);
+        long t0 = System.nanoTime();
+        try {
+            return c.<T> typedFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed starting " + component, e.getCause());
+        } finally {
+            c.addWaited(System.nanoTime() - t0);
+        }
+    }
+
+    /**
+     * Logs the timing breakdown and releases the background threads once all registered components have completed
+     *
+     * @return the future completion of all registered components
+     */
+    public CompletableFuture<Void> finish() {
+        CompletableFuture<?>[] all;
+        synchronized (this) {
+            all = new CompletableFuture<?>[components.size()];
+            int i = 0;
+            for (Component c : components.values()) {
+                all[i++] = c.future;
+            }
+        }
+        return CompletableFuture.allOf(all).handle((Void v, Throwable error) -> {
+            LOG.info(getReport());
+            executor.shutdown();
+            return null;
+        });
+    }
+
+    /**
+     * Returns the timing breakdown of the registered components
+     *
+     * @return the timing breakdown
+     */
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(name).append(" startup timing (start / duration / waited, ms):");
+        for (Component c : components.values()) {
+            report.append(String.format("%n  %-28s %7s %7s %7s%s", c.name, ms(c.start),
+                    ms(c.start < 0 || c.end < 0 ? -1 : c.end - c.start), ms(c.waited),
+                    c.error != null ? "  FAILED" : ""));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Returns the names of the registered components in registration order
+     *
+     * @return the names of the registered components
+     */
+    public synchronized List<String> getComponents() {
+        return new ArrayList<>(components.keySet());
+    }
+
+    private synchronized Component register(String component) {
+        if (components.containsKey(component)) {
+            throw new IllegalArgumentException("Component already registered: " + component);
+        }
+        Component c = new Component(component);
+        components.put(component, c);
+        return c;
+    }
+
+    private synchronized Component lookup(String component) {
+        Component c = components.get(component);
+        if (c == null) {
+            throw new IllegalArgumentException("Unknown component: " + component);
+        }
+        return c;
+    }
+
+    private CompletableFuture<?>[] futures(String... dependencies) {
+        CompletableFuture<?>[] result = new CompletableFuture<?>[dependencies.length];
+        for (int i = 0; i < dependencies.length; i++) {
+            result[i] = lookup(dependencies[i]).future;
+        }
+        return result;
+    }
+
+    private String ms(long nanos) {
+        return (nanos < 0) ? "-" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * The state and timing of a registered component. Times are in nanoseconds relative to the orchestrator start.
+     */
+    private final class Component {
+        final String name;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        volatile long start = -1;
+        volatile long end = -1;
+        volatile long waited;
+        volatile Throwable error;
+
+        Component(String name) {
+            this.name = name;
+        }
+
+        void started() {
+            start = System.nanoTime() - startTime;
+        }
+
+        void completed(Object result) {
+            end = System.nanoTime() - startTime;
+            future.complete(result);
+        }
+
+        void failed(Throwable e) {
+            end = System.nanoTime() - startTime;
+            error = e;
+            future.completeExceptionally(e);
+        }
+
+        synchronized void addWaited(long nanos) {
+            waited += nanos;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> CompletableFuture<T> typedFuture() {
+            return (CompletableFuture<T>) future;
+        }
+    }
+}
@@ -14,23 +14,34 @@
  */
 package dk.dma.epd.common.prototype.ais;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.util.ConcurrentHashSet;
 import org.slf4j.Logger;
@@ -46,6 +57,7 @@ import dk.dma.ais.message.AisMessage5;
 import dk.dma.ais.message.AisPositionMessage;
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.sensor.nmea.IAisSensorListener;
 import dk.dma.epd.common.prototype.sensor.pnt.PntData;
 import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
@@ -54,23 +66,52 @@ import dk.dma.epd.common.prototype.settings.AisSettings;
 import dk.dma.epd.common.prototype.status.AisStatus;
 import dk.dma.epd.common.prototype.status.ComponentStatus;
 import dk.dma.epd.common.prototype.status.IStatusComponent;
+import dk.dma.epd.common.util.BoundedRingBuffer;
 import dk.dma.epd.common.util.Converter;
-import dk.dma.epd.common.util.Util;
+import dk.dma.epd.common.util.SnapshotFile;
+import dk.dma.epd.common.util.SnapshotScheduler;
 
 public abstract class AisHandlerCommon extends MapHandlerChild implements Runnable, IAisSensorListener, IStatusComponent {
 
     private static final Logger LOG = LoggerFactory.getLogger(AisHandlerCommon.class);
 
     protected static final String AIS_VIEW_FILE = EPD.getInstance().getHomePath().resolve(".aisview").toString();
+    private static final long VIEW_SAVE_INTERVAL = 5 * 60 * 1000; // 5 min
+    private static final long PUBLISH_DELAY = 2000; // 2 secs
+    private static final long STATUS_UPDATE_INTERVAL = 10000; // 10 secs
 
     // How long targets are saved without reports
     protected static final long TARGET_TTL = 60 * 60 * 1000; // One hour
 
+    // Ingest pipeline parameters
+    private static final int INGEST_BUFFER_CAPACITY = 16384;
+    private static final int INGEST_BATCH_SIZE = 2048;
+    private static final long INGEST_IDLE_WAIT = 50; // ms
+
     protected ConcurrentHashMap<Integer, AtoNTarget> atonTargets = new ConcurrentHashMap<>();
     protected ConcurrentHashMap<Long, VesselTarget> vesselTargets = new ConcurrentHashMap<>();
     protected ConcurrentHashMap<Long, SarTarget> sarTargets = new ConcurrentHashMap<>();
 
+    // Spatial index of all targets with a known position
+    protected final AisTargetIndex targetIndex = new AisTargetIndex();
+
+    // Snapshots returned by getTarget(), computed on demand and discarded when the target is updated
+    private final ConcurrentHashMap<Long, AisTarget> targetSnapshots = new ConcurrentHashMap<>();
+
+    // Entries of the ship list sorted by MMSI, maintained as the vessel targets are updated
+    private final ConcurrentSkipListMap<Long, AisMessageExtended> shipListEntries = new ConcurrentSkipListMap<>();
+    private final AtomicLong shipListVersion = new AtomicLong();
+    private volatile ShipList shipList;
+
     protected CopyOnWriteArrayList<IAisTargetListener> listeners = new CopyOnWriteArrayList<>();
+    protected CopyOnWriteArrayList<AisTargetDeltaSubscription> deltaSubscriptions = new CopyOnWriteArrayList<>();
+
+    // Received messages waiting to be applied by the ingest thread
+    private final BoundedRingBuffer<AisMessage> ingestBuffer = new BoundedRingBuffer<>(INGEST_BUFFER_CAPACITY);
+    private volatile Thread ingestThread;
+    private volatile CompletableFuture<Void> viewLoader;
+    // Targets updated by the batch being applied. Only accessed by the ingest thread
+    private Map<Long, AisTarget> batchUpdates;
 
     protected AisStatus aisStatus = new AisStatus();
     protected final boolean strictAisMode;
@@ -94,16 +135,110 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         this.pastTrackMaxTime = aisSettings.getPastTrackMaxTime();
         this.pastTrackDisplayTime = aisSettings.getPastTrackDisplayTime();
         this.pastTrackMinDist = aisSettings.getPastTrackMinDist();
+        PastTrackFactory.setRingBuffer(aisSettings.isPastTrackRingBuffer());
     }
 
     /**
-     * Method receiving AIS messages from AIS sensor
+     * Method receiving AIS messages from AIS sensor.
+     * <p>
+     * The message is queued for the ingest thread, which applies the queued messages in batches. If the queue is full the
+     * message is dropped and counted in the {@linkplain AisStatus}.
      */
     @Override
     public final void receive(AisMessage aisMessage) {
         // Mark successful reception
         aisStatus.markAisReception();
 
+        if (!ingestBuffer.offer(aisMessage)) {
+            aisStatus.markAisDropped();
+        }
+    }
+
+    /**
+     * Applies a batch of received AIS messages and notifies the listeners once with all the updated targets.
+     * <p>
+     * Only the last valid position report of each MMSI within the batch updates the target. The positions of the
+     * superseded reports are still added to the past-track of the target.
+     * 
+     * @param batch
+     *            the messages in the order received
+     */
+    protected final void applyBatch(List<AisMessage> batch) {
+        // Find the last valid position report of each MMSI
+        VesselPositionData[] positions = new VesselPositionData[batch.size()];
+        Map<Integer, Integer> lastPositionReport = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            positions[i] = positionOf(batch.get(i));
+            if (positions[i] != null) {
+                lastPositionReport.put(batch.get(i).getUserId(), i);
+            }
+        }
+
+        int coalesced = 0;
+        Map<Long, AisTarget> updates = new LinkedHashMap<>();
+        batchUpdates = updates;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                AisMessage aisMessage = batch.get(i);
+                try {
+                    if (positions[i] != null && lastPositionReport.get(aisMessage.getUserId()) != i
+                            && addPastTrackPosition(aisMessage.getUserId(), positions[i])) {
+                        coalesced++;
+                    } else {
+                        applyMessage(aisMessage);
+                    }
+                } catch (Exception e) {
+                    LOG.error("Failed to apply AIS message: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            batchUpdates = null;
+        }
+
+        aisStatus.markAisBatch(batch.size(), coalesced, ingestBuffer.size(), ingestBuffer.capacity());
+
+        if (!updates.isEmpty()) {
+            publishUpdates(updates.values());
+        }
+    }
+
+    /**
+     * Returns the position data of a position report with a valid position within range, or null for any other
+     * message
+     */
+    private VesselPositionData positionOf(AisMessage aisMessage) {
+        VesselPositionData positionData;
+        if (aisMessage instanceof AisPositionMessage) {
+            positionData = new VesselPositionData((AisPositionMessage) aisMessage);
+        } else if (aisMessage instanceof AisMessage18) {
+            positionData = new VesselPositionData((AisMessage18) aisMessage);
+        } else {
+            return null;
+        }
+        return positionData.hasPos() && isWithinRange(positionData.getPos()) ? positionData : null;
+    }
+
+    /**
+     * Adds the position of a superseded position report to the past-track of an existing target
+     * 
+     * @return false if the target does not exist yet, in which case the report must be applied in full
+     */
+    private boolean addPastTrackPosition(long mmsi, VesselPositionData positionData) {
+        MobileTarget mobileTarget = isSarTarget(mmsi) ? sarTargets.get(mmsi) : vesselTargets.get(mmsi);
+        if (mobileTarget == null) {
+            return false;
+        }
+        mobileTarget.addPastTrackPosition(positionData.getPos());
+        return true;
+    }
+
+    /**
+     * Applies a single received AIS message
+     * 
+     * @param aisMessage
+     *            the message to apply
+     */
+    private void applyMessage(AisMessage aisMessage) {
         if (aisMessage instanceof AisPositionMessage) {
             AisPositionMessage aisPositionMessage = (AisPositionMessage) aisMessage;
             // Create PositionData
@@ -139,6 +274,10 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         atonTargets.clear();
         vesselTargets.clear();
         sarTargets.clear();
+        targetIndex.clear();
+        targetSnapshots.clear();
+        shipListEntries.clear();
+        shipListVersion.incrementAndGet();
         publishAll();
     }
 
@@ -171,7 +310,9 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         atonTarget.setLastReceived(PntTime.getDate());
         // Update status
         atonTarget.setStatus(AisTarget.Status.OK);
-        publishUpdate(atonTarget);
+        // Update spatial index
+        targetIndex.update(atonTarget, atonTarget.getPos());
+        targetChanged(atonTarget);
     }
 
     /**
@@ -195,7 +336,7 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         }
         // Update static data
         vesselTarget.setStaticData(staticData);
-
+        targetUpdated(vesselTarget);
     }
 
     /**
@@ -219,7 +360,7 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         } else {
             staticData.update(msg24);
         }
-
+        targetUpdated(vesselTarget);
     }
 
     /**
@@ -237,6 +378,7 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         }
         // Update static data
         sarTarget.setStaticData(staticData);
+        targetUpdated(sarTarget);
     }
 
     /**
@@ -261,8 +403,11 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         // Update status
         mobileTarget.setStatus(AisTarget.Status.OK);
 
+        // Update spatial index
+        targetIndex.update(mobileTarget, positionData.getPos());
+
         // Publish update
-        publishUpdate(mobileTarget);
+        targetChanged(mobileTarget);
     }
 
     /**
@@ -359,35 +504,62 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
     }
 
     /**
-     * Get list of all ships
+     * Get list of all ships that have not gone, sorted by MMSI.
+     * <p>
+     * The list is maintained incrementally as the vessel targets are updated, and the same unmodifiable list is returned
+     * until a vessel is updated. The entries must not be modified.
      * 
-     * @return
+     * @return the list of all ships
      */
     public final List<AisMessageExtended> getShipList() {
-        List<AisMessageExtended> list = new ArrayList<AisMessageExtended>();
-
-        double hdg = -1;
-
-        for (Long key : vesselTargets.keySet()) {
-            String name = " N/A";
-            String dst = "N/A";
-            VesselTarget currentTarget = vesselTargets.get(key);
+        long version = shipListVersion.get();
+        ShipList list = shipList;
+        if (list == null || list.version != version) {
+            list = new ShipList(version, Collections.unmodifiableList(new ArrayList<>(shipListEntries.values())));
+            shipList = list;
+        }
+        return list.entries;
+    }
 
-            if (currentTarget.getStaticData() != null) {
-                name = " " + getVesselTarget(key).getStaticData().getTrimmedName();
-            }
+    /**
+     * Returns the version of the ship list. The version changes whenever the list returned by {@linkplain #getShipList()}
+     * changes.
+     * 
+     * @return the version of the ship list
+     */
+    public final long getShipListVersion() {
+        return shipListVersion.get();
+    }
 
-            hdg = currentTarget.getPositionData().getCog();
+    /**
+     * Updates the ship list entry of the given vessel target
+     * 
+     * @param vesselTarget
+     *            the updated vessel target
+     */
+    private void updateShipListEntry(VesselTarget vesselTarget) {
+        long mmsi = vesselTarget.getMmsi();
+        VesselPositionData positionData = vesselTarget.getPositionData();
+        if (vesselTarget.isGone() || positionData == null) {
+            removeShipListEntry(mmsi);
+            return;
+        }
 
-            // System.out.println("Key: " + key + ", Value: " +
-            // this.getVesselTargets().get(key));
-            AisMessageExtended newEntry = new AisMessageExtended(name, key, hdg, dst);
+        VesselStaticData staticData = vesselTarget.getStaticData();
+        String name = (staticData != null) ? " " + staticData.getTrimmedName() : " N/A";
+        double hdg = positionData.getCog();
+        AisMessageExtended entry = shipListEntries.get(mmsi);
+        if (entry != null && entry.hdg == hdg && name.equals(entry.name)) {
+            return;
+        }
+        shipListEntries.put(mmsi, new AisMessageExtended(name, mmsi, hdg, "N/A"));
+        shipListVersion.incrementAndGet();
+    }
 
-            if (!vesselTargets.get(key).isGone()) {
-                list.add(newEntry);
-            }
+    private void removeShipListEntry(long mmsi) {
+        if (shipListEntries.remove(mmsi) != null) {
+            shipListVersion.incrementAndGet();
         }
-        return list;
     }
 
     /**
@@ -413,6 +585,67 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         return mobileTargets;
     }
 
+    /**
+     * Returns the list of mobile (vessel + sar) targets within the given bounding box. Optionally specify a required status.
+     * <p>
+     * If {@code minLon > maxLon} the box is assumed to cross the date line.
+     * 
+     * @param status
+     *            if not null, the targets must have this status
+     * @param minLat
+     *            southern boundary
+     * @param minLon
+     *            western boundary
+     * @param maxLat
+     *            northern boundary
+     * @param maxLon
+     *            eastern boundary
+     * @return the list of targets within the bounding box
+     */
+    public final List<MobileTarget> getMobileTargets(AisTarget.Status status, double minLat, double minLon, double maxLat,
+            double maxLon) {
+        return filterMobileTargets(targetIndex.queryBox(minLat, minLon, maxLat, maxLon), status);
+    }
+
+    private List<MobileTarget> filterMobileTargets(List<AisTarget> aisTargets, AisTarget.Status status) {
+        List<MobileTarget> mobileTargets = new ArrayList<>(aisTargets.size());
+        for (AisTarget aisTarget : aisTargets) {
+            if (aisTarget instanceof MobileTarget && (status == null || status == aisTarget.getStatus())) {
+                mobileTargets.add((MobileTarget) aisTarget);
+            }
+        }
+        return mobileTargets;
+    }
+
+    /**
+     * Returns the spatial index of all AIS targets with a known position
+     * 
+     * @return the spatial index of all AIS targets
+     */
+    public final AisTargetIndex getTargetIndex() {
+        return targetIndex;
+    }
+
+    /**
+     * Re-populates the spatial index from the target maps
+     */
+    protected final void rebuildTargetIndex() {
+        targetIndex.clear();
+        for (VesselTarget vesselTarget : vesselTargets.values()) {
+            if (vesselTarget.getPositionData() != null) {
+                targetIndex.update(vesselTarget, vesselTarget.getPositionData().getPos());
+            }
+        }
+        for (SarTarget sarTarget : sarTargets.values()) {
+            if (sarTarget.getPositionData() != null) {
+                targetIndex.update(sarTarget, sarTarget.getPositionData().getPos());
+            }
+        }
+        for (AtoNTarget atonTarget : atonTargets.values()) {
+            targetIndex.update(atonTarget, atonTarget.getPos());
+        }
+    }
+
     public final ComponentStatus getStatus() {
         return aisStatus;
     }
@@ -434,22 +667,51 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
     }
 
     /**
-     * Get target with mmsi
+     * Get a snapshot of the target with mmsi.
+     * <p>
+     * The snapshot is a copy of the target made on the first call after the target was last updated, and is shared by all
+     * callers until the target is updated again. The snapshot must not be modified.
      * 
      * @param mmsi
-     * @return
+     * @return the snapshot of the target, or null if not found
      */
     public final AisTarget getTarget(long mmsi) {
-        if (vesselTargets.containsKey(mmsi)) {
-            return new VesselTarget(vesselTargets.get(mmsi));
-        } else if (sarTargets.containsKey(mmsi)) {
-            return new SarTarget(sarTargets.get(mmsi));
-        } else if (atonTargets.containsKey((int) mmsi)) {
-            return new AtoNTarget(atonTargets.get((int) mmsi));
+        return targetSnapshots.computeIfAbsent(mmsi, key -> copyTarget(key));
+    }
+
+    /**
+     * Returns a copy of the target with the given mmsi
+     */
+    private AisTarget copyTarget(long mmsi) {
+        VesselTarget vesselTarget = vesselTargets.get(mmsi);
+        if (vesselTarget != null) {
+            return new VesselTarget(vesselTarget);
+        }
+        SarTarget sarTarget = sarTargets.get(mmsi);
+        if (sarTarget != null) {
+            return new SarTarget(sarTarget);
+        }
+        AtoNTarget atonTarget = atonTargets.get((int) mmsi);
+        if (atonTarget != null) {
+            return new AtoNTarget(atonTarget);
         }
         return null;
     }
 
+    /**
+     * Discards the snapshot of the given target and updates the ship list. Must be called after the target has been
+     * modified.
+     * 
+     * @param aisTarget
+     *            the updated target
+     */
+    private void targetUpdated(AisTarget aisTarget) {
+        targetSnapshots.remove(aisTarget.getMmsi());
+        if (aisTarget instanceof VesselTarget) {
+            updateShipListEntry((VesselTarget) aisTarget);
+        }
+    }
+
     /**
      * Update status of all targets
      */
@@ -514,6 +776,11 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
             LOG.debug("Dead target " + mmsi);
             // cater with atonTargets, which use Integer as a key
             aisTargets.remove(intKey ? Integer.valueOf((int) mmsi.longValue()) : mmsi);
+            targetIndex.remove(mmsi);
+            targetSnapshots.remove(mmsi);
+            if (!intKey) {
+                removeShipListEntry(mmsi);
+            }
         }
 
         deadTargets.clear();
@@ -531,6 +798,7 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         if (aisTarget instanceof MobileTarget) {
             // Convert from minutes to seconds
             ((MobileTarget) aisTarget).getPastTrackData().cleanup(60 * pastTrackMaxTime);
+            targetSnapshots.remove(aisTarget.getMmsi());
         }
 
         if (aisTarget.isGone()) {
@@ -581,9 +849,47 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
      * @param aisTarget
      */
     public final void publishUpdate(AisTarget aisTarget) {
+        targetUpdated(aisTarget);
         for (IAisTargetListener listener : listeners) {
             listener.targetUpdated(aisTarget);
         }
+        for (AisTargetDeltaSubscription subscription : deltaSubscriptions) {
+            subscription.record(aisTarget);
+        }
+    }
+
+    /**
+     * Publish the update of a list of targets to all listeners
+     * 
+     * @param aisTargets
+     *            the updated targets
+     */
+    public final void publishUpdates(Collection<? extends AisTarget> aisTargets) {
+        List<AisTarget> targets = Collections.unmodifiableList(new ArrayList<AisTarget>(aisTargets));
+        for (IAisTargetListener listener : listeners) {
+            listener.targetsUpdated(targets);
+        }
+        for (AisTargetDeltaSubscription subscription : deltaSubscriptions) {
+            for (AisTarget aisTarget : targets) {
+                subscription.record(aisTarget);
+            }
+        }
+    }
+
+    /**
+     * Called when a target has been updated from a received message. When called by the ingest thread, the update is
+     * published along with the rest of the batch.
+     * 
+     * @param aisTarget
+     *            the updated target
+     */
+    private void targetChanged(AisTarget aisTarget) {
+        if (Thread.currentThread() == ingestThread && batchUpdates != null) {
+            targetUpdated(aisTarget);
+            batchUpdates.put(aisTarget.getMmsi(), aisTarget);
+        } else {
+            publishUpdate(aisTarget);
+        }
     }
 
     protected final void publishAll() {
@@ -607,6 +913,36 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
         listeners.remove(targetListener);
     }
 
+    /**
+     * Creates a subscription that accumulates target updates until polled. The current targets are recorded as added.
+     * 
+     * @return the new subscription
+     */
+    public final AisTargetDeltaSubscription subscribeDeltas() {
+        AisTargetDeltaSubscription subscription = new AisTargetDeltaSubscription();
+        deltaSubscriptions.add(subscription);
+        for (AisTarget aisTarget : vesselTargets.values()) {
+            subscription.record(aisTarget);
+        }
+        for (AisTarget aisTarget : atonTargets.values()) {
+            subscription.record(aisTarget);
+        }
+        for (AisTarget aisTarget : sarTargets.values()) {
+            subscription.record(aisTarget);
+        }
+        return subscription;
+    }
+
+    /**
+     * Stops recording target updates for the given subscription
+     * 
+     * @param subscription
+     *            the subscription to remove
+     */
+    public final void unsubscribeDeltas(AisTargetDeltaSubscription subscription) {
+        deltaSubscriptions.remove(subscription);
+    }
+
     /**
      * Get AisMessageExtended for a single VesselTarget
      * 
@@ -642,38 +978,113 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
     }
 
     /**
-     * Try to load AIS view from disk
+     * Loads the AIS view from disk in the background on the shared {@linkplain ExecutionService}. Targets received before the
+     * view has been loaded take precedence over the loaded targets, and saving the view waits for the load to complete.
+     *
+     * @return the future completion of the load
      */
-    public void loadView() {
-        AisStore aisStore = null;
+    public CompletableFuture<Void> loadViewAsync() {
+        final CompletableFuture<Void> loader = new CompletableFuture<>();
+        viewLoader = loader;
+        Future<?> task = ExecutionService.getInstance().submit("AisHandler-LoadView", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadView();
+                    loader.complete(null);
+                } catch (RuntimeException e) {
+                    loader.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        });
+        if (task.isCancelled()) {
+            // The execution service has been shut down
+            loader.cancel(false);
+        }
+        return loader;
+    }
+
+    /**
+     * Waits for a pending background load of the AIS view to complete
+     *
+     * @return if the view has been loaded, or was not loaded in the background
+     */
+    private boolean awaitViewLoaded() {
+        CompletableFuture<Void> loader = viewLoader;
+        if (loader == null) {
+            return true;
+        }
+        try {
+            loader.join();
+            return true;
+        } catch (CancellationException | CompletionException e) {
+            return false;
+        }
+    }
 
-        try (FileInputStream fileIn = new FileInputStream(AIS_VIEW_FILE);
-                ObjectInputStream objectIn = new ObjectInputStream(fileIn)) {
-            aisStore = (AisStore) objectIn.readObject();
-        } catch (FileNotFoundException e) {
+    /**
+     * Try to load AIS view from disk.
+     * <p>
+     * The view is normally stored as an {@linkplain AisViewSnapshot}. A view stored with Java serialization by earlier
+     * versions is still read, and is replaced by a snapshot the next time the view is saved.
+     */
+    public void loadView() {
+        Path file = Paths.get(AIS_VIEW_FILE);
+        long start = System.currentTimeMillis();
+        Map<Long, VesselTarget> loadedVessels = null;
+        Map<Integer, AtoNTarget> loadedAtons = null;
+        Map<Long, SarTarget> loadedSars = null;
+
+        try {
+            if (SnapshotFile.isSnapshot(file)) {
+                AisViewSnapshot snapshot = AisViewSnapshot.read(file);
+                loadedVessels = snapshot.getVesselTargets();
+                loadedAtons = snapshot.getAtonTargets();
+                loadedSars = snapshot.getSarTargets();
+            } else {
+                AisStore aisStore = loadLegacyView(file);
+                loadedVessels = aisStore.getVesselTargets();
+                loadedAtons = aisStore.getAtonTargets();
+                loadedSars = aisStore.getSarTargets();
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
             // Not an error
+            return;
         } catch (Exception e) {
             LOG.error("Failed to load AIS view file: " + e.getMessage());
             // Delete possible corrupted or old file
             new File(AIS_VIEW_FILE).delete();
-        }
-
-        if (aisStore == null) {
             return;
         }
 
-        // Retrieve targets
-        if (aisStore.getVesselTargets() != null) {
-            vesselTargets = new ConcurrentHashMap<>(aisStore.getVesselTargets());
+        // Merge the targets, keeping any targets received in the meantime
+        if (loadedVessels != null) {
+            for (VesselTarget vesselTarget : loadedVessels.values()) {
+                if (vesselTargets.putIfAbsent(vesselTarget.getMmsi(), vesselTarget) == null
+                        && vesselTarget.getPositionData() != null) {
+                    targetIndex.update(vesselTarget, vesselTarget.getPositionData().getPos());
+                    updateShipListEntry(vesselTarget);
+                }
+            }
         }
-        if (aisStore.getAtonTargets() != null) {
-            atonTargets = new ConcurrentHashMap<>(aisStore.getAtonTargets());
+        if (loadedAtons != null) {
+            for (AtoNTarget atonTarget : loadedAtons.values()) {
+                if (atonTargets.putIfAbsent((int) atonTarget.getMmsi(), atonTarget) == null) {
+                    targetIndex.update(atonTarget, atonTarget.getPos());
+                }
+            }
         }
-        if (aisStore.getSarTargets() != null) {
-            sarTargets = new ConcurrentHashMap<>(aisStore.getSarTargets());
+        if (loadedSars != null) {
+            for (SarTarget sarTarget : loadedSars.values()) {
+                if (sarTargets.putIfAbsent(sarTarget.getMmsi(), sarTarget) == null && sarTarget.getPositionData() != null) {
+                    targetIndex.update(sarTarget, sarTarget.getPositionData().getPos());
+                }
+            }
         }
 
-        LOG.info("AIS handler loaded total targets: " + (vesselTargets.size() + atonTargets.size() + sarTargets.size()));
+        LOG.info("AIS handler loaded total targets: " + (vesselTargets.size() + atonTargets.size() + sarTargets.size())
+                + " in " + (System.currentTimeMillis() - start) + " ms");
 
         // Update status to update old and gone (twice for old and gone)
         updateStatus();
@@ -681,34 +1092,110 @@ public abstract class AisHandlerCommon extends MapHandlerChild implements Runnab
 
     }
 
+    /**
+     * Reads an AIS view stored with Java serialization
+     */
+    private AisStore loadLegacyView(Path file) throws IOException, ClassNotFoundException {
+        try (FileInputStream fileIn = new FileInputStream(file.toFile());
+                ObjectInputStream objectIn = new ObjectInputStream(new BufferedInputStream(fileIn))) {
+            return (AisStore) objectIn.readObject();
+        }
+    }
+
     /**
      * Save AIS view to file
      */
     public void saveView() {
-        AisStore aisStore = new AisStore();
-        aisStore.setVesselTargets(vesselTargets);
-        aisStore.setAtonTargets(atonTargets);
-        aisStore.setSarTargets(sarTargets);
-
-        try (FileOutputStream fileOut = new FileOutputStream(AIS_VIEW_FILE);
-                ObjectOutputStream objectOut = new ObjectOutputStream(fileOut)) {
-            objectOut.writeObject(aisStore);
+        // Do not overwrite the stored view before it has been loaded
+        if (!awaitViewLoaded()) {
+            LOG.warn("AIS view was not loaded, skipping save");
+            return;
+        }
+        try {
+            new AisViewSnapshot(vesselTargets, sarTargets, atonTargets).write(Paths.get(AIS_VIEW_FILE), true);
         } catch (IOException e) {
-            e.printStackTrace();
             LOG.error("Failed to save Ais view file: " + e.getMessage());
         }
     }
 
+    /**
+     * Starts the AIS handler.
+     * <p>
+     * Applying the received messages, publishing the loaded targets and the periodic status updates all run on the
+     * shared {@linkplain ExecutionService}, and stop when it is shut down.
+     */
+    public void start() {
+        // Start applying received messages
+        ExecutionService.getInstance().scheduleWithFixedDelay("AisHandler-Ingest", new IngestUpdater(), 0,
+                INGEST_IDLE_WAIT, TimeUnit.MILLISECONDS);
+
+        // Save the AIS view periodically in the background
+        SnapshotScheduler.schedule("AIS view", new Runnable() {
+            @Override
+            public void run() {
+                saveView();
+            }
+        }, VIEW_SAVE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        // Publish loaded targets
+        ExecutionService.getInstance().schedule("AisHandler-Publish", new Runnable() {
+            @Override
+            public void run() {
+                awaitViewLoaded();
+                publishAll();
+            }
+        }, PUBLISH_DELAY, TimeUnit.MILLISECONDS);
+
+        ExecutionService.getInstance().scheduleWithFixedDelay("AisHandler", this, PUBLISH_DELAY + STATUS_UPDATE_INTERVAL,
+                STATUS_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Updates the status of the targets. Run periodically once the handler has been started
+     */
     @Override
     public void run() {
-        // Publish loaded targets
-        Util.sleep(2000);
-        publishAll();
+        updateStatus();
+    }
+
+    /**
+     * Drains the ingest buffer and applies the received messages in batches. Run periodically on the shared
+     * {@linkplain ExecutionService} until it is shut down
+     */
+    private final class IngestUpdater implements Runnable {
+
+        private final List<AisMessage> batch = new ArrayList<>(INGEST_BATCH_SIZE);
+
+        @Override
+        public void run() {
+            ingestThread = Thread.currentThread();
+            try {
+                while (!ExecutionService.getInstance().isShutdown()
+                        && ingestBuffer.drainTo(batch, INGEST_BATCH_SIZE) > 0) {
+                    try {
+                        applyBatch(batch);
+                    } catch (Exception e) {
+                        LOG.error("Failed to apply AIS batch: " + e.getMessage(), e);
+                    } finally {
+                        batch.clear();
+                    }
+                }
+            } finally {
+                ingestThread = null;
+            }
+        }
+    }
+
+    /**
+     * An unmodifiable ship list along with the version it was built from
+     */
+    private static final class ShipList {
+        final long version;
+        final List<AisMessageExtended> entries;
 
-        while (true) {
-            Util.sleep(10000);
-            // Update status on targets
-            updateStatus();
+        ShipList(long version, List<AisMessageExtended> entries) {
+            this.version = version;
+            this.entries = entries;
         }
     }
 
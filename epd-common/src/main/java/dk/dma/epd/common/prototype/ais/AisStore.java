@@ -19,7 +19,10 @@ import java.util.Map;
 
 
 /**
- * Container class for storing AIS view as serialized object
+ * Container class for storing AIS view as serialized object.
+ * <p>
+ * The AIS view is now stored as an {@linkplain AisViewSnapshot}. This class is kept for reading views stored by earlier
+ * versions.
  */
 public class AisStore implements Serializable {
 
@@ -0,0 +1,111 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * The changes to the AIS targets since the last time an {@linkplain AisTargetDeltaSubscription} was polled.
+ * <p>
+ * Each MMSI appears in at most one of the added, moved and gone sets, however many times the target was updated in the
+ * mean time.
+ */
+@Immutable
+public final class AisTargetDelta {
+
+    private final Set<Long> added;
+    private final Set<Long> moved;
+    private final Set<Long> gone;
+    private final Map<Long, AisTarget> targets;
+
+    /**
+     * Constructor
+     * 
+     * @param added
+     *            the MMSI of targets not previously delivered to the subscriber
+     * @param moved
+     *            the MMSI of previously delivered targets that have been updated
+     * @param gone
+     *            the MMSI of previously delivered targets that are now gone
+     * @param targets
+     *            the latest state of the targets in the delta
+     */
+    AisTargetDelta(Set<Long> added, Set<Long> moved, Set<Long> gone, Map<Long, AisTarget> targets) {
+        this.added = Collections.unmodifiableSet(added);
+        this.moved = Collections.unmodifiableSet(moved);
+        this.gone = Collections.unmodifiableSet(gone);
+        this.targets = Collections.unmodifiableMap(targets);
+    }
+
+    /**
+     * Returns the MMSI of targets not previously delivered to the subscriber
+     * 
+     * @return the MMSI of added targets
+     */
+    public Set<Long> getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the MMSI of previously delivered targets that have been updated
+     * 
+     * @return the MMSI of moved targets
+     */
+    public Set<Long> getMoved() {
+        return moved;
+    }
+
+    /**
+     * Returns the MMSI of previously delivered targets that are now gone
+     * 
+     * @return the MMSI of gone targets
+     */
+    public Set<Long> getGone() {
+        return gone;
+    }
+
+    /**
+     * Returns the target with the given MMSI
+     * 
+     * @param mmsi
+     *            the MMSI of a target in the delta
+     * @return the target, or null if not part of the delta
+     */
+    public AisTarget getTarget(long mmsi) {
+        return targets.get(mmsi);
+    }
+
+    /**
+     * Returns if the delta contains no changes
+     * 
+     * @return if the delta contains no changes
+     */
+    public boolean isEmpty() {
+        return targets.isEmpty();
+    }
+
+    /**
+     * Returns the number of changed targets
+     * 
+     * @return the number of changed targets
+     */
+    public int size() {
+        return targets.size();
+    }
+}
@@ -0,0 +1,102 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Accumulates AIS target updates between polls.
+ * <p>
+ * Rather than being notified for every position report, the subscriber polls the subscription at its own pace, typically
+ * once per repaint, and receives a single {@linkplain AisTargetDelta} with every changed target listed once. The work of the
+ * subscriber thus scales with its refresh rate rather than with the AIS message rate.
+ * <p>
+ * Create subscriptions with {@linkplain AisHandlerCommon#subscribeDeltas()}.
+ */
+@ThreadSafe
+public class AisTargetDeltaSubscription {
+
+    @GuardedBy("this") private Set<Long> added = new LinkedHashSet<>();
+    @GuardedBy("this") private Set<Long> moved = new LinkedHashSet<>();
+    @GuardedBy("this") private Set<Long> gone = new LinkedHashSet<>();
+    @GuardedBy("this") private Map<Long, AisTarget> targets = new LinkedHashMap<>();
+
+    // MMSI of the targets delivered to the subscriber as present
+    @GuardedBy("this") private final Set<Long> delivered = new HashSet<>();
+
+    /**
+     * Records that the given target has been updated
+     * 
+     * @param aisTarget
+     *            the updated target
+     */
+    public synchronized void record(AisTarget aisTarget) {
+        Long mmsi = aisTarget.getMmsi();
+        boolean known = delivered.contains(mmsi);
+
+        if (aisTarget.isGone()) {
+            added.remove(mmsi);
+            moved.remove(mmsi);
+            if (known) {
+                gone.add(mmsi);
+                targets.put(mmsi, aisTarget);
+            } else {
+                // Never delivered, so there is nothing for the subscriber to remove
+                targets.remove(mmsi);
+            }
+            return;
+        }
+
+        gone.remove(mmsi);
+        if (known) {
+            moved.add(mmsi);
+        } else {
+            added.add(mmsi);
+        }
+        targets.put(mmsi, aisTarget);
+    }
+
+    /**
+     * Returns the changes recorded since the last poll and starts recording a new delta
+     * 
+     * @return the changes since the last poll
+     */
+    public synchronized AisTargetDelta poll() {
+        AisTargetDelta delta = new AisTargetDelta(added, moved, gone, targets);
+        delivered.addAll(added);
+        delivered.removeAll(gone);
+        added = new LinkedHashSet<>();
+        moved = new LinkedHashSet<>();
+        gone = new LinkedHashSet<>();
+        targets = new LinkedHashMap<>();
+        return delta;
+    }
+
+    /**
+     * Returns if there are changes recorded since the last poll
+     * 
+     * @return if there are changes recorded since the last poll
+     */
+    public synchronized boolean hasChanges() {
+        return !targets.isEmpty();
+    }
+}
@@ -0,0 +1,380 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.jcip.annotations.ThreadSafe;
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * Concurrent spatial index of AIS targets.
+ * <p>
+ * The globe is divided into a grid of fixed size cells (in degrees) and every target is registered in the cell containing its
+ * latest position. Bounding box, radius and k-nearest queries only visit the cells overlapping the query area, which keeps
+ * viewport and range look-ups independent of the total number of targets.
+ * <p>
+ * Distances are rhumb line distances in meters, in line with the AIS range checks elsewhere.
+ */
+@ThreadSafe
+public class AisTargetIndex {
+
+    /** Default cell size in degrees */
+    public static final double DEFAULT_CELL_SIZE = 0.2;
+
+    private static final double METERS_PER_DEGREE = 1852.0 * 60.0;
+
+    private final double cellSize;
+    private final int latCells;
+    private final int lonCells;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor using the default cell size
+     */
+    public AisTargetIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param cellSize
+     *            the size of the grid cells in degrees
+     */
+    public AisTargetIndex(double cellSize) {
+        if (cellSize <= 0 || cellSize > 90) {
+            throw new IllegalArgumentException("Invalid cell size " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.latCells = (int) Math.ceil(180.0 / cellSize);
+        this.lonCells = (int) Math.ceil(360.0 / cellSize);
+    }
+
+    /**
+     * Registers the target at the given position, moving it if it is already indexed
+     *
+     * @param target
+     *            the target to index
+     * @param pos
+     *            the latest position of the target
+     */
+    public void update(final AisTarget target, final Position pos) {
+        if (target == null || pos == null) {
+            return;
+        }
+        final long mmsi = target.getMmsi();
+        final long cell = cellKey(latIndex(pos.getLatitude()), lonIndex(pos.getLongitude()));
+        entries.compute(mmsi, (key, old) -> {
+            if (old == null || old.cell != cell) {
+                addToCell(cell, key);
+                if (old != null) {
+                    removeFromCell(old.cell, key);
+                }
+            }
+            return new Entry(target, pos, cell);
+        });
+    }
+
+    /**
+     * Removes the target with the given MMSI from the index
+     *
+     * @param mmsi
+     *            the MMSI of the target
+     */
+    public void remove(long mmsi) {
+        entries.computeIfPresent(mmsi, (key, old) -> {
+            removeFromCell(old.cell, key);
+            return null;
+        });
+    }
+
+    /**
+     * Removes all targets from the index
+     */
+    public void clear() {
+        entries.clear();
+        cells.clear();
+    }
+
+    /**
+     * Returns the number of indexed targets
+     *
+     * @return the number of indexed targets
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the indexed position of the target with the given MMSI
+     *
+     * @param mmsi
+     *            the MMSI of the target
+     * @return the indexed position or null if not indexed
+     */
+    public Position getPosition(long mmsi) {
+        Entry entry = entries.get(mmsi);
+        return (entry == null) ? null : entry.pos;
+    }
+
+    /**
+     * Returns the targets within the given bounding box.<br>
+     * If {@code minLon > maxLon} the box is assumed to cross the date line.
+     *
+     * @param minLat
+     *            southern boundary
+     * @param minLon
+     *            western boundary
+     * @param maxLat
+     *            northern boundary
+     * @param maxLon
+     *            eastern boundary
+     * @return the targets within the bounding box
+     */
+    public List<AisTarget> queryBox(double minLat, double minLon, double maxLat, double maxLon) {
+        List<AisTarget> result = new ArrayList<>();
+        for (Entry entry : candidates(minLat, minLon, maxLat, maxLon)) {
+            if (inBox(entry.pos, minLat, minLon, maxLat, maxLon)) {
+                result.add(entry.target);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the targets within the given radius of the center position
+     *
+     * @param center
+     *            the center position
+     * @param radius
+     *            the radius in meters
+     * @return the targets within the radius
+     */
+    public List<AisTarget> queryRadius(Position center, double radius) {
+        List<AisTarget> result = new ArrayList<>();
+        for (Entry entry : radiusCandidates(center, radius)) {
+            if (center.rhumbLineDistanceTo(entry.pos) <= radius) {
+                result.add(entry.target);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@code k} targets nearest to the center position, sorted by increasing distance
+     *
+     * @param center
+     *            the center position
+     * @param k
+     *            the max number of targets to return
+     * @return the nearest targets
+     */
+    public List<AisTarget> nearest(Position center, int k) {
+        if (k <= 0 || entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        double maxRadius = Math.PI * 6371000.0;
+        double radius = cellSize * METERS_PER_DEGREE;
+        while (true) {
+            List<Entry> candidates = radiusCandidates(center, radius);
+            if (candidates.size() >= k || radius >= maxRadius) {
+                final double[] dist = new double[candidates.size()];
+                Integer[] order = new Integer[candidates.size()];
+                int found = 0;
+                for (Entry entry : candidates) {
+                    double d = center.rhumbLineDistanceTo(entry.pos);
+                    if (d <= radius) {
+                        dist[found] = d;
+                        order[found] = found;
+                        candidates.set(found++, entry);
+                    }
+                }
+                if (found >= k || radius >= maxRadius) {
+                    Arrays.sort(order, 0, found, new Comparator<Integer>() {
+                        @Override
+                        public int compare(Integer o1, Integer o2) {
+                            return Double.compare(dist[o1], dist[o2]);
+                        }
+                    });
+                    List<AisTarget> result = new ArrayList<>(Math.min(k, found));
+                    for (int i = 0; i < found && i < k; i++) {
+                        result.add(candidates.get(order[i]).target);
+                    }
+                    return result;
+                }
+            }
+            radius *= 2;
+        }
+    }
+
+    /**
+     * Returns the entries of the cells overlapping the circle around the center
+     */
+    private List<Entry> radiusCandidates(Position center, double radius) {
+        double dLat = radius / METERS_PER_DEGREE;
+        double minLat = Math.max(-90, center.getLatitude() - dLat);
+        double maxLat = Math.min(90, center.getLatitude() + dLat);
+        double cosLat = Math.min(Math.cos(Math.toRadians(minLat)), Math.cos(Math.toRadians(maxLat)));
+        double dLon = (cosLat <= 1e-6) ? 360 : dLat / cosLat;
+        if (dLon >= 180) {
+            return candidates(minLat, -180, maxLat, 180);
+        }
+        return candidates(minLat, normalizeLon(center.getLongitude() - dLon), maxLat, normalizeLon(center.getLongitude() + dLon));
+    }
+
+    /**
+     * Returns the entries registered in the cells overlapping the given bounding box
+     */
+    private List<Entry> candidates(double minLat, double minLon, double maxLat, double maxLon) {
+        List<Entry> result = new ArrayList<>();
+        int lat0 = latIndex(minLat);
+        int lat1 = latIndex(maxLat);
+        int lon0 = lonIndex(minLon);
+        int lon1 = lonIndex(maxLon);
+        int lonCount = (lon1 >= lon0 && minLon <= maxLon) ? lon1 - lon0 + 1 : lonCells - lon0 + lon1 + 1;
+        long cellCount = (long) (lat1 - lat0 + 1) * lonCount;
+
+        if (cellCount > cells.size()) {
+            // Cheaper to scan the populated cells than to visit every cell of the box
+            for (Map.Entry<Long, Set<Long>> cell : cells.entrySet()) {
+                int latIdx = (int) (cell.getKey() / lonCells);
+                int lonIdx = (int) (cell.getKey() % lonCells);
+                if (latIdx >= lat0 && latIdx <= lat1 && lonInRange(lonIdx, lon0, lonCount)) {
+                    collect(cell.getKey(), cell.getValue(), result);
+                }
+            }
+        } else {
+            for (int latIdx = lat0; latIdx <= lat1; latIdx++) {
+                for (int i = 0; i < lonCount; i++) {
+                    long key = cellKey(latIdx, (lon0 + i) % lonCells);
+                    Set<Long> mmsis = cells.get(key);
+                    if (mmsis != null) {
+                        collect(key, mmsis, result);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void collect(long cell, Set<Long> mmsis, List<Entry> result) {
+        for (Long mmsi : mmsis) {
+            Entry entry = entries.get(mmsi);
+            // Skip entries that have moved since the cell was read
+            if (entry != null && entry.cell == cell) {
+                result.add(entry);
+            }
+        }
+    }
+
+    private boolean lonInRange(int lonIdx, int lon0, int lonCount) {
+        int offset = lonIdx - lon0;
+        if (offset < 0) {
+            offset += lonCells;
+        }
+        return offset < lonCount;
+    }
+
+    private static boolean inBox(Position pos, double minLat, double minLon, double maxLat, double maxLon) {
+        double lat = pos.getLatitude();
+        double lon = pos.getLongitude();
+        if (lat < minLat || lat > maxLat) {
+            return false;
+        }
+        if (minLon <= maxLon) {
+            return lon >= minLon && lon <= maxLon;
+        }
+        return lon >= minLon || lon <= maxLon;
+    }
+
+    /**
+     * Returns the number of grid cells holding at least one target
+     *
+     * @return the number of populated cells
+     */
+    int getCellCount() {
+        return cells.size();
+    }
+
+    private void addToCell(long cell, final Long mmsi) {
+        cells.compute(cell, (key, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(mmsi);
+            return set;
+        });
+    }
+
+    /**
+     * Removes the MMSI from the cell, and drops the cell once it is empty. Both are atomic per cell, so a concurrent
+     * add to the same cell is never lost.
+     */
+    private void removeFromCell(long cell, final Long mmsi) {
+        cells.computeIfPresent(cell, (key, set) -> {
+            set.remove(mmsi);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private int latIndex(double lat) {
+        int idx = (int) Math.floor((lat + 90.0) / cellSize);
+        return Math.max(0, Math.min(latCells - 1, idx));
+    }
+
+    private int lonIndex(double lon) {
+        int idx = (int) Math.floor((normalizeLon(lon) + 180.0) / cellSize);
+        return Math.max(0, Math.min(lonCells - 1, idx));
+    }
+
+    private long cellKey(int latIdx, int lonIdx) {
+        return (long) latIdx * lonCells + lonIdx;
+    }
+
+    private static double normalizeLon(double lon) {
+        while (lon < -180) {
+            lon += 360;
+        }
+        while (lon > 180) {
+            lon -= 360;
+        }
+        return lon;
+    }
+
+    /**
+     * An indexed target along with the position and cell it was indexed at
+     */
+    private static final class Entry {
+        final AisTarget target;
+        final Position pos;
+        final long cell;
+
+        Entry(AisTarget target, Position pos, long cell) {
+            this.target = target;
+            this.pos = pos;
+            this.cell = cell;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import static dk.dma.epd.common.util.SnapshotFile.readDate;
+import static dk.dma.epd.common.util.SnapshotFile.readString;
+import static dk.dma.epd.common.util.SnapshotFile.writeDate;
+import static dk.dma.epd.common.util.SnapshotFile.writeString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import dk.dma.ais.message.ShipTypeCargo;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.enav.model.voyage.NavigationalStatus;
+import dk.dma.epd.common.util.SnapshotFile;
+
+/**
+ * Compact binary snapshot of the AIS view.
+ * <p>
+ * The vessel, SART and AtoN targets are written as separate sections, each laid out as primitive columns (all MMSIs,
+ * then all latitudes, etc.) rather than as an object graph. The sections are decoded in parallel when loaded.
+ * <p>
+ * Past-track data is not part of the snapshot, in line with the Java serialized AIS view.
+ */
+public final class AisViewSnapshot {
+
+    /** The snapshot type */
+    public static final String TYPE = "ais-view";
+
+    /** The current payload version */
+    public static final int VERSION = 1;
+
+    private static final int HAS_POSITION_DATA = 1;
+    private static final int HAS_POS = 2;
+    private static final int HAS_STATIC_DATA = 4;
+    private static final int HAS_SETTINGS = 8;
+    private static final int SHOW_INTENDED_ROUTE = 16;
+
+    private static final AisTarget.Status[] STATUS_VALUES = AisTarget.Status.values();
+
+    private final Map<Long, VesselTarget> vesselTargets;
+    private final Map<Long, SarTarget> sarTargets;
+    private final Map<Integer, AtoNTarget> atonTargets;
+
+    /**
+     * Constructor
+     * 
+     * @param vesselTargets
+     *            the vessel targets
+     * @param sarTargets
+     *            the SART targets
+     * @param atonTargets
+     *            the AtoN targets
+     */
+    public AisViewSnapshot(Map<Long, VesselTarget> vesselTargets, Map<Long, SarTarget> sarTargets,
+            Map<Integer, AtoNTarget> atonTargets) {
+        this.vesselTargets = vesselTargets;
+        this.sarTargets = sarTargets;
+        this.atonTargets = atonTargets;
+    }
+
+    public Map<Long, VesselTarget> getVesselTargets() {
+        return vesselTargets;
+    }
+
+    public Map<Long, SarTarget> getSarTargets() {
+        return sarTargets;
+    }
+
+    public Map<Integer, AtoNTarget> getAtonTargets() {
+        return atonTargets;
+    }
+
+    /**
+     * Atomically writes the snapshot to the given file
+     * 
+     * @param file
+     *            the file to write
+     * @param compress
+     *            whether to compress the snapshot
+     */
+    public void write(Path file, boolean compress) throws IOException {
+        // Encode the sections before writing, so that the file can be laid out with section lengths
+        final byte[] vessels = encodeMobileTargets(new ArrayList<MobileTarget>(vesselTargets.values()), false);
+        final byte[] sars = encodeMobileTargets(new ArrayList<MobileTarget>(sarTargets.values()), true);
+        final byte[] atons = encodeAtonTargets(new ArrayList<>(atonTargets.values()));
+
+        SnapshotFile.write(file, TYPE, VERSION, compress, new SnapshotFile.Writer() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                writeSection(out, vessels);
+                writeSection(out, sars);
+                writeSection(out, atons);
+            }
+        });
+    }
+
+    /**
+     * Reads the snapshot from the given file
+     * 
+     * @param file
+     *            the file to read
+     * @return the snapshot
+     */
+    public static AisViewSnapshot read(Path file) throws IOException {
+        return SnapshotFile.read(file, TYPE, new SnapshotFile.Reader<AisViewSnapshot>() {
+            @Override
+            public AisViewSnapshot read(DataInputStream in, int version) throws IOException {
+                if (version > VERSION) {
+                    throw new SnapshotFile.SnapshotFormatException("Unsupported AIS view version " + version);
+                }
+                final byte[] vessels = readSection(in);
+                final byte[] sars = readSection(in);
+                final byte[] atons = readSection(in);
+
+                CompletableFuture<List<MobileTarget>> vesselFuture = CompletableFuture.supplyAsync(() -> decodeMobileTargets(
+                        vessels, false));
+                CompletableFuture<List<MobileTarget>> sarFuture = CompletableFuture.supplyAsync(() -> decodeMobileTargets(
+                        sars, true));
+                List<AtoNTarget> atonList = decodeAtonTargets(atons);
+
+                try {
+                    Map<Long, VesselTarget> vesselTargets = new HashMap<>();
+                    for (MobileTarget target : vesselFuture.join()) {
+                        vesselTargets.put(target.getMmsi(), (VesselTarget) target);
+                    }
+                    Map<Long, SarTarget> sarTargets = new HashMap<>();
+                    for (MobileTarget target : sarFuture.join()) {
+                        sarTargets.put(target.getMmsi(), (SarTarget) target);
+                    }
+                    Map<Integer, AtoNTarget> atonTargets = new HashMap<>();
+                    for (AtoNTarget target : atonList) {
+                        atonTargets.put((int) target.getMmsi(), target);
+                    }
+                    return new AisViewSnapshot(vesselTargets, sarTargets, atonTargets);
+                } catch (CompletionException e) {
+                    throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        });
+    }
+
+    private static void writeSection(DataOutputStream out, byte[] section) throws IOException {
+        out.writeInt(section.length);
+        out.write(section);
+    }
+
+    private static byte[] readSection(DataInputStream in) throws IOException {
+        byte[] section = new byte[in.readInt()];
+        in.readFully(section);
+        return section;
+    }
+
+    /**
+     * Encodes vessel or SART targets as columns
+     */
+    private static byte[] encodeMobileTargets(List<MobileTarget> targets, boolean sar) {
+        int n = targets.size();
+        long[] mmsi = new long[n];
+        VesselPositionData[] positionData = new VesselPositionData[n];
+        VesselStaticData[] staticData = new VesselStaticData[n];
+        VesselTargetSettings[] settings = new VesselTargetSettings[n];
+        Position[] pos = new Position[n];
+        byte[] flags = new byte[n];
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + n * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                MobileTarget target = targets.get(i);
+                mmsi[i] = target.getMmsi();
+                positionData[i] = target.getPositionData();
+                staticData[i] = target.getStaticData();
+                settings[i] = target.getSettings();
+                pos[i] = (positionData[i] == null) ? null : positionData[i].getPos();
+                int f = 0;
+                f |= (positionData[i] != null) ? HAS_POSITION_DATA : 0;
+                f |= (pos[i] != null) ? HAS_POS : 0;
+                f |= (staticData[i] != null) ? HAS_STATIC_DATA : 0;
+                f |= (settings[i] != null) ? HAS_SETTINGS : 0;
+                f |= (target instanceof VesselTarget && ((VesselTarget) target).isShowIntendedRoute()) ? SHOW_INTENDED_ROUTE : 0;
+                flags[i] = (byte) f;
+            }
+
+            for (int i = 0; i < n; i++) {
+                out.writeLong(mmsi[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                writeDate(out, targets.get(i).getLastReceived());
+            }
+            for (int i = 0; i < n; i++) {
+                AisTarget.Status status = targets.get(i).getStatus();
+                out.writeByte((status == null) ? -1 : status.ordinal());
+            }
+            out.write(flags);
+            if (sar) {
+                for (int i = 0; i < n; i++) {
+                    writeDate(out, ((SarTarget) targets.get(i)).getFirstReceived());
+                }
+            }
+
+            // Position data columns
+            for (int i = 0; i < n; i++) {
+                if (pos[i] != null) {
+                    out.writeDouble(pos[i].getLatitude());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (pos[i] != null) {
+                    out.writeDouble(pos[i].getLongitude());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    out.writeFloat(positionData[i].getCog());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    out.writeFloat(positionData[i].getSog());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    out.writeFloat(positionData[i].getTrueHeading());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    out.writeFloat(positionData[i].getRot());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    out.writeInt(positionData[i].getNavStatus());
+                    NavigationalStatus navStatus = positionData[i].getEnumNavStatus();
+                    writeString(out, (navStatus == null) ? null : navStatus.name());
+                    out.writeByte(positionData[i].getPosAcc());
+                }
+            }
+
+            // Static data columns
+            for (int i = 0; i < n; i++) {
+                if (staticData[i] != null) {
+                    VesselStaticData s = staticData[i];
+                    out.writeLong(s.getImo());
+                    writeString(out, s.getCallsign());
+                    writeString(out, s.getName());
+                    out.writeInt((s.getShipType() == null) ? -1 : s.getShipType().getIntShipType());
+                    out.writeInt(s.getDimBow());
+                    out.writeInt(s.getDimStern());
+                    out.writeInt(s.getDimPort());
+                    out.writeInt(s.getDimStarboard());
+                    out.writeInt(s.getPosType());
+                    out.writeLong(s.getEta());
+                    out.writeFloat(s.getDraught());
+                    writeString(out, s.getDestination());
+                }
+            }
+
+            // Settings columns
+            for (int i = 0; i < n; i++) {
+                if (settings[i] != null) {
+                    out.writeByte((settings[i].isHide() ? 1 : 0) | (settings[i].isShowPastTrack() ? 2 : 0));
+                    out.writeInt(settings[i].getPastTrackDisplayTime());
+                    out.writeInt(settings[i].getPastTrackMinDist());
+                }
+            }
+        } catch (IOException e) {
+            // Cannot happen for an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes vessel or SART targets from columns
+     */
+    private static List<MobileTarget> decodeMobileTargets(byte[] section, boolean sar) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(section))) {
+            int n = in.readInt();
+            MobileTarget[] targets = new MobileTarget[n];
+            for (int i = 0; i < n; i++) {
+                targets[i] = sar ? new SarTarget() : new VesselTarget();
+                targets[i].setMmsi(in.readLong());
+            }
+            for (int i = 0; i < n; i++) {
+                targets[i].setLastReceived(readDate(in));
+            }
+            for (int i = 0; i < n; i++) {
+                int status = in.readByte();
+                targets[i].setStatus((status < 0) ? null : STATUS_VALUES[status]);
+            }
+            byte[] flags = new byte[n];
+            in.readFully(flags);
+            if (sar) {
+                for (int i = 0; i < n; i++) {
+                    ((SarTarget) targets[i]).setFirstReceived(readDate(in));
+                }
+            }
+
+            // Position data columns
+            VesselPositionData[] positionData = new VesselPositionData[n];
+            double[] lat = new double[n];
+            for (int i = 0; i < n; i++) {
+                if ((flags[i] & HAS_POSITION_DATA) != 0) {
+                    positionData[i] = new VesselPositionData();
+                }
+                if ((flags[i] & HAS_POS) != 0) {
+                    lat[i] = in.readDouble();
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if ((flags[i] & HAS_POS) != 0) {
+                    positionData[i].setPos(Position.create(lat[i], in.readDouble()));
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    positionData[i].setCog(in.readFloat());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    positionData[i].setSog(in.readFloat());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    positionData[i].setTrueHeading(in.readFloat());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    positionData[i].setRot(in.readFloat());
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (positionData[i] != null) {
+                    positionData[i].setNavStatus(in.readInt());
+                    String navStatus = readString(in);
+                    positionData[i].setEnumNavStatus((navStatus == null) ? null : NavigationalStatus.valueOf(navStatus));
+                    positionData[i].setPosAcc(in.readByte());
+                    targets[i].setPositionData(positionData[i]);
+                }
+            }
+
+            // Static data columns
+            for (int i = 0; i < n; i++) {
+                if ((flags[i] & HAS_STATIC_DATA) != 0) {
+                    VesselStaticData s = new VesselStaticData();
+                    s.setImo(in.readLong());
+                    s.setCallsign(readString(in));
+                    s.setName(readString(in));
+                    s.setShipType(new ShipTypeCargo(in.readInt()));
+                    s.setDimBow(in.readInt());
+                    s.setDimStern(in.readInt());
+                    s.setDimPort(in.readInt());
+                    s.setDimStarboard(in.readInt());
+                    s.setPosType(in.readInt());
+                    s.setEta(in.readLong());
+                    s.setDraught(in.readFloat());
+                    s.setDestination(readString(in));
+                    targets[i].setStaticData(s);
+                }
+            }
+
+            // Settings columns
+            for (int i = 0; i < n; i++) {
+                if ((flags[i] & HAS_SETTINGS) != 0) {
+                    VesselTargetSettings settings = new VesselTargetSettings();
+                    int bits = in.readByte();
+                    settings.setHide((bits & 1) != 0);
+                    settings.setShowPastTrack((bits & 2) != 0);
+                    settings.setPastTrackDisplayTime(in.readInt());
+                    settings.setPastTrackMinDist(in.readInt());
+                    targets[i].setSettings(settings);
+                }
+                if (!sar) {
+                    ((VesselTarget) targets[i]).setShowIntendedRoute((flags[i] & SHOW_INTENDED_ROUTE) != 0);
+                }
+            }
+
+            List<MobileTarget> result = new ArrayList<>(n);
+            for (MobileTarget target : targets) {
+                result.add(target);
+            }
+            return result;
+        } catch (IOException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new CompletionException(new SnapshotFile.SnapshotFormatException("Corrupt AIS view snapshot: " + e));
+        }
+    }
+
+    /**
+     * Encodes AtoN targets as columns
+     */
+    private static byte[] encodeAtonTargets(Collection<AtoNTarget> targets) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + targets.size() * 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(targets.size());
+            for (AtoNTarget target : targets) {
+                out.writeLong(target.getMmsi());
+            }
+            for (AtoNTarget target : targets) {
+                writeDate(out, target.getLastReceived());
+            }
+            for (AtoNTarget target : targets) {
+                AisTarget.Status status = target.getStatus();
+                out.writeByte((status == null) ? -1 : status.ordinal());
+            }
+            for (AtoNTarget target : targets) {
+                Position pos = target.getPos();
+                out.writeBoolean(pos != null);
+                if (pos != null) {
+                    out.writeDouble(pos.getLatitude());
+                    out.writeDouble(pos.getLongitude());
+                }
+            }
+            for (AtoNTarget target : targets) {
+                AtoNTargetType type = target.getAtonType();
+                out.writeInt((type == null) ? -1 : type.getAtoNTypeCode());
+                writeString(out, target.getName());
+                writeString(out, target.getNameExt());
+                out.writeInt(target.getPosAcc());
+                out.writeInt(target.getDimBow());
+                out.writeInt(target.getDimStern());
+                out.writeInt(target.getDimPort());
+                out.writeInt(target.getDimStarboard());
+                out.writeInt(target.getPosType());
+                out.writeInt(target.getOffPosition());
+                out.writeInt(target.getRegional());
+                out.writeInt(target.getRaim());
+                out.writeInt(target.getVirtual());
+                out.writeInt(target.getAssigned());
+            }
+        } catch (IOException e) {
+            // Cannot happen for an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes AtoN targets from columns
+     */
+    private static List<AtoNTarget> decodeAtonTargets(byte[] section) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(section))) {
+            int n = in.readInt();
+            List<AtoNTarget> targets = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                AtoNTarget target = new AtoNTarget();
+                target.setMmsi(in.readLong());
+                targets.add(target);
+            }
+            for (AtoNTarget target : targets) {
+                target.setLastReceived(readDate(in));
+            }
+            for (AtoNTarget target : targets) {
+                int status = in.readByte();
+                target.setStatus((status < 0) ? null : STATUS_VALUES[status]);
+            }
+            for (AtoNTarget target : targets) {
+                if (in.readBoolean()) {
+                    target.setPos(Position.create(in.readDouble(), in.readDouble()));
+                }
+            }
+            for (AtoNTarget target : targets) {
+                int type = in.readInt();
+                target.setAtonType((type < 0) ? null : AtoNTargetType.getAtoNTargetTypeFromTypeCode(type));
+                target.setName(readString(in));
+                target.setNameExt(readString(in));
+                target.setPosAcc(in.readInt());
+                target.setDimBow(in.readInt());
+                target.setDimStern(in.readInt());
+                target.setDimPort(in.readInt());
+                target.setDimStarboard(in.readInt());
+                target.setPosType(in.readInt());
+                target.setOffPosition(in.readInt());
+                target.setRegional(in.readInt());
+                target.setRaim(in.readInt());
+                target.setVirtual(in.readInt());
+                target.setAssigned(in.readInt());
+            }
+            return targets;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new SnapshotFile.SnapshotFormatException("Corrupt AIS view snapshot: " + e);
+        }
+    }
+}
@@ -14,7 +14,7 @@
  */
 package dk.dma.epd.common.prototype.ais;
 
-
+import java.util.Collection;
 
 /**
  * Interface to implement for classes wanting to receive AIS target updates
@@ -27,4 +27,10 @@ public interface IAisTargetListener {
      */
     void targetUpdated(AisTarget aisTarget);
 
+    /**
+     * Called once for each batch of received AIS messages with the targets updated by the batch
+     * @param aisTargets the updated targets, each target occurring once
+     */
+    void targetsUpdated(Collection<AisTarget> aisTargets);
+
 }
@@ -15,19 +15,16 @@
 package dk.dma.epd.common.prototype.ais;
 
 import java.util.Collection;
+import java.util.Date;
 
 import dk.dma.enav.model.geometry.Position;
 
 /**
- * Interface for past track implementations
- * NOTE NOTE: this is almost a copy of package dk.dma.ais.data's IPastTrack
- * This is halfway to commonalizing between the two, 
- * problems: SHORE/EPD make use of toString() which is a pain to update
- * AisHandler, AisLayer make use of non-collection interface like list.get(i) (assume arraylist)
+ * Interface for past-track stores.
  * <p>
- * 131213: Class moved from epd-shore to epd-common, so that it may be used in epd-ship
+ * Use {@link PastTrackFactory} to create a new instance of the configured implementation.
  */
-public interface IPastTrack{
+public interface IPastTrack {
 
     /**
      * Add position to past track if it is more than minimum distance from last position
@@ -51,4 +48,61 @@ public interface IPastTrack{
      */
     Collection<PastTrackPoint> getPoints();
 
+    /**
+     * Returns the points newer than the given {@code time}
+     * 
+     * @param time
+     *            the time
+     * @return the points newer than the given time
+     */
+    Collection<PastTrackPoint> getPointsNewerThan(Date time);
+
+    /**
+     * Visits the points newer than the given {@code time} in chronological order without creating intermediate collections
+     * 
+     * @param time
+     *            the time in epoch millis
+     * @param visitor
+     *            the visitor to call for each point
+     */
+    void visitPointsNewerThan(long time, PastTrackVisitor visitor);
+
+    /**
+     * Returns the last change time
+     * 
+     * @return the last change time
+     */
+    long getLastChangeTime();
+
+    /**
+     * Flags that the mobile target was gone. Updates the last past-track point with this state.
+     */
+    void flagGone();
+
+    /**
+     * Returns a copy of this past track
+     * 
+     * @return a copy of this past track
+     */
+    IPastTrack copy();
+
+    /**
+     * Callback used for iterating the points of a past track
+     */
+    interface PastTrackVisitor {
+
+        /**
+         * Called for each visited past-track point
+         * 
+         * @param time
+         *            the time of the point in epoch millis
+         * @param lat
+         *            the latitude
+         * @param lon
+         *            the longitude
+         * @param gone
+         *            if the target was gone while this was the active point
+         */
+        void visit(long time, double lat, double lon, boolean gone);
+    }
 }
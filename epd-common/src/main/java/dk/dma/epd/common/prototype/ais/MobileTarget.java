@@ -34,7 +34,7 @@ public abstract class MobileTarget extends AisTarget {
     @GuardedBy("this") VesselStaticData staticData;
     @GuardedBy("this") VesselTargetSettings settings;
     // NB: We do not want to persist past-track data
-    @GuardedBy("this") transient PastTrackSortedSet pastTrackData = new PastTrackSortedSet();
+    @GuardedBy("this") transient IPastTrack pastTrackData = PastTrackFactory.create();
    
     /**
      * Empty constructor
@@ -58,7 +58,7 @@ public abstract class MobileTarget extends AisTarget {
             this.staticData = new VesselStaticData(mobileTarget.staticData);
         }
         if (mobileTarget.pastTrackData != null) {
-            this.pastTrackData = new PastTrackSortedSet(mobileTarget.pastTrackData);
+            this.pastTrackData = mobileTarget.pastTrackData.copy();
         }
         if (mobileTarget.settings != null) {
             this.settings = new VesselTargetSettings(mobileTarget.settings);
@@ -117,9 +117,9 @@ public abstract class MobileTarget extends AisTarget {
      * Returns the past-track data
      * @return the past-track data
      */
-    public synchronized PastTrackSortedSet getPastTrackData() {
+    public synchronized IPastTrack getPastTrackData() {
         if (pastTrackData == null) {
-            this.pastTrackData = new PastTrackSortedSet();
+            this.pastTrackData = PastTrackFactory.create();
         }
         return pastTrackData;
     }
@@ -128,7 +128,7 @@ public abstract class MobileTarget extends AisTarget {
      * Sets the past-track data
      * @param pastTrackData the past-track data
      */
-    public synchronized void setPastTrackData(PastTrackSortedSet pastTrackData) {
+    public synchronized void setPastTrackData(IPastTrack pastTrackData) {
         this.pastTrackData = pastTrackData;
     }
     
@@ -0,0 +1,56 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+/**
+ * Creates the {@link IPastTrack} implementation used for recording past-tracks.
+ * <p>
+ * The implementation is selected via the {@code ais.pastTrackRingBuffer} setting:
+ * <ul>
+ * <li>{@link PastTrackSortedSet}: the default, backed by a skip list of {@link PastTrackPoint}'s.</li>
+ * <li>{@link PastTrackRingBuffer}: backed by primitive ring buffers, with O(1) append and expiry.</li>
+ * </ul>
+ */
+public final class PastTrackFactory {
+
+    private static volatile boolean ringBuffer;
+
+    private PastTrackFactory() {
+    }
+
+    /**
+     * Sets whether to use the ring buffer implementation for new past-tracks
+     * @param useRingBuffer whether to use the ring buffer implementation
+     */
+    public static void setRingBuffer(boolean useRingBuffer) {
+        ringBuffer = useRingBuffer;
+    }
+
+    /**
+     * Returns whether the ring buffer implementation is used for new past-tracks
+     * @return whether the ring buffer implementation is used for new past-tracks
+     */
+    public static boolean isRingBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Creates a new, empty past-track of the selected implementation
+     * @return a new, empty past-track
+     */
+    public static IPastTrack create() {
+        return ringBuffer ? new PastTrackRingBuffer() : new PastTrackSortedSet();
+    }
+}
@@ -0,0 +1,278 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import dk.dma.enav.model.geometry.CoordinateSystem;
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * Past-track store backed by primitive ring buffers of time, latitude and longitude.
+ * <p>
+ * Points are always appended in chronological order, so new points go to the tail and expired points are dropped from the
+ * head. Appending and expiring are O(1) (amortized when the buffer needs to grow), and the points can be visited via
+ * {@link #visitPointsNewerThan(long, PastTrackVisitor)} without allocating any objects.
+ */
+@ThreadSafe
+public class PastTrackRingBuffer implements IPastTrack {
+
+    private static final int DEFAULT_CAPACITY = 32;
+
+    @GuardedBy("this") private long[] times;
+    @GuardedBy("this") private double[] lats;
+    @GuardedBy("this") private double[] lons;
+    @GuardedBy("this") private boolean[] gone;
+    @GuardedBy("this") private int head;
+    @GuardedBy("this") private int size;
+    @GuardedBy("this") private long lastChangeTime;
+
+    /**
+     * No-arg constructor
+     */
+    public PastTrackRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     * @param capacity the initial capacity
+     */
+    public PastTrackRingBuffer(int capacity) {
+        allocate(Math.max(capacity, 2));
+        lastChangeTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Copy-constructor
+     * @param pastTrack the past-track to copy
+     */
+    public PastTrackRingBuffer(PastTrackRingBuffer pastTrack) {
+        synchronized (pastTrack) {
+            allocate(Math.max(pastTrack.size, DEFAULT_CAPACITY));
+            for (int i = 0; i < pastTrack.size; i++) {
+                int idx = pastTrack.index(i);
+                times[i] = pastTrack.times[idx];
+                lats[i] = pastTrack.lats[idx];
+                lons[i] = pastTrack.lons[idx];
+                gone[i] = pastTrack.gone[idx];
+            }
+            size = pastTrack.size;
+            lastChangeTime = pastTrack.lastChangeTime;
+        }
+    }
+
+    /**
+     * Allocates new, empty buffers of the given capacity
+     */
+    private void allocate(int capacity) {
+        times = new long[capacity];
+        lats = new double[capacity];
+        lons = new double[capacity];
+        gone = new boolean[capacity];
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the buffer index of the i'th oldest point
+     */
+    private int index(int i) {
+        int idx = head + i;
+        return (idx >= times.length) ? idx - times.length : idx;
+    }
+
+    /**
+     * Doubles the capacity of the buffers, moving the points to the start of the new buffers
+     */
+    private void grow() {
+        long[] oldTimes = times;
+        double[] oldLats = lats;
+        double[] oldLons = lons;
+        boolean[] oldGone = gone;
+        int oldHead = head;
+        int oldSize = size;
+        int firstPart = Math.min(oldSize, oldTimes.length - oldHead);
+
+        allocate(oldTimes.length * 2);
+        System.arraycopy(oldTimes, oldHead, times, 0, firstPart);
+        System.arraycopy(oldLats, oldHead, lats, 0, firstPart);
+        System.arraycopy(oldLons, oldHead, lons, 0, firstPart);
+        System.arraycopy(oldGone, oldHead, gone, 0, firstPart);
+        System.arraycopy(oldTimes, 0, times, firstPart, oldSize - firstPart);
+        System.arraycopy(oldLats, 0, lats, firstPart, oldSize - firstPart);
+        System.arraycopy(oldLons, 0, lons, firstPart, oldSize - firstPart);
+        System.arraycopy(oldGone, 0, gone, firstPart, oldSize - firstPart);
+        size = oldSize;
+    }
+
+    /**
+     * Returns the number of points in the past-track
+     * @return the number of points in the past-track
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Adds a past-track position to the buffer, if it is further away
+     * from the last point than minDist
+     * 
+     * @param vesselPosition the new position to add
+     * @param minDist the minimum distance required to add the position
+     */
+    @Override
+    public synchronized void addPosition(Position vesselPosition, int minDist) {
+        if (size > 0) {
+            int last = index(size - 1);
+            Position lastPos = Position.create(lats[last], lons[last]);
+            if (lastPos.distanceTo(vesselPosition, CoordinateSystem.CARTESIAN) <= minDist) {
+                return;
+            }
+        }
+        if (size == times.length) {
+            grow();
+        }
+        long now = System.currentTimeMillis();
+        int idx = index(size);
+        times[idx] = now;
+        lats[idx] = vesselPosition.getLatitude();
+        lons[idx] = vesselPosition.getLongitude();
+        gone[idx] = false;
+        size++;
+        lastChangeTime = now;
+    }
+
+    /**
+     * Cleans up old past-track points that have timed out according to the TTL parameter
+     * @param ttl the time to live in seconds
+     */
+    @Override
+    public synchronized void cleanup(int ttl) {
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        // Same truncation to whole seconds as PastTrackPoint.isDead()
+        while (size > 0 && (now - times[head]) / 1000 > ttl) {
+            head = index(1);
+            size--;
+            changed = true;
+        }
+        if (size == 0) {
+            head = 0;
+        }
+        if (changed) {
+            lastChangeTime = now;
+        }
+    }
+
+    /**
+     * Flags that the mobile target was gone.
+     * Updates the last past-track point with this state.
+     */
+    @Override
+    public synchronized void flagGone() {
+        if (size > 0) {
+            gone[index(size - 1)] = true;
+        }
+    }
+
+    /**
+     * Returns the last change time 
+     * @return the last change time 
+     */
+    @Override
+    public synchronized long getLastChangeTime() {
+        return lastChangeTime;
+    }
+
+    /**
+     * Returns a snapshot of all the points
+     * @return a snapshot of all the points
+     */
+    @Override
+    public Collection<PastTrackPoint> getPoints() {
+        return getPointsNewerThan(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns a snapshot of the points newer than the given {@code time}
+     * @param time the time
+     */
+    @Override
+    public Collection<PastTrackPoint> getPointsNewerThan(Date time) {
+        return getPointsNewerThan(time.getTime());
+    }
+
+    /**
+     * Returns a snapshot of the points newer than the given {@code time}
+     */
+    private synchronized List<PastTrackPoint> getPointsNewerThan(long time) {
+        int first = firstNewerThan(time);
+        List<PastTrackPoint> result = new ArrayList<>(size - first);
+        for (int i = first; i < size; i++) {
+            int idx = index(i);
+            PastTrackPoint point = new PastTrackPoint(new Date(times[idx]), Position.create(lats[idx], lons[idx]));
+            if (gone[idx]) {
+                point.flagGone();
+            }
+            result.add(point);
+        }
+        return result;
+    }
+
+    /**
+     * Visits the points newer than the given {@code time}
+     * @param time the time in epoch millis
+     * @param visitor the visitor
+     */
+    @Override
+    public synchronized void visitPointsNewerThan(long time, PastTrackVisitor visitor) {
+        for (int i = firstNewerThan(time); i < size; i++) {
+            int idx = index(i);
+            visitor.visit(times[idx], lats[idx], lons[idx], gone[idx]);
+        }
+    }
+
+    /**
+     * Binary search for the logical index of the first point newer than the given time
+     */
+    private int firstNewerThan(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[index(mid)] > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a copy of this past-track buffer
+     * @return a copy of this past-track buffer
+     */
+    @Override
+    public IPastTrack copy() {
+        return new PastTrackRingBuffer(this);
+    }
+}
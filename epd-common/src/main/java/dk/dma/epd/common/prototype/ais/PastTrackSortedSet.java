@@ -57,6 +57,7 @@ public class PastTrackSortedSet extends ConcurrentSkipListSet<PastTrackPoint> im
      * Returns the last change time 
      * @return the last change time 
      */
+    @Override
     public synchronized long getLastChangeTime() {
         return lastChangeTime;
     }
@@ -110,6 +111,7 @@ public class PastTrackSortedSet extends ConcurrentSkipListSet<PastTrackPoint> im
      * Flags that the mobile target was gone.
      * Updates the last past-track point with this state.
      */
+    @Override
     public synchronized void flagGone() {
         try {
             this.last().flagGone();
@@ -129,6 +131,7 @@ public class PastTrackSortedSet extends ConcurrentSkipListSet<PastTrackPoint> im
      * Returns the points newer than the given {@code time}
      * @param time the time
      */
+    @Override
     public synchronized Collection<PastTrackPoint> getPointsNewerThan(Date time) {
         Collection<PastTrackPoint> result = new ArrayList<PastTrackPoint>(this.size() / 2);
         for (PastTrackPoint point : this) {
@@ -138,4 +141,28 @@ public class PastTrackSortedSet extends ConcurrentSkipListSet<PastTrackPoint> im
         }
         return result;
     }
+
+    /**
+     * Visits the points newer than the given {@code time}
+     * @param time the time in epoch millis
+     * @param visitor the visitor
+     */
+    @Override
+    public synchronized void visitPointsNewerThan(long time, PastTrackVisitor visitor) {
+        for (PastTrackPoint point : this) {
+            if (point.getDate().getTime() > time) {
+                Position pos = point.getPosition();
+                visitor.visit(point.getDate().getTime(), pos.getLatitude(), pos.getLongitude(), point.hasGone());
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of this past-track set
+     * @return a copy of this past-track set
+     */
+    @Override
+    public IPastTrack copy() {
+        return new PastTrackSortedSet(this);
+    }
 }
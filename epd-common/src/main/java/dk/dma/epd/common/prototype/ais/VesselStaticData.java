@@ -43,6 +43,12 @@ public class VesselStaticData implements Serializable {
     private float draught;
     private String destination;
 
+    /**
+     * No-argument constructor
+     */
+    public VesselStaticData() {
+    }
+
     /**
      * Copy constructor
      * @param vesselStaticData
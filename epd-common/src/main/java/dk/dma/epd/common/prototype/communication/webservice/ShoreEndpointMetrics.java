@@ -0,0 +1,126 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.communication.webservice;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Accumulated latency and transfer metrics of a single shore service endpoint
+ */
+@ThreadSafe
+public class ShoreEndpointMetrics {
+
+    private final String uri;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong lastNanos = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * Constructor
+     * 
+     * @param uri
+     *            the endpoint URI
+     */
+    public ShoreEndpointMetrics(String uri) {
+        this.uri = uri;
+    }
+
+    /**
+     * Records a completed request
+     * 
+     * @param nanos
+     *            the time from sending the request until the response was consumed
+     * @param sent
+     *            the number of bytes sent in the request body
+     * @param received
+     *            the number of (possibly compressed) bytes received in the response body
+     * @param success
+     *            whether the request succeeded
+     */
+    public void record(long nanos, long sent, long received, boolean success) {
+        requests.incrementAndGet();
+        if (!success) {
+            failures.incrementAndGet();
+        }
+        totalNanos.addAndGet(nanos);
+        lastNanos.set(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            continue;
+        }
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Returns the mean latency in milliseconds
+     * 
+     * @return the mean latency in milliseconds
+     */
+    public double getMeanLatencyMs() {
+        long count = requests.get();
+        return (count == 0) ? 0.0 : totalNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the max latency in milliseconds
+     * 
+     * @return the max latency in milliseconds
+     */
+    public double getMaxLatencyMs() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Returns the latency of the latest request in milliseconds
+     * 
+     * @return the latency of the latest request in milliseconds
+     */
+    public double getLastLatencyMs() {
+        return lastNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d req, %d failed, latency mean %.0f ms, max %.0f ms, sent %d B, received %d B", uri,
+                getRequests(), getFailures(), getMeanLatencyMs(), getMaxLatencyMs(), getBytesSent(), getBytesReceived());
+    }
+}
@@ -15,9 +15,16 @@
 package dk.dma.epd.common.prototype.communication.webservice;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -27,9 +34,11 @@ import javax.xml.bind.Unmarshaller;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,7 +46,11 @@ import dk.dma.epd.common.prototype.settings.EnavSettings;
 import dk.dma.epd.common.util.Compressor;
 
 /**
- * Encapsulation of HTTP connection to shore. 
+ * Encapsulation of HTTP connection to shore.
+ * <p>
+ * All instances share a pooled, keep-alive connection manager, so consecutive requests to the shore server reuse the open
+ * connections. JAXB contexts are created once per context path, and the response is unmarshalled directly from the
+ * (decompressing) response stream. Latency and transfer metrics are accumulated per endpoint URI.
  */
 public class ShoreHttp {
 
@@ -46,16 +59,43 @@ public class ShoreHttp {
     private static final String USER_AGENT = "EPD";
     private static final String ENCODING = "UTF-8";
 
+    private static final int MAX_CONNECTIONS_PER_HOST = 8;
+    private static final int MAX_TOTAL_CONNECTIONS = 32;
+    private static final long IDLE_CONNECTION_TIMEOUT = 60000; // 60 sec
+
+    private static final MultiThreadedHttpConnectionManager CONNECTION_MANAGER = new MultiThreadedHttpConnectionManager();
+    private static final HttpClient HTTP_CLIENT;
+    private static final ConcurrentHashMap<String, JAXBContext> JAXB_CONTEXTS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ShoreEndpointMetrics> METRICS = new ConcurrentHashMap<>();
+
+    static {
+        HttpConnectionManagerParams params = CONNECTION_MANAGER.getParams();
+        params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+        params.setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+        HTTP_CLIENT = new HttpClient(CONNECTION_MANAGER);
+
+        // Close connections that have been idle for a while, before the server does
+        IdleConnectionTimeoutThread idleThread = new IdleConnectionTimeoutThread();
+        idleThread.setName("ShoreHttp-IdleConnections");
+        idleThread.addConnectionManager(CONNECTION_MANAGER);
+        idleThread.setConnectionTimeout(IDLE_CONNECTION_TIMEOUT);
+        idleThread.setTimeoutInterval(IDLE_CONNECTION_TIMEOUT / 2);
+        idleThread.start();
+    }
+
     private String uri;
     private String url;
     private String host;
     private int port = 80;
     private int readTimeout = 60000; // 60 sec
     private int connectionTimeout = 30000; // 30 sec
+    private boolean compressRequest = true;
 
     private HttpClient httpClient;
     private PostMethod method;
-    private byte[] responseBody;
+    private long requestSize;
+    private long startTime;
+    private CountingInputStream responseStream;
 
     public ShoreHttp() {
 
@@ -70,92 +110,196 @@ public class ShoreHttp {
         setUri(uri);
     }
 
+    /**
+     * Sends the request. Upon success the response must be consumed with {@linkplain #getXmlUnmarshalledContent(String)},
+     * which releases the connection to the pool.
+     * 
+     * @throws ShoreServiceException
+     *             if the request fails
+     */
     public void makeRequest() throws ShoreServiceException {
         // Make the request
         int resCode = -1;
+        startTime = System.nanoTime();
         try {
             resCode = httpClient.executeMethod(method);
         } catch (HttpException e) {
             LOG.error("HTTP request failed with: " + e.getMessage());
+            release(false);
             throw new ShoreServiceException(ShoreServiceErrorCode.INTERNAL_ERROR);
         } catch (IOException e) {
             LOG.error("Failed to make HTTP connection: " + e.getMessage());
+            release(false);
             throw new ShoreServiceException(ShoreServiceErrorCode.NO_CONNECTION_TO_SERVER);
         }
 
         if (resCode != 200) {
-            method.releaseConnection();
+            release(false);
             throw new ShoreServiceException(ShoreServiceErrorCode.SERVER_ERROR);
         }
 
         try {
-            responseBody = method.getResponseBody();
-            int rawResSize = responseBody.length;
-
-            // Check for GZip content encoding
-            Header contentEncoding = method.getResponseHeader("Content-Encoding");
-            if (contentEncoding != null && contentEncoding.getValue().toUpperCase().indexOf("GZIP") >= 0) {
-                responseBody = Compressor.decompress(responseBody);
-            }        
-            LOG.debug("Received XML: " + new String(responseBody));
-            LOG.debug("Received XML size    : " + responseBody.length);
-            LOG.debug("Received raw XML size: " + rawResSize);
+            InputStream in = method.getResponseBodyAsStream();
+            if (in == null) {
+                in = new ByteArrayInputStream(new byte[0]);
+            }
+            responseStream = new CountingInputStream(in);
         } catch (IOException e) {
             LOG.error("Failed to read response body: " + e.getMessage());
+            release(false);
             throw new ShoreServiceException(ShoreServiceErrorCode.INVALID_RESPONSE);
         }
-
-        method.releaseConnection();
     }
 
     public void init() {
-        httpClient = new HttpClient();
+        httpClient = HTTP_CLIENT;
+        HttpConnectionManagerParams params = CONNECTION_MANAGER.getParams();
+        if (params.getConnectionTimeout() != connectionTimeout) {
+            params.setConnectionTimeout(connectionTimeout);
+        }
         method = new PostMethod(url);
-        HttpConnectionManagerParams params = httpClient.getHttpConnectionManager().getParams();
-        params.setSoTimeout(readTimeout);
-        params.setConnectionTimeout(connectionTimeout);
+        method.getParams().setSoTimeout(readTimeout);
         method.setRequestHeader("User-Agent", USER_AGENT);
-        method.setRequestHeader("Connection", "close");
-        method.addRequestHeader("Accept", "text/*");    
-        
+        method.addRequestHeader("Accept", "text/*");
+
         // TODO if compress response
         method.addRequestHeader("Accept-Encoding", "gzip");
     }
 
+    /**
+     * Unmarshals the response and releases the connection
+     * 
+     * @param contextPath
+     *            the JAXB context path of the response
+     * @return the unmarshalled response
+     * @throws JAXBException
+     *             if the response could not be read or unmarshalled
+     */
     public Object getXmlUnmarshalledContent(String contextPath) throws JAXBException {
-        JAXBContext jc = JAXBContext.newInstance(contextPath);
-        Unmarshaller u = jc.createUnmarshaller();
-        return u.unmarshal(new ByteArrayInputStream(responseBody));
+        boolean success = false;
+        try {
+            InputStream in = responseStream;
+            Header contentEncoding = method.getResponseHeader("Content-Encoding");
+            if (contentEncoding != null && contentEncoding.getValue().toUpperCase().indexOf("GZIP") >= 0) {
+                in = new GZIPInputStream(in);
+            }
+            if (LOG.isDebugEnabled()) {
+                byte[] body = readFully(in);
+                LOG.debug("Received XML: " + new String(body, ENCODING));
+                LOG.debug("Received XML size    : " + body.length);
+                LOG.debug("Received raw XML size: " + responseStream.getCount());
+                in = new ByteArrayInputStream(body);
+            }
+            Unmarshaller u = getJaxbContext(contextPath).createUnmarshaller();
+            Object result = u.unmarshal(in);
+            success = true;
+            return result;
+        } catch (IOException e) {
+            throw new JAXBException("Failed to read response body: " + e.getMessage(), e);
+        } finally {
+            release(success);
+        }
     }
 
     public void setXmlMarshalContent(String contextPath, Object obj) throws JAXBException, UnsupportedEncodingException {
-        JAXBContext jc = JAXBContext.newInstance(contextPath);
-        Marshaller m = jc.createMarshaller();
-        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        Marshaller m = getJaxbContext(contextPath).createMarshaller();
+        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, LOG.isDebugEnabled());
         m.setProperty(Marshaller.JAXB_ENCODING, ENCODING);
-        StringWriter sw = new StringWriter();        
-        m.marshal(obj, sw);
-        String req = sw.toString();
-        LOG.debug("XML request: " + req);
-        setRequestBody(sw.toString().getBytes(ENCODING), ENCODING);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        m.marshal(obj, out);
+        byte[] req = out.toByteArray();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("XML request: " + new String(req, ENCODING));
+        }
+        setRequestBody(req, ENCODING);
     }
 
     public void setRequestBody(byte[] body, String contentType) {
-        // TODO if Gzip Compress request
-        byte[] compressed = {};
-        try {            
-            compressed = Compressor.compress(body);                        
-            //body = compressed;
-            //method.addRequestHeader("Content-Encoding", "gzip");
-        } catch (IOException e) {
-            LOG.error("Failed to GZip request: " + e.getMessage());
-        }        
-        LOG.debug("XML req size           : " + body.length);
-        LOG.debug("XML req compressed size: " + compressed.length);
+        if (compressRequest) {
+            try {
+                byte[] compressed = Compressor.compress(body);
+                LOG.debug("XML req size           : " + body.length);
+                LOG.debug("XML req compressed size: " + compressed.length);
+                body = compressed;
+                method.setRequestHeader("Content-Encoding", "gzip");
+            } catch (IOException e) {
+                LOG.error("Failed to GZip request: " + e.getMessage());
+            }
+        }
+        requestSize = body.length;
         ByteArrayRequestEntity requestEntity = new ByteArrayRequestEntity(body, contentType);
         method.setRequestEntity(requestEntity);
     }
 
+    /**
+     * Releases the connection back to the pool and records the endpoint metrics
+     */
+    private void release(boolean success) {
+        long received = (responseStream == null) ? 0 : responseStream.getCount();
+        getMetrics(uri).record(System.nanoTime() - startTime, requestSize, received, success);
+        responseStream = null;
+        method.releaseConnection();
+    }
+
+    /**
+     * Returns the cached JAXB context for the given context path, creating it if needed
+     * 
+     * @param contextPath
+     *            the JAXB context path
+     * @return the JAXB context
+     * @throws JAXBException
+     *             if the context could not be created
+     */
+    public static JAXBContext getJaxbContext(String contextPath) throws JAXBException {
+        JAXBContext jc = JAXB_CONTEXTS.get(contextPath);
+        if (jc == null) {
+            jc = JAXBContext.newInstance(contextPath);
+            JAXBContext existing = JAXB_CONTEXTS.putIfAbsent(contextPath, jc);
+            if (existing != null) {
+                jc = existing;
+            }
+        }
+        return jc;
+    }
+
+    /**
+     * Returns the metrics of the given endpoint URI
+     * 
+     * @param uri
+     *            the endpoint URI
+     * @return the metrics of the endpoint
+     */
+    public static ShoreEndpointMetrics getMetrics(String uri) {
+        ShoreEndpointMetrics metrics = METRICS.get(uri);
+        if (metrics == null) {
+            metrics = new ShoreEndpointMetrics(uri);
+            ShoreEndpointMetrics existing = METRICS.putIfAbsent(uri, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of all endpoints that have been requested, sorted by URI
+     * 
+     * @return the metrics of all endpoints
+     */
+    public static Map<String, ShoreEndpointMetrics> getAllMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<>(METRICS));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
     public String getUri() {
         return uri;
     }
@@ -185,4 +329,58 @@ public class ShoreHttp {
         this.port = port;
     }
 
+    public boolean isCompressRequest() {
+        return compressRequest;
+    }
+
+    /**
+     * Sets whether the request body is GZip compressed. Must be called before the request body is set.
+     * 
+     * @param compressRequest
+     *            whether to compress the request body
+     */
+    public void setCompressRequest(boolean compressRequest) {
+        this.compressRequest = compressRequest;
+    }
+
+    /**
+     * Input stream counting the number of bytes read
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
 }
@@ -19,7 +19,7 @@ import javax.swing.JOptionPane;
 
 import dk.dma.epd.common.prototype.ais.IAisTargetListener;
 import dk.dma.epd.common.prototype.ais.MobileTarget;
-import dk.dma.epd.common.prototype.ais.PastTrackSortedSet;
+import dk.dma.epd.common.prototype.ais.PastTrackFactory;
 import dk.dma.epd.common.prototype.gui.menuitems.event.IMapMenuAction;
 
 /**
@@ -50,7 +50,7 @@ public class ClearPastTrack extends JMenuItem implements IMapMenuAction {
                "Delete Past-Track", 
                JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
            // Clear the past track data
-           mobileTarget.setPastTrackData(new PastTrackSortedSet());
+           mobileTarget.setPastTrackData(PastTrackFactory.create());
            if (aisLayer != null) {
                aisLayer.targetUpdated(mobileTarget);
            }
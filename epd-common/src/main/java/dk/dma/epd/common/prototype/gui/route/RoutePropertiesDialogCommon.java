@@ -417,11 +417,13 @@ public class RoutePropertiesDialogCommon extends JDialog implements ActionListen
                         break;
                     case  2: 
                         wp.setPos(Position.create(ParseUtils.parseLatitude(value.toString()), wp.getPos().getLongitude()));
+                        route.invalidateGeometry();
                         adjustStartTime();
                         notifyRouteListeners(RoutesUpdateEvent.ROUTE_CHANGED);
                         break;
                     case  3: 
                         wp.setPos(Position.create(wp.getPos().getLatitude(), ParseUtils.parseLongitude(value.toString()))); 
+                        route.invalidateGeometry();
                         adjustStartTime();
                         notifyRouteListeners(RoutesUpdateEvent.ROUTE_CHANGED);
                         break;
@@ -98,6 +98,15 @@ public abstract class EPDLayerCommon extends OMGraphicHandlerLayer implements Ma
         return graphics;
     }
 
+    /**
+     * Creates a new, empty graphics list with the same rendering properties as the {@code graphics} list of this layer
+     * 
+     * @return a new, empty graphics list
+     */
+    protected OMGraphicList createGraphicList() {
+        return new AntialiasedGraphicList();
+    }
+
     /***************************************/
     /** Life-cycle functionality **/
     /***************************************/
@@ -16,8 +16,12 @@ package dk.dma.epd.common.prototype.layers.ais;
 
 import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeEvent;
+import java.awt.geom.Point2D;
 import java.beans.PropertyChangeListener;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
@@ -25,11 +29,14 @@ import org.slf4j.LoggerFactory;
 
 import com.bbn.openmap.omGraphics.OMGraphic;
 import com.bbn.openmap.omGraphics.OMGraphicList;
+import com.bbn.openmap.proj.Projection;
 
 import dk.dma.epd.common.graphics.ISelectableGraphic;
 import dk.dma.epd.common.prototype.EPD;
 import dk.dma.epd.common.prototype.ais.AisHandlerCommon;
 import dk.dma.epd.common.prototype.ais.AisTarget;
+import dk.dma.epd.common.prototype.ais.AisTargetDelta;
+import dk.dma.epd.common.prototype.ais.AisTargetDeltaSubscription;
 import dk.dma.epd.common.prototype.ais.AtoNTarget;
 import dk.dma.epd.common.prototype.ais.IAisTargetListener;
 import dk.dma.epd.common.prototype.ais.SarTarget;
@@ -52,12 +59,38 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
      * The AIS handler that provides AIS data for this layer.
      */
     protected volatile AISHANDLER aisHandler;
+
+    /**
+     * Accumulates the target updates of the AIS handler between repaints.
+     */
+    private volatile AisTargetDeltaSubscription deltaSubscription;
     
     /**
      * Maps an MMSI to the object handling its graphical representation.
      */
     private Map<Long, TargetGraphic> targets = new ConcurrentHashMap<>();
 
+    /**
+     * The MMSI of the graphics that have been projected with {@link #lastProjection} and not updated since.
+     */
+    private final Set<Long> projectedTargets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The MMSI of the graphics whose scale dependent state, e.g. the display mode of a vessel, has been updated for
+     * {@link #lastScale}.
+     */
+    private final Set<Long> scaledTargets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The projection used by the last {@link #prepare()}.
+     */
+    private Projection lastProjection;
+
+    /**
+     * The scale of {@link #lastProjection}.
+     */
+    private float lastScale;
+
     /**
      * The graphic that is currently selected by the user.
      */
@@ -74,6 +107,12 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
     private final NavSettings navSettings;
 
     protected final PastTrackInfoPanel pastTrackInfoPanel = new PastTrackInfoPanel();
+
+    /**
+     * The fraction of the viewport extent added on each side when looking up the targets in view. Ensures that targets just
+     * outside the viewport, whose past tracks, speed vectors or labels may still be visible, are rendered.
+     */
+    private static final double VIEW_PADDING = 0.5;
     
     public AisLayerCommon(int repaintIntervalMillis) {
         super(repaintIntervalMillis);
@@ -95,23 +134,36 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
     public void findAndInit(Object obj) {
         super.findAndInit(obj);
         if (obj instanceof AisHandlerCommon) {
+            unsubscribeDeltas();
             this.aisHandler = (AISHANDLER) obj;
-            this.aisHandler.addListener(this);
+            // Apply the target updates once per repaint rather than once per AIS message
+            this.deltaSubscription = this.aisHandler.subscribeDeltas();
         }
     }
 
     @Override
     public void findAndUndo(Object obj) {
         if (obj == this.aisHandler) {
-            // TODO this cleanup causes problems when we have more than one
-            // MapWindow:
-            // When a new window is added, findAndUndo is called for the already
-            // present window.
-            // this.aisHandler.removeListener(this);
+            // Stop accumulating target updates for this layer. The handler itself is kept, since the
+            // layer may be undone for one map window while still being displayed in another.
+            // A subsequent findAndInit subscribes again and re-applies all targets.
+            unsubscribeDeltas();
         }
         super.findAndUndo(obj);
     }
 
+    /**
+     * Ends the subscription to the target updates of the AIS handler, if any
+     */
+    private synchronized void unsubscribeDeltas() {
+        AisTargetDeltaSubscription subscription = deltaSubscription;
+        AISHANDLER handler = aisHandler;
+        if (subscription != null && handler != null) {
+            handler.unsubscribeDeltas(subscription);
+        }
+        deltaSubscription = null;
+    }
+
     /**
      * Updates which AIS target this layer should display as the selected
      * target. If the provided {@code mmsi} does not have a graphical
@@ -154,8 +206,11 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
     public void setSelectedGraphic(ISelectableGraphic newSelection,
             boolean repaint) {
         if (this.selectedGraphic != null) {
-            // remove current selection
+            // remove current selection, and have the graphic re-projected without it
             this.selectedGraphic.setSelectionStatus(false);
+            if (this.selectedGraphic != newSelection) {
+                invalidateGraphic(this.selectedGraphic);
+            }
         }
         if (newSelection != null) {
             // mark new selection
@@ -182,17 +237,12 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
         if (tg == null || mmsi == null) {
             return;
         }
-        // Add the new graphic to the map of ais targets
-        TargetGraphic oldVal = this.targets.put(mmsi, tg);
-        synchronized (this.graphics) {
-            if (oldVal != null) {
-                // remove the old graphical representation of this MMSI
-                this.graphics.remove(oldVal);
-            }
-            // add the new graphical representation of this MMSI to the list of
-            // graphics to be displayed.
-            this.graphics.add(tg);
-        }
+        // Add the new graphic to the map of ais targets, replacing any old
+        // graphical representation of this MMSI. The graphics to display are
+        // looked up in the map when preparing the layer.
+        this.targets.put(mmsi, tg);
+        this.projectedTargets.remove(mmsi);
+        this.scaledTargets.remove(mmsi);
     }
 
     /**
@@ -204,16 +254,12 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
      *            representation removed.
      */
     protected void removeTargetGraphic(Long mmsi) {
-        TargetGraphic deleted = this.targets.remove(mmsi);
-        if (deleted != null) {
-            // Successfully removed a graphic object from map
-            // This graphic object should also be present in the list of
-            // graphics to be displayed, hence we need to remove it from the
-            // graphics list.
-            synchronized (this.graphics) {
-                this.graphics.remove(deleted);
-            }
+        if (mmsi == null) {
+            return;
         }
+        this.targets.remove(mmsi);
+        this.projectedTargets.remove(mmsi);
+        this.scaledTargets.remove(mmsi);
     }
     
     /**
@@ -221,6 +267,8 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
      */
     public synchronized void clearAisTargetGraphics() {
         targets.clear();
+        projectedTargets.clear();
+        scaledTargets.clear();
         synchronized (graphics) {
             graphics.clear();
         }
@@ -281,7 +329,23 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
 
         // Send the new location data to the graphic representing the AisTarget
         targetGraphic.update(aisTarget, this.aisSettings, this.navSettings, mapScale);
-        targetGraphic.project(getProjection());
+        // Have the target re-projected when next in view
+        this.projectedTargets.remove(mmsi);
+        if (mapScale == lastScale) {
+            this.scaledTargets.add(mmsi);
+        } else {
+            this.scaledTargets.remove(mmsi);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void targetsUpdated(Collection<AisTarget> aisTargets) {
+        for (AisTarget aisTarget : aisTargets) {
+            targetUpdated(aisTarget);
+        }
     }
     
     /**
@@ -305,6 +369,7 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
                 ((VesselGraphicComponentSelector)tg).setShowNameLabel((Boolean)evt.getNewValue());
             }
         }
+        this.projectedTargets.clear();
         // do a repaint
         this.doPrepare();
     }
@@ -314,9 +379,30 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
      */
     @Override
     public synchronized OMGraphicList prepare() {
-        synchronized (graphics) {
-            graphics.project(getProjection());
+        applyTargetDelta();
+        Projection projection = getProjection();
+        if (projection != lastProjection) {
+            // All graphics must be re-projected with the new projection
+            projectedTargets.clear();
+            lastProjection = projection;
+            if (projection != null && projection.getScale() != lastScale) {
+                // ... and have their scale dependent state updated
+                scaledTargets.clear();
+                lastScale = projection.getScale();
+            }
+        }
+        OMGraphicList visibleGraphics = getGraphicsInView(projection);
+        if (visibleGraphics == null) {
+            visibleGraphics = createGraphicList();
+            for (Map.Entry<Long, TargetGraphic> entry : targets.entrySet()) {
+                projectIfNeeded(entry.getKey(), entry.getValue(), projection);
+                visibleGraphics.add(entry.getValue());
+            }
         }
+        // Only look for mouse-over and selections among the rendered graphics
+        infoPanelsGraphics = visibleGraphics;
+        mouseClickGraphics = visibleGraphics;
+        mapMenuGraphics = visibleGraphics;
         // Was a vessel selected?
         if(this.selectedGraphic instanceof VesselGraphic) {
             VesselGraphic vg = (VesselGraphic) this.selectedGraphic;
@@ -332,7 +418,119 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
                 newSelection.project(getProjection());
             }
         }
-        return graphics;
+        return visibleGraphics;
+    }
+
+    /**
+     * Applies the target updates accumulated since the last repaint
+     */
+    protected void applyTargetDelta() {
+        AisTargetDeltaSubscription subscription = deltaSubscription;
+        if (subscription == null || !subscription.hasChanges()) {
+            return;
+        }
+        AisTargetDelta delta = subscription.poll();
+        for (Long mmsi : delta.getGone()) {
+            targetUpdated(delta.getTarget(mmsi));
+        }
+        for (Long mmsi : delta.getAdded()) {
+            targetUpdated(delta.getTarget(mmsi));
+        }
+        for (Long mmsi : delta.getMoved()) {
+            targetUpdated(delta.getTarget(mmsi));
+        }
+    }
+
+    /**
+     * Looks up the targets near the current viewport in the spatial index of the AIS handler and projects the graphics
+     * that have not been projected with the current projection since they were last updated.
+     * 
+     * @param projection
+     *            the current projection
+     * @return the projected graphics of the targets in view, or null if the targets in view cannot be determined
+     */
+    protected OMGraphicList getGraphicsInView(Projection projection) {
+        AISHANDLER handler = aisHandler;
+        if (projection == null || handler == null) {
+            return null;
+        }
+        Point2D ul = projection.getUpperLeft();
+        Point2D lr = projection.getLowerRight();
+        double dLat = (ul.getY() - lr.getY()) * VIEW_PADDING;
+        double width = lr.getX() - ul.getX();
+        if (width <= 0) {
+            // Crossing the date line
+            width += 360;
+        }
+        double dLon = width * VIEW_PADDING;
+        if (width + 2 * dLon >= 360) {
+            return null;
+        }
+        List<AisTarget> targetsInView = handler.getTargetIndex().queryBox(
+                Math.max(-90, lr.getY() - dLat), normalizeLon(ul.getX() - dLon),
+                Math.min(90, ul.getY() + dLat), normalizeLon(lr.getX() + dLon));
+
+        OMGraphicList visibleGraphics = createGraphicList();
+        for (AisTarget aisTarget : targetsInView) {
+            TargetGraphic tg = targets.get(aisTarget.getMmsi());
+            if (tg != null) {
+                projectIfNeeded(aisTarget.getMmsi(), tg, projection);
+                visibleGraphics.add(tg);
+            }
+        }
+        return visibleGraphics;
+    }
+
+    /**
+     * Projects the graphic unless it has already been projected with the given projection and not updated since. If the
+     * scale has changed since the graphic was last updated, the graphic is first updated for the new scale.
+     * 
+     * @param mmsi
+     *            the MMSI of the target
+     * @param tg
+     *            the graphic of the target
+     * @param projection
+     *            the current projection
+     */
+    private void projectIfNeeded(long mmsi, TargetGraphic tg, Projection projection) {
+        if (projection == null) {
+            return;
+        }
+        AISHANDLER handler = aisHandler;
+        if (handler != null && scaledTargets.add(mmsi)) {
+            AisTarget aisTarget = handler.getTarget(mmsi);
+            if (aisTarget != null && !aisTarget.isGone()) {
+                tg.update(aisTarget, aisSettings, navSettings, projection.getScale());
+                projectedTargets.remove(mmsi);
+            }
+        }
+        if (projectedTargets.add(mmsi)) {
+            tg.project(projection);
+        }
+    }
+
+    /**
+     * Has the target graphic containing the given graphic re-projected when next in view
+     * 
+     * @param graphic
+     *            the graphic that has changed
+     */
+    private void invalidateGraphic(ISelectableGraphic graphic) {
+        if (graphic instanceof VesselGraphic && ((VesselGraphic) graphic).getMostRecentVesselTarget() != null) {
+            projectedTargets.remove(((VesselGraphic) graphic).getMostRecentVesselTarget().getMmsi());
+        } else {
+            // The owner of the graphic is not known
+            projectedTargets.clear();
+        }
+    }
+
+    private static double normalizeLon(double lon) {
+        if (lon < -180) {
+            return lon + 360;
+        } else if (lon > 180) {
+            return lon - 360;
+        }
+        return lon;
     }
     
     /**
@@ -385,13 +583,12 @@ public abstract class AisLayerCommon<AISHANDLER extends AisHandlerCommon>
      * labels.
      */
     public void setShowNameLabels(boolean showLabels) {
-        synchronized(this.graphics) {
-            for(OMGraphic og : this.graphics) {
-                if(og instanceof VesselGraphicComponentSelector) {
-                    ((VesselGraphicComponentSelector)og).setShowNameLabel(showLabels);
-                }
+        for(TargetGraphic tg : this.targets.values()) {
+            if(tg instanceof VesselGraphicComponentSelector) {
+                ((VesselGraphicComponentSelector)tg).setShowNameLabel(showLabels);
             }
         }
+        this.projectedTargets.clear();
         // repaint
         this.doPrepare();
     }
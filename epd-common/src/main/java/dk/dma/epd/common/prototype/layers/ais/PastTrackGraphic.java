@@ -21,13 +21,14 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 
 import com.bbn.openmap.omGraphics.OMGraphicList;
 
 import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.ais.IPastTrack.PastTrackVisitor;
 import dk.dma.epd.common.prototype.ais.MobileTarget;
-import dk.dma.epd.common.prototype.ais.PastTrackPoint;
 
 /**
  * Graphic for past-track route
@@ -52,6 +53,11 @@ public class PastTrackGraphic extends OMGraphicList {
     private List<PastTrackLegGraphic> routeLegs = new ArrayList<>();
     private List<PastTrackWpCircle> routeWps = new ArrayList<>();
 
+    // State used while visiting the past-track points
+    private int pointCount;
+    private Position lastPointPos;
+    private boolean lastPointGone;
+
     /**
      * No-arg constructor
      */
@@ -90,18 +96,19 @@ public class PastTrackGraphic extends OMGraphicList {
      * Adds a new past track leg line
      * @param index index of leg in list of past track records
      * @param start start point of leg
+     * @param startGone if the target was gone at the start point
      * @param end end point of leg
      */
-    private void makeLegLine(int index, PastTrackPoint start, PastTrackPoint end) {
+    private void makeLegLine(int index, Position start, boolean startGone, Position end) {
     
-        Color legColor = start.hasGone() ? GONE_LEG_COLOR : LEG_COLOR;
+        Color legColor = startGone ? GONE_LEG_COLOR : LEG_COLOR;
         
         PastTrackLegGraphic leg = new PastTrackLegGraphic(
                 index, 
                 this,
                 false, 
-                start.getPosition(), 
-                end.getPosition(), 
+                start, 
+                end, 
                 legColor);
         routeLegs.add(leg);
         add(leg);
@@ -110,11 +117,12 @@ public class PastTrackGraphic extends OMGraphicList {
     /**
      * Adds a new past track circle
      * @param index the index of the circle in list of past track records
-     * @param p the past track point
+     * @param pos the position of the past track point
+     * @param time the time of the past track point
      */
-    private void makeWpCircle(int index, PastTrackPoint p) {
+    private void makeWpCircle(int index, Position pos, long time) {
         PastTrackWpCircle wpCircle = new PastTrackWpCircle(this, index,
-                p.getPosition().getLatitude(), p.getPosition().getLongitude(), 0, 0, 2, 2, p.getDate());
+                pos.getLatitude(), pos.getLongitude(), 0, 0, 2, 2, new Date(time));
         wpCircle.setStroke(new BasicStroke(3));
         wpCircle.setLinePaint(LEG_COLOR);
         
@@ -221,32 +229,48 @@ public class PastTrackGraphic extends OMGraphicList {
         pastTrackDisplayTime.add(Calendar.MINUTE, -mobileTarget.getSettings().getPastTrackDisplayTime());
                 
         // Build the graphics
-        PastTrackPoint lastPoint = null;
-        int count = 0;            
-        for (PastTrackPoint point : mobileTarget.getPastTrackData().getPointsNewerThan(pastTrackDisplayTime.getTime())) {
-                
-            // Add the graphics
-            count++;
-            makeWpCircle(count, point);
-            if (lastPoint != null) {
-                makeLegLine(count, lastPoint, point);
+        pointCount = 0;
+        lastPointPos = null;
+        mobileTarget.getPastTrackData().visitPointsNewerThan(pastTrackDisplayTime.getTimeInMillis(), new PastTrackVisitor() {
+            @Override
+            public void visit(long time, double lat, double lon, boolean gone) {
+                addPoint(time, lat, lon, gone);
             }
-            lastPoint = point;
-        }
+        });
+        Position lastPos = lastPointPos;
+        lastPointPos = null;
 
         // Create the line from the latest past-track point to the targets current position
-        if (lastPoint != null) {
+        if (lastPos != null) {
             double[] activePastTrackLineLL = new double[] {
                     lastPastTrackTargetPosition.getLatitude(),
                     lastPastTrackTargetPosition.getLongitude(),
-                    lastPoint.getPosition().getLatitude(),
-                    lastPoint.getPosition().getLongitude(),
+                    lastPos.getLatitude(),
+                    lastPos.getLongitude(),
             };
             activePastTrackLine.setLL(activePastTrackLineLL);
             add(activePastTrackLine);
         }
     }
 
+    /**
+     * Adds the graphics for the next past-track point
+     * @param time the time of the point
+     * @param lat the latitude of the point
+     * @param lon the longitude of the point
+     * @param gone if the target was gone while this was the active point
+     */
+    private void addPoint(long time, double lat, double lon, boolean gone) {
+        Position pos = Position.create(lat, lon);
+        pointCount++;
+        makeWpCircle(pointCount, pos, time);
+        if (lastPointPos != null) {
+            makeLegLine(pointCount, lastPointPos, lastPointGone, pos);
+        }
+        lastPointPos = pos;
+        lastPointGone = gone;
+    }
+
     /**
      * Render nicely anti-aliased
      * @param gr the graphical context
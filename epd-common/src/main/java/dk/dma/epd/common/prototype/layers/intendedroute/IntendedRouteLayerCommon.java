@@ -17,6 +17,7 @@ package dk.dma.epd.common.prototype.layers.intendedroute;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.bbn.openmap.event.ProjectionEvent;
@@ -92,16 +93,46 @@ public class IntendedRouteLayerCommon extends EPDLayerCommon implements IAisTarg
      */
     @Override
     public void targetUpdated(AisTarget aisTarget) {
+        if (updateVesselPosition(aisTarget)) {
+            doPrepare();
+        }
+    }
+
+    /**
+     * Called when a batch of AIS targets have been updated
+     * 
+     * @param aisTargets
+     *            the AIS targets that have been updated
+     */
+    @Override
+    public void targetsUpdated(Collection<AisTarget> aisTargets) {
+        boolean updated = false;
+        for (AisTarget aisTarget : aisTargets) {
+            updated |= updateVesselPosition(aisTarget);
+        }
+        if (updated) {
+            doPrepare();
+        }
+    }
+
+    /**
+     * Updates the intended route graphic of the given AIS target
+     * 
+     * @param aisTarget
+     *            the AIS target that has been updated
+     * @return if an intended route graphic was updated
+     */
+    private boolean updateVesselPosition(AisTarget aisTarget) {
         // Sanity checks
         if (aisHandler == null || intendedRouteHandler == null || !(aisTarget instanceof VesselTarget)) {
-            return;
+            return false;
         }
 
         // Look up the intended route
         IntendedRoute intendedRoute = intendedRouteHandler.getIntendedRoute(aisTarget.getMmsi());
         IntendedRouteGraphic intendedRouteGraphic = intendedRoutes.get(aisTarget.getMmsi());
         if (intendedRoute == null || intendedRouteGraphic == null) {
-            return;
+            return false;
         }
 
         // Update the intended route name and vessel position from the
@@ -114,9 +145,9 @@ public class IntendedRouteLayerCommon extends EPDLayerCommon implements IAisTarg
 
             // Update the graphics
             intendedRouteGraphic.updateVesselPosition(vessel.getPositionData().getPos());
-            doPrepare();
-
+            return true;
         }
+        return false;
     }
 
     private void removeIntendedRoute(IntendedRouteGraphic intendedRouteGraphics, long mmsi) {
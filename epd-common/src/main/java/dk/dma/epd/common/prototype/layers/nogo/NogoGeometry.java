@@ -0,0 +1,416 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.layers.nogo;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import com.bbn.openmap.proj.Cylindrical;
+import com.bbn.openmap.proj.Projection;
+
+import dk.frv.enav.common.xml.nogo.types.NogoPolygon;
+
+/**
+ * The geometry of the NoGo polygons of a time slice.
+ * <p>
+ * Each polygon is held as a {@linkplain Ring} which keeps:
+ * <ul>
+ * <li>simplified versions of the outline per zoom band, computed on demand with the Douglas-Peucker algorithm, so that
+ * zoomed-out views project a fraction of the vertices;</li>
+ * <li>the outline projected with the last projection. For cylindrical projections a pan only moves the outline, so the
+ * projected outline is translated rather than re-projected vertex by vertex.</li>
+ * </ul>
+ * Rings are created through a {@linkplain Factory}, which shares identical rings between the slices of a request. NoGo areas
+ * rarely change between adjacent slices, so switching slice mostly reuses outlines that have already been simplified and
+ * projected.
+ */
+@ThreadSafe
+public final class NogoGeometry {
+
+    /** Simplification tolerance of the finest zoom band in degrees of latitude */
+    static final double BASE_TOLERANCE = 0.00001;
+
+    /** Number of zoom bands. The tolerance doubles from band to band */
+    static final int BANDS = 16;
+
+    private final List<Ring> rings;
+
+    private NogoGeometry(List<Ring> rings) {
+        this.rings = Collections.unmodifiableList(rings);
+    }
+
+    /**
+     * Returns the rings of this geometry
+     * 
+     * @return the rings of this geometry
+     */
+    public List<Ring> getRings() {
+        return rings;
+    }
+
+    /**
+     * Projects all the rings into a single path
+     * 
+     * @param proj
+     *            the projection
+     * @return the projected path
+     */
+    public GeneralPath project(Projection proj) {
+        int band = bandFor(proj);
+        GeneralPath path = new GeneralPath(GeneralPath.WIND_NON_ZERO);
+        for (Ring ring : rings) {
+            ring.appendTo(path, proj, band);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the zoom band to use for the given projection, i.e. the coarsest band with a tolerance below half a pixel.
+     * <p>
+     * The tolerance is measured in degrees of latitude, whereas the pixel size of the projection is given in degrees of
+     * longitude, so the pixel size is scaled by the cosine of the latitude of the view edge closest to the pole.
+     * 
+     * @param proj
+     *            the projection
+     * @return the zoom band
+     */
+    static int bandFor(Projection proj) {
+        if (proj == null || proj.getWidth() <= 0) {
+            return 0;
+        }
+        double degreesPerPixel = Math.abs(proj.getLowerRight().getX() - proj.getUpperLeft().getX()) / proj.getWidth();
+        double lat = Math.max(Math.abs(proj.getUpperLeft().getY()), Math.abs(proj.getLowerRight().getY()));
+        return bandFor(degreesPerPixel, lat);
+    }
+
+    /**
+     * Returns the zoom band for the given pixel size in degrees of longitude at the given latitude
+     * 
+     * @param degreesPerPixel
+     *            the pixel size in degrees of longitude
+     * @param lat
+     *            the latitude
+     * @return the zoom band
+     */
+    static int bandFor(double degreesPerPixel, double lat) {
+        double latDegreesPerPixel = degreesPerPixel * Math.cos(Math.toRadians(Math.min(Math.abs(lat), 89)));
+        if (latDegreesPerPixel <= 0 || Double.isNaN(latDegreesPerPixel)) {
+            return 0;
+        }
+        int band = (int) Math.floor(Math.log(latDegreesPerPixel / 2 / BASE_TOLERANCE) / Math.log(2)) + 1;
+        return Math.max(0, Math.min(BANDS - 1, band));
+    }
+
+    /**
+     * Returns the simplification tolerance in degrees of latitude of the given band
+     */
+    static double toleranceOf(int band) {
+        return (band == 0) ? 0 : BASE_TOLERANCE * (1 << (band - 1));
+    }
+
+    /**
+     * Creates the geometry of NoGo slices, sharing identical rings between the slices
+     */
+    @ThreadSafe
+    public static final class Factory {
+
+        @GuardedBy("this")
+        private Map<RingKey, Ring> rings = new HashMap<>();
+
+        /**
+         * Creates the geometry of the given polygons
+         * 
+         * @param polygons
+         *            the polygons of a slice
+         * @return the geometry
+         */
+        public synchronized NogoGeometry create(List<NogoPolygon> polygons) {
+            List<Ring> result = new ArrayList<>(polygons.size());
+            for (NogoPolygon polygon : polygons) {
+                int n = polygon.getPolygon().size();
+                if (n < 3) {
+                    continue;
+                }
+                double[] latLon = new double[n * 2];
+                for (int i = 0; i < n; i++) {
+                    latLon[2 * i] = polygon.getPolygon().get(i).getLat();
+                    latLon[2 * i + 1] = polygon.getPolygon().get(i).getLon();
+                }
+                RingKey key = new RingKey(latLon);
+                Ring ring = rings.get(key);
+                if (ring == null) {
+                    ring = new Ring(latLon);
+                    rings.put(key, ring);
+                }
+                result.add(ring);
+            }
+            return new NogoGeometry(result);
+        }
+
+        /**
+         * Forgets the shared rings. Called when a new NoGo request is started
+         */
+        public synchronized void clear() {
+            rings = new HashMap<>();
+        }
+    }
+
+    /**
+     * The outline of a single NoGo polygon
+     */
+    @ThreadSafe
+    public static final class Ring {
+
+        private final double[] latLon;
+        private final double[][] simplified = new double[BANDS][];
+
+        // The outline projected with the last projection
+        @GuardedBy("this")
+        private ProjectionKey projectionKey;
+        @GuardedBy("this")
+        private int projectedBand = -1;
+        @GuardedBy("this")
+        private float[] projected;
+        @GuardedBy("this")
+        private double refX;
+        @GuardedBy("this")
+        private double refY;
+
+        Ring(double[] latLon) {
+            this.latLon = latLon;
+            this.simplified[0] = latLon;
+        }
+
+        /**
+         * Returns the number of vertices of the full resolution outline
+         * 
+         * @return the number of vertices
+         */
+        public int getVertexCount() {
+            return latLon.length / 2;
+        }
+
+        /**
+         * Returns the outline simplified for the given zoom band, as interleaved latitude and longitude values
+         * 
+         * @param band
+         *            the zoom band
+         * @return the simplified outline
+         */
+        public synchronized double[] getSimplified(int band) {
+            if (simplified[band] == null) {
+                simplified[band] = simplify(latLon, toleranceOf(band));
+            }
+            return simplified[band];
+        }
+
+        /**
+         * Appends the projected outline to the path
+         */
+        synchronized void appendTo(GeneralPath path, Projection proj, int band) {
+            ProjectionKey key = new ProjectionKey(proj);
+            double[] points = getSimplified(band);
+            float dx = 0;
+            float dy = 0;
+            Point2D ref = proj.forward(points[0], points[1]);
+
+            if (projected != null && band == projectedBand && key.isTranslationOf(projectionKey)) {
+                // Only the offset has changed
+                dx = (float) (ref.getX() - refX);
+                dy = (float) (ref.getY() - refY);
+            } else {
+                projected = new float[points.length];
+                Point2D pt = new Point2D.Double();
+                for (int i = 0; i < points.length; i += 2) {
+                    proj.forward(points[i], points[i + 1], pt);
+                    projected[i] = (float) pt.getX();
+                    projected[i + 1] = (float) pt.getY();
+                }
+                projectedBand = band;
+                refX = ref.getX();
+                refY = ref.getY();
+            }
+            projectionKey = key;
+
+            // Straight lines between the projected vertices are rhumb lines in a Mercator projection
+            path.moveTo(projected[0] + dx, projected[1] + dy);
+            for (int i = 2; i < projected.length; i += 2) {
+                path.lineTo(projected[i] + dx, projected[i + 1] + dy);
+            }
+            path.closePath();
+        }
+    }
+
+    /**
+     * Simplifies a closed outline with the Douglas-Peucker algorithm. The outline is split at the first vertex and the vertex
+     * farthest from it, and each half is simplified separately.
+     * 
+     * @param latLon
+     *            the outline as interleaved latitude and longitude values
+     * @param tolerance
+     *            the tolerance in degrees
+     * @return the simplified outline
+     */
+    static double[] simplify(double[] latLon, double tolerance) {
+        int n = latLon.length / 2;
+        if (tolerance <= 0 || n <= 4) {
+            return latLon;
+        }
+        // Longitudes are scaled to make distances isotropic
+        double lonScale = Math.cos(Math.toRadians(latLon[0]));
+
+        int far = 0;
+        double farDist = -1;
+        for (int i = 1; i < n; i++) {
+            double dLat = latLon[2 * i] - latLon[0];
+            double dLon = (latLon[2 * i + 1] - latLon[1]) * lonScale;
+            double dist = dLat * dLat + dLon * dLon;
+            if (dist > farDist) {
+                farDist = dist;
+                far = i;
+            }
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[far] = true;
+        simplify(latLon, lonScale, 0, far, tolerance * tolerance, keep);
+        simplify(latLon, lonScale, far, n, tolerance * tolerance, keep);
+
+        int count = 0;
+        for (boolean k : keep) {
+            if (k) {
+                count++;
+            }
+        }
+        if (count < 3 || count == n) {
+            return latLon;
+        }
+        double[] result = new double[count * 2];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result[j++] = latLon[2 * i];
+                result[j++] = latLon[2 * i + 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks the vertices to keep between {@code from} and {@code to}, where index {@code n} denotes the first vertex
+     */
+    private static void simplify(double[] latLon, double lonScale, int from, int to, double toleranceSq, boolean[] keep) {
+        int n = latLon.length / 2;
+        if (to - from < 2) {
+            return;
+        }
+        double lat0 = latLon[2 * from];
+        double lon0 = latLon[2 * from + 1] * lonScale;
+        double lat1 = latLon[2 * (to % n)];
+        double lon1 = latLon[2 * (to % n) + 1] * lonScale;
+        double dLat = lat1 - lat0;
+        double dLon = lon1 - lon0;
+        double lenSq = dLat * dLat + dLon * dLon;
+
+        int worst = -1;
+        double worstDist = toleranceSq;
+        for (int i = from + 1; i < to; i++) {
+            double pLat = latLon[2 * i] - lat0;
+            double pLon = latLon[2 * i + 1] * lonScale - lon0;
+            double dist;
+            if (lenSq == 0) {
+                dist = pLat * pLat + pLon * pLon;
+            } else {
+                double t = Math.max(0, Math.min(1, (pLat * dLat + pLon * dLon) / lenSq));
+                double eLat = pLat - t * dLat;
+                double eLon = pLon - t * dLon;
+                dist = eLat * eLat + eLon * eLon;
+            }
+            if (dist > worstDist) {
+                worstDist = dist;
+                worst = i;
+            }
+        }
+        if (worst >= 0) {
+            keep[worst] = true;
+            simplify(latLon, lonScale, from, worst, toleranceSq, keep);
+            simplify(latLon, lonScale, worst, to, toleranceSq, keep);
+        }
+    }
+
+    /**
+     * Identifies a projection up to a translation
+     */
+    private static final class ProjectionKey {
+        final Class<?> type;
+        final float scale;
+        final int width;
+        final int height;
+        final Point2D center;
+
+        ProjectionKey(Projection proj) {
+            type = proj.getClass();
+            scale = proj.getScale();
+            width = proj.getWidth();
+            height = proj.getHeight();
+            center = proj.getCenter();
+        }
+
+        /**
+         * Returns if this projection only differs from the other by a translation of the map
+         */
+        boolean isTranslationOf(ProjectionKey other) {
+            if (other == null || type != other.type || scale != other.scale) {
+                return false;
+            }
+            // Panning a cylindrical projection translates the map. Other projections must be unchanged
+            return Cylindrical.class.isAssignableFrom(type) || width == other.width && height == other.height
+                    && center.equals(other.center);
+        }
+    }
+
+    /**
+     * Compares rings by their vertices
+     */
+    private static final class RingKey {
+        final double[] latLon;
+        final int hash;
+
+        RingKey(double[] latLon) {
+            this.latLon = latLon;
+            this.hash = Arrays.hashCode(latLon);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RingKey && Arrays.equals(latLon, ((RingKey) obj).latLon);
+        }
+    }
+}
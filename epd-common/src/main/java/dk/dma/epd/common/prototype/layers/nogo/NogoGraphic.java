@@ -16,79 +16,69 @@ package dk.dma.epd.common.prototype.layers.nogo;
 
 import java.awt.AlphaComposite;
 import java.awt.Color;
-import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.TexturePaint;
 import java.awt.image.BufferedImage;
 
-import com.bbn.openmap.omGraphics.OMGraphicConstants;
-import com.bbn.openmap.omGraphics.OMGraphicList;
-import com.bbn.openmap.omGraphics.OMPoly;
+import com.bbn.openmap.omGraphics.OMGraphicAdapter;
+import com.bbn.openmap.proj.Projection;
 
-import dk.dma.enav.model.geometry.Position;
-import dk.frv.enav.common.xml.nogo.types.NogoPolygon;
-
-public class NogoGraphic extends OMGraphicList {
+/**
+ * Graphic for the NoGo polygons of a time slice.
+ * <p>
+ * All the polygons of the slice are rendered as a single shape, projected through the {@linkplain NogoGeometry} which
+ * simplifies the polygons to the zoom level and only translates them when the map is panned.
+ */
+public class NogoGraphic extends OMGraphicAdapter {
     private static final long serialVersionUID = 1L;
 
-    private NogoPolygon polygon;
-
-    private Color nogoColor = Color.red;
-
-    private Rectangle hatchFillRectangle;
-    private BufferedImage hatchFill;
+    private static final Color NOGO_COLOR = Color.red;
 
-    public NogoGraphic(NogoPolygon polygon) {
-        this.polygon = polygon;
-        if (polygon != null) {
-            hatchFill = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D big = hatchFill.createGraphics();
-            Composite originalComposite = big.getComposite();
-            big.setComposite(makeComposite(0.2f));
-            big.setColor(nogoColor);
-            big.drawLine(0, 0, 10, 10);
+    /** The hatch paint shared by all NoGo graphics */
+    private static final TexturePaint HATCH_PAINT = createHatchPaint();
 
-            hatchFillRectangle = new Rectangle(0, 0, 10, 10);
-            big.setComposite(originalComposite);
+    private final NogoGeometry geometry;
 
-            drawPolygon();
-        }
+    /**
+     * Constructor
+     * 
+     * @param geometry
+     *            the geometry of the NoGo polygons
+     */
+    public NogoGraphic(NogoGeometry geometry) {
+        this.geometry = geometry;
+        setLinePaint(clear);
+        setFillPaint(new Color(0, 0, 0, 1));
+        setTextureMask(HATCH_PAINT);
     }
 
-    public NogoGraphic(NogoPolygon polygon, Position northWest, Position southEast, boolean frame, Color color) {
-        super();
-
-        this.polygon = polygon;
-
-        // Create location grahic
-        // NogoLocationGraphic nogoLocationGraphic = new NogoLocationGraphic(this.polygon, validFrom, validTo, draught, message,
-        // northWest, southEast, errorCode, frame, color);
-        // add(nogoLocationGraphic);
+    private static TexturePaint createHatchPaint() {
+        BufferedImage hatchFill = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D big = hatchFill.createGraphics();
+        big.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.2f));
+        big.setColor(NOGO_COLOR);
+        big.drawLine(0, 0, 10, 10);
+        big.dispose();
+        return new TexturePaint(hatchFill, new Rectangle(0, 0, 10, 10));
     }
 
-    private AlphaComposite makeComposite(float alpha) {
-        int type = AlphaComposite.SRC_OVER;
-        return AlphaComposite.getInstance(type, alpha);
+    /**
+     * Returns the geometry of the NoGo polygons
+     * 
+     * @return the geometry of the NoGo polygons
+     */
+    public NogoGeometry getGeometry() {
+        return geometry;
     }
 
-    private void drawPolygon() {
-        // space for lat-lon points plus first lat-lon pair to close the polygon
-        double[] polyPoints = new double[polygon.getPolygon().size() * 2 + 2];
-        int j = 0;
-        for (int i = 0; i < polygon.getPolygon().size(); i++) {
-            polyPoints[j] = polygon.getPolygon().get(i).getLat();
-            polyPoints[j + 1] = polygon.getPolygon().get(i).getLon();
-            j += 2;
-        }
-        polyPoints[j] = polyPoints[0];
-        polyPoints[j + 1] = polyPoints[1];
-        OMPoly poly = new OMPoly(polyPoints, OMGraphicConstants.DECIMAL_DEGREES, OMGraphicConstants.LINETYPE_RHUMB, 1);
-        poly.setLinePaint(clear);
-        poly.setFillPaint(new Color(0, 0, 0, 1));
-        poly.setTextureMask(new TexturePaint(hatchFill, hatchFillRectangle));
-
-        add(poly);
-
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean generate(Projection proj) {
+        setShape(geometry.project(proj));
+        setNeedToRegenerate(false);
+        return true;
     }
 }
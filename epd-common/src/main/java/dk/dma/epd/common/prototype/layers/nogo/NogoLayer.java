@@ -37,6 +37,9 @@ public class NogoLayer extends EPDLayerCommon {
 
     int currentSelected;
 
+    // Shares the polygons of the slices of a request
+    private final NogoGeometry.Factory geometryFactory = new NogoGeometry.Factory();
+
     /**
      * Constructor
      */
@@ -47,6 +50,8 @@ public class NogoLayer extends EPDLayerCommon {
     public void initializeNoGoStorage(int count) {
         // System.out.println("Initialize storage");
         cleanUp();
+        geometryFactory.clear();
+        currentSelected = 0;
         for (int i = 0; i < count; i++) {
             multipleNoGo.add(null);
         }
@@ -62,10 +67,15 @@ public class NogoLayer extends EPDLayerCommon {
 
         // System.out.println("Adding result from multiple at id " + id);
 
-        multipleNoGo.add(id, createNoGoGraphics(dataEntry));
+        // Slices may arrive in any order
+        if (id < multipleNoGo.size()) {
+            multipleNoGo.set(id, createNoGoGraphics(dataEntry));
+        } else {
+            multipleNoGo.add(createNoGoGraphics(dataEntry));
+        }
 
-        if (id == 0) {
-            drawSpecificResult(0);
+        if (id == currentSelected) {
+            drawSpecificResult(id);
         }
     }
 
@@ -74,11 +84,10 @@ public class NogoLayer extends EPDLayerCommon {
         if (multipleNoGo.size() >= id + 1) {
             graphics.remove(multipleNoGo.get(currentSelected));
 
+            // Select the slice even if it has not arrived yet, so that it is drawn when it does
+            currentSelected = id;
             if (multipleNoGo.get(id) != null) {
                 graphics.add(multipleNoGo.get(id));
-                currentSelected = id;
-            } else {
-//                System.out.println("Value is null");
             }
         }
 
@@ -89,9 +98,8 @@ public class NogoLayer extends EPDLayerCommon {
     private OMGraphicList createNoGoGraphics(NoGoDataEntry dataEntry) {
         OMGraphicList nogoPolygon = new OMGraphicList();
         List<NogoPolygon> polygons = dataEntry.getNogoPolygons();
-        for (NogoPolygon polygon : polygons) {
-            NogoGraphic nogoGraphic = new NogoGraphic(polygon);
-            nogoPolygon.add(nogoGraphic);
+        if (polygons != null && !polygons.isEmpty()) {
+            nogoPolygon.add(new NogoGraphic(geometryFactory.create(polygons)));
         }
 
         return nogoPolygon;
@@ -113,6 +121,7 @@ public class NogoLayer extends EPDLayerCommon {
      */
     public void singleResultCompleted(NoGoDataEntry dataEntry) {
         cleanUp();
+        geometryFactory.clear();
         currentSelected = 0;
         multipleNoGo.add(0, createNoGoGraphics(dataEntry));
 
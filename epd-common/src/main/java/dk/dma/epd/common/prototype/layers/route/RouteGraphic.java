@@ -25,6 +25,7 @@ import com.bbn.openmap.omGraphics.OMGraphicList;
 import dk.dma.epd.common.prototype.EPD;
 import dk.dma.epd.common.prototype.model.route.ActiveRoute;
 import dk.dma.epd.common.prototype.model.route.Route;
+import dk.dma.epd.common.prototype.model.route.RouteGeometry;
 import dk.dma.epd.common.prototype.model.route.RouteLeg;
 import dk.dma.epd.common.prototype.model.route.RouteWaypoint;
 import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
@@ -133,34 +134,26 @@ public class RouteGraphic extends OMGraphicList {
 
     public void initGraphics() {
         routeWaypoints = route.getWaypoints();
+
+        // Read the ETA's from a single snapshot, since they may be re-calculated while the graphics are created
+        route.getEtas();
+        RouteGeometry geometry = route.getGeometry();
+        long now = PntTime.getDate().getTime();
+
         int i = 0;
         for (RouteWaypoint routeWaypoint : routeWaypoints) {
 
             Color waypointColor = color;
             Color legColor = color;
-            int compareDates;
 
             // Do not use check if constructing a route
-            if (route.getEtas().size() > i) {
-                PntTime.getInstance();
-                compareDates = route.getEtas().get(i).compareTo(PntTime.getDate());
-
-                if (compareDates < 0) {
-                    waypointColor = Color.GRAY;
-                }
-
+            if (geometry.getWaypointCount() > i && isPast(geometry.getEta(i), now)) {
+                waypointColor = Color.GRAY;
             }
 
             // We only want to color the leg if both start and end waypoint is back in time
-            if (route.getEtas().size() > i + 1) {
-
-                PntTime.getInstance();
-                compareDates = route.getEtas().get(i + 1).compareTo(PntTime.getDate());
-
-                if (compareDates < 0) {
-                    legColor = Color.GRAY;
-                }
-
+            if (geometry.getWaypointCount() > i + 1 && isPast(geometry.getEta(i + 1), now)) {
+                legColor = Color.GRAY;
             }
 
             if (route instanceof ActiveRoute && ((ActiveRoute) route).getActiveWaypointIndex() == i) {
@@ -188,6 +181,10 @@ public class RouteGraphic extends OMGraphicList {
         }
     }
 
+    private static boolean isPast(long eta, long now) {
+        return eta != RouteGeometry.NO_ETA && eta < now;
+    }
+
     public void activateAnimation() {
         for (int i = 0; i < routeLegs.size(); i++) {
             routeLegs.get(i).addAnimatorLine();
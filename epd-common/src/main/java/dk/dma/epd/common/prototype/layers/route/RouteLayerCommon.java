@@ -228,6 +228,7 @@ public abstract class RouteLayerCommon extends EPDLayerCommon implements IRoutes
                 RouteWaypoint routeWaypoint = selectedWp.getRoute().getWaypoints().get(selectedWp.getWpIndex());
                 LatLonPoint pos = mapBean.getProjection().inverse(e.getPoint());
                 routeWaypoint.setPos(Position.create(pos.getLatitude(), pos.getLongitude()));
+                selectedWp.getRoute().invalidateGeometry();
 
                 // Invalidate the STCC approval flag
                 if (selectedWp.getRoute().isStccApproved()) {
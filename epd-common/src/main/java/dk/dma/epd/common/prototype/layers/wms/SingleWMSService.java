@@ -14,15 +14,15 @@
  */
 package dk.dma.epd.common.prototype.layers.wms;
 
-import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
 import java.util.concurrent.Callable;
 
-import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
 import org.slf4j.Logger;
@@ -40,6 +40,8 @@ import dk.dma.epd.common.prototype.status.IStatusComponent;
 public final class SingleWMSService extends AbstractWMSService implements ImageServerConstants, IStatusComponent,
         Callable<OMGraphicList> {
     private static final Logger LOG = LoggerFactory.getLogger(SingleWMSService.class);
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 20000;
     private Projection projection;
 
     public SingleWMSService(String wmsQuery, Projection p) {
@@ -60,77 +62,47 @@ public final class SingleWMSService extends AbstractWMSService implements ImageS
     }
 
     public OMGraphicList getWmsList(Projection p) {
-        java.net.URL url = null;
-
         OMGraphicList wmsList = new OMGraphicList();
-        
-        try {
-
-            url = new java.net.URL(getQueryString());
 
-            BufferedImage image = ImageIO.read(url);
+        try {
+            long t0 = System.currentTimeMillis();
+            URLConnection connection = new URL(getQueryString()).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+
+            BufferedImage image;
+            try (InputStream in = connection.getInputStream()) {
+                long t1 = System.currentTimeMillis();
+                // Decoded as the bytes arrive, and masked on the raster of the display compatible image
+                image = WmsTileDecoder.decode(in);
+                status.markTileLoaded(t1 - t0, System.currentTimeMillis() - t1);
+            }
 
             if (image == null) {
-                System.out.println("Unable to retrieve image from URL, check the WMS URL");
+                LOG.warn("Unable to retrieve image from URL, check the WMS URL");
                 Image noImage = EPD.res().getCachedImageIcon("images/noWMSAvailable.png").getImage();
                 BufferedImage bi = new BufferedImage(noImage.getWidth(null), noImage.getHeight(null), BufferedImage.TYPE_INT_ARGB);
                 Graphics g = bi.createGraphics();
                 g.drawImage(noImage, 0, 0, wmsWidth, wmsHeight, null);
+                g.dispose();
                 ImageIcon noImageIcon = new ImageIcon(bi);
                 wmsList.add(new CenterRaster(getProjection().getCenter().getY(), getProjection().getCenter().getX(), this.wmsWidth,
                         this.wmsHeight, noImageIcon));
 
             } else {
                 status.markContactSuccess();
-                
-                Image maskedImage = transformWhiteToTransparent(image);
                 wmsList.add(new CenterRaster(getProjection().getCenter().getY(), getProjection().getCenter().getX(), this.wmsWidth,
-                        this.wmsHeight, new ImageIcon(maskedImage)));
+                        this.wmsHeight, new ImageIcon(image)));
             }
 
         } catch (IOException ex) {
             status.markContactError(ex);
-            LOG.error("Bad URL!");
+            LOG.error("Failed loading WMS image: " + ex.getMessage());
         }
-        // LOG.debug("DONE DOWNLOADING");
 
         return wmsList;
     }
 
-    private Image transformWhiteToTransparent(BufferedImage image) {
-
-        BufferedImage dest = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = dest.createGraphics();
-        g2.drawImage(image, 0, 0, null);
-        g2.dispose();
-        
-        image.flush();
-        
-        // Mask out the white pixels
-        final int width = image.getWidth();
-        int[] imgData = new int[width];
-        
-        // The color we want transparent
-        final Color color = Color.WHITE;
-        // the color we are looking for... Alpha bits are set to opaque
-        int markerRGB = color.getRGB() | 0xFF000000;
-
-        for (int y = 0; y < dest.getHeight(); y++) {
-            // fetch a line of data from each image
-            dest.getRGB(0, y, width, 1, imgData, 0, 1);
-            // apply the mask
-            for (int x = 0; x < width; x++) {
-                if ((imgData[x] | 0xFF000000) == markerRGB) {
-                    // Mark the alpha bits as zero - transparent
-                    imgData[x] = 0x00FFFFFF & imgData[x];
-                } 
-            }
-            // replace the data
-            dest.setRGB(0, y, width, 1, imgData, 0, 1);
-        }
-        return dest;
-    }
-
     @Override
     public ComponentStatus getStatus() {
         return status;
@@ -14,180 +14,398 @@
  */
 package dk.dma.epd.common.prototype.layers.wms;
 
-import java.util.Collection;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.ImageIcon;
 
 import com.bbn.openmap.omGraphics.OMGraphicList;
+import com.bbn.openmap.omGraphics.OMScalingRaster;
 import com.bbn.openmap.proj.Projection;
 
-public class StreamingTiledWmsService extends TiledWMSService implements
-        Runnable, AsyncWMSService {
+import dk.dma.epd.common.prototype.ExecutionService;
 
-    private boolean shouldRun = true;
-    ConcurrentHashMap<String, OMGraphicList> cache = new ConcurrentHashMap<String, OMGraphicList>();
-    ConcurrentHashMap<String, OMGraphicList> tmpCache = new ConcurrentHashMap<String, OMGraphicList>();
-    LinkedBlockingDeque<Projection> projectionJobs = new LinkedBlockingDeque<>(
-            1);
+/**
+ * WMS service that serves the map from fixed z/x/y tiles.
+ * <p>
+ * The tiles are independent of the viewport, so panning and zooming over an area that has already been visited is served
+ * from the {@linkplain WmsTileCache tile cache} rather than the WMS server. Tiles are loaded on the shared
+ * {@linkplain ExecutionService}, by at most {@value #DOWNLOAD_THREADS} loaders across all WMS services, and decoded by
+ * the loader that read them. Loads that are no longer needed when the viewport changes are cancelled, and the tiles
+ * surrounding the viewport along with the tiles of the next zoom level are prefetched once the visible tiles have been
+ * requested.
+ */
+public class StreamingTiledWmsService extends TiledWMSService implements AsyncWMSService {
 
-    private Thread t;
-    private ExecutorService handOffPool = Executors.newFixedThreadPool(1);
+    /** The pixel width of the tiles */
+    public static final int TILE_SIZE = 256;
 
-    public StreamingTiledWmsService(String wmsQuery, int tileNumber) {
-        super(wmsQuery, tileNumber);
+    /** The number of parent zoom levels searched for a replacement of a missing tile */
+    private static final int MAX_FALLBACK_LEVELS = 4;
+
+    private static final int DOWNLOAD_THREADS = 4;
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 20000;
+
+    // Tile loads of all WMS services, run by at most DOWNLOAD_THREADS loaders at a time
+    private static final ExecutorService DOWNLOADS = ExecutionService.getInstance().createGroup("WMS-Tile");
+    private static final ConcurrentLinkedQueue<TileTask> DOWNLOAD_QUEUE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger ACTIVE_LOADERS = new AtomicInteger();
+
+    private final WmsTileCache tileCache;
+    private final ConcurrentHashMap<WmsTileKey, TileTask> pending = new ConcurrentHashMap<>();
+    private volatile Set<WmsTileKey> visibleTiles = Collections.emptySet();
+    private volatile Set<WmsTileKey> wantedTiles = Collections.emptySet();
 
-        this.t = new Thread(this);
-        this.t.start();
+    /**
+     * Constructor using the shared tile cache
+     * 
+     * @param wmsQuery
+     *            the WMS query
+     * @param tileNumber
+     *            not used, since the tiles are fixed size
+     */
+    public StreamingTiledWmsService(String wmsQuery, int tileNumber) {
+        this(wmsQuery, tileNumber, WmsTileCache.getDefault());
     }
-    
-    public StreamingTiledWmsService(String wmsQuery, int tileNumber, ConcurrentHashMap<String, OMGraphicList> sharedCache) {
+
+    /**
+     * Constructor
+     * 
+     * @param wmsQuery
+     *            the WMS query
+     * @param tileNumber
+     *            not used, since the tiles are fixed size
+     * @param tileCache
+     *            the tile cache to use
+     */
+    public StreamingTiledWmsService(String wmsQuery, int tileNumber, WmsTileCache tileCache) {
         super(wmsQuery, tileNumber);
-        this.cache = sharedCache;
-        
-        this.t = new Thread(this);
-        this.t.start();
+        this.tileCache = tileCache;
     }
 
+    /**
+     * Returns the tiles covering the projection that are currently in the memory cache. Missing tiles are replaced by the
+     * nearest cached tile of a lower zoom level.
+     * 
+     * @param p
+     *            the projection
+     * @return the cached tiles covering the projection
+     */
     @Override
     public OMGraphicList getWmsList(Projection p) {
-        final OMGraphicList result = new OMGraphicList();
-        final String key = getID(p);
-        if (cache.containsKey(key)) {
-            // LOG.debug("CACHE HIT");
-            tmpCache.remove(key);
-            result.addAll(cache.get(key));
-        } else if (tmpCache.containsKey(key)) {
-            // LOG.debug("TMPCACHE HIT");
-            result.addAll(tmpCache.get(key));
+        OMGraphicList result = new OMGraphicList();
+        int z = getZoomLevel(p);
+        if (z < 0) {
+            return result;
+        }
+
+        Set<WmsTileKey> fallbacks = new LinkedHashSet<>();
+        List<OMScalingRaster> tiles = new ArrayList<>();
+        for (WmsTileKey key : getVisibleTiles(p, z)) {
+            BufferedImage image = tileCache.get(wmsQuery, key);
+            if (image != null) {
+                tiles.add(createRaster(key, image));
+                continue;
+            }
+            WmsTileKey parent = key.getParent();
+            for (int i = 0; i < MAX_FALLBACK_LEVELS && parent != null; i++) {
+                if (fallbacks.contains(parent) || tileCache.get(wmsQuery, parent) != null) {
+                    fallbacks.add(parent);
+                    break;
+                }
+                parent = parent.getParent();
+            }
         }
 
+        // Coarser tiles are added first, so that they are drawn below the exact tiles
+        for (WmsTileKey key : fallbacks) {
+            BufferedImage image = tileCache.get(wmsQuery, key);
+            if (image != null) {
+                result.add(createRaster(key, image));
+            }
+        }
+        result.addAll(tiles);
         return result;
     }
 
     /**
-     * Stop the thread
+     * Requests the tiles covering the projection along with the prefetch tiles. Pending loads of tiles that are no longer
+     * needed are cancelled.
+     * 
+     * @param p
+     *            the projection
      */
-    public void stop() {
-        shouldRun = false;
-    }
-
     @Override
-    public void run() {
-        while (shouldRun) {
-            Projection job = null;
-            try {
-                // blocks until projection bbox job ready
-                job = projectionJobs.takeLast();
-
-                Thread.sleep(1000); // only take jobs every second
-                // LOG.debug("JOB TAKEN");
-            } catch (InterruptedException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+    public void queue(Projection p) {
+        int z = getZoomLevel(p);
+        if (z < 0) {
+            return;
+        }
+
+        List<WmsTileKey> visible = getVisibleTiles(p, z);
+        Set<WmsTileKey> wanted = new LinkedHashSet<>(visible);
+        wanted.addAll(getPrefetchTiles(p, z));
+        visibleTiles = new HashSet<>(visible);
+        wantedTiles = wanted;
+
+        for (Map.Entry<WmsTileKey, TileTask> entry : pending.entrySet()) {
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().cancel(true);
             }
+        }
 
-            if (cache.containsKey(getID(job))) {
-                clearCache();
-            } else {
-                asyncDownload(job);
-                
+        for (WmsTileKey key : wanted) {
+            if (tileCache.get(wmsQuery, key) == null) {
+                TileTask task = new TileTask(key);
+                if (pending.putIfAbsent(key, task) == null) {
+                    DOWNLOAD_QUEUE.add(task);
+                }
             }
         }
+        startLoaders();
     }
-    
-    
 
-    private void clearCache() {
-        if (cache.keySet().size() > 128) {
-            LOG.debug("pruning cache (memory concern)");
-            cache.clear();
-            tmpCache.clear();
+    /**
+     * Starts loaders for the queued tile loads, until {@value #DOWNLOAD_THREADS} loaders are running
+     */
+    private static void startLoaders() {
+        while (!DOWNLOAD_QUEUE.isEmpty()) {
+            int active = ACTIVE_LOADERS.get();
+            if (active >= DOWNLOAD_THREADS) {
+                return;
+            }
+            if (ACTIVE_LOADERS.compareAndSet(active, active + 1)) {
+                try {
+                    DOWNLOADS.execute(new TileLoader());
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    ACTIVE_LOADERS.decrementAndGet();
+                    return;
+                }
+            }
         }
     }
 
     /**
-     * Complete asynchronous download and update of caches
-     * 
-     * @param job
+     * Cancels all pending tile loads
      */
-    public void asyncDownload(final Projection job) {
-        handOffPool.execute(new Runnable() {
+    public void stop() {
+        wantedTiles = Collections.emptySet();
+        for (TileTask task : pending.values()) {
+            task.cancel(true);
+        }
+    }
 
-            @Override
-            public void run() {
-                Collection<SingleWMSService> workers = getTiles(job);
-                OMGraphicList result = new OMGraphicList();
+    /**
+     * Returns the zoom level of the tiles used for the projection
+     * 
+     * @param p
+     *            the projection
+     * @return the zoom level, or -1 if the projection is empty
+     */
+    protected int getZoomLevel(Projection p) {
+        if (p == null || p.getWidth() <= 0 || p.getHeight() <= 0) {
+            return -1;
+        }
+        double lonSpan = p.getLowerRight().getX() - p.getUpperLeft().getX();
+        if (lonSpan <= 0) {
+            lonSpan += 360.0;
+        }
+        return WmsTileKey.getZoomLevel(lonSpan / p.getWidth(), TILE_SIZE);
+    }
 
-                ExecutorService pool = Executors.newFixedThreadPool(Math.max(workers.size(),4));
-                ExecutorCompletionService<OMGraphicList> completionService = new ExecutorCompletionService<>(
-                        pool);
+    /**
+     * Returns the tiles covering the projection, ordered by their distance to the center of the projection
+     */
+    private List<WmsTileKey> getVisibleTiles(Projection p, int z) {
+        Point2D ul = p.getUpperLeft();
+        Point2D lr = p.getLowerRight();
+        List<WmsTileKey> tiles = WmsTileKey.cover(z, lr.getY(), ul.getX(), ul.getY(), lr.getX());
+        sortByDistance(tiles, p.getCenter());
+        return tiles;
+    }
 
-                for (SingleWMSService w : workers) {
-                    completionService.submit(w);
-                }
+    /**
+     * Returns the ring of tiles surrounding the projection, and the tiles of the next zoom level covering the center half of
+     * the projection, i.e. the tiles needed when the map is panned or zoomed in.
+     */
+    private List<WmsTileKey> getPrefetchTiles(Projection p, int z) {
+        Point2D ul = p.getUpperLeft();
+        Point2D lr = p.getLowerRight();
+        double span = WmsTileKey.getSpan(z);
+        List<WmsTileKey> tiles = WmsTileKey.cover(z, lr.getY() - span, normalizeLon(ul.getX() - span), ul.getY() + span,
+                normalizeLon(lr.getX() + span));
+        sortByDistance(tiles, p.getCenter());
 
-                boolean allSuccess = true;
-                for (int i = 0; i < workers.size(); i++) {
-                    Future<OMGraphicList> future;
-                    try {
-                        future = completionService.poll(Math.max(100,5000/(i+1)),
-                                TimeUnit.MILLISECONDS);
-                        OMGraphicList tile = future.get();
-                        result.addAll(tile);
-                        tmpCache.putIfAbsent(getID(job), new OMGraphicList());
-                        tmpCache.get(getID(job)).addAll(tile);
-                        fireWMSEvent();
-                    } catch (InterruptedException | ExecutionException
-                            | NullPointerException e) {
-                        allSuccess = false;
-                        //LOG.debug("A Tile failed to download within the alotted time. (~5000ms)");
-                    }
-                }
+        if (z < WmsTileKey.MAX_ZOOM) {
+            Point2D center = p.getCenter();
+            double halfLat = (ul.getY() - lr.getY()) / 4;
+            double lonSpan = lr.getX() - ul.getX();
+            double halfLon = ((lonSpan <= 0) ? lonSpan + 360.0 : lonSpan) / 4;
+            List<WmsTileKey> children = WmsTileKey.cover(z + 1, center.getY() - halfLat, normalizeLon(center.getX() - halfLon),
+                    center.getY() + halfLat, normalizeLon(center.getX() + halfLon));
+            sortByDistance(children, center);
+            tiles.addAll(children);
+        }
+        return tiles;
+    }
 
-                if (allSuccess) {
-                    tmpCache.remove(getID(job));
-                    cache.put(getID(job), result);
-                    fireWMSEvent();
-                } else {
-                    LOG.debug("A Tile failed to download, resubmitting job");
-                    queue(job);
-                }
+    private static void sortByDistance(List<WmsTileKey> tiles, Point2D center) {
+        final double lat = center.getY();
+        final double lon = center.getX();
+        Collections.sort(tiles, new Comparator<WmsTileKey>() {
+            @Override
+            public int compare(WmsTileKey t1, WmsTileKey t2) {
+                return Double.compare(distance(t1, lat, lon), distance(t2, lat, lon));
             }
         });
+    }
 
+    private static double distance(WmsTileKey key, double lat, double lon) {
+        double dLat = (key.getMinLat() + key.getMaxLat()) / 2 - lat;
+        double dLon = Math.abs((key.getMinLon() + key.getMaxLon()) / 2 - lon);
+        dLon = Math.min(dLon, 360.0 - dLon);
+        return dLat * dLat + dLon * dLon;
+    }
 
+    private static double normalizeLon(double lon) {
+        if (lon < -180.0) {
+            return lon + 360.0;
+        } else if (lon > 180.0) {
+            return lon - 360.0;
+        }
+        return lon;
     }
 
-    public void queue(Projection p) {
-        //p = normalizeProjection(p);
-        if (this.projectionJobs.offer(p)) {
+    private static OMScalingRaster createRaster(WmsTileKey key, BufferedImage image) {
+        return new OMScalingRaster(key.getMaxLat(), key.getMinLon(), key.getMinLat(), key.getMaxLon(), new ImageIcon(image));
+    }
 
-        } else {
-            LOG.debug("Queue is full, kicking old job in favor of new");
-            try {
-                this.projectionJobs.takeFirst();
-            } catch (InterruptedException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+    /**
+     * Loads the tile from the disk cache or, if not cached, from the WMS server
+     * 
+     * @param key
+     *            the tile to load
+     */
+    private void loadTile(WmsTileKey key) throws IOException {
+        long t0 = System.currentTimeMillis();
+        boolean fromDisk = true;
+        byte[] data = tileCache.readFromDisk(wmsQuery, key);
+        if (data == null) {
+            if (!wantedTiles.contains(key) || Thread.currentThread().isInterrupted()) {
+                return;
             }
-            this.projectionJobs.offer(p);
+            data = download(key);
+            fromDisk = false;
+        }
+
+        long t1 = System.currentTimeMillis();
+        BufferedImage image = WmsTileDecoder.decode(new ByteArrayInputStream(data));
+        if (image == null) {
+            throw new IOException("Unable to decode WMS tile " + key + ", check the WMS URL");
+        }
+        status.markTileLoaded(t1 - t0, System.currentTimeMillis() - t1);
+        if (!fromDisk) {
+            status.markContactSuccess();
+            tileCache.writeToDisk(wmsQuery, key, data);
         }
+        tileCache.put(wmsQuery, key, image);
 
+        if (visibleTiles.contains(key)) {
+            fireWMSEvent();
+        }
     }
 
-    // meh!
-    public String getBbox(Projection p) {
-        String meh = (new SingleWMSService(wmsQuery, p)).getBbox();
-        return meh;
+    /**
+     * Downloads the raw tile image from the WMS server
+     */
+    private byte[] download(WmsTileKey key) throws IOException {
+        String query = wmsQuery + "&BBOX=" + key.getMinLon() + "," + key.getMinLat() + "," + key.getMaxLon() + ","
+                + key.getMaxLat() + "&WIDTH=" + TILE_SIZE + "&HEIGHT=" + key.getPixelHeight(TILE_SIZE);
+        URLConnection connection = new URL(query).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
     }
 
-    public String getID(Projection p) {
-        return getBbox(p)+Math.round(p.getScale());
+    /**
+     * Runs the queued tile loads until the queue is empty. Cancelled loads are skipped, and the interrupt flag left by
+     * cancelling a running load is cleared before the next load.
+     */
+    private static final class TileLoader implements Runnable {
+        @Override
+        public void run() {
+            try {
+                TileTask task;
+                while ((task = DOWNLOAD_QUEUE.poll()) != null) {
+                    // Cancelling a stale tile interrupts this thread, which must not carry over to the next tile
+                    Thread.interrupted();
+                    task.run();
+                }
+            } finally {
+                ACTIVE_LOADERS.decrementAndGet();
+            }
+            // Pick up loads queued after the queue was found empty
+            startLoaders();
+        }
+    }
+
+    /**
+     * Pending load of a tile. Removes itself from the pending loads when completed or cancelled.
+     */
+    private final class TileTask extends FutureTask<Void> {
+
+        private final WmsTileKey key;
+
+        TileTask(final WmsTileKey key) {
+            super(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        loadTile(key);
+                    } catch (IOException e) {
+                        status.markContactError(e);
+                        LOG.debug("Failed loading WMS tile " + key + ": " + e.getMessage());
+                    }
+                    return null;
+                }
+            });
+            this.key = key;
+        }
+
+        @Override
+        protected void done() {
+            pending.remove(key, this);
+        }
     }
 }
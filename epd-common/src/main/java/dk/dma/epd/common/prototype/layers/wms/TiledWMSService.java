@@ -22,7 +22,6 @@ import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -30,8 +29,13 @@ import com.bbn.openmap.omGraphics.OMGraphicList;
 import com.bbn.openmap.proj.Proj;
 import com.bbn.openmap.proj.Projection;
 
+import dk.dma.epd.common.prototype.ExecutionService;
+
 public class TiledWMSService extends AbstractWMSService {
 
+    // Loads the tiles of all tiled WMS services
+    private static final ExecutorService TILE_LOADER = ExecutionService.getInstance().createGroup("WMS-Tiles");
+
     protected int root;
     protected int sqrRoot;
 
@@ -55,7 +59,9 @@ public class TiledWMSService extends AbstractWMSService {
         }
         
         LinkedList<SingleWMSService> l = new LinkedList<>();
-        l.add(new SingleWMSService(wmsQuery, p.makeClone()));
+        SingleWMSService s = new SingleWMSService(wmsQuery, p.makeClone());
+        s.status = status;
+        l.add(s);
         return l;
     }
     
@@ -84,7 +90,10 @@ public class TiledWMSService extends AbstractWMSService {
 
         Collection<SingleWMSService> wmsInstances = new ArrayList<>();
         for (int i = 0; i < root; i++) {
-            wmsInstances.add(new SingleWMSService(wmsQuery, p));
+            SingleWMSService s = new SingleWMSService(wmsQuery, p);
+            // The tiles report contact and timing to the status of this service
+            s.status = status;
+            wmsInstances.add(s);
         }
 
         Iterator<SingleWMSService> it = wmsInstances.iterator();
@@ -128,29 +137,6 @@ public class TiledWMSService extends AbstractWMSService {
     } 
     
     
-    /*
-     * Experimented with various pre-fetching strategies
-     */
-    /*
-    protected final Collection<SingleWMSService> getTiles(Projection p) {
-        
-        LinkedList<SingleWMSService> l = new LinkedList<>();
-        
-        Projection pCurrent = p.makeClone();
-        
-        
-        int degrees = 45;
-        for (int i=0; i<8; i++) {
-            pCurrent = p.makeClone();
-            Proj pC = (Proj)pCurrent;
-            pCurrent.pan(degrees*i);
-            
-            l.add(new SingleWMSService(wmsQuery, pCurrent.makeClone()));
-        }
-        
-        return l;
-    }*/
-    
     private void setProjection(final Projection p) {
         this.projection = p;
 
@@ -161,14 +147,11 @@ public class TiledWMSService extends AbstractWMSService {
 
         OMGraphicList result = new OMGraphicList();
 
-        // why not make this a field? because we want total separation between
-        // results
-        ExecutorService es = Executors.newCachedThreadPool();
-
         Collection<SingleWMSService> wmsInstances = this.getTiles(p);
 
         try {
-            List<Future<OMGraphicList>> futures = es.invokeAll(wmsInstances,
+            // The tiles are loaded and decoded on the shared execution service
+            List<Future<OMGraphicList>> futures = TILE_LOADER.invokeAll(wmsInstances,
                     10, TimeUnit.SECONDS);
 
             for (Future<OMGraphicList> f : futures) {
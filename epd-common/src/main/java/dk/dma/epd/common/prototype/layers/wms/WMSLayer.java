@@ -14,19 +14,13 @@
  */
 package dk.dma.epd.common.prototype.layers.wms;
 
-import java.awt.image.BufferedImage;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.bbn.openmap.event.ProjectionEvent;
-import com.bbn.openmap.omGraphics.OMGraphic;
 import com.bbn.openmap.omGraphics.OMGraphicList;
 import com.bbn.openmap.proj.Projection;
 
-import dk.dma.epd.common.graphics.CenterRaster;
 import dk.dma.epd.common.prototype.event.WMSEvent;
 import dk.dma.epd.common.prototype.event.WMSEventListener;
 import dk.dma.epd.common.prototype.layers.EPDLayerCommon;
@@ -51,11 +45,8 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
     private StreamingTiledWmsService wmsService;
     private int height = -1;
     private int width = -1;
-    private float lastScale = -1F;
     MapSettings mapSettings;
 
-    private CopyOnWriteArrayList<OMGraphic> internalCache = new CopyOnWriteArrayList<>();
-
     /**
      * Constructor that starts the WMS layer in a separate thread
      * 
@@ -63,15 +54,7 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
      *            the WMS query
      */
     public WMSLayer(String query, MapSettings mapSettings) {
-        LOG.info("WMS Layer inititated");
-
-        wmsService = new StreamingTiledWmsService(query, 4);
-        wmsService.addWMSEventListener(this);
-
-        this.mapSettings = mapSettings;
-
-        new Thread(this).start();
-
+        this(query, mapSettings, WmsTileCache.getDefault());
     }
 
     /**
@@ -79,13 +62,21 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
      * 
      * @param query
      *            the WMS query
+     * @param mapSettings
+     *            the map settings
      * @param sharedCache
-     *            the shared cache to use
+     *            the shared tile cache to use
      */
-    public WMSLayer(String query, ConcurrentHashMap<String, OMGraphicList> sharedCache) {
+    public WMSLayer(String query, MapSettings mapSettings, WmsTileCache sharedCache) {
+        LOG.info("WMS Layer inititated");
+
         wmsService = new StreamingTiledWmsService(query, 4, sharedCache);
         wmsService.addWMSEventListener(this);
+
+        this.mapSettings = mapSettings;
+
         new Thread(this).start();
+
     }
 
     /**
@@ -106,15 +97,11 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
     public void drawWMS(OMGraphicList tiles) {
         this.setVisible(mapSettings.isWmsVisible());
         if (mapSettings.isWmsVisible()) {
-            this.internalCache.addAllAbsent(tiles);
+            // The tiles cover the whole viewport, so they simply replace the previous tiles
             graphics.clear();
-            graphics.addAll(internalCache);
             graphics.addAll(tiles);
             doPrepare();
-        } else {
-
         }
-
     }
 
     /**
@@ -125,16 +112,14 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
         if (e.getProjection() != null) {
             Projection proj = e.getProjection().makeClone();
 
-            if (proj.getScale() != lastScale) {
-                clearWMS();
-                lastScale = proj.getScale();
-
-            }
-
             width = proj.getWidth();
             height = proj.getHeight();
             if (width > 0 && height > 0 && proj.getScale() <= PROJ_SCALE_THRESHOLD) {
                 wmsService.queue(proj);
+                // Display the cached tiles right away
+                drawWMS(wmsService.getWmsList(proj));
+            } else {
+                clearWMS();
             }
         }
 
@@ -147,16 +132,7 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
      * Clears the WMS layer
      */
     public void clearWMS() {
-        // Aggressively flush the buffered images
-        for (OMGraphic g : internalCache) {
-            if (g instanceof CenterRaster) {
-                CenterRaster cr = (CenterRaster) g;
-                if (cr.getImage() instanceof BufferedImage) {
-                    ((BufferedImage) cr.getImage()).flush();
-                }
-            }
-        }
-        this.internalCache.clear();
+        // The tile images are owned by the tile cache, so they are not flushed here
         this.drawWMS(new OMGraphicList());
     }
 
@@ -194,6 +170,7 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
      */
     public void stop() {
         shouldRun = false;
+        wmsService.stop();
     }
 
     /**
@@ -216,23 +193,15 @@ public class WMSLayer extends EPDLayerCommon implements Runnable, WMSEventListen
      */
     @Override
     public void setVisible(boolean visible) {
+        boolean wasVisible = isVisible();
         super.setVisible(visible);
-        if (visible) {
-            graphics.addAll(internalCache);
-            // graphics.addAll(tiles);
+        if (visible && !wasVisible) {
+            final Projection proj = this.getProjection();
+            if (proj != null && proj.getWidth() > 0 && proj.getHeight() > 0 && proj.getScale() <= PROJ_SCALE_THRESHOLD) {
+                graphics.clear();
+                graphics.addAll(wmsService.getWmsList(proj));
+            }
             doPrepare();
-
-            // final Projection proj = this.getProjection();
-            //
-            // if (proj != null) {
-            // width = proj.getWidth();
-            // height = proj.getHeight();
-            //
-            // if (width > 0 && height > 0 && proj.getScale() <= PROJ_SCALE_THRESHOLD) {
-            // OMGraphicList result = wmsService.getWmsList(proj);
-            // drawWMS(result);
-            // }
-            // }
         }
     }
 
@@ -0,0 +1,414 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.layers.wms;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.dma.epd.common.prototype.EPD;
+
+/**
+ * Two level cache of WMS tiles.
+ * <p>
+ * Decoded tiles are kept in a least-recently-used memory cache bounded by the number of bytes held by the images. The raw
+ * tile images, as returned by the WMS server, are stored on disk below {@code <home>/wmscache/<query-id>/z/x/y.png}, so
+ * that areas visited in earlier sessions can be displayed without contacting the WMS server. The disk cache is bounded
+ * by a number of bytes, evicting the least recently used tiles first, and tiles older than the time-to-live are
+ * discarded and downloaded again.
+ */
+@ThreadSafe
+public class WmsTileCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WmsTileCache.class);
+
+    /** Default max number of bytes held by the memory cache */
+    public static final long DEFAULT_MAX_BYTES = 128L * 1024L * 1024L;
+
+    /** Default max number of bytes held by the disk cache */
+    public static final long DEFAULT_MAX_DISK_BYTES = 512L * 1024L * 1024L;
+
+    /** Default time-to-live of the tiles in the disk cache */
+    public static final long DEFAULT_DISK_TTL = TimeUnit.DAYS.toMillis(30);
+
+    private static WmsTileCache defaultCache;
+
+    private final long maxBytes;
+    private final Path cacheDir;
+    private final long maxDiskBytes;
+    private final long diskTtl;
+    private long bytes;
+
+    private final LinkedHashMap<String, BufferedImage> memory = new LinkedHashMap<>(256, 0.75f, true);
+
+    /** The tiles of the disk cache and their size, in least recently used order. Guarded by {@link #disk} */
+    private final LinkedHashMap<Path, Long> disk = new LinkedHashMap<>(256, 0.75f, true);
+    private long diskBytes;
+    private boolean diskScanned;
+
+    /**
+     * Constructor
+     * 
+     * @param maxBytes
+     *            the max number of bytes held by the memory cache
+     * @param cacheDir
+     *            the root folder of the disk cache, or null to disable the disk cache
+     */
+    public WmsTileCache(long maxBytes, Path cacheDir) {
+        this(maxBytes, cacheDir, DEFAULT_MAX_DISK_BYTES, DEFAULT_DISK_TTL);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param maxBytes
+     *            the max number of bytes held by the memory cache
+     * @param cacheDir
+     *            the root folder of the disk cache, or null to disable the disk cache
+     * @param maxDiskBytes
+     *            the max number of bytes held by the disk cache
+     * @param diskTtl
+     *            the time-to-live in milliseconds of the tiles in the disk cache
+     */
+    public WmsTileCache(long maxBytes, Path cacheDir, long maxDiskBytes, long diskTtl) {
+        this.maxBytes = maxBytes;
+        this.cacheDir = cacheDir;
+        this.maxDiskBytes = maxDiskBytes;
+        this.diskTtl = diskTtl;
+    }
+
+    /**
+     * Returns the cache shared by all WMS layers of the application
+     * 
+     * @return the shared cache
+     */
+    public static synchronized WmsTileCache getDefault() {
+        if (defaultCache == null) {
+            Path dir = null;
+            if (EPD.getInstance() != null && EPD.getInstance().getHomePath() != null) {
+                dir = EPD.getInstance().getHomePath().resolve("wmscache");
+            }
+            defaultCache = new WmsTileCache(DEFAULT_MAX_BYTES, dir);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Returns the decoded tile from the memory cache
+     * 
+     * @param query
+     *            the WMS query of the tile
+     * @param key
+     *            the tile key
+     * @return the tile image or null if not cached
+     */
+    public synchronized BufferedImage get(String query, WmsTileKey key) {
+        return memory.get(memoryKey(query, key));
+    }
+
+    /**
+     * Adds the decoded tile to the memory cache, evicting the least recently used tiles if the cache is full
+     * 
+     * @param query
+     *            the WMS query of the tile
+     * @param key
+     *            the tile key
+     * @param image
+     *            the decoded tile image
+     */
+    public synchronized void put(String query, WmsTileKey key, BufferedImage image) {
+        BufferedImage old = memory.put(memoryKey(query, key), image);
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        bytes += sizeOf(image);
+
+        Iterator<Map.Entry<String, BufferedImage>> it = memory.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, BufferedImage> eldest = it.next();
+            if (eldest.getValue() != image) {
+                bytes -= sizeOf(eldest.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the raw tile image from the disk cache
+     * 
+     * @param query
+     *            the WMS query of the tile
+     * @param key
+     *            the tile key
+     * @return the raw tile image or null if not cached or expired
+     */
+    public byte[] readFromDisk(String query, WmsTileKey key) {
+        Path file = getFile(query, key);
+        if (file == null) {
+            return null;
+        }
+        synchronized (disk) {
+            scanDisk();
+            if (disk.get(file) == null) {
+                return null;
+            }
+        }
+        try {
+            if (isExpired(Files.getLastModifiedTime(file).toMillis())) {
+                removeFromDisk(file);
+                return null;
+            }
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            LOG.warn("Failed reading cached WMS tile " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the raw tile image in the disk cache. The file is written to a temporary file and moved into place, so that
+     * concurrent readers never see a partially written tile.
+     * 
+     * @param query
+     *            the WMS query of the tile
+     * @param key
+     *            the tile key
+     * @param data
+     *            the raw tile image
+     */
+    public void writeToDisk(String query, WmsTileKey key, byte[] data) {
+        Path file = getFile(query, key);
+        if (file == null) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), "tile", ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            addToDisk(file, data.length);
+        } catch (IOException e) {
+            LOG.warn("Failed caching WMS tile " + file + ": " + e.getMessage());
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes held by the memory cache
+     * 
+     * @return the number of bytes held by the memory cache
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of bytes held by the disk cache
+     * 
+     * @return the number of bytes held by the disk cache
+     */
+    public long getDiskBytes() {
+        synchronized (disk) {
+            scanDisk();
+            return diskBytes;
+        }
+    }
+
+    /**
+     * Returns the number of tiles held by the memory cache
+     * 
+     * @return the number of tiles held by the memory cache
+     */
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    /**
+     * Clears the memory cache
+     */
+    public synchronized void clear() {
+        memory.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Registers the tile stored in the disk cache and deletes the least recently used tiles until the disk cache is
+     * within its budget
+     * 
+     * @param file
+     *            the tile file
+     * @param size
+     *            the size of the tile file
+     */
+    private void addToDisk(Path file, long size) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (disk) {
+            scanDisk();
+            Long old = disk.put(file, size);
+            if (old != null) {
+                diskBytes -= old;
+            }
+            diskBytes += size;
+
+            Iterator<Map.Entry<Path, Long>> it = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && it.hasNext()) {
+                Map.Entry<Path, Long> eldest = it.next();
+                if (!eldest.getKey().equals(file)) {
+                    diskBytes -= eldest.getValue();
+                    evicted.add(eldest.getKey());
+                    it.remove();
+                }
+            }
+        }
+        for (Path f : evicted) {
+            delete(f);
+        }
+    }
+
+    /**
+     * Removes the tile from the disk cache
+     * 
+     * @param file
+     *            the tile file
+     */
+    private void removeFromDisk(Path file) {
+        synchronized (disk) {
+            Long size = disk.remove(file);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+        delete(file);
+    }
+
+    /**
+     * Registers the tiles stored in the disk cache by earlier sessions, oldest first, on first use of the disk cache.
+     * Expired tiles are deleted. Must be called holding the {@link #disk} lock.
+     */
+    private void scanDisk() {
+        if (diskScanned) {
+            return;
+        }
+        diskScanned = true;
+        if (cacheDir == null || !Files.isDirectory(cacheDir)) {
+            return;
+        }
+
+        final List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+        try {
+            scanDir(cacheDir, files);
+        } catch (IOException e) {
+            LOG.warn("Failed scanning WMS tile cache " + cacheDir + ": " + e.getMessage());
+        }
+        Collections.sort(files, new Comparator<Map.Entry<Path, BasicFileAttributes>>() {
+            @Override
+            public int compare(Map.Entry<Path, BasicFileAttributes> f1, Map.Entry<Path, BasicFileAttributes> f2) {
+                return f1.getValue().lastModifiedTime().compareTo(f2.getValue().lastModifiedTime());
+            }
+        });
+
+        List<Path> evicted = new ArrayList<>();
+        for (Map.Entry<Path, BasicFileAttributes> f : files) {
+            if (isExpired(f.getValue().lastModifiedTime().toMillis())) {
+                evicted.add(f.getKey());
+            } else {
+                disk.put(f.getKey(), f.getValue().size());
+                diskBytes += f.getValue().size();
+            }
+        }
+        Iterator<Map.Entry<Path, Long>> it = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<Path, Long> eldest = it.next();
+            diskBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            it.remove();
+        }
+        for (Path f : evicted) {
+            delete(f);
+        }
+        LOG.info("WMS tile cache holds " + disk.size() + " tiles, " + diskBytes + " bytes, " + evicted.size()
+                + " tiles evicted");
+    }
+
+    private static void scanDir(Path dir, List<Map.Entry<Path, BasicFileAttributes>> files) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path f : stream) {
+                BasicFileAttributes attrs = Files.readAttributes(f, BasicFileAttributes.class);
+                if (attrs.isDirectory()) {
+                    scanDir(f, files);
+                } else if (f.getFileName().toString().endsWith(".png")) {
+                    files.add(new AbstractMap.SimpleImmutableEntry<>(f, attrs));
+                }
+            }
+        }
+    }
+
+    private boolean isExpired(long lastModified) {
+        return System.currentTimeMillis() - lastModified > diskTtl;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed deleting cached WMS tile " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Path getFile(String query, WmsTileKey key) {
+        if (cacheDir == null) {
+            return null;
+        }
+        return cacheDir.resolve(queryId(query)).resolve(key.getPath() + ".png");
+    }
+
+    private static String queryId(String query) {
+        return UUID.nameUUIDFromBytes(query.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static String memoryKey(String query, WmsTileKey key) {
+        return query + "\n" + key.getPath();
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+}
@@ -0,0 +1,140 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.layers.wms;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Decode stage of the WMS tiles.
+ * <p>
+ * Tiles are decoded straight from the connection stream, buffering in memory rather than in the temporary files ImageIO
+ * uses by default, and converted once into an image compatible with the display. The white background is masked out
+ * directly on the {@linkplain DataBufferInt} of the converted image, rather than pixel row by pixel row through
+ * {@code getRGB}/{@code setRGB}.
+ * <p>
+ * Decoding is done by the thread that loaded the tile, right after the tile has been read.
+ */
+@ThreadSafe
+public final class WmsTileDecoder {
+
+    private WmsTileDecoder() {
+    }
+
+    /**
+     * Decodes the image read from the stream and returns a display compatible copy where the white pixels are transparent.
+     * The stream is not closed.
+     * 
+     * @param in
+     *            the stream to decode
+     * @return the masked image, or null if the stream could not be decoded as an image
+     * @throws IOException
+     */
+    public static BufferedImage decode(InputStream in) throws IOException {
+        ImageInputStream iin = new MemoryCacheImageInputStream(in);
+        // ImageIO closes the image stream, but not the underlying stream, unless nothing could be decoded
+        BufferedImage image = ImageIO.read(iin);
+        if (image == null) {
+            iin.close();
+            return null;
+        }
+        return toTransparentImage(image);
+    }
+
+    /**
+     * Returns a display compatible copy of the image where the white pixels are transparent
+     * 
+     * @param image
+     *            the image to mask
+     * @return the masked image
+     */
+    public static BufferedImage toTransparentImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage dest = createCompatibleImage(width, height);
+        Graphics2D g2 = dest.createGraphics();
+        g2.drawImage(image, 0, 0, null);
+        g2.dispose();
+        image.flush();
+
+        maskWhite(dest);
+        return dest;
+    }
+
+    /**
+     * Makes the white pixels of the image transparent in place. The image must be backed by a {@linkplain DataBufferInt} in
+     * one of the ARGB layouts returned by {@linkplain #createCompatibleImage(int, int)}.
+     * 
+     * @param image
+     *            the image to mask
+     */
+    static void maskWhite(BufferedImage image) {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        if (image.isAlphaPremultiplied()) {
+            // White at any alpha has all four components equal
+            for (int i = 0; i < pixels.length; i++) {
+                int p = pixels[i];
+                int a = p >>> 24;
+                if (p == (a << 24 | a << 16 | a << 8 | a)) {
+                    pixels[i] = 0;
+                }
+            }
+        } else {
+            for (int i = 0; i < pixels.length; i++) {
+                if ((pixels[i] & 0x00FFFFFF) == 0x00FFFFFF) {
+                    pixels[i] = 0x00FFFFFF;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a translucent image in the pixel layout of the default screen, falling back to {@code TYPE_INT_ARGB} when the
+     * screen layout is not an integer ARGB layout or there is no screen
+     */
+    static BufferedImage createCompatibleImage(int width, int height) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+            BufferedImage image = gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+            if (isIntArgb(image)) {
+                return image;
+            }
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static boolean isIntArgb(BufferedImage image) {
+        if (!(image.getRaster().getDataBuffer() instanceof DataBufferInt) || !(image.getColorModel() instanceof DirectColorModel)) {
+            return false;
+        }
+        DirectColorModel cm = (DirectColorModel) image.getColorModel();
+        return cm.getAlphaMask() == 0xFF000000 && cm.getRedMask() == 0x00FF0000 && cm.getGreenMask() == 0x0000FF00
+                && cm.getBlueMask() == 0x000000FF;
+    }
+}
@@ -0,0 +1,211 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.layers.wms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Identifies a WMS tile in a fixed z/x/y grid of geographic (lon/lat) tiles.
+ * <p>
+ * At zoom level {@code z} the tiles are {@code 360 / 2^z} degrees wide and high. Columns are counted eastwards from
+ * longitude -180 and rows southwards from latitude 90. Since the grid does not depend on the viewport, the same tiles are
+ * requested whenever the map is panned or zoomed over the same area.
+ */
+@Immutable
+public final class WmsTileKey {
+
+    /** The highest supported zoom level */
+    public static final int MAX_ZOOM = 22;
+
+    /** The latitude limit of the Mercator projection used for rendering the tiles */
+    public static final double MAX_LAT = 85.0511;
+
+    private final int z;
+    private final int x;
+    private final int y;
+
+    /**
+     * Constructor
+     * 
+     * @param z
+     *            the zoom level
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     */
+    public WmsTileKey(int z, int x, int y) {
+        this.z = z;
+        this.x = x;
+        this.y = y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the width and height in degrees of the tiles at the given zoom level
+     * 
+     * @param z
+     *            the zoom level
+     * @return the tile span in degrees
+     */
+    public static double getSpan(int z) {
+        return 360.0 / (1 << z);
+    }
+
+    public double getMinLon() {
+        return -180.0 + x * getSpan(z);
+    }
+
+    public double getMaxLon() {
+        return getMinLon() + getSpan(z);
+    }
+
+    public double getMaxLat() {
+        return Math.min(MAX_LAT, 90.0 - y * getSpan(z));
+    }
+
+    public double getMinLat() {
+        return Math.max(-MAX_LAT, 90.0 - (y + 1) * getSpan(z));
+    }
+
+    /**
+     * Returns the pixel height of a tile with the given pixel width, such that the tile has the proportions of its area in the
+     * Mercator projection
+     * 
+     * @param tileWidth
+     *            the pixel width of the tile
+     * @return the pixel height of the tile
+     */
+    public int getPixelHeight(int tileWidth) {
+        double mercHeight = mercatorY(getMaxLat()) - mercatorY(getMinLat());
+        double mercWidth = Math.toRadians(getSpan(z));
+        long height = Math.round(tileWidth * mercHeight / mercWidth);
+        return (int) Math.max(1, Math.min(4L * tileWidth, height));
+    }
+
+    private static double mercatorY(double lat) {
+        return Math.log(Math.tan(Math.PI / 4 + Math.toRadians(lat) / 2));
+    }
+
+    /**
+     * Returns the tile at the next lower zoom level containing this tile
+     * 
+     * @return the parent tile, or null if this is a top level tile
+     */
+    public WmsTileKey getParent() {
+        return (z <= 1) ? null : new WmsTileKey(z - 1, x / 2, y / 2);
+    }
+
+    /**
+     * Returns the zoom level at which tiles of the given pixel width are displayed at, or just above, their native
+     * resolution
+     * 
+     * @param degreesPerPixel
+     *            the longitude degrees per screen pixel of the map
+     * @param tileWidth
+     *            the pixel width of the tiles
+     * @return the zoom level
+     */
+    public static int getZoomLevel(double degreesPerPixel, int tileWidth) {
+        if (degreesPerPixel <= 0) {
+            return MAX_ZOOM;
+        }
+        int z = (int) Math.ceil(Math.log(360.0 / (tileWidth * degreesPerPixel)) / Math.log(2));
+        return Math.max(1, Math.min(MAX_ZOOM, z));
+    }
+
+    /**
+     * Returns the tiles at zoom level {@code z} covering the given bounding box. If {@code minLon > maxLon} the box is assumed
+     * to cross the date line.
+     * 
+     * @param z
+     *            the zoom level
+     * @param minLat
+     *            southern boundary
+     * @param minLon
+     *            western boundary
+     * @param maxLat
+     *            northern boundary
+     * @param maxLon
+     *            eastern boundary
+     * @return the covering tiles
+     */
+    public static List<WmsTileKey> cover(int z, double minLat, double minLon, double maxLat, double maxLon) {
+        double span = getSpan(z);
+        int cols = 1 << z;
+        int rows = 1 << (z - 1);
+        if (maxLon < minLon) {
+            maxLon += 360.0;
+        }
+        int x0 = (int) Math.floor((minLon + 180.0) / span);
+        int x1 = (int) Math.floor((maxLon + 180.0) / span);
+        int y0 = Math.max(0, (int) Math.floor((90.0 - Math.min(maxLat, MAX_LAT)) / span));
+        int y1 = Math.min(rows - 1, (int) Math.floor((90.0 - Math.max(minLat, -MAX_LAT)) / span));
+        x1 = Math.min(x1, x0 + cols - 1);
+
+        List<WmsTileKey> tiles = new ArrayList<>();
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                tiles.add(new WmsTileKey(z, ((x % cols) + cols) % cols, y));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Returns the relative path of the tile, i.e. "z/x/y"
+     * 
+     * @return the relative path of the tile
+     */
+    public String getPath() {
+        return z + "/" + x + "/" + y;
+    }
+
+    @Override
+    public int hashCode() {
+        return (z * 31 + x) * 1000003 + y;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof WmsTileKey)) {
+            return false;
+        }
+        WmsTileKey other = (WmsTileKey) obj;
+        return z == other.z && x == other.x && y == other.y;
+    }
+
+    @Override
+    public String toString() {
+        return getPath();
+    }
+}
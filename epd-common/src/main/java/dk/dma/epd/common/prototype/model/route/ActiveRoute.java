@@ -30,6 +30,7 @@ import org.joda.time.DateTime;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -164,8 +165,10 @@ public class ActiveRoute extends Route {
 
         double smallestDist = 99999999.0;
         int index = 0;
-        for (int i = 0; i <= route.getWaypoints().size() - 1; i++) {
-            Position wpPos = route.getWaypoints().get(i).getPos();
+        int i = -1;
+        for (RouteWaypoint wp : route.getWaypoints()) {
+            i++;
+            Position wpPos = wp.getPos();
             double distance = pntData.getPosition().rhumbLineDistanceTo(wpPos);
             double angle = Math.abs(pntData.getCog()
                     - pntData.getPosition().rhumbLineBearingTo(wpPos));
@@ -358,15 +361,19 @@ public class ActiveRoute extends Route {
         totalTtg = ttg;
         totalDtg = activeWpRng;
 
-        for (int i = this.activeWaypointIndex; i < this.waypoints.size() - 1; i++) {
+        // Leg ranges are read from the cached geometry. The planned speeds are read from the legs, since they may be edited
+        RouteGeometry geometry = getGeometry();
+        double altSpeed = Math.max(this.speed, 0.1);
+        Iterator<RouteWaypoint> it = this.waypoints.listIterator(this.activeWaypointIndex);
+        for (int i = this.activeWaypointIndex; i < geometry.getLegCount() && it.hasNext(); i++) {
+            RouteLeg leg = it.next().getOutLeg();
             // Dynamic speed
             if (this.etaCalculationType == EtaCalculationType.DYNAMIC_SPEED
                     || ((this.etaCalculationType == EtaCalculationType.HYBRID) && i == this.activeWaypointIndex)) {
-                this.ttgs[i] = this.waypoints.get(i).getOutLeg()
-                        .calcTtg(this.speed);
+                this.ttgs[i] = geometry.getLegTtg(i, altSpeed);
             } else {
                 // Planned speed
-                this.ttgs[i] = this.waypoints.get(i).getOutLeg().calcTtg();
+                this.ttgs[i] = geometry.getLegTtg(i, leg.getSpeed());
             }
             totalDtg += dtgs[i];
             totalTtg += ttgs[i];
@@ -443,6 +450,7 @@ public class ActiveRoute extends Route {
     public synchronized void changeActiveWaypoint(int index) {
         // Save actual ETA
         etas.set(activeWaypointIndex, PntTime.getDate());
+        etasChanged();
         // Change active waypoint
         activeWaypointIndex = index;
         // Set current leg
@@ -508,6 +516,7 @@ public class ActiveRoute extends Route {
             etaTime += ttgs[i];
             etas.set(i + 1, new Date(etaTime));
         }
+        etasChanged();
         return true;
     }
 
@@ -564,10 +573,11 @@ public class ActiveRoute extends Route {
 
         int startingWP = this.getActiveWaypointIndex();
 
-        for (int i = startingWP; i < getWaypoints().size(); i++) {
+        Iterator<RouteWaypoint> it = getWaypoints().listIterator(startingWP);
+        for (int i = startingWP; it.hasNext(); i++) {
 
             dk.dma.enav.model.voyage.Waypoint voyageWaypoint = new dk.dma.enav.model.voyage.Waypoint();
-            RouteWaypoint currentWaypoint = getWaypoints().get(i);
+            RouteWaypoint currentWaypoint = it.next();
 
             voyageWaypoint.setEta(etas.get(i));
             voyageWaypoint.setLatitude(currentWaypoint.getPos().getLatitude());
@@ -627,29 +637,13 @@ public class ActiveRoute extends Route {
             endDate = new Date(activeWpEta.getTime() + filter.getForward() * 1000L * 60L);
         }
 
-        // Pre-compute the ranges to the active way point measured along the
-        // route
-        double[] distanceToActiveWaypoints = null;
-        if (filter.getType() == FilterType.METERS) {
-            distanceToActiveWaypoints = new double[waypoints.size()];
-            distanceToActiveWaypoints[activeWaypointIndex] = 0.0;
-            for (int i = activeWaypointIndex - 1; i >= 0; i--) {
-                double dist = waypoints.get(i).getPos()
-                        .rhumbLineDistanceTo(waypoints.get(i + 1).getPos());
-                distanceToActiveWaypoints[i] = distanceToActiveWaypoints[i + 1]
-                        + dist;
-            }
-            for (int i = activeWaypointIndex + 1; i < waypoints.size(); i++) {
-                double dist = waypoints.get(i).getPos()
-                        .rhumbLineDistanceTo(waypoints.get(i - 1).getPos());
-                distanceToActiveWaypoints[i] = distanceToActiveWaypoints[i - 1]
-                        + dist;
-            }
-        }
-
-        for (int i = 0; i < getWaypoints().size(); i++) {
+        // The ranges to the active way point measured along the route are
+        // read from the cached geometry
+        RouteGeometry geometry = getGeometry();
 
-            RouteWaypoint currentWaypoint = getWaypoints().get(i);
+        int i = -1;
+        for (RouteWaypoint currentWaypoint : getWaypoints()) {
+            i++;
 
             // Check if the way point should be included
             if (filter.getType() == FilterType.MINUTES) {
@@ -662,9 +656,11 @@ public class ActiveRoute extends Route {
                 }
 
             } else if (filter.getType() == FilterType.METERS) {
-                if ((i < activeWaypointIndex - 1 && distanceToActiveWaypoints[i] > filter
+                double distanceToActiveWaypoint = Converter.nmToMeters(geometry
+                        .getRangeBetween(i, activeWaypointIndex));
+                if ((i < activeWaypointIndex - 1 && distanceToActiveWaypoint > filter
                         .getBackward())
-                        || (i > activeWaypointIndex + 1 && distanceToActiveWaypoints[i] > filter
+                        || (i > activeWaypointIndex + 1 && distanceToActiveWaypoint > filter
                                 .getForward())) {
                     continue;
                 }
@@ -43,6 +43,7 @@ public class IntendedRoute extends Route {
     protected boolean visible;
     protected long mmsi;
     protected int activeWpIndex;
+    protected Integer keyframe;
 
     protected List<Double> ranges = new ArrayList<>();
     protected List<Date> plannedEtas;
@@ -67,6 +68,50 @@ public class IntendedRoute extends Route {
             plannedEtas.add(new Date(timestamp.getTime()));
         }
         setPlannedEtas(plannedEtas);
+        keyframe = intendedRouteMessage.getKeyframe();
+    }
+
+    /**
+     * Applies a delta received over the cloud to the intended route in place.
+     * <p>
+     * The delta must refer to the keyframe this intended route was created from, see {@linkplain #isDeltaFor}.
+     * 
+     * @param delta
+     *            the delta received over the cloud
+     * @return whether the active way point or the ETA's were changed
+     */
+    public synchronized boolean applyDelta(dma.route.IntendedRouteDeltaBroadcast delta) {
+        received = PntTime.getDate();
+
+        boolean changed = false;
+        if (delta.getActiveWaypointIndex() != null && delta.getActiveWaypointIndex() != activeWpIndex) {
+            setActiveWpIndex(delta.getActiveWaypointIndex());
+            changed = true;
+        }
+
+        List<Date> newEtas = new ArrayList<>(delta.getEtas().size());
+        for (Timestamp timestamp : delta.getEtas()) {
+            newEtas.add(new Date(timestamp.getTime()));
+        }
+        if (!newEtas.equals(etas)) {
+            // Replace rather than update the list, since timelines may be computed from the old list
+            etas = newEtas;
+            etasChanged();
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Returns whether the given delta can be applied to this intended route
+     * 
+     * @param delta
+     *            the delta received over the cloud
+     * @return whether the given delta can be applied to this intended route
+     */
+    public synchronized boolean isDeltaFor(dma.route.IntendedRouteDeltaBroadcast delta) {
+        return keyframe != null && keyframe.equals(delta.getKeyframe()) && delta.getEtas().size() == waypoints.size()
+                && (delta.getActiveWaypointIndex() == null || delta.getActiveWaypointIndex() < waypoints.size());
     }
 
     /**
@@ -80,6 +125,7 @@ public class IntendedRoute extends Route {
 
         LinkedList<RouteWaypoint> routeWaypoints = this.getWaypoints();
 
+        RouteWaypoint prevWaypoint = null;
         for (int i = 0; i < cloudRouteWaypoints.size(); i++) {
 
             RouteWaypoint waypoint = new RouteWaypoint();
@@ -91,8 +137,7 @@ public class IntendedRoute extends Route {
             waypoint.setPos(position);
 
             // Handle leg
-            if (i > 0) {
-                RouteWaypoint prevWaypoint = routeWaypoints.get(i - 1);
+            if (prevWaypoint != null) {
                 RouteLeg leg = new RouteLeg();
                 waypoint.setInLeg(leg);
                 prevWaypoint.setOutLeg(leg);
@@ -101,14 +146,15 @@ public class IntendedRoute extends Route {
             }
 
             routeWaypoints.add(waypoint);
+            prevWaypoint = waypoint;
 
         }
 
         if (routeWaypoints.size() > 1) {
-            for (int i = 0; i < routeWaypoints.size(); i++) {
+            int i = 0;
+            for (RouteWaypoint waypoint : routeWaypoints) {
 
-                RouteWaypoint waypoint = routeWaypoints.get(i);
-                Waypoint cloudWaypoint = cloudRouteWaypoints.get(i);
+                Waypoint cloudWaypoint = cloudRouteWaypoints.get(i++);
 
                 if (cloudWaypoint.getTurnRad() != null) {
                     waypoint.setTurnRad(cloudWaypoint.getTurnRad());
@@ -167,11 +213,13 @@ public class IntendedRoute extends Route {
         // Find ranges on each leg
         routeRange = 0.0;
         ranges.add(routeRange);
-        for (int i = 0; i < waypoints.size() - 1; i++) {
-            double dist = waypoints.get(i).getPos()
-                    .rhumbLineDistanceTo(waypoints.get(i + 1).getPos()) / 1852.0;
-            routeRange += dist;
-            ranges.add(routeRange);
+        Position prevPos = null;
+        for (RouteWaypoint waypoint : waypoints) {
+            if (prevPos != null) {
+                routeRange += prevPos.rhumbLineDistanceTo(waypoint.getPos()) / 1852.0;
+                ranges.add(routeRange);
+            }
+            prevPos = waypoint.getPos();
         }
 
     }
@@ -297,6 +345,15 @@ public class IntendedRoute extends Route {
         this.activeWpIndex = activeWpIndex;
     }
 
+    /**
+     * Returns the keyframe of the broadcast this intended route was created from, or null if undefined
+     * 
+     * @return the keyframe of the broadcast
+     */
+    public Integer getKeyframe() {
+        return keyframe;
+    }
+
     public RouteWaypoint getActiveWaypoint() {
         return getWaypoints().get(activeWpIndex);
     }
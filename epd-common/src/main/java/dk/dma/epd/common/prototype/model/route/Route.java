@@ -109,6 +109,18 @@ public class Route implements Serializable {
 
     protected EtaCalculationType etaCalculationType = EtaCalculationType.DYNAMIC_SPEED;
 
+    /**
+     * Cached snapshot of the route geometry, see {@linkplain #getGeometry()}
+     */
+    private transient RouteGeometry geometry;
+    private transient boolean geometryEtasChanged;
+    private transient long geometryVersion;
+    private transient long geometryModCount;
+    /**
+     * Number of edits of the way points and legs of this route, see {@linkplain #edited()}
+     */
+    private transient volatile long modCount;
+
     public Route() {
 
     }
@@ -150,8 +162,8 @@ public class Route implements Serializable {
     }
 
     public void setSpeed(double SOG) {
-        for (int i = 0; i < waypoints.size(); i++) {
-            waypoints.get(i).setSpeed(SOG);
+        for (RouteWaypoint waypoint : waypoints) {
+            waypoint.setSpeed(SOG);
         }
         this.calcAllWpEta();
     }
@@ -163,8 +175,9 @@ public class Route implements Serializable {
 
         Route newRoute = new Route();
 
-        LinkedList<RouteWaypoint> waypoints = new LinkedList<>();
-        for (RouteWaypoint routeWaypoint : this.waypoints) {
+        List<RouteWaypoint> origWaypoints = new ArrayList<>(this.waypoints);
+        List<RouteWaypoint> waypoints = new ArrayList<>(origWaypoints.size());
+        for (RouteWaypoint routeWaypoint : origWaypoints) {
             RouteWaypoint newRouteWaypoint = routeWaypoint.copy();
             waypoints.add(newRouteWaypoint);
         }
@@ -187,10 +200,10 @@ public class Route implements Serializable {
 
             RouteLeg routeLeg;
 
-            if (this.waypoints.get(i).getOutLeg() != null) {
-                routeLeg = this.waypoints.get(i).getOutLeg();
+            if (origWaypoints.get(i).getOutLeg() != null) {
+                routeLeg = origWaypoints.get(i).getOutLeg();
             } else {
-                routeLeg = this.waypoints.get(i).getInLeg();
+                routeLeg = origWaypoints.get(i).getInLeg();
             }
 
             RouteLeg newRouteLeg = new RouteLeg();
@@ -211,7 +224,7 @@ public class Route implements Serializable {
             }
         }
 
-        newRoute.setWaypoints(waypoints);
+        newRoute.setWaypoints(new LinkedList<>(waypoints));
         // Immutable objects are safe to copy this way?
         newRoute.name = this.name;
         newRoute.departure = this.departure;
@@ -342,11 +355,11 @@ public class Route implements Serializable {
     }
 
     public double getWpRngSum(int index) {
-        double sum = 0;
-        for (int i = 0; i < index && i < dtgs.length; i++) {
-            sum += dtgs[i];
+        RouteGeometry geometry = getGeometry();
+        if (index <= 0 || geometry.getWaypointCount() == 0) {
+            return 0.0;
         }
-        return sum;
+        return geometry.getCumulativeRange(Math.min(index, geometry.getWaypointCount() - 1));
     }
 
     public Double getWpBrg(RouteWaypoint routeWaypoint) {
@@ -382,6 +395,65 @@ public class Route implements Serializable {
 
     public void setWaypoints(LinkedList<RouteWaypoint> waypoints) {
         this.waypoints = waypoints;
+        invalidateGeometry();
+    }
+
+    /**
+     * Returns an immutable snapshot of the route geometry and ETA's.
+     * <p>
+     * The snapshot is cached until the route is edited, i.e. until a way point or leg is edited through its setters,
+     * {@linkplain #calcValues(boolean)} is forced or {@linkplain #invalidateGeometry()} is called. When only the ETA's have
+     * changed, a new snapshot sharing the geometry is returned.
+     * 
+     * @return the route geometry
+     */
+    public synchronized RouteGeometry getGeometry() {
+        RouteGeometry geometry = this.geometry;
+        if (geometry == null || geometry.getWaypointCount() != waypoints.size() || modCount != geometryModCount) {
+            geometry = createGeometry(etas);
+        } else if (geometryEtasChanged) {
+            geometry = geometry.withEtas(etas);
+        }
+        this.geometry = geometry;
+        geometryEtasChanged = false;
+        return geometry;
+    }
+
+    /**
+     * Discards the cached route geometry. Must be called when way points are added, removed or replaced without re-calculating
+     * the route
+     */
+    public synchronized void invalidateGeometry() {
+        geometry = null;
+    }
+
+    /**
+     * Creates a new geometry snapshot and adds this route as an owner of its way points and legs, so that their setters
+     * invalidate the snapshot
+     */
+    private RouteGeometry createGeometry(List<Date> etas) {
+        geometryModCount = modCount;
+        for (RouteWaypoint wp : waypoints) {
+            wp.addRoute(this);
+            if (wp.getOutLeg() != null) {
+                wp.getOutLeg().addRoute(this);
+            }
+        }
+        return RouteGeometry.create(waypoints, etas, ++geometryVersion);
+    }
+
+    /**
+     * Called by the {@linkplain RouteWaypoint} and {@linkplain RouteLeg} setters that change the geometry of the route
+     */
+    synchronized void edited() {
+        modCount++;
+    }
+
+    /**
+     * Flags that the ETA's have been re-calculated, so that the next geometry snapshot picks up the new ETA's
+     */
+    protected synchronized void etasChanged() {
+        geometryEtasChanged = true;
     }
 
     public String getName() {
@@ -537,18 +609,26 @@ public class Route implements Serializable {
 
         if (waypoints.size() > 0) {
 
+            // The route may have been edited, so re-compute the geometry
+            RouteGeometry geometry;
+            synchronized (this) {
+                geometry = createGeometry(null);
+                this.geometry = geometry;
+            }
+
             // Create array TTG's and DTG's array
-            ttgs = new long[waypoints.size() - 1];
-            dtgs = new double[waypoints.size() - 1];
+            ttgs = new long[geometry.getLegCount()];
+            dtgs = new double[geometry.getLegCount()];
             // Iterate through legs
-            for (int i = 0; i < waypoints.size() - 1; i++) {
-                ttgs[i] = waypoints.get(i).getOutLeg().calcTtg();
+            for (int i = 0; i < geometry.getLegCount(); i++) {
+                ttgs[i] = geometry.getLegTtg(i, geometry.getLegSpeed(i));
                 totalTtg += ttgs[i];
-                dtgs[i] = waypoints.get(i).getOutLeg().calcRng();
+                dtgs[i] = geometry.getLegRange(i);
                 totalDtg += dtgs[i];
             }
             // Calculate ETA for each waypoint
             calcAllWpEta();
+            etasChanged();
 
         }
     }
@@ -569,6 +649,7 @@ public class Route implements Serializable {
             eta += ttgs[i];
             etas.add(new Date(eta));
         }
+        etasChanged();
     }
 
     public void adjustEta(int wpIndex, EtaAdjust etaAdjust) {
@@ -626,14 +707,9 @@ public class Route implements Serializable {
             }
 
             // Distance to and from wp
-            double distBefore = 0;
-            double distAfter = 0;
-            for (int i = 0; i < wpIndex; i++) {
-                distBefore += dtgs[i];
-            }
-            for (int i = wpIndex; i < dtgs.length; i++) {
-                distAfter += dtgs[i];
-            }
+            RouteGeometry geometry = getGeometry();
+            double distBefore = geometry.getCumulativeRange(wpIndex);
+            double distAfter = geometry.getTotalRange() - distBefore;
 
             // Time before and after
             double timeBefore = Converter.millisToHours(newEta.getTime() - this.starttime.getTime());
@@ -643,13 +719,18 @@ public class Route implements Serializable {
             double speedAfter = distAfter / timeAfter;
 
             // Set leg speeds
-            for (int i = 0; i < waypoints.size() - 1; i++) {
-                RouteLeg leg = waypoints.get(i).getOutLeg();
+            int i = 0;
+            for (RouteWaypoint waypoint : waypoints) {
+                RouteLeg leg = waypoint.getOutLeg();
+                if (leg == null || i == waypoints.size() - 1) {
+                    break;
+                }
                 if (i < wpIndex) {
                     leg.setSpeed(speedBefore);
                 } else {
                     leg.setSpeed(speedAfter);
                 }
+                i++;
             }
 
             // If first waypoint we have to change starttime
@@ -747,9 +828,10 @@ public class Route implements Serializable {
 
     private void renameWayPoints() {
 
-        for (int i = 0; i < waypoints.size(); i++) {
+        int i = 0;
+        for (RouteWaypoint waypoint : waypoints) {
 
-            String name = waypoints.get(i).getName();
+            String name = waypoint.getName();
 
             int count = i + 1;
 
@@ -766,9 +848,9 @@ public class Route implements Serializable {
                     wpcountTxt = "" + count;
                 }
 
-                waypoints.get(i).setName("WP_" + wpcountTxt);
+                waypoint.setName("WP_" + wpcountTxt);
             }
-
+            i++;
         }
 
     }
@@ -940,6 +1022,7 @@ public class Route implements Serializable {
 
     public void setEtas(List<Date> etas) {
         this.etas = etas;
+        etasChanged();
     }
 
     /**
@@ -949,13 +1032,14 @@ public class Route implements Serializable {
     public dma.route.Route toMaritimeCloudRoute() {
         dma.route.Route r = new dma.route.Route();
         r.setRoutename(getName());
-        for (int i = 0; i < getWaypoints().size(); i++) {
-            RouteWaypoint wp = getWaypoints().get(i);
+        List<Date> etas = getEtas();
+        int i = 0;
+        for (RouteWaypoint wp : getWaypoints()) {
             dma.route.Waypoint iwp = new dma.route.Waypoint();
             net.maritimecloud.util.geometry.Position pos
                     = net.maritimecloud.util.geometry.Position.create(wp.getPos().getLatitude(), wp.getPos().getLongitude());
             iwp.setWaypointPosition(pos);
-            iwp.setEta(Timestamp.create(getEtas().get(i).getTime()));
+            iwp.setEta(Timestamp.create(etas.get(i++).getTime()));
             iwp.setRot(wp.getRot());
             iwp.setTurnRad(wp.getTurnRad());
             if (wp.getOutLeg() != null) {
@@ -1026,13 +1110,13 @@ public class Route implements Serializable {
 
         voyageRoute.setName(this.name);
 
-        for (int i = 0; i < getWaypoints().size(); i++) {
+        int i = 0;
+        for (RouteWaypoint currentWaypoint : getWaypoints()) {
 
             dk.dma.enav.model.voyage.Waypoint voyageWaypoint = new dk.dma.enav.model.voyage.Waypoint();
-            RouteWaypoint currentWaypoint = getWaypoints().get(i);
 
             voyageWaypoint.setName(currentWaypoint.getName());
-            voyageWaypoint.setEta(etas.get(i));
+            voyageWaypoint.setEta(etas.get(i++));
             voyageWaypoint.setLatitude(currentWaypoint.getPos().getLatitude());
             voyageWaypoint.setLongitude(currentWaypoint.getPos().getLongitude());
             voyageWaypoint.setRot(currentWaypoint.getRot());
@@ -1059,6 +1143,7 @@ public class Route implements Serializable {
         List<Waypoint> cloudRouteWaypoints = cloudRouteData.getWaypoints();
         LinkedList<RouteWaypoint> routeWaypoints = this.getWaypoints();
 
+        RouteWaypoint prevWaypoint = null;
         for (int i = 0; i < cloudRouteWaypoints.size(); i++) {
 
             RouteWaypoint waypoint = new RouteWaypoint();
@@ -1067,8 +1152,7 @@ public class Route implements Serializable {
             waypoint.setName(cloudWaypoint.getName());
 
             // Handle leg
-            if (i > 0) {
-                RouteWaypoint prevWaypoint = routeWaypoints.get(i - 1);
+            if (prevWaypoint != null) {
                 RouteLeg leg = new RouteLeg();
                 waypoint.setInLeg(leg);
                 prevWaypoint.setOutLeg(leg);
@@ -1080,14 +1164,15 @@ public class Route implements Serializable {
             waypoint.setPos(position);
 
             routeWaypoints.add(waypoint);
+            prevWaypoint = waypoint;
 
         }
 
         if (routeWaypoints.size() > 1) {
-            for (int i = 0; i < routeWaypoints.size(); i++) {
+            int i = 0;
+            for (RouteWaypoint waypoint : routeWaypoints) {
 
-                RouteWaypoint waypoint = routeWaypoints.get(i);
-                Waypoint cloudWaypoint = cloudRouteWaypoints.get(i);
+                Waypoint cloudWaypoint = cloudRouteWaypoints.get(i++);
 
                 // Leg
                 if (cloudWaypoint.getRouteLeg() != null && waypoint.getOutLeg() != null) {
@@ -0,0 +1,290 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.route;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.Heading;
+import dk.dma.epd.common.util.Calculator;
+
+/**
+ * Immutable snapshot of the geometry of a {@linkplain Route}.
+ * <p>
+ * Holds the way point positions, the range, bearing and planned speed of each leg, the cumulative distance along the route and
+ * the way point ETA's in primitive arrays, so that route calculations and rendering can index the route in constant time rather
+ * than walking the linked list of way points and re-computing the leg ranges.
+ * <p>
+ * The snapshot is obtained with {@linkplain Route#getGeometry()}. The version is incremented whenever the route is edited, and
+ * the ETA's are refreshed in a new snapshot sharing the geometry arrays when they are re-calculated. Editing a way point
+ * position, a leg speed or heading etc. through their setters bumps the modification count of the owning route, which
+ * invalidates the snapshot of that route only.
+ */
+@Immutable
+public final class RouteGeometry {
+
+    /** Marks an undefined ETA */
+    public static final long NO_ETA = Long.MIN_VALUE;
+
+    private final long version;
+    private final double[] lat;
+    private final double[] lon;
+    private final boolean[] greatCircle;
+    private final double[] legRange;
+    private final double[] legBearing;
+    private final double[] legSpeed;
+    private final double[] cumulativeRange;
+    private final long[] etas;
+
+    private RouteGeometry(long version, double[] lat, double[] lon, boolean[] greatCircle, double[] legRange,
+            double[] legBearing, double[] legSpeed, double[] cumulativeRange, long[] etas) {
+        this.version = version;
+        this.lat = lat;
+        this.lon = lon;
+        this.greatCircle = greatCircle;
+        this.legRange = legRange;
+        this.legBearing = legBearing;
+        this.legSpeed = legSpeed;
+        this.cumulativeRange = cumulativeRange;
+        this.etas = etas;
+    }
+
+    /**
+     * Creates a snapshot of the geometry of the given way points in a single pass
+     *
+     * @param waypoints
+     *            the way points of the route
+     * @param etas
+     *            the way point ETA's. May be null
+     * @param version
+     *            the version of the route
+     * @return the snapshot
+     */
+    static RouteGeometry create(List<RouteWaypoint> waypoints, List<Date> etas, long version) {
+        int n = waypoints.size();
+        int legs = Math.max(0, n - 1);
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        boolean[] greatCircle = new boolean[legs];
+        double[] legRange = new double[legs];
+        double[] legBearing = new double[legs];
+        double[] legSpeed = new double[legs];
+        double[] cumulativeRange = new double[n];
+
+        int i = 0;
+        Position prevPos = null;
+        RouteLeg prevLeg = null;
+        for (RouteWaypoint wp : waypoints) {
+            Position pos = wp.getPos();
+            lat[i] = pos.getLatitude();
+            lon[i] = pos.getLongitude();
+            if (i > 0) {
+                Heading heading = (prevLeg != null) ? prevLeg.getHeading() : Heading.RL;
+                greatCircle[i - 1] = heading != Heading.RL;
+                legRange[i - 1] = Calculator.range(prevPos, pos, heading);
+                legBearing[i - 1] = Calculator.bearing(prevPos, pos, heading);
+                legSpeed[i - 1] = (prevLeg != null) ? prevLeg.getSpeed() : 0.0;
+                cumulativeRange[i] = cumulativeRange[i - 1] + legRange[i - 1];
+            }
+            prevPos = pos;
+            prevLeg = wp.getOutLeg();
+            i++;
+        }
+        return new RouteGeometry(version, lat, lon, greatCircle, legRange, legBearing, legSpeed, cumulativeRange, toMillis(etas, n));
+    }
+
+    /**
+     * Returns a snapshot with the same geometry and the given ETA's
+     *
+     * @param etas
+     *            the way point ETA's. May be null
+     * @return the snapshot with the given ETA's
+     */
+    RouteGeometry withEtas(List<Date> etas) {
+        return new RouteGeometry(version, lat, lon, greatCircle, legRange, legBearing, legSpeed, cumulativeRange, toMillis(etas,
+                lat.length));
+    }
+
+    private static long[] toMillis(List<Date> etas, int n) {
+        long[] result = new long[n];
+        Arrays.fill(result, NO_ETA);
+        if (etas != null) {
+            int i = 0;
+            for (Date eta : etas) {
+                if (i >= n) {
+                    break;
+                }
+                if (eta != null) {
+                    result[i] = eta.getTime();
+                }
+                i++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the version of the route this snapshot was created from
+     *
+     * @return the version of the route
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of way points
+     *
+     * @return the number of way points
+     */
+    public int getWaypointCount() {
+        return lat.length;
+    }
+
+    /**
+     * Returns the number of legs
+     *
+     * @return the number of legs
+     */
+    public int getLegCount() {
+        return legRange.length;
+    }
+
+    public double getLatitude(int index) {
+        return lat[index];
+    }
+
+    public double getLongitude(int index) {
+        return lon[index];
+    }
+
+    /**
+     * Returns the position of the given way point
+     *
+     * @param index
+     *            the index of the way point
+     * @return the position of the way point
+     */
+    public Position getPosition(int index) {
+        return Position.create(lat[index], lon[index]);
+    }
+
+    /**
+     * Returns whether the leg starting at the given way point is sailed along a great circle
+     *
+     * @param leg
+     *            the index of the leg
+     * @return whether the leg is a great circle leg
+     */
+    public boolean isGreatCircle(int leg) {
+        return greatCircle[leg];
+    }
+
+    /**
+     * Returns the range of the leg starting at the given way point in nautical miles
+     *
+     * @param leg
+     *            the index of the leg
+     * @return the range of the leg
+     */
+    public double getLegRange(int leg) {
+        return legRange[leg];
+    }
+
+    /**
+     * Returns the bearing of the leg starting at the given way point
+     *
+     * @param leg
+     *            the index of the leg
+     * @return the bearing of the leg
+     */
+    public double getLegBearing(int leg) {
+        return legBearing[leg];
+    }
+
+    /**
+     * Returns the planned speed of the leg starting at the given way point in knots
+     *
+     * @param leg
+     *            the index of the leg
+     * @return the planned speed of the leg
+     */
+    public double getLegSpeed(int leg) {
+        return legSpeed[leg];
+    }
+
+    /**
+     * Returns the distance along the route from the first way point to the given way point in nautical miles
+     *
+     * @param index
+     *            the index of the way point
+     * @return the distance from the first way point
+     */
+    public double getCumulativeRange(int index) {
+        return cumulativeRange[index];
+    }
+
+    /**
+     * Returns the distance along the route between the two way points in nautical miles
+     *
+     * @param from
+     *            the index of the first way point
+     * @param to
+     *            the index of the second way point
+     * @return the distance between the way points
+     */
+    public double getRangeBetween(int from, int to) {
+        return Math.abs(cumulativeRange[to] - cumulativeRange[from]);
+    }
+
+    /**
+     * Returns the total range of the route in nautical miles
+     *
+     * @return the total range of the route
+     */
+    public double getTotalRange() {
+        return (cumulativeRange.length == 0) ? 0.0 : cumulativeRange[cumulativeRange.length - 1];
+    }
+
+    /**
+     * Returns the ETA of the given way point in epoch millis, or {@linkplain #NO_ETA} if undefined
+     *
+     * @param index
+     *            the index of the way point
+     * @return the ETA of the way point
+     */
+    public long getEta(int index) {
+        return etas[index];
+    }
+
+    /**
+     * Returns the time to go of the leg in milliseconds at the given speed, or -1 if the speed is below 0.1 knots
+     *
+     * @param leg
+     *            the index of the leg
+     * @param speed
+     *            the speed in knots
+     * @return the time to go of the leg
+     */
+    public long getLegTtg(int leg, double speed) {
+        if (speed < 0.1) {
+            return -1L;
+        }
+        return Math.round(legRange[leg] * 3600.0 / speed * 1000.0);
+    }
+}
@@ -62,6 +62,11 @@ public class RouteLeg implements Serializable {
 
     protected double SFLen = 1000;
 
+    /**
+     * The routes owning this leg, assigned when a route computes its geometry
+     */
+    private transient RouteOwners owners;
+
     public RouteLeg() {
 
     }
@@ -127,9 +132,35 @@ public class RouteLeg implements Serializable {
      * @param speed
      */
     public void setSpeed(double speed) {
-        this.speed = speed;
+        if (speed != this.speed) {
+            this.speed = speed;
+            edited();
+        }
     }
     
+    /**
+     * Adds a route owning this leg
+     */
+    synchronized void addRoute(Route route) {
+        if (owners == null) {
+            owners = new RouteOwners();
+        }
+        owners.add(route);
+    }
+
+    /**
+     * Bumps the modification count of the owning routes
+     */
+    private void edited() {
+        RouteOwners owners;
+        synchronized (this) {
+            owners = this.owners;
+        }
+        if (owners != null) {
+            owners.edited();
+        }
+    }
+
     public void setSpeedFromTtg(long ttg) {
         double time = (double)ttg / 3600000.0;
         setSpeed(calcRng() / time);
@@ -140,7 +171,10 @@ public class RouteLeg implements Serializable {
     }
 
     public void setHeading(Heading heading) {
-        this.heading = heading;
+        if (heading != this.heading) {
+            this.heading = heading;
+            edited();
+        }
     }
 
     public Double getXtdStarboard() {
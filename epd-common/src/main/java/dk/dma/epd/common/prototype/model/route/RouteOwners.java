@@ -0,0 +1,72 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.route;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * The routes owning a way point or leg.
+ * <p>
+ * A way point is usually owned by a single route, but e.g. an {@linkplain ActiveRoute} shares the way points of the route
+ * it was activated from. The routes are weakly referenced, so way points outliving a route do not keep it alive.
+ */
+@ThreadSafe
+final class RouteOwners {
+
+    private List<WeakReference<Route>> routes = new ArrayList<>(1);
+
+    /**
+     * Adds the given route, unless already added
+     * 
+     * @param route
+     *            the route to add
+     */
+    synchronized void add(Route route) {
+        for (WeakReference<Route> ref : routes) {
+            if (ref.get() == route) {
+                return;
+            }
+        }
+        // Copy on write, dropping the routes that have been collected
+        List<WeakReference<Route>> result = new ArrayList<>(routes.size() + 1);
+        for (WeakReference<Route> ref : routes) {
+            if (ref.get() != null) {
+                result.add(ref);
+            }
+        }
+        result.add(new WeakReference<>(route));
+        routes = result;
+    }
+
+    /**
+     * Bumps the modification count of the owning routes
+     */
+    void edited() {
+        List<WeakReference<Route>> routes;
+        synchronized (this) {
+            routes = this.routes;
+        }
+        for (WeakReference<Route> ref : routes) {
+            Route owner = ref.get();
+            if (owner != null) {
+                owner.edited();
+            }
+        }
+    }
+}
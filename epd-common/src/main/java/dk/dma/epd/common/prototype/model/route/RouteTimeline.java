@@ -0,0 +1,573 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.Heading;
+import dk.dma.epd.common.util.Calculator;
+import dk.dma.epd.common.util.Converter;
+
+/**
+ * Immutable space-time representation of the remaining part of a route.
+ * <p>
+ * Starting at a given way point, each leg is described by its start and end time, its start position and the position reached
+ * at the end time when sailing the leg at the planned speed. The legs are kept in primitive arrays, so that the routes can be
+ * compared many times without walking the way point lists or re-computing ETA's.
+ * <p>
+ * For proximity look-ups the legs are divided into segments of at most {@value #MAX_SEGMENT_LENGTH} nautical miles, and each
+ * segment is approximated by a constant velocity movement in a local, equirectangular projection centered on the pair of
+ * segments being compared. This keeps the approximation error small regardless of the length of the legs and the extent of
+ * the routes, whereas {@linkplain #getPosition(long)} uses the same position calculations as the route traversal code.
+ */
+@Immutable
+public final class RouteTimeline {
+
+    /** The maximum length of the segments used for proximity look-ups in nautical miles */
+    static final double MAX_SEGMENT_LENGTH = 30.0;
+
+    private final Route route;
+    private final int startWp;
+
+    private final long[] legStart;
+    private final long[] legEnd;
+    private final double[] brg;
+    private final double[] speed;
+    private final Position[] startPos;
+    private final Position[] endWpPos;
+    private final boolean[] greatCircle;
+
+    private final long[] segStart;
+    private final long[] segEnd;
+    private final double[] lat0;
+    private final double[] lon0;
+    private final double[] lat1;
+    private final double[] lon1;
+
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+
+    /**
+     * Constructor
+     */
+    private RouteTimeline(Route route, int startWp, int legs) {
+        this.route = route;
+        this.startWp = startWp;
+        legStart = new long[legs];
+        legEnd = new long[legs];
+        brg = new double[legs];
+        speed = new double[legs];
+        startPos = new Position[legs];
+        endWpPos = new Position[legs];
+        greatCircle = new boolean[legs];
+
+        List<RouteWaypoint> waypoints = new ArrayList<>(route.getWaypoints());
+        List<Date> etas = route.getEtas();
+        RouteGeometry geometry = route.getGeometry();
+        int[] segments = new int[legs];
+        int segmentCount = 0;
+        for (int i = 0; i < legs; i++) {
+            RouteWaypoint wp = waypoints.get(startWp + i);
+            RouteLeg leg = wp.getOutLeg();
+            legStart[i] = etas.get(startWp + i).getTime();
+            legEnd[i] = Math.max(legStart[i], etas.get(startWp + i + 1).getTime());
+            startPos[i] = wp.getPos();
+            endWpPos[i] = leg.getEndWp().getPos();
+            greatCircle[i] = leg.getHeading() == Heading.GC;
+            brg[i] = geometry.getLegBearing(startWp + i);
+            speed[i] = leg.getSpeed();
+            double length = speed[i] * (legEnd[i] - legStart[i]) / 3600000.0;
+            segments[i] = (length > MAX_SEGMENT_LENGTH) ? (int) Math.ceil(length / MAX_SEGMENT_LENGTH) : 1;
+            segmentCount += segments[i];
+        }
+
+        segStart = new long[segmentCount];
+        segEnd = new long[segmentCount];
+        lat0 = new double[segmentCount];
+        lon0 = new double[segmentCount];
+        lat1 = new double[segmentCount];
+        lon1 = new double[segmentCount];
+        double latMin = 90, latMax = -90, lonMin = 180, lonMax = -180;
+        int k = 0;
+        for (int i = 0; i < legs; i++) {
+            long duration = legEnd[i] - legStart[i];
+            Position start = startPos[i];
+            for (int n = 1; n <= segments[i]; n++, k++) {
+                long offset = duration * n / segments[i];
+                Position end = traverse(i, offset);
+                segStart[k] = (n == 1) ? legStart[i] : segEnd[k - 1];
+                segEnd[k] = legStart[i] + offset;
+                lat0[k] = start.getLatitude();
+                lon0[k] = start.getLongitude();
+                lat1[k] = end.getLatitude();
+                lon1[k] = end.getLongitude();
+                latMin = Math.min(latMin, Math.min(lat0[k], lat1[k]));
+                latMax = Math.max(latMax, Math.max(lat0[k], lat1[k]));
+                lonMin = Math.min(lonMin, Math.min(lon0[k], lon1[k]));
+                lonMax = Math.max(lonMax, Math.max(lon0[k], lon1[k]));
+                start = end;
+            }
+        }
+        minLat = latMin;
+        maxLat = latMax;
+        minLon = lonMin;
+        maxLon = lonMax;
+    }
+
+    /**
+     * Creates a timeline for the given route starting at the given way point.
+     * <p>
+     * Returns null if the route has no legs after the start way point or if the ETA's are not defined
+     *
+     * @param route
+     *            the route
+     * @param startWp
+     *            the index of the way point to start from
+     * @return the timeline or null if undefined
+     */
+    public static RouteTimeline create(Route route, int startWp) {
+        if (route == null || route.getWaypoints() == null || route.getEtas() == null) {
+            return null;
+        }
+        int wpCount = route.getWaypoints().size();
+        if (startWp < 0 || startWp >= wpCount - 1 || route.getEtas().size() < wpCount) {
+            return null;
+        }
+        int index = 0;
+        for (RouteWaypoint wp : route.getWaypoints()) {
+            if (index >= startWp && index < wpCount - 1 && (wp.getOutLeg() == null || route.getEtas().get(index) == null)) {
+                return null;
+            }
+            index++;
+        }
+        if (route.getEtas().get(wpCount - 1) == null) {
+            return null;
+        }
+        return new RouteTimeline(route, startWp, wpCount - 1 - startWp);
+    }
+
+    /**
+     * Returns the route that this timeline represents
+     *
+     * @return the route
+     */
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns the index of the way point the timeline starts at
+     *
+     * @return the index of the start way point
+     */
+    public int getStartWp() {
+        return startWp;
+    }
+
+    /**
+     * Returns if this timeline is still valid for the given route, i.e. if it was created from the same route instance, starting
+     * at the same way point, and the way point ETA's have not changed since.
+     * <p>
+     * Used for caching timelines between route updates, since re-validating only compares the ETA's.
+     *
+     * @param route
+     *            the route
+     * @param startWp
+     *            the index of the way point to start from
+     * @return if the timeline is still valid for the route
+     */
+    public boolean isCurrent(Route route, int startWp) {
+        if (route != this.route || startWp != this.startWp || route.getWaypoints().size() - 1 - startWp != legStart.length) {
+            return false;
+        }
+        List<Date> etas = route.getEtas();
+        if (etas == null || etas.size() < startWp + legStart.length + 1) {
+            return false;
+        }
+        for (int i = 0; i < legStart.length; i++) {
+            Date eta = etas.get(startWp + i);
+            Date nextEta = etas.get(startWp + i + 1);
+            if (eta == null || nextEta == null || eta.getTime() != legStart[i]
+                    || Math.max(legStart[i], nextEta.getTime()) != legEnd[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of legs of the timeline
+     *
+     * @return the number of legs
+     */
+    public int getLegCount() {
+        return legStart.length;
+    }
+
+    /**
+     * Returns the start time of the timeline in epoch millis
+     *
+     * @return the start time
+     */
+    public long getStart() {
+        return legStart[0];
+    }
+
+    /**
+     * Returns the end time of the timeline in epoch millis
+     *
+     * @return the end time
+     */
+    public long getEnd() {
+        return legEnd[legEnd.length - 1];
+    }
+
+    /**
+     * Returns if the given time falls strictly within one of the legs, i.e. not at a way point ETA
+     *
+     * @param time
+     *            the time in epoch millis
+     * @return if the time falls strictly within a leg
+     */
+    public boolean isWithinLeg(long time) {
+        int leg = findLeg(time);
+        return leg >= 0 && time > legStart[leg] && time < legEnd[leg];
+    }
+
+    /**
+     * Returns the index of the leg being sailed at the given time, or -1 if the time is outside the timeline
+     *
+     * @param time
+     *            the time in epoch millis
+     * @return the leg index or -1
+     */
+    public int findLeg(long time) {
+        if (time < getStart() || time > getEnd()) {
+            return -1;
+        }
+        return floorIndex(legStart, time);
+    }
+
+    /**
+     * Returns the index of the last of the sorted start times that is not after the given time
+     */
+    private static int floorIndex(long[] starts, long time) {
+        int lo = 0;
+        int hi = starts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= time) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the planned position at the given time, or null if the time is outside the timeline
+     *
+     * @param time
+     *            the time in epoch millis
+     * @return the planned position
+     */
+    public Position getPosition(long time) {
+        int leg = findLeg(time);
+        return (leg < 0) ? null : traverse(leg, time - legStart[leg]);
+    }
+
+    /**
+     * Traverses the given leg from its start way point for the given number of milliseconds
+     */
+    private Position traverse(int leg, long millis) {
+        double dist = Converter.nmToMeters(speed[leg] * millis / 3600000.0);
+        if (greatCircle[leg]) {
+            return Calculator.findPosition(startPos[leg], endWpPos[leg], dist);
+        }
+        return Calculator.findPosition(startPos[leg], brg[leg], dist);
+    }
+
+    /**
+     * Returns if the bounding boxes of the two timelines come within the given distance of each other
+     *
+     * @param other
+     *            the other timeline
+     * @param distance
+     *            the distance in nautical miles
+     * @return if the bounding boxes come within the given distance
+     */
+    public boolean boundsWithinDistance(RouteTimeline other, double distance) {
+        double dLat = distance / 60.0;
+        double cosLat = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        double dLon = (cosLat < 1e-6) ? 360 : dLat / cosLat;
+        return other.minLat <= maxLat + dLat && other.maxLat >= minLat - dLat && other.minLon <= maxLon + dLon
+                && other.maxLon >= minLon - dLon;
+    }
+
+    /**
+     * Finds the time intervals within [{@code from}, {@code to}] where this and the other timeline are within the given
+     * distance of each other.
+     * <p>
+     * Each overlapping pair of leg segments is treated as two constant velocity movements, for which the time interval where
+     * the distance is within the threshold is solved in closed form. Segment pairs whose bounding boxes are too far apart are
+     * skipped.
+     * The returned intervals are sorted and disjoint.
+     *
+     * @param other
+     *            the other timeline
+     * @param from
+     *            the start of the time window in epoch millis
+     * @param to
+     *            the end of the time window in epoch millis
+     * @param distance
+     *            the distance in nautical miles
+     * @return the sorted list of disjoint [start, end] intervals
+     */
+    public List<long[]> findProximityIntervals(RouteTimeline other, long from, long to, double distance) {
+        List<long[]> intervals = new ArrayList<>();
+        if (from > to) {
+            return intervals;
+        }
+        double dLat = distance / 60.0;
+        double r2 = distance * distance;
+
+        // Both segment arrays are sorted by time, so walk them in parallel
+        int i = Math.max(0, findSegmentAtOrAfter(from));
+        int j = Math.max(0, other.findSegmentAtOrAfter(from));
+        while (i < segStart.length && j < other.segStart.length) {
+            long s = Math.max(from, Math.max(segStart[i], other.segStart[j]));
+            long e = Math.min(to, Math.min(segEnd[i], other.segEnd[j]));
+            if (s > to) {
+                break;
+            }
+            if (s <= e && segmentBoundsIntersect(i, other, j, dLat)) {
+                solveLegPair(new LocalFrame(this, i, other, j), i, other, j, s, e, r2, intervals);
+            }
+            // Advance the segment that ends first
+            if (segEnd[i] <= other.segEnd[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return mergeIntervals(intervals);
+    }
+
+    /**
+     * Returns the closest point of approach between the segment pairs of this and the other timeline within the time window.
+     * <p>
+     * The result is an array holding the time (epoch millis) and the distance (nautical miles) of the closest point of
+     * approach, or null if the timelines do not overlap within the time window.
+     *
+     * @param other
+     *            the other timeline
+     * @param from
+     *            the start of the time window in epoch millis
+     * @param to
+     *            the end of the time window in epoch millis
+     * @return the time and distance of the closest point of approach, or null if undefined
+     */
+    public double[] findClosestApproach(RouteTimeline other, long from, long to) {
+        if (from > to) {
+            return null;
+        }
+        double[] best = null;
+        int i = Math.max(0, findSegmentAtOrAfter(from));
+        int j = Math.max(0, other.findSegmentAtOrAfter(from));
+        while (i < segStart.length && j < other.segStart.length) {
+            long s = Math.max(from, Math.max(segStart[i], other.segStart[j]));
+            long e = Math.min(to, Math.min(segEnd[i], other.segEnd[j]));
+            if (s > to) {
+                break;
+            }
+            if (s <= e) {
+                LocalFrame frame = new LocalFrame(this, i, other, j);
+                double[] v1 = frame.velocity(this, i);
+                double[] v2 = frame.velocity(other, j);
+                double[] p1 = frame.position(this, i, s);
+                double[] p2 = frame.position(other, j, s);
+                double dx = p1[0] - p2[0];
+                double dy = p1[1] - p2[1];
+                double wx = v1[0] - v2[0];
+                double wy = v1[1] - v2[1];
+                double a = wx * wx + wy * wy;
+                // Time of minimum distance for two constant velocity movements
+                double t = (a < 1e-18) ? 0 : Math.max(0, Math.min(e - s, -(dx * wx + dy * wy) / a));
+                double x = dx + wx * t;
+                double y = dy + wy * t;
+                double dist = Math.sqrt(x * x + y * y);
+                if (best == null || dist < best[1]) {
+                    best = new double[] { s + t, dist };
+                }
+            }
+            if (segEnd[i] <= other.segEnd[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Solves |D + W * t|^2 &lt;= r^2 for t in [0, e - s], where D is the relative position at time s and W is the relative
+     * velocity of the two segments
+     */
+    private void solveLegPair(LocalFrame frame, int i, RouteTimeline other, int j, long s, long e, double r2,
+            List<long[]> intervals) {
+        // Velocities in nm per millisecond
+        double[] v1 = frame.velocity(this, i);
+        double[] v2 = frame.velocity(other, j);
+        double[] p1 = frame.position(this, i, s);
+        double[] p2 = frame.position(other, j, s);
+
+        double dx = p1[0] - p2[0];
+        double dy = p1[1] - p2[1];
+        double wx = v1[0] - v2[0];
+        double wy = v1[1] - v2[1];
+        double span = e - s;
+
+        double a = wx * wx + wy * wy;
+        double b = 2 * (dx * wx + dy * wy);
+        double c = dx * dx + dy * dy - r2;
+
+        double t0;
+        double t1;
+        if (a < 1e-18) {
+            if (c > 0) {
+                return;
+            }
+            t0 = 0;
+            t1 = span;
+        } else {
+            double disc = b * b - 4 * a * c;
+            if (disc < 0) {
+                return;
+            }
+            double sq = Math.sqrt(disc);
+            t0 = Math.max(0, (-b - sq) / (2 * a));
+            t1 = Math.min(span, (-b + sq) / (2 * a));
+            if (t0 > t1) {
+                return;
+            }
+        }
+        intervals.add(new long[] { s + (long) Math.floor(t0), s + (long) Math.ceil(t1) });
+    }
+
+    /**
+     * Returns the index of the segment being sailed at the given time, the first segment if the time is before the timeline,
+     * or -1 if the time is after the timeline
+     */
+    private int findSegmentAtOrAfter(long time) {
+        if (time < getStart()) {
+            return 0;
+        }
+        if (time > getEnd()) {
+            return -1;
+        }
+        return floorIndex(segStart, time);
+    }
+
+    private boolean segmentBoundsIntersect(int i, RouteTimeline other, int j, double dLat) {
+        // Longitude margin at the latitude of the pair closest to the pole
+        double lat = Math.max(Math.max(Math.abs(lat0[i]), Math.abs(lat1[i])),
+                Math.max(Math.abs(other.lat0[j]), Math.abs(other.lat1[j])));
+        double cosLat = Math.cos(Math.toRadians(Math.min(89, lat + dLat)));
+        double dLon = dLat / Math.max(1e-6, cosLat);
+        return Math.min(other.lat0[j], other.lat1[j]) <= Math.max(lat0[i], lat1[i]) + dLat
+                && Math.max(other.lat0[j], other.lat1[j]) >= Math.min(lat0[i], lat1[i]) - dLat
+                && Math.min(other.lon0[j], other.lon1[j]) <= Math.max(lon0[i], lon1[i]) + dLon
+                && Math.max(other.lon0[j], other.lon1[j]) >= Math.min(lon0[i], lon1[i]) - dLon;
+    }
+
+    private static List<long[]> mergeIntervals(List<long[]> intervals) {
+        if (intervals.size() < 2) {
+            return intervals;
+        }
+        Collections.sort(intervals, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return Long.compare(o1[0], o2[0]);
+            }
+        });
+        List<long[]> merged = new ArrayList<>();
+        long[] current = intervals.get(0);
+        for (int i = 1; i < intervals.size(); i++) {
+            long[] next = intervals.get(i);
+            if (next[0] <= current[1]) {
+                current[1] = Math.max(current[1], next[1]);
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * Local equirectangular projection, in nautical miles, centered on a pair of segments
+     */
+    private static final class LocalFrame {
+        final double refLon;
+        final double cosLat;
+
+        LocalFrame(RouteTimeline t1, int seg1, RouteTimeline t2, int seg2) {
+            double refLat = (t1.lat0[seg1] + t1.lat1[seg1] + t2.lat0[seg2] + t2.lat1[seg2]) / 4.0;
+            // Average the longitudes relative to one of the points to stay clear of the date line
+            double lon = t1.lon0[seg1];
+            refLon = lon + (wrap(t1.lon1[seg1] - lon) + wrap(t2.lon0[seg2] - lon) + wrap(t2.lon1[seg2] - lon)) / 4.0;
+            cosLat = Math.max(1e-6, Math.cos(Math.toRadians(refLat)));
+        }
+
+        double x(double lon) {
+            return wrap(lon - refLon) * 60.0 * cosLat;
+        }
+
+        static double wrap(double dLon) {
+            if (dLon > 180) {
+                return dLon - 360;
+            } else if (dLon < -180) {
+                return dLon + 360;
+            }
+            return dLon;
+        }
+
+        double[] position(RouteTimeline t, int seg, long time) {
+            double[] v = velocity(t, seg);
+            long dt = time - t.segStart[seg];
+            return new double[] { x(t.lon0[seg]) + v[0] * dt, t.lat0[seg] * 60.0 + v[1] * dt };
+        }
+
+        double[] velocity(RouteTimeline t, int seg) {
+            long duration = t.segEnd[seg] - t.segStart[seg];
+            if (duration <= 0) {
+                return new double[] { 0, 0 };
+            }
+            double dx = x(t.lon1[seg]) - x(t.lon0[seg]);
+            double dy = (t.lat1[seg] - t.lat0[seg]) * 60.0;
+            return new double[] { dx / duration, dy / duration };
+        }
+    }
+}
@@ -50,6 +50,10 @@ public class RouteWaypoint implements Serializable {
      * Leg going to this waypoint
      */
     protected RouteLeg inLeg;
+    /**
+     * The routes owning this way point, assigned when a route computes its geometry
+     */
+    private transient RouteOwners owners;
 
     public RouteWaypoint(RouteWaypoint rw) {
         this.name = rw.getName();
@@ -64,6 +68,29 @@ public class RouteWaypoint implements Serializable {
 
     }
 
+    /**
+     * Adds a route owning this way point
+     */
+    synchronized void addRoute(Route route) {
+        if (owners == null) {
+            owners = new RouteOwners();
+        }
+        owners.add(route);
+    }
+
+    /**
+     * Bumps the modification count of the owning routes
+     */
+    private void edited() {
+        RouteOwners owners;
+        synchronized (this) {
+            owners = this.owners;
+        }
+        if (owners != null) {
+            owners.edited();
+        }
+    }
+
     /**
      * Performs a deep copy of this RouteWaypoint. The copy constructor above is
      * used to perform shallow copy on route creation and editing, when a back
@@ -92,7 +119,10 @@ public class RouteWaypoint implements Serializable {
     }
 
     public void setPos(Position pos) {
-        this.pos = pos;
+        if (pos != this.pos) {
+            this.pos = pos;
+            edited();
+        }
     }
 
     public Double getTurnRad() {
@@ -104,7 +134,10 @@ public class RouteWaypoint implements Serializable {
     }
 
     public void setOutLeg(RouteLeg leg) {
-        this.outLeg = leg;
+        if (leg != this.outLeg) {
+            this.outLeg = leg;
+            edited();
+        }
     }
 
     public RouteLeg getInLeg() {
@@ -112,7 +145,10 @@ public class RouteWaypoint implements Serializable {
     }
 
     public void setInLeg(RouteLeg inLeg) {
-        this.inLeg = inLeg;
+        if (inLeg != this.inLeg) {
+            this.inLeg = inLeg;
+            edited();
+        }
     }
 
     public Double getRot() {
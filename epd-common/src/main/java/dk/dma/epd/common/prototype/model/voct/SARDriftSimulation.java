@@ -0,0 +1,458 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.voct;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.joda.time.DateTime;
+
+import dk.dma.epd.common.prototype.ExecutionService;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARData;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARProbabilityGrid;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARWeatherData;
+
+/**
+ * Particle based (Monte Carlo) surface drift simulation.
+ * <p>
+ * Where the datum calculations of {@linkplain SAROperation} drift a single point with the total water current and leeway,
+ * this simulation drifts a large number of particles, each with its own sample of the uncertainties:
+ * <ul>
+ * <li>The initial position is the LKP with a normally distributed error of X nm per axis.</li>
+ * <li>The leeway divergence side and angle are drawn once per particle, uniformly within the divergence of the search
+ * object given by {@linkplain LeewayValues}, and the leeway speed is scaled by a normally distributed factor.</li>
+ * <li>The total water current of every weather point is perturbed by a normally distributed vector error.</li>
+ * </ul>
+ * The particles are kept in primitive arrays and propagated in fixed size blocks, one task per block. By default the tasks
+ * run on a task group of the shared {@linkplain ExecutionService}. All snapshot times are produced in a single pass, each as
+ * a {@linkplain SARProbabilityGrid} of the probability of containment. Interrupting the calling thread cancels the
+ * simulation.
+ * <p>
+ * Every block has its own random generator seeded from the simulation seed, so the results are reproducible regardless of
+ * the number of threads.
+ */
+public class SARDriftSimulation {
+
+    /** Default number of particles */
+    public static final int DEFAULT_PARTICLES = 100000;
+
+    /** Default number of cells along the longest side of the probability grids */
+    public static final int DEFAULT_GRID_SIZE = 64;
+
+    /** Default standard deviation of the total water current error per axis, in knots */
+    public static final double DEFAULT_CURRENT_ERROR = 0.3;
+
+    /** Default relative standard deviation of the leeway speed */
+    public static final double DEFAULT_LEEWAY_ERROR = 0.2;
+
+    /** Default max length of a drift step, in minutes */
+    public static final int DEFAULT_STEP_MINUTES = 10;
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    private final ExecutorService executor;
+    private int particles = DEFAULT_PARTICLES;
+    private int gridSize = DEFAULT_GRID_SIZE;
+    private double currentError = DEFAULT_CURRENT_ERROR;
+    private double leewayError = DEFAULT_LEEWAY_ERROR;
+    private int stepMinutes = DEFAULT_STEP_MINUTES;
+    private long seed = System.nanoTime();
+
+    /**
+     * Constructor propagating the particles on the shared execution service
+     */
+    public SARDriftSimulation() {
+        this(ExecutionService.getInstance().createGroup("SAR drift simulation"));
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param executor
+     *            the executor to propagate the particles in
+     */
+    public SARDriftSimulation(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Drifts the particles from the LKP of the SAR data and returns the probability grid at each of the snapshot times
+     * 
+     * @param data
+     *            the SAR data with the LKP, weather points and search object
+     * @param snapshotTimes
+     *            the times to produce a probability grid for, in increasing order and not before the LKP date
+     * @return the probability grids, one per snapshot time
+     * @throws CancellationException
+     *             if the calling thread is interrupted
+     */
+    public List<SARProbabilityGrid> simulate(SARData data, List<DateTime> snapshotTimes) {
+        List<SARWeatherData> weatherPoints = data.getWeatherPoints();
+        if (weatherPoints == null || weatherPoints.isEmpty()) {
+            throw new IllegalArgumentException("No weather points");
+        }
+        long start = data.getLKPDate().getMillis();
+        long previous = start;
+        for (DateTime time : snapshotTimes) {
+            if (time.getMillis() < previous) {
+                throw new IllegalArgumentException("Snapshot times must be in increasing order and not before the LKP date");
+            }
+            previous = time.getMillis();
+        }
+
+        Particles p = new Particles(data);
+        List<SARProbabilityGrid> result = new ArrayList<>(snapshotTimes.size());
+
+        long t = start;
+        int weather = -1;
+        for (DateTime snapshotTime : snapshotTimes) {
+            long snapshot = snapshotTime.getMillis();
+            while (t < snapshot) {
+                int w = weatherIndex(weatherPoints, t);
+                long next = Math.min(snapshot, t + stepMinutes * 60000L);
+                if (w + 1 < weatherPoints.size()) {
+                    next = Math.min(next, weatherPoints.get(w + 1).getDateTime().getMillis());
+                }
+                p.step(weatherPoints.get(w), w != weather, (next - t) / 3600000.0);
+                weather = w;
+                t = next;
+            }
+            result.add(p.snapshot(snapshotTime));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the weather point in effect at the given time. The first weather point applies from the LKP.
+     */
+    private static int weatherIndex(List<SARWeatherData> weatherPoints, long time) {
+        int index = 0;
+        for (int i = 1; i < weatherPoints.size(); i++) {
+            if (weatherPoints.get(i).getDateTime().getMillis() <= time) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The state of all particles, along with the random generator of each block
+     */
+    private final class Particles {
+
+        final int count;
+        final int blocks;
+        final SplittableRandom[] random;
+
+        final double[] lat;
+        final double[] lon;
+        /** Leeway direction relative to the down wind direction, in degrees */
+        final float[] leewayAngle;
+        /** Scale of the leeway speed */
+        final float[] leewayScale;
+        /** Total water current error of the current weather point, north and east components in knots */
+        final float[] currentErrorN;
+        final float[] currentErrorE;
+
+        final int searchObject;
+
+        Particles(SARData data) {
+            count = particles;
+            blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            random = new SplittableRandom[blocks];
+            lat = new double[count];
+            lon = new double[count];
+            leewayAngle = new float[count];
+            leewayScale = new float[count];
+            currentErrorN = new float[count];
+            currentErrorE = new float[count];
+            searchObject = data.getSearchObject();
+
+            final double lkpLat = data.getLKP().getLatitude();
+            final double lkpLon = data.getLKP().getLongitude();
+            final double positionError = data.getX();
+            final double divergence = SAROperation.searchObjectValue(searchObject);
+            final double cosLat = Math.cos(Math.toRadians(lkpLat));
+
+            forEachBlock(new BlockOperation() {
+                @Override
+                public void apply(int block, int from, int to) {
+                    SplittableRandom rnd = new SplittableRandom(seed + block * SEED_INCREMENT);
+                    random[block] = rnd;
+                    for (int i = from; i < to; i++) {
+                        lat[i] = lkpLat + gaussian(rnd) * positionError / 60.0;
+                        lon[i] = lkpLon + gaussian(rnd) * positionError / (60.0 * cosLat);
+                        double side = rnd.nextBoolean() ? 1.0 : -1.0;
+                        leewayAngle[i] = (float) (side * rnd.nextDouble() * divergence);
+                        leewayScale[i] = (float) Math.max(0.0, 1.0 + gaussian(rnd) * leewayError);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Drifts all particles with the weather point for the given number of hours
+         */
+        void step(SARWeatherData weather, final boolean newWeather, final double hours) {
+            double twcHeading = Math.toRadians(weather.getTWCHeading());
+            final double twcN = weather.getTWCknots() * Math.cos(twcHeading);
+            final double twcE = weather.getTWCknots() * Math.sin(twcHeading);
+            final double leewaySpeed = Math.max(0.0, SAROperation.searchObjectValue(searchObject, weather.getLWknots()));
+            final double downWind = weather.getDownWind();
+
+            forEachBlock(new BlockOperation() {
+                @Override
+                public void apply(int block, int from, int to) {
+                    SplittableRandom rnd = random[block];
+                    for (int i = from; i < to; i++) {
+                        if (newWeather) {
+                            currentErrorN[i] = (float) (gaussian(rnd) * currentError);
+                            currentErrorE[i] = (float) (gaussian(rnd) * currentError);
+                        }
+                        double leeway = leewaySpeed * leewayScale[i];
+                        double direction = Math.toRadians(downWind + leewayAngle[i]);
+                        double north = (twcN + currentErrorN[i] + leeway * Math.cos(direction)) * hours;
+                        double east = (twcE + currentErrorE[i] + leeway * Math.sin(direction)) * hours;
+                        double midLat = lat[i] + north / 120.0;
+                        lat[i] += north / 60.0;
+                        lon[i] += east / (60.0 * Math.cos(Math.toRadians(midLat)));
+                    }
+                }
+            });
+        }
+
+        /**
+         * Bins the current particle positions into a probability grid
+         */
+        SARProbabilityGrid snapshot(DateTime time) {
+            // Bounds and sums per block, merged below
+            final double[] bounds = new double[blocks * 6];
+            forEachBlock(new BlockOperation() {
+                @Override
+                public void apply(int block, int from, int to) {
+                    double minLat = Double.POSITIVE_INFINITY;
+                    double minLon = Double.POSITIVE_INFINITY;
+                    double maxLat = Double.NEGATIVE_INFINITY;
+                    double maxLon = Double.NEGATIVE_INFINITY;
+                    double sumLat = 0;
+                    double sumLon = 0;
+                    for (int i = from; i < to; i++) {
+                        minLat = Math.min(minLat, lat[i]);
+                        maxLat = Math.max(maxLat, lat[i]);
+                        minLon = Math.min(minLon, lon[i]);
+                        maxLon = Math.max(maxLon, lon[i]);
+                        sumLat += lat[i];
+                        sumLon += lon[i];
+                    }
+                    int j = block * 6;
+                    bounds[j] = minLat;
+                    bounds[j + 1] = minLon;
+                    bounds[j + 2] = maxLat;
+                    bounds[j + 3] = maxLon;
+                    bounds[j + 4] = sumLat;
+                    bounds[j + 5] = sumLon;
+                }
+            });
+            double minLat = Double.POSITIVE_INFINITY;
+            double minLon = Double.POSITIVE_INFINITY;
+            double maxLat = Double.NEGATIVE_INFINITY;
+            double maxLon = Double.NEGATIVE_INFINITY;
+            double sumLat = 0;
+            double sumLon = 0;
+            for (int b = 0; b < blocks; b++) {
+                int j = b * 6;
+                minLat = Math.min(minLat, bounds[j]);
+                minLon = Math.min(minLon, bounds[j + 1]);
+                maxLat = Math.max(maxLat, bounds[j + 2]);
+                maxLon = Math.max(maxLon, bounds[j + 3]);
+                sumLat += bounds[j + 4];
+                sumLon += bounds[j + 5];
+            }
+
+            // Square cells, with the longest side of the particle bounds divided into grid size cells
+            double cosLat = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+            double cellNm = Math.max(Math.max((maxLat - minLat) * 60.0, (maxLon - minLon) * 60.0 * cosLat) / gridSize, 1e-6);
+            final double cellLat = cellNm / 60.0;
+            final double cellLon = cellNm / (60.0 * cosLat);
+            final int rows = Math.max(1, Math.min(gridSize, (int) Math.ceil((maxLat - minLat) / cellLat)));
+            final int cols = Math.max(1, Math.min(gridSize, (int) Math.ceil((maxLon - minLon) / cellLon)));
+            final double gridMinLat = minLat;
+            final double gridMinLon = minLon;
+
+            final int[][] counts = new int[blocks][];
+            forEachBlock(new BlockOperation() {
+                @Override
+                public void apply(int block, int from, int to) {
+                    int[] c = new int[rows * cols];
+                    for (int i = from; i < to; i++) {
+                        int row = Math.min(rows - 1, (int) ((lat[i] - gridMinLat) / cellLat));
+                        int col = Math.min(cols - 1, (int) ((lon[i] - gridMinLon) / cellLon));
+                        c[row * cols + col]++;
+                    }
+                    counts[block] = c;
+                }
+            });
+            float[] probability = new float[rows * cols];
+            for (int[] c : counts) {
+                for (int k = 0; k < c.length; k++) {
+                    probability[k] += c[k];
+                }
+            }
+            for (int k = 0; k < probability.length; k++) {
+                probability[k] /= count;
+            }
+
+            return new SARProbabilityGrid(time, gridMinLat, gridMinLon, gridMinLat + rows * cellLat, gridMinLon + cols
+                    * cellLon, rows, cols, probability, sumLat / count, sumLon / count);
+        }
+
+        /**
+         * Applies the operation to all blocks of particles, one task per block, and waits for them to complete
+         */
+        void forEachBlock(final BlockOperation op) {
+            List<Callable<Void>> tasks = new ArrayList<>(blocks);
+            for (int b = 0; b < blocks; b++) {
+                final int block = b;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        op.apply(block, block * BLOCK_SIZE, Math.min(count, (block + 1) * BLOCK_SIZE));
+                        return null;
+                    }
+                });
+            }
+            try {
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Drift simulation interrupted");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Drift simulation failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Operation on the particles of a block
+     */
+    private interface BlockOperation {
+        void apply(int block, int from, int to);
+    }
+
+    /**
+     * Returns a standard normally distributed value, using the polar method
+     */
+    private static double gaussian(SplittableRandom rnd) {
+        double u;
+        double v;
+        double s;
+        do {
+            u = 2.0 * rnd.nextDouble() - 1.0;
+            v = 2.0 * rnd.nextDouble() - 1.0;
+            s = u * u + v * v;
+        } while (s >= 1.0 || s == 0.0);
+        return u * Math.sqrt(-2.0 * Math.log(s) / s);
+    }
+
+    public int getParticles() {
+        return particles;
+    }
+
+    /**
+     * @param particles
+     *            the number of particles to drift
+     */
+    public void setParticles(int particles) {
+        if (particles <= 0) {
+            throw new IllegalArgumentException("Invalid number of particles " + particles);
+        }
+        this.particles = particles;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * @param gridSize
+     *            the number of cells along the longest side of the probability grids
+     */
+    public void setGridSize(int gridSize) {
+        if (gridSize <= 0) {
+            throw new IllegalArgumentException("Invalid grid size " + gridSize);
+        }
+        this.gridSize = gridSize;
+    }
+
+    public double getCurrentError() {
+        return currentError;
+    }
+
+    /**
+     * @param currentError
+     *            the standard deviation of the total water current error per axis, in knots
+     */
+    public void setCurrentError(double currentError) {
+        this.currentError = currentError;
+    }
+
+    public double getLeewayError() {
+        return leewayError;
+    }
+
+    /**
+     * @param leewayError
+     *            the relative standard deviation of the leeway speed
+     */
+    public void setLeewayError(double leewayError) {
+        this.leewayError = leewayError;
+    }
+
+    public int getStepMinutes() {
+        return stepMinutes;
+    }
+
+    /**
+     * @param stepMinutes
+     *            the max length of a drift step, in minutes
+     */
+    public void setStepMinutes(int stepMinutes) {
+        if (stepMinutes <= 0) {
+            throw new IllegalArgumentException("Invalid step length " + stepMinutes);
+        }
+        this.stepMinutes = stepMinutes;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param seed
+     *            the seed of the random generators, for reproducible simulations
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
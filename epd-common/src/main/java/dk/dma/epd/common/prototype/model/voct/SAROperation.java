@@ -31,6 +31,7 @@ import dk.dma.epd.common.prototype.model.voct.sardata.DatumPointData;
 import dk.dma.epd.common.prototype.model.voct.sardata.EffortAllocationData;
 import dk.dma.epd.common.prototype.model.voct.sardata.RapidResponseData;
 import dk.dma.epd.common.prototype.model.voct.sardata.SARData;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARProbabilityGrid;
 import dk.dma.epd.common.prototype.model.voct.sardata.SARWeatherData;
 import dk.dma.epd.common.util.Calculator;
 import dk.dma.epd.common.util.Converter;
@@ -160,16 +161,28 @@ public class SAROperation {
         return datumPoint(data);
     }
 
+    /**
+     * Calculates the datum of the operation at eight 30 minute offsets from the CSS.
+     * <p>
+     * The horizons only differ in the CSS, so the drift legs of all but the last weather point are computed once and each
+     * horizon only drifts the last leg. The calculation stops early if the calling thread is interrupted.
+     * 
+     * @param data
+     *            the SAR data
+     * @return the SAR data of each horizon
+     */
     public List<SARData> sarFutureCalculations(SARData data) {
         List<SARData> futureDataList = new ArrayList<SARData>();
 
         if (operationType == SAR_TYPE.RAPID_RESPONSE) {
 
-            for (int i = 1; i < 9; i++) {
+            DriftLegs sharedLegs = sharedDriftLegs(data, false);
+
+            for (int i = 1; i < 9 && !Thread.currentThread().isInterrupted(); i++) {
 
                 int additionalTime = i * 30;
 
-                futureDataList.add(rapidResponse(new RapidResponseData((RapidResponseData) data, additionalTime)));
+                futureDataList.add(rapidResponse(new RapidResponseData((RapidResponseData) data, additionalTime), sharedLegs));
 
 //                System.out.println("Additional Time: " + additionalTime + " minutes");
 
@@ -179,11 +192,13 @@ public class SAROperation {
 
         if (operationType == SAR_TYPE.DATUM_POINT) {
 
-            for (int i = 1; i < 9; i++) {
+            DriftLegs sharedLegs = sharedDriftLegs(data, true);
+
+            for (int i = 1; i < 9 && !Thread.currentThread().isInterrupted(); i++) {
 
                 int additionalTime = i * 30;
 
-                futureDataList.add(datumPoint(new DatumPointData((DatumPointData) data, additionalTime)));
+                futureDataList.add(datumPoint(new DatumPointData((DatumPointData) data, additionalTime), sharedLegs));
 
 //                System.out.println("Additional Time: " + additionalTime + " minutes");
 
@@ -194,7 +209,127 @@ public class SAROperation {
         return futureDataList;
     }
 
-    private double searchObjectValue(int searchObject, double LWKnots) {
+    /**
+     * Runs the particle drift simulation from the LKP, producing a probability grid at the CSS and at the same 30 minute
+     * offsets as {@linkplain #sarFutureCalculations(SARData)}. The datum calculations are left as they are and remain the
+     * summary of the operation.
+     * 
+     * @param data
+     *            the SAR data
+     * @param simulation
+     *            the configured simulation
+     * @return the probability grids at the CSS and the following eight 30 minute offsets
+     */
+    public List<SARProbabilityGrid> driftSimulation(SARData data, SARDriftSimulation simulation) {
+        List<DateTime> snapshotTimes = new ArrayList<DateTime>();
+        for (int i = 0; i < 9; i++) {
+            snapshotTimes.add(data.getCSSDate().plusMinutes(i * 30));
+        }
+        return simulation.simulate(data, snapshotTimes);
+    }
+
+    /**
+     * The drift legs of a datum calculation. A leg is the drift with the total water current and leeway of a weather point
+     * for the period the weather point is valid.
+     */
+    private static final class DriftLegs {
+        final List<Double> validFor = new ArrayList<Double>();
+        final List<Position> currentPositions = new ArrayList<Position>();
+        final List<Position> downWind = new ArrayList<Position>();
+        final List<Position> min = new ArrayList<Position>();
+        final List<Position> max = new ArrayList<Position>();
+
+        /** The start of the leg of the last weather point */
+        DateTime lastLegStart;
+
+        DriftLegs copy() {
+            DriftLegs copy = new DriftLegs();
+            copy.validFor.addAll(validFor);
+            copy.currentPositions.addAll(currentPositions);
+            copy.downWind.addAll(downWind);
+            copy.min.addAll(min);
+            copy.max.addAll(max);
+            copy.lastLegStart = lastLegStart;
+            return copy;
+        }
+    }
+
+    /**
+     * Drifts the legs of all weather points but the last. These legs do not depend on the CSS and are shared by all horizons.
+     * 
+     * @param data
+     *            the SAR data
+     * @param divergence
+     *            whether to include the legs with the leeway divergence applied
+     * @return the shared drift legs
+     */
+    private DriftLegs sharedDriftLegs(SARData data, boolean divergence) {
+        List<SARWeatherData> weatherPoints = data.getWeatherPoints();
+        DriftLegs legs = new DriftLegs();
+        DateTime startTime = data.getLKPDate();
+
+        for (int i = 0; i < weatherPoints.size() - 1; i++) {
+            DateTime current = weatherPoints.get(i).getDateTime();
+
+            if (current.isBefore(data.getLKPDate())) {
+                current = data.getLKPDate();
+            }
+
+            startTime = weatherPoints.get(i + 1).getDateTime();
+
+            double validFor = (double) (startTime.getMillis() - current.getMillis()) / 60 / 60 / 1000;
+            driftLeg(data, legs, weatherPoints.get(i), validFor, divergence);
+        }
+
+        legs.lastLegStart = startTime;
+        return legs;
+    }
+
+    /**
+     * Returns a copy of the shared legs, completed with the leg of the last weather point, which lasts until the CSS
+     */
+    private DriftLegs driftLegs(SARData data, DriftLegs sharedLegs, boolean divergence) {
+        List<SARWeatherData> weatherPoints = data.getWeatherPoints();
+        DriftLegs legs = sharedLegs.copy();
+
+        // It's the last one - let it last the remainder
+        double validFor = (double) (data.getCSSDate().getMillis() - legs.lastLegStart.getMillis()) / 60 / 60 / 1000;
+        driftLeg(data, legs, weatherPoints.get(weatherPoints.size() - 1), validFor, divergence);
+        return legs;
+    }
+
+    /**
+     * Drifts the next leg from the down wind datum of the previous leg, or the LKP for the first leg
+     */
+    private void driftLeg(SARData data, DriftLegs legs, SARWeatherData weatherObject, double validFor, boolean divergence) {
+        legs.validFor.add(validFor);
+
+        double currentTWC = weatherObject.getTWCknots() * validFor;
+
+        double leewayspeed = searchObjectValue(data.getSearchObject(), weatherObject.getLWknots());
+        double leeway = leewayspeed * validFor;
+
+        Position startingLocation = legs.downWind.isEmpty() ? data.getLKP() : legs.downWind.get(legs.downWind.size() - 1);
+
+        Position currentPos = Calculator.findPosition(startingLocation, weatherObject.getTWCHeading(),
+                Converter.nmToMeters(currentTWC));
+
+        legs.currentPositions.add(currentPos);
+
+        legs.downWind.add(Calculator.findPosition(currentPos, weatherObject.getDownWind(), Converter.nmToMeters(leeway)));
+
+        if (divergence) {
+            double leewayDivergence = searchObjectValue(data.getSearchObject());
+
+            legs.min.add(Calculator.findPosition(currentPos, weatherObject.getDownWind() - leewayDivergence,
+                    Converter.nmToMeters(leeway)));
+
+            legs.max.add(Calculator.findPosition(currentPos, weatherObject.getDownWind() + leewayDivergence,
+                    Converter.nmToMeters(leeway)));
+        }
+    }
+
+    static double searchObjectValue(int searchObject, double LWKnots) {
 
         switch (searchObject) {
         case 0:
@@ -243,7 +378,7 @@ public class SAROperation {
         return -9999.9;
     }
 
-    private int searchObjectValue(int searchObject) {
+    static int searchObjectValue(int searchObject) {
 
         switch (searchObject) {
         case 0:
@@ -293,129 +428,25 @@ public class SAROperation {
     }
 
     public DatumPointData datumPoint(DatumPointData data) {
+        return datumPoint(data, sharedDriftLegs(data, true));
+    }
 
-        // We need to calculate for each weather point
-
-        List<SARWeatherData> weatherPoints = data.getWeatherPoints();
-        DateTime startTime = data.getLKPDate();
-
-        double leewayDivergence = searchObjectValue(data.getSearchObject());
-
-        List<Double> weatherPointsValidFor = new ArrayList<Double>();
-
-        List<Position> datumPositionsDownWind = new ArrayList<Position>();
-        List<Position> datumPositionsMin = new ArrayList<Position>();
-        List<Position> datumPositionsMax = new ArrayList<Position>();
-
-        List<Position> currentPositions = new ArrayList<Position>();
-
-        for (int i = 0; i < weatherPoints.size(); i++) {
-
-            // Do we have a next?
-
-            // How long is the data point valid for?
-
-            // Is it the last one?
-
-            if (i == weatherPoints.size() - 1) {
-                // It's the last one - let it last the remainder
-                double validFor = (double) (data.getCSSDate().getMillis() - startTime.getMillis()) / 60 / 60 / 1000;
-                weatherPointsValidFor.add(validFor);
-            } else {
-
-                DateTime current = weatherPoints.get(i).getDateTime();
-
-                if (current.isBefore(data.getLKPDate())) {
-                    current = data.getLKPDate();
-                }
-
-                startTime = weatherPoints.get(i + 1).getDateTime();
-
-                double validFor = (double) (startTime.getMillis() - current.getMillis()) / 60 / 60 / 1000;
-                weatherPointsValidFor.add(validFor);
-            }
-
-            // How long is this data point valid for
-
-        }
-
-        for (int i = 0; i < weatherPoints.size(); i++) {
-            SARWeatherData weatherObject = weatherPoints.get(i);
-            double validFor = weatherPointsValidFor.get(i);
-
-//            System.out.println("Valid for : " + validFor);
-
-            double currentTWC = weatherObject.getTWCknots() * validFor;
-
-//            System.out.println("Current TWC: " + currentTWC);
-//            System.out.println("Heading TWC: " + weatherObject.getLWHeading());
-
-            double leewayspeed = searchObjectValue(data.getSearchObject(), weatherObject.getLWknots());
-            double leeway = leewayspeed * validFor;
-
-            Position startingLocation = null;
-
-            if (i == 0) {
-                startingLocation = data.getLKP();
-            } else {
-                startingLocation = datumPositionsDownWind.get(i - 1);
-            }
-
-            Position currentPos = Calculator.findPosition(startingLocation, weatherObject.getTWCHeading(),
-                    Converter.nmToMeters(currentTWC));
-
-            currentPositions.add(currentPos);
-
-//            System.out.println("Current is: " + currentPos.getLatitude());
-//            System.out.println("Current is: " + currentPos.getLongitude());
-
-            // Temp
-            data.setWtc(currentPos);
-
-            Position windPosDownWind = Calculator.findPosition(currentPos, weatherObject.getDownWind(),
-                    Converter.nmToMeters(leeway));
-
-            datumPositionsDownWind.add(windPosDownWind);
-
-            // data.setDatumDownWind(windPosDownWind);
-
-            Position windPosMin = Calculator.findPosition(currentPos, weatherObject.getDownWind() - leewayDivergence,
-                    Converter.nmToMeters(leeway));
-
-            datumPositionsMin.add(windPosMin);
-
-            // data.setDatumMin(windPosMin);
-
-            Position windPosMax = Calculator.findPosition(currentPos, weatherObject.getDownWind() + leewayDivergence,
-                    Converter.nmToMeters(leeway));
+    /**
+     * Datum point calculation, continuing from the drift legs shared by all horizons of the operation
+     */
+    private DatumPointData datumPoint(DatumPointData data, DriftLegs sharedLegs) {
 
-            datumPositionsMax.add(windPosMax);
+        // Only the leg of the last weather point depends on the CSS
+        DriftLegs legs = driftLegs(data, sharedLegs, true);
 
-            // data.setDatumMax(windPosMax);
+        List<Position> datumPositionsDownWind = legs.downWind;
+        List<Position> datumPositionsMin = legs.min;
+        List<Position> datumPositionsMax = legs.max;
 
-            // Position datumDownWind =
-            // Calculator.calculateEndingGlobalCoordinates(
-            // reference, currentPos, data.getWeatherPoints().get(0)
-            // .getDownWind(), Converter.nmToMeters(leeway),
-            // endBearing);
-            //
-            // endBearing = new double[1];
-            //
-            // Position datumMin = Calculator.calculateEndingGlobalCoordinates(
-            // reference, currentPos, data.getWeatherPoints().get(0)
-            // .getDownWind()
-            // - leewayDivergence, Converter.nmToMeters(leeway),
-            // endBearing);
-            //
-            // endBearing = new double[1];
-            //
-            // Position datumMax = Calculator.calculateEndingGlobalCoordinates(
-            // reference, currentPos, data.getWeatherPoints().get(0)
-            // .getDownWind()
-            // + leewayDivergence, Converter.nmToMeters(leeway),
-            // endBearing);
+        List<Position> currentPositions = legs.currentPositions;
 
-        }
+        // Temp
+        data.setWtc(currentPositions.get(currentPositions.size() - 1));
 
         // Only apply divergence on last?
 
@@ -1584,91 +1615,24 @@ public class SAROperation {
     }
 
     private RapidResponseData rapidResponse(RapidResponseData data) {
+        return rapidResponse(data, sharedDriftLegs(data, false));
+    }
 
-        // We need to calculate for each weather point
-
-        List<SARWeatherData> weatherPoints = data.getWeatherPoints();
-
-        DateTime startTime = data.getLKPDate();
-
-        List<Double> weatherPointsValidFor = new ArrayList<Double>();
-
-        List<Position> datumPositions = new ArrayList<Position>();
-
-        List<Position> currentPositions = new ArrayList<Position>();
-
-        for (int i = 0; i < weatherPoints.size(); i++) {
-
-            // Do we have a next?
-
-            // How long is the data point valid for?
-
-            // Is it the last one?
-
-            if (i == weatherPoints.size() - 1) {
-                // It's the last one - let it last the remainder
-                double validFor = (double) (data.getCSSDate().getMillis() - startTime.getMillis()) / 60 / 60 / 1000;
-                weatherPointsValidFor.add(validFor);
-            } else {
-
-                DateTime current = weatherPoints.get(i).getDateTime();
-
-                if (current.isBefore(data.getLKPDate())) {
-                    current = data.getLKPDate();
-                }
-
-                startTime = weatherPoints.get(i + 1).getDateTime();
-
-                double validFor = (double) (startTime.getMillis() - current.getMillis()) / 60 / 60 / 1000;
-                weatherPointsValidFor.add(validFor);
-            }
-
-            // How long is this data point valid for
-
-        }
-
-        // for (int i = 0; i < weatherPointsValidFor.size(); i++) {
-        // System.out.println("Weather point " + i + " is valid for " +
-        // weatherPointsValidFor.get(i) + " hours");
-        // }
-
-        for (int i = 0; i < weatherPoints.size(); i++) {
-            SARWeatherData weatherObject = weatherPoints.get(i);
-            double validFor = weatherPointsValidFor.get(i);
-
-//            System.out.println("Valid for : " + validFor);
-
-            double currentTWC = weatherObject.getTWCknots() * validFor;
-
-//            System.out.println("Current TWC: " + currentTWC);
-//            System.out.println("Heading TWC: " + weatherObject.getLWHeading());
-
-            double leewayspeed = searchObjectValue(data.getSearchObject(), weatherObject.getLWknots());
-            double leeway = leewayspeed * validFor;
-
-            Position startingLocation = null;
-
-            if (i == 0) {
-                startingLocation = data.getLKP();
-            } else {
-                startingLocation = datumPositions.get(i - 1);
-            }
-
-            Position currentPos = Calculator.findPosition(startingLocation, weatherObject.getTWCHeading(),
-                    Converter.nmToMeters(currentTWC));
-
-            currentPositions.add(currentPos);
+    /**
+     * Rapid response calculation, continuing from the drift legs shared by all horizons of the operation
+     */
+    private RapidResponseData rapidResponse(RapidResponseData data, DriftLegs sharedLegs) {
 
-//            System.out.println("Current is: " + currentPos.getLatitude());
-//            System.out.println("Current is: " + currentPos.getLongitude());
+        // Only the leg of the last weather point depends on the CSS
+        DriftLegs legs = driftLegs(data, sharedLegs, false);
 
-            Position windPos = Calculator.findPosition(currentPos, weatherObject.getDownWind(), Converter.nmToMeters(leeway));
+        List<Double> weatherPointsValidFor = legs.validFor;
 
-            datumPositions.add(windPos);
+        List<Position> datumPositions = legs.downWind;
 
-            data.setDatum(windPos);
+        List<Position> currentPositions = legs.currentPositions;
 
-        }
+        data.setDatum(datumPositions.get(datumPositions.size() - 1));
 
         // datumPositions.remove(datumPositions.size()-1);
 
@@ -0,0 +1,212 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.voct.sardata;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import net.jcip.annotations.Immutable;
+
+import org.joda.time.DateTime;
+
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * Probability of containment of the search object at a given time, as produced by the drift simulation.
+ * <p>
+ * The grid covers the bounds of the drifted particles with square cells. Row 0 is the southernmost row and column 0 the
+ * westernmost column. The probabilities of all cells sum to one.
+ */
+@Immutable
+public class SARProbabilityGrid implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DateTime time;
+    private final double minLat;
+    private final double minLon;
+    private final double maxLat;
+    private final double maxLon;
+    private final int rows;
+    private final int cols;
+    private final float[] probability;
+    private final double meanLat;
+    private final double meanLon;
+
+    /**
+     * Constructor
+     * 
+     * @param time
+     *            the time of the grid
+     * @param minLat
+     *            southern boundary
+     * @param minLon
+     *            western boundary
+     * @param maxLat
+     *            northern boundary
+     * @param maxLon
+     *            eastern boundary
+     * @param rows
+     *            the number of rows
+     * @param cols
+     *            the number of columns
+     * @param probability
+     *            the probability of each cell, row by row from the south
+     * @param meanLat
+     *            the mean latitude of the particles
+     * @param meanLon
+     *            the mean longitude of the particles
+     */
+    public SARProbabilityGrid(DateTime time, double minLat, double minLon, double maxLat, double maxLon, int rows, int cols,
+            float[] probability, double meanLat, double meanLon) {
+        if (probability.length != rows * cols) {
+            throw new IllegalArgumentException("Expected " + rows * cols + " cells, got " + probability.length);
+        }
+        this.time = time;
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        this.maxLon = maxLon;
+        this.rows = rows;
+        this.cols = cols;
+        this.probability = probability;
+        this.meanLat = meanLat;
+        this.meanLon = meanLon;
+    }
+
+    /**
+     * Returns the probability of the given cell
+     * 
+     * @param row
+     *            the row, counted from the south
+     * @param col
+     *            the column, counted from the west
+     * @return the probability of the cell
+     */
+    public double getProbability(int row, int col) {
+        return probability[row * cols + col];
+    }
+
+    /**
+     * Returns the latitude of the center of the given row
+     * 
+     * @param row
+     *            the row, counted from the south
+     * @return the latitude of the center of the row
+     */
+    public double getLatitude(int row) {
+        return minLat + (row + 0.5) * (maxLat - minLat) / rows;
+    }
+
+    /**
+     * Returns the longitude of the center of the given column
+     * 
+     * @param col
+     *            the column, counted from the west
+     * @return the longitude of the center of the column
+     */
+    public double getLongitude(int col) {
+        return minLon + (col + 0.5) * (maxLon - minLon) / cols;
+    }
+
+    /**
+     * Returns the probability of containment of the given area, i.e. the summed probability of the cells with their center
+     * within the area
+     * 
+     * @param south
+     *            southern boundary
+     * @param west
+     *            western boundary
+     * @param north
+     *            northern boundary
+     * @param east
+     *            eastern boundary
+     * @return the probability of containment
+     */
+    public double getProbabilityOfContainment(double south, double west, double north, double east) {
+        double poc = 0;
+        for (int row = 0; row < rows; row++) {
+            double lat = getLatitude(row);
+            if (lat < south || lat > north) {
+                continue;
+            }
+            for (int col = 0; col < cols; col++) {
+                double lon = getLongitude(col);
+                if (lon >= west && lon <= east) {
+                    poc += probability[row * cols + col];
+                }
+            }
+        }
+        return poc;
+    }
+
+    /**
+     * Returns the smallest cell probability such that the cells with at least this probability contain the search object
+     * with the given probability. Drawing these cells gives the smallest area with the requested probability of containment.
+     * 
+     * @param containment
+     *            the requested probability of containment, between 0 and 1
+     * @return the cell probability threshold
+     */
+    public double getContainmentThreshold(double containment) {
+        float[] sorted = probability.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (int k = sorted.length - 1; k >= 0; k--) {
+            sum += sorted[k];
+            if (sum >= containment) {
+                return sorted[k];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the mean position of the particles, which corresponds to the datum of the deterministic calculations
+     * 
+     * @return the mean position of the particles
+     */
+    public Position getMeanPosition() {
+        return Position.create(meanLat, meanLon);
+    }
+
+    public DateTime getTime() {
+        return time;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+}
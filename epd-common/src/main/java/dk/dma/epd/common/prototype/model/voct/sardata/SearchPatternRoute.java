@@ -85,6 +85,7 @@ public class SearchPatternRoute extends Route {
         for (int i = 0; i < waypoints.size(); i++) {
             waypoints.get(i).setPos(dynamicPositions.get(i));
         }
+        invalidateGeometry();
         
         dynamic = true;
     }
@@ -94,6 +95,7 @@ public class SearchPatternRoute extends Route {
         for (int i = 0; i < waypoints.size(); i++) {
             waypoints.get(i).setPos(staticPositions.get(i));
         }
+        invalidateGeometry();
         
         dynamic = false;
     }
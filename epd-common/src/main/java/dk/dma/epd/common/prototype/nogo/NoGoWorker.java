@@ -24,27 +24,44 @@ import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.communication.webservice.ShoreServiceException;
 import dk.dma.epd.common.prototype.shoreservice.ShoreServicesCommon;
 import dk.frv.enav.common.xml.nogo.response.NogoResponse;
-import dk.frv.enav.common.xml.nogoslices.response.NogoResponseSlices;
 
-public class NoGoWorker extends Thread {
+/**
+ * Fetches the NoGo result of a single time slice of a NoGo request.
+ * <p>
+ * One worker is submitted per slice, so the slices are fetched concurrently and each slice is handed to the
+ * {@linkplain NogoHandlerCommon} as soon as it arrives.
+ */
+public class NoGoWorker implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(NoGoWorker.class);
 
     private NogoHandlerCommon nogoHandler;
     private ShoreServicesCommon shoreServices;
+    int requestId;
     int id;
     double draught;
     Position northWestPoint;
     Position southEastPoint;
     Date validFrom;
     Date validTo;
-    int slices;
 
-    public NoGoWorker(NogoHandlerCommon nogoHandler, ShoreServicesCommon shoreCommon, int id, int slices) {
+    /**
+     * Constructor
+     * 
+     * @param nogoHandler
+     *            the handler to report the result to
+     * @param shoreCommon
+     *            the shore services
+     * @param requestId
+     *            the id of the NoGo request
+     * @param id
+     *            the index of the slice
+     */
+    public NoGoWorker(NogoHandlerCommon nogoHandler, ShoreServicesCommon shoreCommon, int requestId, int id) {
         this.nogoHandler = nogoHandler;
         shoreServices = shoreCommon;
+        this.requestId = requestId;
         this.id = id;
-        this.slices = slices;
     }
 
     public void setValues(double draught, Position northWestPoint, Position southEastPoint, DateTime startDate, DateTime endDate) {
@@ -60,57 +77,36 @@ public class NoGoWorker extends Thread {
     @Override
     public void run() {
 
-        LOG.info("NoGo Worker has started its request");
+        LOG.info("NoGo Worker has started slice " + id + " of request " + requestId);
 
         if (shoreServices == null) {
-            nogoHandler.noNetworkConnection();
-            // Send fault message
-
+            nogoHandler.nogoSliceFailed(requestId, id, true);
             return;
         }
 
         try {
+            NogoResponse nogoResponse = shoreServices.nogoPoll(draught, northWestPoint, southEastPoint, validFrom, validTo);
 
-            if (slices == 1) {
-
-                NogoResponse nogoResponse = shoreServices.nogoPoll(draught, northWestPoint, southEastPoint, validFrom, validTo);
-
-                // Check the nogoresponse stuff
-
-                if (nogoResponse == null || nogoResponse.getPolygons() == null) {
-                    nogoHandler.nogoTimedOut();
-                    return;
-                }
-
-                // Store results
-
-                nogoHandler.nogoRequestCompleted(nogoResponse);
-            } else {
-                NogoResponseSlices nogoResponse = shoreServices.nogoPoll(draught, northWestPoint, southEastPoint, validFrom,
-                        validTo, slices);
-
-                // Check the nogoresponse stuff
+            if (Thread.currentThread().isInterrupted()) {
+                // The request has been cancelled
+                return;
+            }
 
-                if (nogoResponse == null || nogoResponse.getResponses() == null) {
-                    nogoHandler.nogoTimedOut();
-                    nogoHandler.setNoGoRequestCompleted();
-                    return;
-                }
+            // Check the nogoresponse stuff
+            if (nogoResponse == null || nogoResponse.getPolygons() == null) {
+                nogoHandler.nogoSliceFailed(requestId, id, false);
+                return;
+            }
 
-                // Store the responses
-                nogoHandler.nogoRequestCompleted(nogoResponse);
+            // Store results
+            nogoHandler.nogoSliceCompleted(requestId, id, nogoResponse);
 
-                LOG.info("NoGo Worker has completed its request");
+            LOG.info("NoGo Worker has completed slice " + id + " of request " + requestId);
 
-            }
         } catch (ShoreServiceException e) {
-            // TODO Auto-generated catch block
-            nogoHandler.noNetworkConnection();
             LOG.error("Failed to get NoGo from shore: " + e.getMessage());
-
+            nogoHandler.nogoSliceFailed(requestId, id, true);
         }
-        // Perform the thing
-        nogoHandler.setNoGoRequestCompleted();
     }
 
 }
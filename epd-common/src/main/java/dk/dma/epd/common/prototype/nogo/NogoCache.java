@@ -0,0 +1,341 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.nogo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.joda.time.DateTime;
+
+import dk.dma.enav.model.geometry.Position;
+import dk.frv.enav.common.xml.nogo.types.NogoPoint;
+import dk.frv.enav.common.xml.nogo.types.NogoPolygon;
+
+/**
+ * Cache of NoGo results keyed by draught, area and validity window.
+ * <p>
+ * A request for the same draught is answered from the cache when the requested area lies within the cached area and the
+ * requested validity window is the window of the cached result. The slices of a multi-slice request are cached one by one,
+ * so a request lining up with a cached slice gets the result of that slice. A result for a wider window is never used, as it
+ * is the union of the NoGo areas of all the slices within it and would lose the time slicing. Results for a sub-area are
+ * produced by clipping the cached polygons to the requested area. The least recently used results are evicted first.
+ */
+@ThreadSafe
+public class NogoCache {
+
+    /** Default max number of cached results */
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    private final int maxEntries;
+
+    // Most recently used first
+    @GuardedBy("this")
+    private final LinkedList<Entry> entries = new LinkedList<>();
+
+    /**
+     * Constructor using the default max number of cached results
+     */
+    public NogoCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param maxEntries
+     *            the max number of cached results
+     */
+    public NogoCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cached result for the given request, or null if the request cannot be answered from the cache
+     * 
+     * @param draught
+     *            the draught
+     * @param northWest
+     *            the north west corner of the area
+     * @param southEast
+     *            the south east corner of the area
+     * @param validFrom
+     *            the start of the validity window
+     * @param validTo
+     *            the end of the validity window
+     * @return the cached result or null if not found
+     */
+    public synchronized NoGoDataEntry get(double draught, Position northWest, Position southEast, DateTime validFrom,
+            DateTime validTo) {
+        Area area = new Area(northWest, southEast);
+        Entry best = null;
+        for (Entry entry : entries) {
+            if (entry.matches(draught, validFrom, validTo) && entry.area.contains(area)) {
+                best = entry;
+                break;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        // Move to front
+        entries.remove(best);
+        entries.addFirst(best);
+        return best.clip(area, validFrom, validTo);
+    }
+
+    /**
+     * Caches the result of a request
+     * 
+     * @param draught
+     *            the draught
+     * @param northWest
+     *            the north west corner of the area
+     * @param southEast
+     *            the south east corner of the area
+     * @param result
+     *            the result, with the validity window of the request
+     */
+    public synchronized void put(double draught, Position northWest, Position southEast, NoGoDataEntry result) {
+        if (result.getNogoPolygons() == null) {
+            return;
+        }
+        Area area = new Area(northWest, southEast);
+        // Results for an area within the new one and the same window are superseded
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.draught == draught && entry.result.getValidFrom().isEqual(result.getValidFrom())
+                    && entry.result.getValidTo().isEqual(result.getValidTo()) && area.contains(entry.area)) {
+                it.remove();
+            }
+        }
+        entries.addFirst(new Entry(draught, area, result));
+        while (entries.size() > maxEntries) {
+            entries.removeLast();
+        }
+    }
+
+    /**
+     * Removes all cached results
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached results
+     * 
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached result
+     */
+    static final class Entry {
+        final double draught;
+        final Area area;
+        final NoGoDataEntry result;
+
+        Entry(double draught, Area area, NoGoDataEntry result) {
+            this.draught = draught;
+            this.area = area;
+            this.result = result;
+        }
+
+        /**
+         * Returns whether this result is for the given draught and validity window
+         */
+        boolean matches(double draught, DateTime validFrom, DateTime validTo) {
+            return this.draught == draught && result.getValidFrom().isEqual(validFrom) && result.getValidTo().isEqual(validTo);
+        }
+
+        /**
+         * Returns the result with the polygons clipped to the given area
+         */
+        NoGoDataEntry clip(Area clipArea, DateTime validFrom, DateTime validTo) {
+            List<NogoPolygon> polygons = result.getNogoPolygons();
+            if (!clipArea.equals(area)) {
+                List<NogoPolygon> clipped = new ArrayList<>();
+                for (NogoPolygon polygon : polygons) {
+                    NogoPolygon clippedPolygon = clipArea.clip(polygon);
+                    if (clippedPolygon != null) {
+                        clipped.add(clippedPolygon);
+                    }
+                }
+                polygons = clipped;
+            }
+            NoGoDataEntry clippedResult = new NoGoDataEntry(validFrom, validTo);
+            clippedResult.setNogoPolygons(polygons);
+            clippedResult.setNoGoErrorCode(result.getNoGoErrorCode());
+            clippedResult.setNoGoMessage(result.getNoGoMessage());
+            return clippedResult;
+        }
+    }
+
+    /**
+     * A latitude/longitude bounding box
+     */
+    static final class Area {
+        final double north;
+        final double west;
+        final double south;
+        final double east;
+
+        Area(Position northWest, Position southEast) {
+            north = northWest.getLatitude();
+            west = northWest.getLongitude();
+            south = southEast.getLatitude();
+            east = southEast.getLongitude();
+        }
+
+        boolean contains(Area area) {
+            return area.north <= north && area.south >= south && area.west >= west && area.east <= east;
+        }
+
+        boolean intersects(NogoPolygon polygon) {
+            return clip(polygon) != null;
+        }
+
+        /**
+         * Clips the polygon to this area using the Sutherland-Hodgman algorithm
+         * 
+         * @param polygon
+         *            the polygon to clip
+         * @return the clipped polygon, the polygon itself if it lies within this area, or null if it lies outside this area
+         */
+        NogoPolygon clip(NogoPolygon polygon) {
+            List<NogoPoint> points = polygon.getPolygon();
+            double minLat = Double.MAX_VALUE;
+            double maxLat = -Double.MAX_VALUE;
+            double minLon = Double.MAX_VALUE;
+            double maxLon = -Double.MAX_VALUE;
+            for (NogoPoint point : points) {
+                minLat = Math.min(minLat, point.getLat());
+                maxLat = Math.max(maxLat, point.getLat());
+                minLon = Math.min(minLon, point.getLon());
+                maxLon = Math.max(maxLon, point.getLon());
+            }
+            if (points.isEmpty() || minLat > north || maxLat < south || minLon > east || maxLon < west) {
+                return null;
+            } else if (maxLat <= north && minLat >= south && minLon >= west && maxLon <= east) {
+                return polygon;
+            }
+
+            double[] lats = new double[points.size()];
+            double[] lons = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                lats[i] = points.get(i).getLat();
+                lons[i] = points.get(i).getLon();
+            }
+            int n = points.size();
+            for (int edge = 0; edge < 4 && n > 0; edge++) {
+                double[] clippedLats = new double[2 * n];
+                double[] clippedLons = new double[2 * n];
+                int m = 0;
+                for (int i = 0; i < n; i++) {
+                    int prev = (i + n - 1) % n;
+                    boolean in = isInside(edge, lats[i], lons[i]);
+                    boolean prevIn = isInside(edge, lats[prev], lons[prev]);
+                    if (in != prevIn) {
+                        // Add the intersection with the edge
+                        double t = (boundary(edge) - value(edge, lats[prev], lons[prev]))
+                                / (value(edge, lats[i], lons[i]) - value(edge, lats[prev], lons[prev]));
+                        clippedLats[m] = lats[prev] + t * (lats[i] - lats[prev]);
+                        clippedLons[m] = lons[prev] + t * (lons[i] - lons[prev]);
+                        m++;
+                    }
+                    if (in) {
+                        clippedLats[m] = lats[i];
+                        clippedLons[m] = lons[i];
+                        m++;
+                    }
+                }
+                lats = clippedLats;
+                lons = clippedLons;
+                n = m;
+            }
+            if (n < 3) {
+                return null;
+            }
+
+            List<NogoPoint> clipped = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                NogoPoint point = new NogoPoint();
+                point.setLat(lats[i]);
+                point.setLon(lons[i]);
+                clipped.add(point);
+            }
+            NogoPolygon clippedPolygon = new NogoPolygon();
+            clippedPolygon.setPolygon(clipped);
+            return clippedPolygon;
+        }
+
+        /**
+         * Returns the latitude or longitude of the given edge; 0 = north, 1 = south, 2 = west, 3 = east
+         */
+        private double boundary(int edge) {
+            switch (edge) {
+            case 0:
+                return north;
+            case 1:
+                return south;
+            case 2:
+                return west;
+            default:
+                return east;
+            }
+        }
+
+        private static double value(int edge, double lat, double lon) {
+            return (edge < 2) ? lat : lon;
+        }
+
+        private boolean isInside(int edge, double lat, double lon) {
+            switch (edge) {
+            case 0:
+                return lat <= north;
+            case 1:
+                return lat >= south;
+            case 2:
+                return lon >= west;
+            default:
+                return lon <= east;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Area)) {
+                return false;
+            }
+            Area other = (Area) obj;
+            return north == other.north && west == other.west && south == other.south && east == other.east;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(north) ^ 31 * Double.doubleToLongBits(west)
+                    ^ 31 * 31 * Double.doubleToLongBits(south) ^ 31 * 31 * 31 * Double.doubleToLongBits(east);
+            return (int) (bits ^ (bits >>> 32));
+        }
+    }
+}
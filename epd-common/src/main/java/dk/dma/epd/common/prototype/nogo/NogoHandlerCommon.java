@@ -17,7 +17,9 @@ package dk.dma.epd.common.prototype.nogo;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Future;
 
+import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 import org.joda.time.DateTime;
@@ -27,14 +29,18 @@ import org.slf4j.LoggerFactory;
 import com.bbn.openmap.MapHandlerChild;
 
 import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.layers.nogo.NogoLayer;
 import dk.dma.epd.common.prototype.shoreservice.ShoreServicesCommon;
 import dk.frv.enav.common.xml.nogo.response.NogoResponse;
 import dk.frv.enav.common.xml.nogo.types.NogoPolygon;
-import dk.frv.enav.common.xml.nogoslices.response.NogoResponseSlices;
 
 /**
- * Component for handling NOGO areas
+ * Component for handling NOGO areas.
+ * <p>
+ * The time slices of a NoGo request are fetched concurrently and each slice is shown as soon as it arrives. Results are
+ * cached by draught, area and validity window, so repeating a request, or requesting a sub-area of a previous request, is
+ * answered without asking the server again.
  */
 @ThreadSafe
 public class NogoHandlerCommon extends MapHandlerChild {
@@ -68,6 +74,20 @@ public class NogoHandlerCommon extends MapHandlerChild {
 
     protected boolean requestInProgress;
 
+    private final NogoCache nogoCache = new NogoCache();
+
+    // The id of the current request. Results of earlier requests are ignored
+    @GuardedBy("this")
+    private int requestId;
+    @GuardedBy("this")
+    private final List<Future<?>> pendingSlices = new ArrayList<>();
+    @GuardedBy("this")
+    private int completedSlices;
+    @GuardedBy("this")
+    private int finishedSlices;
+    @GuardedBy("this")
+    private boolean requestFailed;
+
     public NogoLayer getNogoLayer() {
         return nogoLayer;
     }
@@ -95,6 +115,13 @@ public class NogoHandlerCommon extends MapHandlerChild {
 
     public synchronized void updateNogo(boolean useSlices, int minutesBetween) {
 
+        // Any request still in progress is superseded
+        cancelPendingSlices();
+        requestId++;
+        completedSlices = 0;
+        finishedSlices = 0;
+        requestFailed = false;
+
         nogoData = new ArrayList<NoGoDataEntry>();
         // New Request - determine how many time slices are needed to complete the request or if we even need to do slices
 
@@ -129,18 +156,55 @@ public class NogoHandlerCommon extends MapHandlerChild {
             nogoData.add(nogoDataEntry);
         }
 
-        NoGoWorker nogoWorker = createWorker(nogoData.size(), new DateTime(validFrom.getTime()), new DateTime(validTo.getTime()));
-
-        nogoWorker.start();
-
+        // Answer the slices from the cache where possible and fetch the rest concurrently
+        for (int i = 0; i < nogoData.size(); i++) {
+            NoGoDataEntry dataEntry = nogoData.get(i);
+            NoGoDataEntry cached = nogoCache.get(draught, northWestPoint, southEastPoint, dataEntry.getValidFrom(),
+                    dataEntry.getValidTo());
+            if (cached != null) {
+                LOG.info("NoGo slice " + i + " found in cache");
+                sliceCompleted(i, cached);
+            } else {
+                NoGoWorker nogoWorker = createWorker(i, dataEntry.getValidFrom(), dataEntry.getValidTo());
+                pendingSlices.add(ExecutionService.getInstance().submit("NoGoWorker", nogoWorker));
+            }
+        }
     }
 
-    private NoGoWorker createWorker(int slices, DateTime startDate, DateTime endDate) {
-        NoGoWorker nogoWorker = new NoGoWorker(this, this.shoreServices, 0, slices);
+    private NoGoWorker createWorker(int id, DateTime startDate, DateTime endDate) {
+        NoGoWorker nogoWorker = new NoGoWorker(this, this.shoreServices, requestId, id);
         nogoWorker.setValues(draught, northWestPoint, southEastPoint, startDate, endDate);
         return nogoWorker;
     }
 
+    /**
+     * Cancels the NoGo request in progress, if any. Slices that have already been shown are kept.
+     */
+    public synchronized void cancelNogo() {
+        if (!requestInProgress) {
+            return;
+        }
+        LOG.info("Cancelling NoGo request " + requestId);
+        cancelPendingSlices();
+        requestId++;
+        requestInProgress = false;
+        nogoCancelled();
+    }
+
+    /**
+     * Called when the NoGo request in progress has been cancelled
+     */
+    protected void nogoCancelled() {
+
+    }
+
+    private void cancelPendingSlices() {
+        for (Future<?> future : pendingSlices) {
+            future.cancel(true);
+        }
+        pendingSlices.clear();
+    }
+
     /**
      * Handles a failed NoGo request, either because of data error, or no connection
      */
@@ -152,39 +216,95 @@ public class NogoHandlerCommon extends MapHandlerChild {
 
     }
 
-    public synchronized void nogoRequestCompleted(NogoResponseSlices nogoResponses) {
-
-        LOG.info("NoGo Worker has completed its request");
+    /**
+     * Called by the {@linkplain NoGoWorker} when a slice has arrived
+     * 
+     * @param requestId
+     *            the id of the request
+     * @param id
+     *            the index of the slice
+     * @param response
+     *            the NoGo response of the slice
+     */
+    public synchronized void nogoSliceCompleted(int requestId, int id, NogoResponse response) {
+        if (requestId != this.requestId) {
+            LOG.debug("Ignoring NoGo slice " + id + " of superseded request " + requestId);
+            return;
+        }
 
-        int completedSlices = 0;
+        NoGoDataEntry dataEntry = nogoData.get(id);
+        NoGoDataEntry result = new NoGoDataEntry(dataEntry.getValidFrom(), dataEntry.getValidTo());
+        result.setNogoPolygons(response.getPolygons());
+        result.setNoGoMessage(response.getNoGoMessage());
+        result.setNoGoErrorCode(response.getNoGoErrorCode());
+        if (result.getNoGoErrorCode() == 0 || result.getNoGoErrorCode() == 18) {
+            nogoCache.put(draught, northWestPoint, southEastPoint, result);
+        }
 
-        for (int i = 0; i < nogoResponses.getResponses().size(); i++) {
-            NogoResponse response = nogoResponses.getResponses().get(i);
+        sliceCompleted(id, result);
+    }
 
-            completedSlices = completedSlices + 1;
+    /**
+     * Called by the {@linkplain NoGoWorker} when a slice could not be fetched
+     * 
+     * @param requestId
+     *            the id of the request
+     * @param id
+     *            the index of the slice
+     * @param noConnection
+     *            if the slice failed because the shore services could not be reached
+     */
+    public synchronized void nogoSliceFailed(int requestId, int id, boolean noConnection) {
+        if (requestId != this.requestId) {
+            return;
+        }
 
-            NoGoDataEntry dataEntry = nogoData.get(i);
+        // Only report the first failure of a request
+        if (!requestFailed) {
+            requestFailed = true;
+            if (noConnection) {
+                noNetworkConnection();
+            } else {
+                nogoTimedOut();
+            }
+        }
+        sliceFinished();
+    }
 
-            dataEntry.setNogoPolygons(response.getPolygons());
-            dataEntry.setNoGoMessage(response.getNoGoMessage());
-            dataEntry.setNoGoErrorCode(response.getNoGoErrorCode());
+    /**
+     * Stores the result of a slice and updates the panel and layer
+     */
+    private void sliceCompleted(int i, NoGoDataEntry result) {
+        NoGoDataEntry dataEntry = nogoData.get(i);
+        dataEntry.setNogoPolygons(result.getNogoPolygons());
+        dataEntry.setNoGoMessage(result.getNoGoMessage());
+        dataEntry.setNoGoErrorCode(result.getNoGoErrorCode());
 
-            // Special handling of slices
-            if (this.useSlices) {
-                updatePanelCompleteMultiple(dataEntry.getNoGoErrorCode(), dataEntry.getNogoPolygons(), dataEntry.getValidFrom(),
-                        dataEntry.getValidTo(), draught, i);
+        completedSlices++;
 
-                updateLayerMultipleResult(i);
+        // Special handling of slices
+        if (this.useSlices) {
+            updatePanelCompleteMultiple(dataEntry.getNoGoErrorCode(), dataEntry.getNogoPolygons(), dataEntry.getValidFrom(),
+                    dataEntry.getValidTo(), draught, i);
 
-                updatePanelCompletedSlices(completedSlices, nogoData.size());
-            } else {
-                updatePanelCompleteSingle(dataEntry.getNoGoErrorCode(), dataEntry.getNogoPolygons(), validFrom, validTo, draught);
+            updateLayerMultipleResult(i);
 
-                updateLayerSingleResult();
-            }
+            updatePanelCompletedSlices(completedSlices, nogoData.size());
+        } else {
+            updatePanelCompleteSingle(dataEntry.getNoGoErrorCode(), dataEntry.getNogoPolygons(), validFrom, validTo, draught);
 
+            updateLayerSingleResult();
         }
+        sliceFinished();
+    }
 
+    private void sliceFinished() {
+        finishedSlices++;
+        if (finishedSlices == nogoData.size()) {
+            LOG.info("NoGo request " + requestId + " has completed");
+            pendingSlices.clear();
+            setNoGoRequestCompleted();
+        }
     }
 
     protected void updatePanelCompleteMultiple(int errorcode, List<NogoPolygon> polygons, DateTime validFrom, DateTime validTo,
@@ -200,20 +320,6 @@ public class NogoHandlerCommon extends MapHandlerChild {
 
     }
 
-    public synchronized void nogoRequestCompleted(NogoResponse response) {
-
-        NoGoDataEntry dataEntry = nogoData.get(0);
-
-        dataEntry.setNogoPolygons(response.getPolygons());
-        dataEntry.setNoGoMessage(response.getNoGoMessage());
-        dataEntry.setNoGoErrorCode(response.getNoGoErrorCode());
-
-        updatePanelCompleteSingle(dataEntry.getNoGoErrorCode(), dataEntry.getNogoPolygons(), validFrom, validTo, draught);
-
-        updateLayerSingleResult();
-
-    }
-
     public synchronized void setNoGoRequestCompleted() {
         requestInProgress = false;
     }
@@ -240,6 +346,15 @@ public class NogoHandlerCommon extends MapHandlerChild {
         nogoLayer.singleResultCompleted(nogoData.get(0));
     }
 
+    /**
+     * Returns the cache of NoGo results
+     * 
+     * @return the cache of NoGo results
+     */
+    public NogoCache getNogoCache() {
+        return nogoCache;
+    }
+
     public Double getDraught() {
         return draught;
     }
@@ -0,0 +1,344 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.notification;
+
+import java.util.List;
+
+import net.jcip.annotations.Immutable;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.Heading;
+import dk.dma.epd.common.util.Calculator;
+import dma.msinm.MCLocation;
+import dma.msinm.MCLocationType;
+import dma.msinm.MCPoint;
+
+/**
+ * Immutable, pre-processed geometry of the locations of an MSI-NM message.
+ * <p>
+ * The location points are kept in primitive arrays along with the overall bounding box, so that the message can be tested
+ * against positions and route legs without converting the locations over and over again.
+ * <p>
+ * Points and circles are measured by great circle distance, like before. Polylines and polygons are measured by the true
+ * distance to their segments, computed in a local equirectangular frame, and positions inside a polygon have distance 0.
+ */
+@Immutable
+public final class MsiNmGeometry {
+
+    private static final int POINT = 0;
+    private static final int CIRCLE = 1;
+    private static final int POLYLINE = 2;
+    private static final int POLYGON = 3;
+
+    private final int[] types;
+    private final double[][] lats;
+    private final double[][] lons;
+    private final double[] radius;
+
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+
+    /**
+     * Constructor
+     *
+     * @param locations
+     *            the MSI-NM locations
+     */
+    public MsiNmGeometry(List<MCLocation> locations) {
+        int count = (locations == null) ? 0 : locations.size();
+        types = new int[count];
+        lats = new double[count][];
+        lons = new double[count][];
+        radius = new double[count];
+        double latMin = 90, latMax = -90, lonMin = 180, lonMax = -180;
+        for (int i = 0; i < count; i++) {
+            MCLocation loc = locations.get(i);
+            List<MCPoint> points = loc.getPoints();
+            int n = (points == null) ? 0 : points.size();
+            lats[i] = new double[n];
+            lons[i] = new double[n];
+            for (int j = 0; j < n; j++) {
+                lats[i][j] = points.get(j).getLat();
+                lons[i][j] = points.get(j).getLon();
+                latMin = Math.min(latMin, lats[i][j]);
+                latMax = Math.max(latMax, lats[i][j]);
+                lonMin = Math.min(lonMin, lons[i][j]);
+                lonMax = Math.max(lonMax, lons[i][j]);
+            }
+            types[i] = -1;
+            if (loc.getType() == MCLocationType.CIRCLE && loc.getRadius() != null && n == 1) {
+                types[i] = CIRCLE;
+                radius[i] = loc.getRadius().doubleValue();
+                // Include the radius in the bounding box
+                double dLat = radius[i] / 60.0;
+                double dLon = dLat / Math.max(1e-6, Math.cos(Math.toRadians(Math.min(89, Math.abs(lats[i][0]) + dLat))));
+                latMin = Math.min(latMin, lats[i][0] - dLat);
+                latMax = Math.max(latMax, lats[i][0] + dLat);
+                lonMin = Math.min(lonMin, lons[i][0] - dLon);
+                lonMax = Math.max(lonMax, lons[i][0] + dLon);
+            } else if (loc.getType() == MCLocationType.POINT && n == 1) {
+                types[i] = POINT;
+            } else if (loc.getType() == MCLocationType.POLYLINE && n > 0) {
+                types[i] = POLYLINE;
+            } else if (loc.getType() == MCLocationType.POLYGON && n > 0) {
+                types[i] = POLYGON;
+            }
+        }
+        minLat = latMin;
+        maxLat = latMax;
+        minLon = lonMin;
+        maxLon = lonMax;
+    }
+
+    /**
+     * Returns if the geometry has any points
+     *
+     * @return if the geometry has any points
+     */
+    public boolean isEmpty() {
+        return minLat > maxLat;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    /**
+     * Returns if any of the location points are within the given bounding box
+     *
+     * @param boxMinLat
+     *            southern boundary
+     * @param boxMinLon
+     *            western boundary
+     * @param boxMaxLat
+     *            northern boundary
+     * @param boxMaxLon
+     *            eastern boundary
+     * @return if any of the location points are within the bounding box
+     */
+    public boolean hasPointWithin(double boxMinLat, double boxMinLon, double boxMaxLat, double boxMaxLon) {
+        for (int i = 0; i < lats.length; i++) {
+            for (int j = 0; j < lats[i].length; j++) {
+                if (lats[i][j] >= boxMinLat && lats[i][j] <= boxMaxLat && lons[i][j] >= boxMinLon && lons[i][j] <= boxMaxLon) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the distance in nautical miles between the given position and the geometry, or null if undefined
+     *
+     * @param pos
+     *            the position
+     * @return the distance in nautical miles or null if undefined
+     */
+    public Double distanceTo(Position pos) {
+        if (pos == null || types.length == 0) {
+            return null;
+        }
+        double minDist = Double.MAX_VALUE;
+        LocalFrame frame = new LocalFrame(pos.getLatitude(), pos.getLongitude());
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+            case POINT:
+                minDist = Math.min(minDist, Calculator.range(pos, Position.create(lats[i][0], lons[i][0]), Heading.GC));
+                break;
+            case CIRCLE:
+                double dist = Calculator.range(pos, Position.create(lats[i][0], lons[i][0]), Heading.GC);
+                minDist = Math.min(minDist, Math.max(0, dist - radius[i]));
+                break;
+            case POLYGON:
+                if (contains(i, pos.getLatitude(), pos.getLongitude())) {
+                    return 0.0;
+                }
+                minDist = Math.min(minDist, distanceToSegments(i, frame, 0, 0, 0, 0, true));
+                break;
+            case POLYLINE:
+                minDist = Math.min(minDist, distanceToSegments(i, frame, 0, 0, 0, 0, false));
+                break;
+            default:
+                break;
+            }
+        }
+        return minDist;
+    }
+
+    /**
+     * Returns the distance in nautical miles between the given line segment and the geometry, or null if undefined
+     *
+     * @param start
+     *            the start of the segment
+     * @param end
+     *            the end of the segment
+     * @return the distance in nautical miles or null if undefined
+     */
+    public Double distanceTo(Position start, Position end) {
+        if (start == null || end == null || types.length == 0) {
+            return null;
+        }
+        LocalFrame frame = new LocalFrame((start.getLatitude() + end.getLatitude()) / 2.0, start.getLongitude()
+                + LocalFrame.wrap(end.getLongitude() - start.getLongitude()) / 2.0);
+        double ax = frame.x(start.getLongitude());
+        double ay = frame.y(start.getLatitude());
+        double bx = frame.x(end.getLongitude());
+        double by = frame.y(end.getLatitude());
+
+        double minDist = Double.MAX_VALUE;
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+            case POINT:
+            case CIRCLE:
+                double dist = pointToSegment(frame.x(lons[i][0]), frame.y(lats[i][0]), ax, ay, bx, by);
+                minDist = Math.min(minDist, Math.max(0, dist - radius[i]));
+                break;
+            case POLYGON:
+                if (contains(i, start.getLatitude(), start.getLongitude()) || contains(i, end.getLatitude(), end.getLongitude())) {
+                    return 0.0;
+                }
+                minDist = Math.min(minDist, distanceToSegments(i, frame, ax, ay, bx, by, true));
+                break;
+            case POLYLINE:
+                minDist = Math.min(minDist, distanceToSegments(i, frame, ax, ay, bx, by, false));
+                break;
+            default:
+                break;
+            }
+        }
+        return minDist;
+    }
+
+    /**
+     * Returns the min distance between the segments of location {@code i} and the segment from (ax, ay) to (bx, by).
+     * A zero-length segment is used when measuring the distance to a point.
+     */
+    private double distanceToSegments(int i, LocalFrame frame, double ax, double ay, double bx, double by, boolean closed) {
+        double[] lat = lats[i];
+        double[] lon = lons[i];
+        int n = lat.length;
+        if (n == 1) {
+            return pointToSegment(frame.x(lon[0]), frame.y(lat[0]), ax, ay, bx, by);
+        }
+        double minDist = Double.MAX_VALUE;
+        int segments = closed ? n : n - 1;
+        double px = frame.x(lon[0]);
+        double py = frame.y(lat[0]);
+        for (int j = 1; j <= segments; j++) {
+            double qx = frame.x(lon[j % n]);
+            double qy = frame.y(lat[j % n]);
+            minDist = Math.min(minDist, segmentToSegment(px, py, qx, qy, ax, ay, bx, by));
+            px = qx;
+            py = qy;
+        }
+        return minDist;
+    }
+
+    /**
+     * Returns if the given position is inside polygon {@code i}, using the even-odd rule
+     */
+    private boolean contains(int i, double lat, double lon) {
+        double[] plat = lats[i];
+        double[] plon = lons[i];
+        if (plat.length < 3 || lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
+            return false;
+        }
+        boolean inside = false;
+        for (int j = 0, k = plat.length - 1; j < plat.length; k = j++) {
+            if ((plat[j] > lat) != (plat[k] > lat)
+                    && lon < (plon[k] - plon[j]) * (lat - plat[j]) / (plat[k] - plat[j]) + plon[j]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns the distance between the point (px, py) and the segment from (ax, ay) to (bx, by)
+     */
+    static double pointToSegment(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = (len2 <= 0) ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / len2));
+        double x = ax + t * dx - px;
+        double y = ay + t * dy - py;
+        return Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Returns the distance between the segment from (px, py) to (qx, qy) and the segment from (ax, ay) to (bx, by)
+     */
+    static double segmentToSegment(double px, double py, double qx, double qy, double ax, double ay, double bx, double by) {
+        double d1 = cross(ax, ay, bx, by, px, py);
+        double d2 = cross(ax, ay, bx, by, qx, qy);
+        double d3 = cross(px, py, qx, qy, ax, ay);
+        double d4 = cross(px, py, qx, qy, bx, by);
+        if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0))) {
+            return 0;
+        }
+        return Math.min(Math.min(pointToSegment(px, py, ax, ay, bx, by), pointToSegment(qx, qy, ax, ay, bx, by)),
+                Math.min(pointToSegment(ax, ay, px, py, qx, qy), pointToSegment(bx, by, px, py, qx, qy)));
+    }
+
+    private static double cross(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * Local equirectangular projection in nautical miles around a reference position
+     */
+    private static final class LocalFrame {
+        final double refLat;
+        final double refLon;
+        final double cosLat;
+
+        LocalFrame(double refLat, double refLon) {
+            this.refLat = refLat;
+            this.refLon = refLon;
+            this.cosLat = Math.max(1e-6, Math.cos(Math.toRadians(refLat)));
+        }
+
+        double x(double lon) {
+            return wrap(lon - refLon) * 60.0 * cosLat;
+        }
+
+        double y(double lat) {
+            return (lat - refLat) * 60.0;
+        }
+
+        static double wrap(double dLon) {
+            if (dLon > 180) {
+                return dLon - 360;
+            } else if (dLon < -180) {
+                return dLon + 360;
+            }
+            return dLon;
+        }
+    }
+}
@@ -14,26 +14,19 @@
  */
 package dk.dma.epd.common.prototype.notification;
 
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 
-import com.bbn.openmap.proj.Projection;
-import com.bbn.openmap.proj.coords.LatLonPoint;
-
 import dk.dma.enav.model.geometry.Position;
-import dk.dma.epd.common.Heading;
 import dk.dma.epd.common.prototype.EPD;
 import dk.dma.epd.common.prototype.model.route.Route;
 import dk.dma.epd.common.prototype.model.route.RouteWaypoint;
-import dk.dma.epd.common.util.Calculator;
 import dk.dma.epd.common.util.TimeUtils;
 import dma.msinm.MCArea;
 import dma.msinm.MCLocation;
-import dma.msinm.MCLocationType;
 import dma.msinm.MCMessage;
 import dma.msinm.MCPoint;
 import dma.msinm.MCSeriesIdType;
@@ -48,6 +41,8 @@ public class MsiNmNotification extends Notification<MCMessage, Integer> {
 
     boolean filtered = true;
 
+    private transient volatile MsiNmGeometry geometry;
+
     /**
      * Constructor
      *
@@ -156,45 +151,29 @@ public class MsiNmNotification extends Notification<MCMessage, Integer> {
 
     /**
      * Computes the distance between the MSI-NM and the given position.
-     * NB: Test method - not precise for Polygon and Polylines
      * @param pos the pos
      * @return the distance in NM
      */
     public Double getDistanceToPosition(Position pos) {
         if (pos != null && get().getLocations() != null && get().getLocations().size() > 0) {
-            Double minDist = Double.MAX_VALUE;
-
-            for (MCLocation loc : get().getLocations()) {
-
-                // Circle
-                if (loc.getType() == MCLocationType.CIRCLE && loc.getRadius() != null && loc.getPoints().size() == 1) {
-                    double dist = Calculator.range(pos, toPos(loc.getPoints().get(0)), Heading.GC);
-                    minDist = Math.min(minDist, Math.max(0, dist - loc.getRadius().doubleValue()));
-
-
-                } else if (loc.getType() == MCLocationType.POINT && loc.getPoints().size() == 1) {
-                    // Point
-                    minDist = Math.min(minDist, Calculator.range(pos, toPos(loc.getPoints().get(0)), Heading.GC));
-
-                } else if (loc.getType() == MCLocationType.POLYGON) {
-                    // Polygon
-                    for (MCPoint pt : loc.getPoints()) {
-                        minDist = Math.min(minDist, Calculator.range(pos, toPos(pt), Heading.GC));
-                    }
-
-                } else if (loc.getType() == MCLocationType.POLYLINE) {
-                    // Polyline
-                    for (MCPoint pt : loc.getPoints()) {
-                        minDist = Math.min(minDist, Calculator.range(pos, toPos(pt), Heading.GC));
-                    }
-                }
-
-            }
-            return minDist;
+            return getGeometry().distanceTo(pos);
         }
         return null;
     }
 
+    /**
+     * Returns the pre-processed geometry of the MSI-NM locations
+     * @return the geometry of the MSI-NM locations
+     */
+    public MsiNmGeometry getGeometry() {
+        MsiNmGeometry result = geometry;
+        if (result == null) {
+            result = new MsiNmGeometry(get().getLocations());
+            geometry = result;
+        }
+        return result;
+    }
+
     /**
      * Returns if the the MSI-NM is close to any of the routes.
      * NB: Test method - Very imprecise
@@ -215,144 +194,32 @@ public class MsiNmNotification extends Notification<MCMessage, Integer> {
     }
 
     /**
-     * Returns if the MSI-NM is close the the new route
-     *
-     * NB: This code was from the old MsiLayer. Should be optimized!
+     * Returns if the MSI-NM is close the the new route, i.e. within the visibility distance of one of the legs, including the
+     * leg from the last way point to the mouse position
      *
      * @param route the new route
      * @param mousePosition the mouse position
-     * @param projection the projection
      * @return if the MSI-NM is close the the new route
      */
-    public boolean nearNewRoute(Route route, Position mousePosition, Projection projection) {
-
+    public boolean nearNewRoute(Route route, Position mousePosition) {
         double visibilityFromNewWaypoint = EPD.getInstance().getSettings().getEnavSettings().getMsiVisibilityFromNewWaypoint();
-
-        // Check if MSI messages should be visible on route.
-        boolean visibleOnRoute = false;
-
-        // Go through each waypoint of the route to check if the MSI message should be visible.
-        for (int i = 0; !visibleOnRoute && i < route.getWaypoints().size(); i++) {
-
-            RouteWaypoint rWaypoint = route.getWaypoints().get(i);
-            Point2D pointA = null;
-            Point2D pointB = null;
-            Point2D pnt;
-
-            // If the waypoint is not the last placed waypoint compare it to the next in line.
-            // Else compare it to the mouse location.
-            if (rWaypoint == route.getWaypoints().getLast()) {
-                pointA = projection.forward(rWaypoint.getPos().getLatitude(), rWaypoint.getPos().getLongitude());
-                pointB = projection.forward(mousePosition.getLatitude(), mousePosition.getLongitude());
-            } else if (rWaypoint != route.getWaypoints().getLast()) {
-                RouteWaypoint nWaypoint = route.getWaypoints().get(i+1);
-                pointA = projection.forward(rWaypoint.getPos().getLatitude(), rWaypoint.getPos().getLongitude());
-                pointB = projection.forward(nWaypoint.getPos().getLatitude(), nWaypoint.getPos().getLongitude());
-            }
-
-            // The slope of the line.
-            double slope = Math.round(
-                    ((pointB.getY() - pointA.getY()) / (pointB.getX() - pointA.getX())) * visibilityFromNewWaypoint);
-
-            // If the value of slope is more than the value of visibilityFromNewWaypoint,
-            // change the slop reverse the x and y axis.
-            if (Math.abs(slope) > visibilityFromNewWaypoint) {
-                double dy = Math.abs(pointB.getY()-pointA.getY());
-                slope = Math.round(((pointB.getX() - pointA.getX()) / (pointB.getY() - pointA.getY())) * visibilityFromNewWaypoint);
-                for (int j = 0; j*visibilityFromNewWaypoint < dy; j++) {
-                    pnt = pointA;
-
-                    // The first point should be placed a point where the mouse was clicked.
-                    if (j == 0) {
-                        visibleOnRoute = setMessageVisible(visibilityFromNewWaypoint, visibleOnRoute, projection, pnt);
-                        continue;
-                    }
-
-                    //Mouse placed on the right side of the last placed waypoint.
-                    if (pointA.getX() <= pointB.getX()) {
-
-                        if (slope > 0) {
-                            pnt.setLocation(pointA.getX()+slope, pointA.getY()+visibilityFromNewWaypoint);
-                        } else if (slope < 0) {
-                            double posSlope = Math.abs(slope);
-                            pnt.setLocation(pointA.getX()+posSlope, pointA.getY()-visibilityFromNewWaypoint);
-                        }
-
-                        // mouse placed on the left side.
-                    } else if (pointA.getX() > pointB.getX()) {
-
-                        if (slope > 0) {
-                            pnt.setLocation(pointA.getX()-slope, pointA.getY()-visibilityFromNewWaypoint);
-                        } else if (slope < 0) {
-                            double posSlope = Math.abs(slope);
-                            pnt.setLocation(pointA.getX()-posSlope, pointA.getY()+visibilityFromNewWaypoint);
-                        }
-                    }
-
-                    // Handles placing of point on a vertical line.
-                    if (pointA.getY() < pointB.getY() && slope == 0) {
-                        pnt.setLocation(pointA.getX(), pointA.getY()+visibilityFromNewWaypoint);
-                    } else if (pointA.getY() > pointB.getY() && slope == 0) {
-                        pnt.setLocation(pointA.getX(), pointA.getY()-visibilityFromNewWaypoint);
-                    }
-
-                    visibleOnRoute = setMessageVisible(visibilityFromNewWaypoint, visibleOnRoute, projection, pnt);
-                }
-            } else {
-                double dx = Math.abs(pointB.getX()-pointA.getX());
-                for (int j = 0; j*visibilityFromNewWaypoint < dx; j++) {
-                    pnt = pointA;
-
-                    if (j == 0) {
-                        visibleOnRoute = setMessageVisible(visibilityFromNewWaypoint, visibleOnRoute, projection, pnt);
-                        continue;
-                    }
-
-                    // Mouse placed on the right side of the last placed waypoint.
-                    if (pointA.getX() <= pointB.getX()) {
-
-                        if (slope > 0) {
-                            pnt.setLocation(pointA.getX()+visibilityFromNewWaypoint, pointA.getY()+slope);
-                        } else if (slope < 0) {
-                            double posSlope = Math.abs(slope);
-                            pnt.setLocation(pointA.getX()+visibilityFromNewWaypoint, pointA.getY()-posSlope);
-                        }
-
-                        // Mouse placed on the left side of the last placed waypoint.
-                    } else if (pointA.getX() > pointB.getX()) {
-
-                        if (slope > 0) {
-                            pnt.setLocation(pointA.getX()-visibilityFromNewWaypoint, pointA.getY()-slope);
-                        } else if (slope < 0) {
-                            double posSlope = Math.abs(slope);
-                            pnt.setLocation(pointA.getX()-visibilityFromNewWaypoint, pointA.getY()+posSlope);
-                        }
-                    }
-
-                    if (pointA.getX() < pointB.getX() &&
-                            slope == 0) {
-                        pnt.setLocation(pointA.getX()+visibilityFromNewWaypoint, pointA.getY());
-                    } else if (pointA.getX() > pointB.getX() &&
-                            slope == 0) {
-                        pnt.setLocation(pointA.getX()-visibilityFromNewWaypoint, pointA.getY());
-                    }
-
-                    visibleOnRoute = setMessageVisible(visibilityFromNewWaypoint, visibleOnRoute, projection, pnt);
+        MsiNmGeometry geometry = getGeometry();
+
+        Position prev = null;
+        for (RouteWaypoint wp : route.getWaypoints()) {
+            if (prev != null) {
+                Double dist = geometry.distanceTo(prev, wp.getPos());
+                if (dist != null && dist <= visibilityFromNewWaypoint) {
+                    return true;
                 }
             }
+            prev = wp.getPos();
         }
-
-        return visibleOnRoute;
-    }
-
-    private boolean setMessageVisible(double visibilityFromNewWaypoint, boolean visibleOnRoute,  Projection projection, Point2D pnt) {
-        LatLonPoint llpnt = projection.inverse(pnt);
-        Position position = Position.create(llpnt.getLatitude(), llpnt.getLongitude());
-        Double dist = getDistanceToPosition(position);
-        if (dist != null && dist <= visibilityFromNewWaypoint) {
-            visibleOnRoute = true;
+        if (prev != null) {
+            Double dist = geometry.distanceTo(prev, mousePosition);
+            return dist != null && dist <= visibilityFromNewWaypoint;
         }
-        return visibleOnRoute;
+        return false;
     }
 
     /**
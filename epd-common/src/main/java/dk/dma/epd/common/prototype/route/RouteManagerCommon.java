@@ -21,6 +21,7 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,7 @@ import net.jcip.annotations.ThreadSafe;
 import com.bbn.openmap.MapHandlerChild;
 
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.communication.webservice.ShoreServiceException;
 import dk.dma.epd.common.prototype.model.route.ActiveRoute;
 import dk.dma.epd.common.prototype.model.route.IRoutesUpdateListener;
@@ -42,7 +44,6 @@ import dk.dma.epd.common.prototype.model.route.RoutesUpdateEvent;
 import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
 import dk.dma.epd.common.prototype.settings.EnavSettings;
 import dk.dma.epd.common.prototype.shoreservice.ShoreServicesCommon;
-import dk.dma.epd.common.util.Util;
 import dk.frv.enav.common.xml.metoc.MetocForecast;
 
 /**
@@ -55,6 +56,7 @@ public abstract class RouteManagerCommon extends MapHandlerChild implements Runn
 
     private static final long serialVersionUID = -3781810760698987644L;
     private static final Logger LOG = LoggerFactory.getLogger(RouteManagerCommon.class);
+    private static final long MAINTENANCE_INTERVAL = 10000; // 10 secs
 
     private CopyOnWriteArrayList<IRoutesUpdateListener> listeners = new CopyOnWriteArrayList<>();
     protected EnavSettings enavSettings;
@@ -72,7 +74,8 @@ public abstract class RouteManagerCommon extends MapHandlerChild implements Runn
      */
     public RouteManagerCommon() {
         enavSettings = EPD.getInstance().getSettings().getEnavSettings();
-        EPD.startThread(this, "RouteManager");
+        ExecutionService.getInstance().scheduleWithFixedDelay("RouteManager", this, MAINTENANCE_INTERVAL,
+                MAINTENANCE_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     /**************************************/
@@ -657,20 +660,14 @@ public abstract class RouteManagerCommon extends MapHandlerChild implements Runn
     /**************************************/
 
     /**
-     * Main thread run method
+     * Maintenance routines run periodically by the shared {@linkplain ExecutionService}
      */
     @Override
     public void run() {
+        // Active route poll for METOC
+        pollForMetoc();
 
-        // Maintanaince routines
-        while (true) {
-            Util.sleep(10000);
-
-            // Active route poll for METOC
-            pollForMetoc();
-
-            // Check validity of METOC for all routes
-            checkValidMetoc();
-        }
+        // Check validity of METOC for all routes
+        checkValidMetoc();
     }
 }
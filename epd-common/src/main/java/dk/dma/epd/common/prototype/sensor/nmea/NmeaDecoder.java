@@ -0,0 +1,318 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.sensor.nmea;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streaming NMEA decoder.
+ * <p>
+ * Sentences are framed directly from a reusable {@linkplain ByteBuffer}, classified by the talker and sentence type bytes
+ * and checksum-verified in place. A sentence is only materialised as a {@code String} when the {@linkplain Listener} is
+ * interested in its type, so sentences nobody listens for never leave the buffer.
+ * <p>
+ * Stream sources (TCP, files and stdin) are fed with {@linkplain #read(InputStream)}, which reads straight into the backing
+ * array of the buffer and keeps an incomplete trailing sentence for the next read. Datagram sources are fed with
+ * {@linkplain #decode(ByteBuffer)}, which handles any number of sentences in a single datagram.
+ */
+@NotThreadSafe
+public class NmeaDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NmeaDecoder.class);
+
+    /** Default size of the read buffer, large enough to hold any UDP datagram */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /**
+     * The types of sentences recognised by the decoder
+     */
+    public enum SentenceType {
+        /** AIS sentences, i.e. !AIVDM, !AIVDO, !BSVDM and !ABVDM */
+        VDM,
+        /** RMC sentences, i.e. $GPRMC, $ELRMC and $RDRMC */
+        RMC,
+        /** ABK sentences */
+        ABK,
+        /** Proprietary $P sentences */
+        PROPRIETARY,
+        /** Any other sentence */
+        OTHER
+    }
+
+    /**
+     * Interface implemented by the receiver of the decoded sentences
+     */
+    public interface Listener {
+
+        /**
+         * Returns if sentences of the given type should be materialised and passed on
+         * 
+         * @param type
+         *            the sentence type
+         * @return if sentences of the given type should be passed on
+         */
+        boolean isInterested(SentenceType type);
+
+        /**
+         * Called with every decoded sentence of a type the listener is interested in
+         * 
+         * @param type
+         *            the sentence type
+         * @param sentence
+         *            the sentence, without the line terminator
+         */
+        void receive(SentenceType type, String sentence);
+    }
+
+    private final Listener listener;
+    private final ByteBuffer buffer;
+
+    private long sentences;
+    private long checksumErrors;
+    private long overflows;
+
+    /**
+     * Constructor using the default buffer size
+     * 
+     * @param listener
+     *            the receiver of the decoded sentences
+     */
+    public NmeaDecoder(Listener listener) {
+        this(listener, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param listener
+     *            the receiver of the decoded sentences
+     * @param bufferSize
+     *            the size of the read buffer
+     */
+    public NmeaDecoder(Listener listener, int bufferSize) {
+        this.listener = listener;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Reads the next chunk of data from the stream and decodes the complete sentences read so far. An incomplete trailing
+     * sentence is kept in the buffer until the rest has been read, and is decoded when the end of the stream is reached.
+     * 
+     * @param in
+     *            the stream to read from
+     * @return false if the end of the stream has been reached
+     * @throws IOException
+     */
+    public boolean read(InputStream in) throws IOException {
+        int count = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (count < 0) {
+            buffer.flip();
+            decode(buffer, true);
+            buffer.clear();
+            return false;
+        }
+
+        buffer.position(buffer.position() + count);
+        buffer.flip();
+        decode(buffer, false);
+        buffer.compact();
+
+        // A full buffer without a line terminator is not NMEA
+        if (!buffer.hasRemaining()) {
+            overflows++;
+            LOG.warn("Discarding " + buffer.capacity() + " bytes without a line terminator");
+            buffer.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Decodes all the sentences of a datagram. The last sentence need not be terminated.
+     * <p>
+     * The sentences are read from the position to the limit of the datagram, and the position is moved to the limit.
+     * 
+     * @param datagram
+     *            the datagram to decode
+     */
+    public void decode(ByteBuffer datagram) {
+        decode(datagram, true);
+    }
+
+    /**
+     * Decodes the sentences between the position and the limit of the buffer, and moves the position past the last decoded
+     * sentence
+     */
+    private void decode(ByteBuffer buf, boolean endOfInput) {
+        int start = buf.position();
+        int limit = buf.limit();
+        for (int i = start; i < limit; i++) {
+            byte b = buf.get(i);
+            if (b == '\n' || b == '\r') {
+                if (i > start) {
+                    decodeSentence(buf, start, i);
+                }
+                start = i + 1;
+            }
+        }
+        if (endOfInput && start < limit) {
+            decodeSentence(buf, start, limit);
+            start = limit;
+        }
+        buf.position(start);
+    }
+
+    /**
+     * Classifies, verifies and, if the listener is interested, materialises the sentence between {@code from} and {@code to}
+     */
+    private void decodeSentence(ByteBuffer buf, int from, int to) {
+        // The sentence may be preceded by a tag block or other prefix
+        int start = from;
+        while (start < to && buf.get(start) != '!' && buf.get(start) != '$') {
+            start++;
+        }
+        if (start == to) {
+            return;
+        }
+
+        SentenceType type = classify(buf, start, to);
+        if (!listener.isInterested(type)) {
+            return;
+        }
+        if (!isChecksumValid(buf, start, to)) {
+            checksumErrors++;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Checksum error: " + toString(buf, from, to));
+            }
+            return;
+        }
+
+        sentences++;
+        listener.receive(type, toString(buf, from, to));
+    }
+
+    /**
+     * Classifies the sentence starting at {@code start} by its start character, talker and sentence type bytes
+     */
+    static SentenceType classify(ByteBuffer buf, int start, int to) {
+        if (to - start < 6) {
+            return (to - start >= 2 && buf.get(start) == '$' && buf.get(start + 1) == 'P') ? SentenceType.PROPRIETARY
+                    : SentenceType.OTHER;
+        }
+        byte first = buf.get(start);
+        byte t1 = buf.get(start + 1);
+        byte t2 = buf.get(start + 2);
+        byte s1 = buf.get(start + 3);
+        byte s2 = buf.get(start + 4);
+        byte s3 = buf.get(start + 5);
+
+        if (first == '!' && s1 == 'V' && s2 == 'D') {
+            // Same talkers as NmeaSensor.isVdm(): VDM from AI, BS and AB, VDO from AI only
+            boolean ai = t1 == 'A' && t2 == 'I';
+            if (s3 == 'M' && (ai || t1 == 'B' && t2 == 'S' || t1 == 'A' && t2 == 'B') || s3 == 'O' && ai) {
+                return SentenceType.VDM;
+            }
+        } else if (first == '$') {
+            if (t1 == 'P') {
+                return SentenceType.PROPRIETARY;
+            }
+            // Any talker, RmcSentence.getParser() decides which talkers are supported
+            if (s1 == 'R' && s2 == 'M' && s3 == 'C') {
+                return SentenceType.RMC;
+            }
+        }
+        if (s1 == 'A' && s2 == 'B' && s3 == 'K') {
+            return SentenceType.ABK;
+        }
+        return SentenceType.OTHER;
+    }
+
+    /**
+     * Verifies the checksum of the sentence starting at {@code start}. Sentences without a checksum are accepted.
+     */
+    static boolean isChecksumValid(ByteBuffer buf, int start, int to) {
+        int checksum = 0;
+        for (int i = start + 1; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == '*') {
+                if (i + 2 >= to) {
+                    // Truncated checksum
+                    return false;
+                }
+                int hi = hexValue(buf.get(i + 1));
+                int lo = hexValue(buf.get(i + 2));
+                return hi >= 0 && lo >= 0 && (hi << 4 | lo) == checksum;
+            }
+            checksum ^= b;
+        }
+        return true;
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private static String toString(ByteBuffer buf, int from, int to) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + from, to - from, StandardCharsets.US_ASCII);
+        }
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the number of sentences passed on to the listener
+     * 
+     * @return the number of sentences passed on to the listener
+     */
+    public long getSentences() {
+        return sentences;
+    }
+
+    /**
+     * Returns the number of sentences discarded due to a checksum error
+     * 
+     * @return the number of sentences discarded due to a checksum error
+     */
+    public long getChecksumErrors() {
+        return checksumErrors;
+    }
+
+    /**
+     * Returns the number of times the buffer filled up without a line terminator
+     * 
+     * @return the number of buffer overflows
+     */
+    public long getOverflows() {
+        return overflows;
+    }
+}
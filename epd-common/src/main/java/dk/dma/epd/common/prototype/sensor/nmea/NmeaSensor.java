@@ -14,10 +14,8 @@
  */
 package dk.dma.epd.common.prototype.sensor.nmea;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.Date;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -50,6 +48,7 @@ import dk.dma.ais.sentence.SentenceException;
 import dk.dma.ais.sentence.SentenceLine;
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.enav.util.function.Consumer;
+import dk.dma.epd.common.prototype.sensor.nmea.NmeaDecoder.SentenceType;
 import dk.dma.epd.common.prototype.sensor.predictor.DynamicPredictorData;
 import dk.dma.epd.common.prototype.sensor.predictor.IDynamicPredictorDataListener;
 import dk.dma.epd.common.prototype.sensor.rpnt.ResilientPntData;
@@ -97,22 +96,82 @@ public abstract class NmeaSensor extends MapHandlerChild implements Runnable {
     private final CopyOnWriteArrayList<IAisSensorListener> aisListeners = new CopyOnWriteArrayList<>();
     private final CopyOnWriteArrayList<IDynamicPredictorDataListener> dynamicPredictorDataListeners = new CopyOnWriteArrayList<>();
 
+    /**
+     * Receives the sentences from the {@linkplain NmeaDecoder}, which only materialises the types there are listeners for
+     */
+    protected final NmeaDecoder.Listener decoderListener = new NmeaDecoder.Listener() {
+        @Override
+        public boolean isInterested(SentenceType type) {
+            switch (type) {
+            case VDM:
+                return aisListeners.size() > 0;
+            case RMC:
+                return pntListeners.size() > 0;
+            case ABK:
+            case PROPRIETARY:
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        public void receive(SentenceType type, String sentence) {
+            handleSentence(type, sentence);
+        }
+    };
+
     public NmeaSensor() {
 
     }
 
     /**
-     * Main method to read NMEA messages from stream
+     * Main method to read NMEA messages from stream.
+     * <p>
+     * The stream is framed and classified by an {@linkplain NmeaDecoder}.
      * 
      * @param stream
      * @throws IOException
      */
     protected void readLoop(InputStream stream) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-        String line;
+        NmeaDecoder decoder = new NmeaDecoder(decoderListener);
+        boolean more = true;
+        while (more && !isStopped()) {
+            more = decoder.read(stream);
+        }
+        if (decoder.getChecksumErrors() > 0) {
+            LOG.info("NMEA stream closed after " + decoder.getSentences() + " sentences, " + decoder.getChecksumErrors()
+                    + " checksum errors");
+        }
+    }
 
-        while (!isStopped() && (line = reader.readLine()) != null) {
-            handleLine(line);
+    /**
+     * Handles a sentence that has already been classified by an {@linkplain NmeaDecoder}
+     * 
+     * @param type
+     *            the sentence type
+     * @param msg
+     *            the sentence to handle
+     */
+    protected void handleSentence(SentenceType type, String msg) {
+        if (isReplay()) {
+            handleReplay(msg);
+        }
+        switch (type) {
+        case VDM:
+            handleAis(msg);
+            break;
+        case RMC:
+            handleRmc(msg);
+            break;
+        case ABK:
+            handleAbk(msg);
+            break;
+        case PROPRIETARY:
+            handleProprietary(msg);
+            break;
+        default:
+            break;
         }
     }
     
@@ -335,13 +394,17 @@ public abstract class NmeaSensor extends MapHandlerChild implements Runnable {
     }
 
     /**
-     * Handle NMEA RMC sentences such as $GPRMC (GPS), $ELRMC (eLoran) and $RDRMC (radar)
+     * Handle NMEA RMC sentences such as $GPRMC (GPS), $GNRMC (GNSS), $ELRMC (eLoran) and $RDRMC (radar)
      * 
      * @param msg
      *            the message to handle
      */
     protected void handleRmc(String msg) {
         RmcSentence sentence = RmcSentence.getParser(msg);
+        if (sentence == null) {
+            LOG.debug("Unsupported RMC talker: " + msg);
+            return;
+        }
         try {
             sentence.parse(msg);
         } catch (Exception e) {
@@ -15,14 +15,13 @@
 package dk.dma.epd.common.prototype.sensor.nmea;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Charsets;
-
 import dk.dma.ais.reader.SendException;
 import dk.dma.ais.reader.SendRequest;
 import dk.dma.ais.sentence.Abk;
@@ -38,16 +37,21 @@ public class NmeaUdpSensor extends NmeaSensor {
         this.port = port;
     }
     
+    /**
+     * Receives datagrams into a reusable buffer and decodes every sentence of each datagram
+     */
     @Override
     public void run() {
-        byte[] receiveData = new byte[256];
-        try (DatagramSocket serverSocket = new DatagramSocket(port)) {
+        ByteBuffer datagram = ByteBuffer.allocateDirect(NmeaDecoder.DEFAULT_BUFFER_SIZE);
+        NmeaDecoder decoder = new NmeaDecoder(decoderListener, 0);
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.bind(new InetSocketAddress(port));
             while (!isStopped()) {
-                DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-                serverSocket.receive(receivePacket);
-                String sentence = new String(receivePacket.getData(), 0, receivePacket.getLength(), Charsets.US_ASCII);
-                handleLine(sentence);
-            }            
+                datagram.clear();
+                channel.receive(datagram);
+                datagram.flip();
+                decoder.decode(datagram);
+            }
         } catch (IOException e) {
             LOG.error("Failed to listen on UDP socket", e);
         }
@@ -61,6 +61,8 @@ public class RmcSentence extends Sentence {
             return new ElRmcSentence();
         } else if (line != null && line.indexOf("$RDRMC") >= 0) {
             return new RdRmcSentence();
+        } else if (line != null && line.indexOf("$GNRMC") >= 0) {
+            return new GnRmcSentence();
         }
         return null;
     }
@@ -176,6 +178,15 @@ public class RmcSentence extends Sentence {
         }
     }
 
+    /**
+     * Used to parse $GNRMC (combined satellite systems) sentences
+     */
+    public static class GnRmcSentence extends RmcSentence {
+        public GnRmcSentence() {
+            super(RmcSource.GNSS);
+        }
+    }
+
     /************ Enumerations ***********/
     
     /**
@@ -184,7 +195,8 @@ public class RmcSentence extends Sentence {
     enum RmcSource {
         GPS("GP", PntSource.GPS),
         ELORAN("EL", PntSource.ELORAN),
-        RADAR("RD", PntSource.RADAR);
+        RADAR("RD", PntSource.RADAR),
+        GNSS("GN", PntSource.GPS);
         
         private String talker;
         private PntSource pntSource;
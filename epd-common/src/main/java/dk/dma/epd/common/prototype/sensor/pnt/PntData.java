@@ -120,6 +120,17 @@ public class PntData implements Serializable {
         this.badPosition = badPosition;
     }
 
+    /**
+     * Returns an unmodifiable copy of the given PNT data, which can be safely shared between threads
+     * 
+     * @param pntData
+     *            the PNT data to copy
+     * @return an unmodifiable copy of the PNT data
+     */
+    public static PntData unmodifiable(PntData pntData) {
+        return (pntData instanceof UnmodifiablePntData) ? pntData : new UnmodifiablePntData(pntData);
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -140,5 +151,57 @@ public class PntData implements Serializable {
         builder.append("]");
         return builder.toString();
     }
-    
+
+    /**
+     * PNT data that cannot be modified. The setters throw an {@linkplain UnsupportedOperationException}
+     */
+    private static final class UnmodifiablePntData extends PntData {
+
+        private static final long serialVersionUID = 1L;
+
+        UnmodifiablePntData(PntData pntData) {
+            super(pntData);
+        }
+
+        @Override
+        public Date getLastUpdated() {
+            // Date is mutable
+            return new Date(super.getLastUpdated().getTime());
+        }
+
+        @Override
+        public void setPntSource(PntSource pntSource) {
+            throw new UnsupportedOperationException("PNT data is unmodifiable");
+        }
+
+        @Override
+        public void setLastUpdated(Date lastUpdated) {
+            throw new UnsupportedOperationException("PNT data is unmodifiable");
+        }
+
+        @Override
+        public void setPosition(Position position) {
+            throw new UnsupportedOperationException("PNT data is unmodifiable");
+        }
+
+        @Override
+        public void setCog(Double cog) {
+            throw new UnsupportedOperationException("PNT data is unmodifiable");
+        }
+
+        @Override
+        public void setSog(Double sog) {
+            throw new UnsupportedOperationException("PNT data is unmodifiable");
+        }
+
+        @Override
+        public void setTime(Long time) {
+            throw new UnsupportedOperationException("PNT data is unmodifiable");
+        }
+
+        @Override
+        public void setBadPosition(boolean badPosition) {
+            throw new UnsupportedOperationException("PNT data is unmodifiable");
+        }
+    }
 }
@@ -15,34 +15,91 @@
 package dk.dma.epd.common.prototype.sensor.pnt;
 
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 import com.bbn.openmap.MapHandlerChild;
 
+import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
+import dk.dma.epd.common.prototype.predictor.DynamicPrediction;
+import dk.dma.epd.common.prototype.predictor.DynamicPredictorHandlerCommon;
+import dk.dma.epd.common.prototype.predictor.IDynamicPredictionsListener;
 import dk.dma.epd.common.prototype.sensor.nmea.IPntSensorListener;
 import dk.dma.epd.common.prototype.sensor.nmea.PntMessage;
 import dk.dma.epd.common.prototype.sensor.nmea.PntMessage.MessageType;
+import dk.dma.epd.common.prototype.sensor.predictor.DynamicPredictorData;
 import dk.dma.epd.common.prototype.status.IStatusComponent;
 import dk.dma.epd.common.prototype.status.PntStatus;
-import dk.dma.epd.common.util.Util;
 
 /**
  * Component class for handling received PNT messages.
+ * <p>
+ * Every received fix is kept in a lock-free latest-value cell, so high-rate sources are never throttled. Listeners are
+ * notified outside of any lock, at most once per publish interval, and always with the latest fix. In between fixes, the
+ * own-ship position can be dead reckoned to an arbitrary time with {@linkplain #getPosition(long)}.
  */
 @ThreadSafe
-public class PntHandler extends MapHandlerChild implements IPntSensorListener, IStatusComponent, Runnable {
+public class PntHandler extends MapHandlerChild implements IPntSensorListener, IStatusComponent, IDynamicPredictionsListener,
+        Runnable {
 
     private static final long PNT_TIMEOUT = 30 * 1000; // 30 secs
+    private static final long TIMEOUT_CHECK_INTERVAL = 10 * 1000; // 10 secs
+
+    /**
+     * Default minimum interval between updates published to listeners in milliseconds
+     */
+    public static final long DEFAULT_PUBLISH_INTERVAL = 1000;
+
+    /**
+     * Lower bound of the publish interval in milliseconds, which also bounds the rate of the publisher task
+     */
+    public static final long MIN_PUBLISH_INTERVAL = 100;
+
+    /**
+     * Max time in milliseconds that the own-ship position is dead reckoned beyond the latest fix
+     */
+    public static final long MAX_DEAD_RECKONING = 30 * 1000;
+
+    private static final double EARTH_RADIUS = 6371000.0;
+
     private CopyOnWriteArrayList<IPntDataListener> listeners = new CopyOnWriteArrayList<>();
-    @GuardedBy("this")
-    private PntData currentData = new PntData();
+
+    /** The latest PNT data. Only {@linkplain PntData#unmodifiable(PntData) unmodifiable} instances are stored */
+    private final AtomicReference<PntData> currentData = new AtomicReference<>(PntData.unmodifiable(new PntData()));
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private volatile long publishedVersion;
+    private volatile long lastPublished;
+    private volatile long publishInterval = DEFAULT_PUBLISH_INTERVAL;
+
+    private volatile DynamicPrediction ownShipPrediction;
+
+    private long lastTimeoutCheck;
+    private ScheduledFuture<?> publisher;
 
     public PntHandler() {
-        EPD.startThread(this, "PntHandler");
+        schedulePublisher();
+    }
+
+    /**
+     * (Re-)schedules the periodic publishing of pending updates on the shared {@linkplain ExecutionService}
+     */
+    private synchronized void schedulePublisher() {
+        if (publisher != null) {
+            publisher.cancel(false);
+        }
+        long delay = Math.min(publishInterval, TIMEOUT_CHECK_INTERVAL);
+        publisher = ExecutionService.getInstance().scheduleWithFixedDelay("PntHandler", this, delay, delay,
+                TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -54,75 +111,282 @@ public class PntHandler extends MapHandlerChild implements IPntSensorListener, I
      * Receive PNT message
      */
     @Override
-    public synchronized void receive(PntMessage pntMessage) {
+    public void receive(PntMessage pntMessage) {
         // The PntHandler is not interested in time-only PNT messages
         if (pntMessage.getMessageType() == MessageType.TIME) {
             return;
         }
-        
+
         Date now = new Date();
-        long elapsed = now.getTime() - currentData.getLastUpdated().getTime();
-        if (elapsed < 900) {
-            return;
-        }
+        PntData current;
+        PntData data;
+        do {
+            current = currentData.get();
+            data = new PntData(current);
+            data.setPntSource(pntMessage.getPntSource());
+            data.setLastUpdated(now);
+            if (pntMessage.getPos() == null || !pntMessage.isValidPosition()) {
+                data.setBadPosition(true);
+            } else {
+                data.setPosition(pntMessage.getPos());
+                data.setBadPosition(false);
+            }
+            if (pntMessage.getCog() != null) {
+                data.setCog(pntMessage.getCog());
+            }
+            if (pntMessage.getSog() != null) {
+                data.setSog(pntMessage.getSog());
+            }
+        } while (!currentData.compareAndSet(current, PntData.unmodifiable(data)));
+        version.incrementAndGet();
 
-        currentData.setPntSource(pntMessage.getPntSource());
-        currentData.setLastUpdated(now);
-        if (pntMessage.getPos() == null || !pntMessage.isValidPosition()) {
-            currentData.setBadPosition(true);
-        } else {
-            currentData.setPosition(pntMessage.getPos());
-            currentData.setBadPosition(false);
+        // Publish right away if due, otherwise the publisher task will pick it up
+        if (now.getTime() - lastPublished >= publishInterval) {
+            distributeUpdate();
         }
-        if (pntMessage.getCog() != null) {
-            currentData.setCog(pntMessage.getCog());
-        }
-        if (pntMessage.getSog() != null) {
-            currentData.setSog(pntMessage.getSog());
-        }
-        distributeUpdate();
     }
 
     /**
      * Mark the current data as invalid
      */
-    private synchronized void markBadPos() {
-        currentData.setBadPosition(true);
+    private void markBadPos() {
+        PntData current;
+        PntData data;
+        do {
+            current = currentData.get();
+            data = new PntData(current);
+            data.setBadPosition(true);
+        } while (!currentData.compareAndSet(current, PntData.unmodifiable(data)));
+        version.incrementAndGet();
     }
 
     /**
-     * Distribute update to all listeners
+     * Distribute the latest data to all listeners, unless it has already been distributed or another thread is currently
+     * distributing
      */
     private void distributeUpdate() {
-        for (IPntDataListener listener : listeners) {
-            listener.pntDataUpdate(getCurrentData());
+        if (!publishing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long currentVersion = version.get();
+            if (currentVersion == publishedVersion) {
+                return;
+            }
+            publishedVersion = currentVersion;
+            lastPublished = System.currentTimeMillis();
+            // The unmodifiable snapshot is shared by the listeners
+            PntData data = currentData.get();
+            for (IPntDataListener listener : listeners) {
+                listener.pntDataUpdate(data);
+            }
+        } finally {
+            publishing.set(false);
         }
     }
 
     /**
      * Return if the current data has timed out
      */
-    public synchronized boolean pntTimedOut() {
+    public boolean pntTimedOut() {
         Date now = new Date();
-        return now.getTime() - currentData.getLastUpdated().getTime() > PNT_TIMEOUT;
+        return now.getTime() - currentData.get().getLastUpdated().getTime() > PNT_TIMEOUT;
     }
 
     /**
-     * Routine for monitoring timeout
+     * Routine for publishing pending updates and monitoring timeout
      */
     @Override
     public void run() {
-        while (true) {
+        long now = System.currentTimeMillis();
+        if (now - lastTimeoutCheck >= TIMEOUT_CHECK_INTERVAL) {
+            lastTimeoutCheck = now;
             if (pntTimedOut()) {
                 markBadPos();
-                distributeUpdate();
             }
-            Util.sleep(10000);
         }
+        distributeUpdate();
+    }
+
+    /**
+     * Returns a copy of the latest PNT data
+     * 
+     * @return a copy of the latest PNT data
+     */
+    public PntData getCurrentData() {
+        return new PntData(currentData.get());
+    }
+
+    /**
+     * Returns the latest PNT data without copying it.
+     * <p>
+     * The returned instance is shared and unmodifiable.
+     * 
+     * @return the latest PNT data
+     */
+    public PntData getLatestData() {
+        return currentData.get();
+    }
+
+    /**
+     * Returns the own-ship position dead reckoned to the current time
+     * 
+     * @return the dead reckoned own-ship position, or null if undefined
+     */
+    public Position getPosition() {
+        return getPosition(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the own-ship position dead reckoned from the latest fix to the given time, e.g. the time a layer is rendered.
+     * <p>
+     * If a dynamic prediction of own-ship covers the time of the latest fix and the given time, the movement along the predicted
+     * track between these times is used. Otherwise the position is extrapolated using the latest SOG and COG. The position is never dead reckoned more than
+     * {@linkplain #MAX_DEAD_RECKONING} beyond the latest fix, and the latest fix is returned as is if it is marked bad.
+     * 
+     * @param time
+     *            the time in epoch millis, as given by the system clock
+     * @return the dead reckoned own-ship position, or null if undefined
+     */
+    public Position getPosition(long time) {
+        return deadReckon(currentData.get(), ownShipPrediction, time);
+    }
+
+    /**
+     * Dead reckons the position of the given PNT data to the given time
+     * 
+     * @param data
+     *            the PNT data
+     * @param prediction
+     *            the dynamic prediction or null if not available
+     * @param time
+     *            the time in epoch millis
+     * @return the dead reckoned position, or null if undefined
+     */
+    static Position deadReckon(PntData data, DynamicPrediction prediction, long time) {
+        Position pos = data.getPosition();
+        if (pos == null || data.isBadPosition()) {
+            return pos;
+        }
+        long dt = Math.min(MAX_DEAD_RECKONING, time - data.getLastUpdated().getTime());
+        if (dt <= 0) {
+            return pos;
+        }
+
+        if (prediction != null) {
+            long fixTime = data.getLastUpdated().getTime();
+            Position predicted = followPrediction(pos, prediction, fixTime, fixTime + dt);
+            if (predicted != null) {
+                return predicted;
+            }
+        }
+
+        if (data.getSog() == null || data.getCog() == null) {
+            return pos;
+        }
+        // A flat earth approximation is accurate for the short distances involved
+        double dist = data.getSog() * 1852.0 / 3600.0 * dt / 1000.0;
+        double cog = Math.toRadians(data.getCog());
+        double dLat = dist * Math.cos(cog) / EARTH_RADIUS;
+        double dLon = dist * Math.sin(cog) / (EARTH_RADIUS * Math.max(1e-6, Math.cos(Math.toRadians(pos.getLatitude()))));
+        return Position.create(pos.getLatitude() + Math.toDegrees(dLat), pos.getLongitude() + Math.toDegrees(dLon));
+    }
+
+    /**
+     * Applies the displacement along the predicted track, from the time of the fix to the given time, to the fixed position.
+     * Returns null if either time is outside the predicted track.
+     */
+    private static Position followPrediction(Position pos, DynamicPrediction prediction, long fixTime, long time) {
+        Position from = interpolate(prediction, fixTime);
+        Position to = interpolate(prediction, time);
+        if (from == null || to == null) {
+            return null;
+        }
+        return Position.create(pos.getLatitude() + to.getLatitude() - from.getLatitude(),
+                pos.getLongitude() + to.getLongitude() - from.getLongitude());
+    }
+
+    /**
+     * Returns the predicted position at the given time, or null if the time is outside the predicted track
+     */
+    private static Position interpolate(DynamicPrediction prediction, long time) {
+        DynamicPredictorData previous = prediction.getHeaderData();
+        if (previous == null || previous.getPosition() == null || time < previous.getTime()) {
+            return null;
+        }
+        if (time == previous.getTime()) {
+            return previous.getPosition();
+        }
+        List<? extends DynamicPredictorData> points = prediction.getPredictionDataPoints();
+        for (int i = 0; points != null && i < points.size(); i++) {
+            DynamicPredictorData next = points.get(i);
+            if (next.getPosition() == null || next.getTime() <= previous.getTime()) {
+                return null;
+            }
+            if (next.getTime() >= time) {
+                double f = (double) (time - previous.getTime()) / (next.getTime() - previous.getTime());
+                Position p0 = previous.getPosition();
+                Position p1 = next.getPosition();
+                return Position.create(p0.getLatitude() + f * (p1.getLatitude() - p0.getLatitude()),
+                        p0.getLongitude() + f * (p1.getLongitude() - p0.getLongitude()));
+            }
+            previous = next;
+        }
+        return null;
     }
 
-    public synchronized PntData getCurrentData() {
-        return new PntData(currentData);
+    /**
+     * Sets the minimum interval between updates published to listeners.
+     * <p>
+     * Intervals below {@linkplain #MIN_PUBLISH_INTERVAL} are raised to it, so that the publisher task does not spin.
+     * 
+     * @param publishInterval
+     *            the publish interval in milliseconds
+     */
+    public void setPublishInterval(long publishInterval) {
+        this.publishInterval = Math.max(MIN_PUBLISH_INTERVAL, publishInterval);
+        schedulePublisher();
+    }
+
+    /**
+     * Returns the minimum interval between updates published to listeners
+     * 
+     * @return the publish interval in milliseconds
+     */
+    public long getPublishInterval() {
+        return publishInterval;
+    }
+
+    /**
+     * Keeps track of the dynamic prediction of own-ship, used for dead reckoning
+     */
+    @Override
+    public void receivePredictions(DynamicPrediction prediction) {
+        Long ownMmsi = EPD.getInstance().getMmsi();
+        if (ownMmsi != null && ownMmsi.longValue() == prediction.getMmsi()) {
+            ownShipPrediction = prediction;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void receivePredictionTimeout(DynamicPrediction prediction) {
+        if (ownShipPrediction == prediction) {
+            ownShipPrediction = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void findAndInit(Object obj) {
+        super.findAndInit(obj);
+        if (obj instanceof DynamicPredictorHandlerCommon) {
+            ((DynamicPredictorHandlerCommon) obj).addListener(this);
+        }
     }
 
     public void addListener(IPntDataListener listener) {
@@ -15,11 +15,11 @@
 package dk.dma.epd.common.prototype.service;
 
 import com.bbn.openmap.MapHandlerChild;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.service.MaritimeCloudService.IMaritimeCloudListener;
 import dk.dma.epd.common.prototype.status.CloudStatus;
 import net.maritimecloud.net.mms.MmsClient;
 
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -34,23 +34,11 @@ public abstract class EnavServiceHandlerCommon extends MapHandlerChild implement
 
     protected MaritimeCloudService maritimeCloudService;
     private ScheduledExecutorService scheduler;
-    private final int schedulerPoolSize;
 
     /**
      * Constructor
      */
     protected EnavServiceHandlerCommon() {
-        this(1);
-    }
-
-    /**
-     * Constructor
-     * 
-     * @param schedulerPoolSize
-     *            the scheduler core pool size
-     */
-    protected EnavServiceHandlerCommon(int schedulerPoolSize) {
-        this.schedulerPoolSize = schedulerPoolSize;
     }
 
     /**
@@ -133,14 +121,14 @@ public abstract class EnavServiceHandlerCommon extends MapHandlerChild implement
     /****************************************/
 
     /**
-     * Returns the scheduler associated with this e-Navigation service. The scheduler is created the first time this method is
-     * called.
+     * Returns the scheduler associated with this e-Navigation service. The scheduler is a task group of the shared
+     * {@linkplain ExecutionService}, created the first time this method is called.
      * 
      * @return the scheduler
      */
     protected synchronized ScheduledExecutorService getScheduler() {
         if (scheduler == null) {
-            scheduler = Executors.newScheduledThreadPool(schedulerPoolSize);
+            scheduler = ExecutionService.getInstance().createGroup(getClass().getSimpleName());
         }
         return scheduler;
     }
@@ -16,7 +16,6 @@ package dk.dma.epd.common.prototype.service;
 
 import dk.dma.enav.model.geometry.CoordinateSystem;
 import dk.dma.enav.model.geometry.Position;
-import dk.dma.epd.common.Heading;
 import dk.dma.epd.common.prototype.EPD;
 import dk.dma.epd.common.prototype.ais.AisHandlerCommon;
 import dk.dma.epd.common.prototype.ais.VesselTarget;
@@ -27,8 +26,7 @@ import dk.dma.epd.common.prototype.model.intendedroute.IntendedRouteFilterMessag
 import dk.dma.epd.common.prototype.model.route.ActiveRoute;
 import dk.dma.epd.common.prototype.model.route.IntendedRoute;
 import dk.dma.epd.common.prototype.model.route.Route;
-import dk.dma.epd.common.prototype.model.route.RouteLeg;
-import dk.dma.epd.common.prototype.model.route.RouteWaypoint;
+import dk.dma.epd.common.prototype.model.route.RouteTimeline;
 import dk.dma.epd.common.prototype.notification.GeneralNotification;
 import dk.dma.epd.common.prototype.notification.INotificationListener;
 import dk.dma.epd.common.prototype.notification.Notification;
@@ -38,15 +36,9 @@ import dk.dma.epd.common.prototype.notification.NotificationAlert.AlertType;
 import dk.dma.epd.common.prototype.notification.NotificationType;
 import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
 import dk.dma.epd.common.prototype.settings.EnavSettings;
-import dk.dma.epd.common.util.Calculator;
 import dk.dma.epd.common.util.Converter;
-import dk.dma.epd.common.util.TypedValue.Dist;
-import dk.dma.epd.common.util.TypedValue.DistType;
-import dk.dma.epd.common.util.TypedValue.Speed;
-import dk.dma.epd.common.util.TypedValue.SpeedType;
-import dk.dma.epd.common.util.TypedValue.Time;
-import dk.dma.epd.common.util.TypedValue.TimeType;
 import dma.route.IntendedRouteBroadcast;
+import dma.route.IntendedRouteDeltaBroadcast;
 import net.maritimecloud.net.BroadcastConsumer;
 import net.maritimecloud.net.MessageHeader;
 import net.maritimecloud.net.mms.MmsClient;
@@ -86,7 +78,18 @@ public abstract class IntendedRouteHandlerCommon extends EnavServiceHandlerCommo
     public static double FILTER_DISTANCE_EPSILON; // Nautical miles
     public static double ALERT_DISTANCE_EPSILON; // Nautical miles
 
+    /**
+     * How far ahead of the current time routes are compared
+     */
+    public static final long TCPA_HORIZON = 3 * 60 * 60 * 1000; // 3 hours
+
+    /**
+     * The time step used when sampling the distance between two routes
+     */
+    public static final long TCPA_STEP = 60 * 1000; // 1 min
+
     protected ConcurrentHashMap<Long, IntendedRoute> intendedRoutes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, RouteTimeline> timelines = new ConcurrentHashMap<>();
     protected FilteredIntendedRoutes filteredIntendedRoutes = new FilteredIntendedRoutes();
 
     protected List<IIntendedRouteListener> listeners = new CopyOnWriteArrayList<>();
@@ -142,12 +145,54 @@ public abstract class IntendedRouteHandlerCommon extends EnavServiceHandlerCommo
         connection.broadcastSubscribe(IntendedRouteBroadcast.class, new BroadcastConsumer<IntendedRouteBroadcast>() {
             @Override
             public void onMessage(MessageHeader header, IntendedRouteBroadcast broadcast) {
-                long id = MaritimeCloudUtils.toMmsi(header.getSender());
-                updateIntendedRoute(id, broadcast);
+                if (isWithinBroadcastRadius(broadcast.getSenderPosition(), broadcast.getBroadcastRadius())) {
+                    long id = MaritimeCloudUtils.toMmsi(header.getSender());
+                    updateIntendedRoute(id, broadcast);
+                }
+            }
+        });
+
+        // Hook up as a listener for deltas to the intended routes
+        connection.broadcastSubscribe(IntendedRouteDeltaBroadcast.class, new BroadcastConsumer<IntendedRouteDeltaBroadcast>() {
+            @Override
+            public void onMessage(MessageHeader header, IntendedRouteDeltaBroadcast delta) {
+                if (isWithinBroadcastRadius(delta.getSenderPosition(), delta.getBroadcastRadius())) {
+                    long id = MaritimeCloudUtils.toMmsi(header.getSender());
+                    updateIntendedRoute(id, delta);
+                }
             }
         });
     }
 
+    /**
+     * Returns the position used for checking the broadcast radius of received intended routes.
+     * <p>
+     * Returns null by default, meaning that intended routes are accepted regardless of the broadcast radius.
+     * 
+     * @return the position used for checking the broadcast radius, or null if undefined
+     */
+    protected Position getBroadcastReceiverPosition() {
+        return null;
+    }
+
+    /**
+     * Returns whether this receiver is within the broadcast radius of a received intended route broadcast
+     * 
+     * @param senderPosition
+     *            the position of the sender
+     * @param broadcastRadius
+     *            the broadcast radius in meters
+     * @return whether this receiver is within the broadcast radius
+     */
+    protected boolean isWithinBroadcastRadius(net.maritimecloud.util.geometry.Position senderPosition, Integer broadcastRadius) {
+        Position receiverPosition = getBroadcastReceiverPosition();
+        if (senderPosition == null || broadcastRadius == null || broadcastRadius <= 0 || receiverPosition == null) {
+            return true;
+        }
+        Position sender = Position.create(senderPosition.getLatitude(), senderPosition.getLongitude());
+        return sender.rhumbLineDistanceTo(receiverPosition) <= broadcastRadius;
+    }
+
     /**
      * Update intended route of vessel target
      * 
@@ -168,6 +213,7 @@ public abstract class IntendedRouteHandlerCommon extends EnavServiceHandlerCommo
         if (!intendedRoute.hasRoute()) {
             if (intendedRoutes.containsKey(mmsi)) {
                 intendedRoutes.remove(mmsi);
+                timelines.remove(mmsi);
                 // fireIntendedRouteRemoved(intendedRoute);
             }
             if (filteredIntendedRoutes.containsKey(mmsi)) {
@@ -209,6 +255,29 @@ public abstract class IntendedRouteHandlerCommon extends EnavServiceHandlerCommo
         LOG.debug("Did the route get put into the filter? " + filteredIntendedRoutes.size());
     }
 
+    /**
+     * Applies a delta to the intended route of vessel target in place.
+     * <p>
+     * Deltas that do not refer to the keyframe of the current intended route are ignored, and the route is then updated by the
+     * next keyframe.
+     * 
+     * @param mmsi
+     * @param delta
+     */
+    private synchronized void updateIntendedRoute(long mmsi, IntendedRouteDeltaBroadcast delta) {
+        IntendedRoute intendedRoute = intendedRoutes.get(mmsi);
+        if (intendedRoute == null || !intendedRoute.isDeltaFor(delta)) {
+            LOG.debug("Ignoring intended route delta from " + mmsi + " awaiting keyframe");
+            return;
+        }
+
+        // Only the received time is refreshed if nothing has changed
+        if (intendedRoute.applyDelta(delta)) {
+            applyFilter(intendedRoute);
+            fireIntendedEvent(intendedRoute);
+        }
+    }
+
     /**
      * Remove stale intended routes.
      */
@@ -219,6 +288,8 @@ public abstract class IntendedRouteHandlerCommon extends EnavServiceHandlerCommo
             if (now.getTime() - entry.getValue().getReceived().getTime() > ROUTE_TTL) {
                 // Remove the intended route
                 it.remove();
+                filteredIntendedRoutes.remove(entry.getKey());
+                timelines.remove(entry.getKey());
                 fireIntendedEvent(entry.getValue());
             }
         }
@@ -458,36 +529,11 @@ public abstract class IntendedRouteHandlerCommon extends EnavServiceHandlerCommo
         return ((IntendedRoute) route).getMmsi();
     }
 
-    /**
-     * Calculates the ETA for the given way point index of the given route.
-     * 
-     * @param route
-     * @param index
-     * @return
-     */
-    private DateTime getEta(Route route, int index) {
-
-        int activeWpIndex = (route instanceof IntendedRoute) ? ((IntendedRoute) route).getActiveWpIndex() : ((ActiveRoute) route)
-                .getActiveWaypointIndex();
-
-        // If the way point is after the active way point, rely on stored ETA's
-        if (index >= activeWpIndex) {
-            return new DateTime(route.getEtas().get(index));
-        }
-
-        // Calculate backwards from the active way point
-        DateTime date = new DateTime(route.getEtas().get(activeWpIndex));
-        for (int j = activeWpIndex - 1; j >= index; j--) {
-            RouteLeg leg = route.getWaypoints().get(j).getOutLeg();
-            date = date.minus(new Dist(DistType.NAUTICAL_MILES, leg.calcRng())
-                    .withSpeed(new Speed(SpeedType.KNOTS, leg.getSpeed())).in(TimeType.MILLISECONDS).longValue());
-        }
-        return date;
-    }
-
     /**
      * Finds the TCPA for two routes and returns the corresponding {@linkplain FilteredIntendedRoute}.
      * <p>
+     * The routes are compared using their cached timelines, see {@linkplain #findTCPA(RouteTimeline, RouteTimeline)}.
+     * <p>
      * This method is only valid if the current start way point of route 1 is before route 2.
      * 
      * @param route1
@@ -495,377 +541,180 @@ public abstract class IntendedRouteHandlerCommon extends EnavServiceHandlerCommo
      * @return
      */
     protected FilteredIntendedRoute findTCPA(Route route1, Route route2) {
-
-        // Focus on time
-        FilteredIntendedRoute filteredIntendedRoute = new FilteredIntendedRoute(getMmsi(route1), getMmsi(route2));
-
-        // We need to check if there's a previous waypoint, ie. we are either
-        // starting navigating or are between two waypoints
-        // int route1StartWp = route1.getActiveWpIndex();
-        // int route2StartWp = route2.getActiveWpIndex();
-
-        int route1StartWp = 0;
-        int route2StartWp = 0;
-
-        int route1ActiveWp = 0;
-
-        if (route1 instanceof IntendedRoute) {
-            route1StartWp = ((IntendedRoute) route1).getActiveWpIndex();
-            route1ActiveWp = ((IntendedRoute) route1).getActiveWpIndex();
+        RouteTimeline timeline1 = getTimeline(route1);
+        RouteTimeline timeline2 = getTimeline(route2);
+        if (timeline1 == null || timeline2 == null) {
+            return new FilteredIntendedRoute(getMmsi(route1), getMmsi(route2));
         }
+        return findTCPA(timeline1, timeline2);
+    }
 
-        if (route2 instanceof IntendedRoute) {
-            route2StartWp = ((IntendedRoute) route2).getActiveWpIndex();
-
-        }
-
-        if (route1 instanceof ActiveRoute) {
-            route1StartWp = ((ActiveRoute) route1).getActiveWaypointIndex();
-            route1ActiveWp = ((ActiveRoute) route1).getActiveWaypointIndex();
-        }
-
-        if (route2 instanceof ActiveRoute) {
-            route2StartWp = ((ActiveRoute) route2).getActiveWaypointIndex();
-
-        }
-
-        // if (route1StartWp > 0) {
-        // route1StartWp = route1StartWp - 1;
-        // }
-        //
-        // if (route2StartWp > 0) {
-        // route2StartWp = route2StartWp - 1;
-        // }
-
-        // Should the comparison even be made
-
-        DateTime route1Start = getEta(route1, route1StartWp);
-        DateTime route1End = getEta(route1, route1.getEtas().size() - 1);
-
-        DateTime route2Start = getEta(route2, route2StartWp);
-        DateTime route2End = getEta(route2, route2.getEtas().size() - 1);
-
-        // The route dates does not overlap, return immediately
-        if (route2Start.isAfter(route1End) || route1Start.isAfter(route2End)) {
-            LOG.debug("The route dates does not overlap, return immediately");
-
-            LOG.debug("Route 1 Start: " + route1Start + " and end: " + route1End);
-            LOG.debug("Route 2 Start: " + route2Start + " and end: " + route2End);
-
-            return filteredIntendedRoute;
+    /**
+     * Returns the index of the active way point of the given route
+     * 
+     * @param route
+     *            the route
+     * @return the index of the active way point
+     */
+    protected int getActiveWpIndex(Route route) {
+        if (route instanceof IntendedRoute) {
+            return ((IntendedRoute) route).getActiveWpIndex();
+        } else if (route instanceof ActiveRoute) {
+            return ((ActiveRoute) route).getActiveWaypointIndex();
         }
+        return 0;
+    }
 
-        // Find first point in time that they have in common
-        if (route1Start.isBefore(route2Start)) {
-            // Route1 starts first
-            // Thus route2 start must be first common timeslot
-
-            // Find location for both at route2start time
-            // route2Start
-
-            // Location for route2 is given from
-            Position route2StartPos = route2.getWaypoints().get(route2StartWp).getPos();
-
-            DateTime route1WpStart = null;
-            DateTime route1WpEnd;
-
-            boolean foundSegment = false;
-
-            int i;
-            for (i = route1ActiveWp; i < route1.getWaypoints().size(); i++) {
-                if (i > 0) {
-                    route1WpStart = getEta(route1, i - 1);
-                    route1WpEnd = getEta(route1, i);
-
-                    if (route1WpStart.isBefore(route2Start) && route1WpEnd.isAfter(route2Start)) {
-                        // We have the found the segment we need to start from
-
-                        LOG.debug("Found segment");
-                        foundSegment = true;
-                        break;
-                    }
-                }
-            }
-
-            if (foundSegment) {
-
-                // Now find position at time of route2Start
-
-                LOG.debug("Route 1 WP Start is at " + route1.getEtas().get(i - 1));
-                LOG.debug("Route 2 Start is at " + route2.getEtas().get(route2StartWp));
-
-                // How long will we have travelled along our route (route 1)
-                long timeTravelledSeconds = (route2Start.getMillis() - route1WpStart.getMillis()) / 1000;
-
-                double speedInLeg = route1.getWaypoints().get(i - 1).getOutLeg().getSpeed();
-
-                LOG.debug("We have travelled for how many minutes " + timeTravelledSeconds / 60 + " at speed " + speedInLeg);
-
-                double distanceTravelled = Calculator.distanceAfterTimeMph(speedInLeg, timeTravelledSeconds);
-
-                LOG.debug("We have travelled " + distanceTravelled + " nautical miles in direction: "
-                        + route1.getWaypoints().get(i - 1).calcBrg());
-
-                Position position = Calculator.findPosition(route1.getWaypoints().get(i - 1).getPos(),
-                        route1.getWaypoints().get(i - 1).calcBrg(), Converter.nmToMeters(distanceTravelled));
-
-                LOG.debug("Difference start pos" + route1.getWaypoints().get(i - 1).getPos() + " vs " + position);
-
-                LOG.debug("The distance between points is "
-                        + Converter.metersToNm(position.distanceTo(route2StartPos, CoordinateSystem.CARTESIAN)));
-
-                // intersectPositions.add(position);
-                //
-                // intersectPositions.add(route2StartPos);
-
-                // In nautical miles
-                // double route1SegmentTraversed = distanceTravelled;
-                // double route2SegmentTraversed = 0;
-
-                // Okay so we are in position and in route2StartPos
-                // We must start traversing the route now, assume straight
-                // lines, for each traversing check the distance between
-                // points
-
-                // Adaptive traversing, start with time slots of 10 minutes, if
-                // distance between points is smaller than x
-                // Or if distance is simply decreasing, reduce time traversing.
-                // If the distance becomes below the threshold locate point
-                // where it starts
-
-                // Ensure that we do not traverse beyond the length of the route
-
-                // We need to switch segments at some point - wait with that
-
-                Position route1CurrentPosition = position;
-                Position route2CurrentPosition = route2StartPos;
-
-                int route1CurrentWaypoint = i - 1;
-                int route2CurrentWaypoint = route2StartWp - 1;
-
-                if (route2CurrentWaypoint < 0) {
-                    route2CurrentWaypoint = 0;
-                }
-
-                if (route1CurrentWaypoint < 0) {
-                    route1CurrentWaypoint = 0;
-                }
-
-                DateTime traverseTime = route2Start;
-
-                DateTime route1SegmentEnd = getEta(route1, route1CurrentWaypoint + 1);
-                DateTime route2SegmentEnd = getEta(route2, route2CurrentWaypoint + 1);
-
-                while (true) {
-
-                    double currentDistance = Converter.metersToNm(route1CurrentPosition.distanceTo(route2CurrentPosition,
-                            CoordinateSystem.CARTESIAN));
-
-                    if (currentDistance <= ENC_DISTANCE_EPSILON || currentDistance <= ALERT_DISTANCE_EPSILON
-                            || currentDistance <= FILTER_DISTANCE_EPSILON) {
-
-                        if (traverseTime.isAfter(PntTime.getDate().getTime())) {
-
-                            IntendedRouteFilterType filterType = IntendedRouteFilterType.FILTERONLY;
-
-                            // Top level filter only, no msg or graphics
-                            // if (currentDistance <= FILTER_DISTANCE_EPSILON) {
-                            // filterType = IntendedRouteFilterType.FILTERONLY;
-                            // }
-
-                            // We want an ENC graphics but no warning
-                            if (currentDistance <= ENC_DISTANCE_EPSILON) {
-                                filterType = IntendedRouteFilterType.ENC;
-                            }
-
-                            // We want an alert
-                            if (currentDistance <= ALERT_DISTANCE_EPSILON) {
-                                filterType = IntendedRouteFilterType.ALERT;
-                            }
-
-                            // We want both
-                            if (currentDistance <= ALERT_DISTANCE_EPSILON && currentDistance <= ENC_DISTANCE_EPSILON) {
-                                filterType = IntendedRouteFilterType.ALERT;
-                            }
-
-                            DecimalFormat df = new DecimalFormat("#.##");
-
-                            IntendedRouteFilterMessage filterMessage = new IntendedRouteFilterMessage(route1, route2,
-                                    route1CurrentPosition, route2CurrentPosition, "TCPA Warning, proxmity of "
-                                            + df.format(currentDistance) + " nautical miles ", 0, 0, filterType);
-
-                            filterMessage.setTime1(traverseTime);
-                            filterMessage.setTime2(traverseTime);
-
-                            filteredIntendedRoute.getFilterMessages().add(filterMessage);
-                            LOG.debug("Adding warning");
-                        }
-                    } else {
-                        LOG.debug("Found distance of " + currentDistance + " at " + traverseTime);
-                    }
-
-                    // Traverse with a minute
-                    traverseTime = traverseTime.plusMinutes(1);
-                    route1CurrentPosition = traverseLine(route1, route1CurrentWaypoint, route1CurrentPosition, 60);
-                    route2CurrentPosition = traverseLine(route2, route2CurrentWaypoint, route2CurrentPosition, 60);
-
-                    if (traverseTime.isAfter(route1SegmentEnd)) {
-
-                        // LOG.debug("We have traversed " +
-                        // route1SegmentTraversed + " nautical miles");
-                        LOG.debug("We are at waypoint id  " + route1CurrentWaypoint + " and the route has a total of "
-                                + route1.getWaypoints().size() + " waypoints");
-                        // We are done with current leg, is there a next one?
-
-                        // No more waypoints - terminate zero indexing and last
-                        // waypoint does not have an out leg thus -2
-                        if (route1CurrentWaypoint >= route1.getWaypoints().size() - 2) {
-                            LOG.debug("We are breaking - route 1 is done");
-                            break;
-                        } else {
-                            LOG.debug("SWITCHING LEG FOR ROUTE 1, current bearing is ");
-                            // Switch to next leg
-                            route1CurrentWaypoint++;
-
-                            LOG.debug("We are now at waypoint " + route1CurrentWaypoint);
-
-                            // Traverse a bit
-                            int missingSecs = (int) (traverseTime.toDate().getTime() - route1SegmentEnd.toDate().getTime()) / 1000;
-                            route1CurrentPosition = traverseLine(route1, route1CurrentWaypoint,
-                                    route1.getWaypoints().get(route1CurrentWaypoint).getPos(), missingSecs);
-
-                            route1SegmentEnd = getEta(route1, route1CurrentWaypoint + 1);
-
-                            // Skip to next WP start traverse
-                            // traverseTime = new
-                            // DateTime(route1.getEtas().get(route1CurrentWaypoint));
-                        }
-                    }
-
-                    // if (route2SegmentTraversed >
-                    // Converter.milesToNM(route2.getWaypoints().get(route2CurrentWaypoint).calcRng()))
-                    // {
-                    if (traverseTime.isAfter(route2SegmentEnd)) {
-
-                        // LOG.debug("ROUTE 2: We have traversed " +
-                        // route2SegmentTraversed + " nautical miles out of "
-                        // +
-                        // Converter.milesToNM(route2.getWaypoints().get(route2CurrentWaypoint).calcRng()));
-                        LOG.debug("We are at waypoint id  " + route2CurrentWaypoint + " and the route has a total of "
-                                + route2.getWaypoints().size() + " waypoints");
-
-                        // No more waypoints - terminate
-                        if (route2CurrentWaypoint >= route2.getWaypoints().size() - 2) {
-                            LOG.debug("We are breaking - route 2 is done");
-                            break;
-                        } else {
-                            LOG.debug("SWITCHING LEG FOR ROUTE 1");
-
-                            // Switch to next leg
-                            route2CurrentWaypoint++;
-
-                            int missingSecs = (int) (traverseTime.toDate().getTime() - route2SegmentEnd.toDate().getTime()) / 1000;
-                            route2CurrentPosition = traverseLine(route2, route2CurrentWaypoint,
-                                    route2.getWaypoints().get(route2CurrentWaypoint).getPos(), missingSecs);
-
-                            route2SegmentEnd = getEta(route2, route2CurrentWaypoint + 1);
-
-                            // Skip to next WP start traverse
-                            // traverseTime = new
-                            // DateTime(route2.getEtas().get(route2CurrentWaypoint));
-                        }
-
-                    }
-
-                    // Are we more than x hours in the future then stop
-                    DateTime currentTime = new DateTime(PntTime.getDate().getTime());
-
-                    if (traverseTime.isAfter(currentTime.plusHours(3))) {
-                        LOG.debug("More than 3 hours head of current time, ending checks");
-                        break;
-                    }
-
-                }
+    /**
+     * Returns the timeline of the given route, starting at its active way point.
+     * <p>
+     * Timelines are cached per MMSI and only re-created when a new route instance is received, the active way point changes or
+     * the ETA's of the route have been re-calculated.
+     * 
+     * @param route
+     *            the route
+     * @return the timeline of the route, or null if the route has no remaining legs
+     */
+    protected RouteTimeline getTimeline(Route route) {
+        Long mmsi = getMmsi(route);
+        int startWp = getActiveWpIndex(route);
+        RouteTimeline timeline = timelines.get(mmsi);
+        if (timeline == null || !timeline.isCurrent(route, startWp)) {
+            timeline = RouteTimeline.create(route, startWp);
+            if (timeline == null) {
+                timelines.remove(mmsi);
             } else {
-                LOG.debug("No segment was found - not sure how we reached this point...");
+                timelines.put(mmsi, timeline);
             }
-
-        } else {
-            // Route2 starts first
-            // Thus route1 start must be first common timeslot
-
         }
+        return timeline;
+    }
 
-        // findPosition(Position startingLocation, Position endLocation, double
-        // distanceTravelled){
-
-        return filteredIntendedRoute;
+    /**
+     * Returns the largest of the filter, ENC and alert distances in nautical miles
+     * 
+     * @return the largest filter distance
+     */
+    protected static double getMaxFilterDistance() {
+        return Math.max(FILTER_DISTANCE_EPSILON, Math.max(ENC_DISTANCE_EPSILON, ALERT_DISTANCE_EPSILON));
     }
 
     /**
-     * Traverses the route leg based at the given index from the given position
+     * Returns if the two timelines may come within filter distance of each other within the TCPA horizon.
+     * <p>
+     * This is a cheap space-time bounding box test used to prune route pairs before calling
+     * {@linkplain #findTCPA(RouteTimeline, RouteTimeline)}.
      * 
-     * @param route
-     *            the route
-     * @param index
-     *            the way point index
-     * @param currentPos
-     *            the current position
-     * @param seconds
-     *            the number of seconds
-     * @return the updated position
-     */
-    private Position traverseLine(Route route, int index, Position currentPos, int seconds) {
-        RouteWaypoint wp = route.getWaypoints().get(index);
-
-        double dist = new Speed(SpeedType.KNOTS, wp.getOutLeg().getSpeed()).forTime(new Time(TimeType.SECONDS, seconds))
-                .in(DistType.NAUTICAL_MILES).doubleValue();
-
-        if (wp.getHeading() == Heading.RL) {
-            return traverseLineRL(currentPos, wp.calcBrg(), dist);
-        } else {
-            return traverseLineGC(currentPos, wp.getOutLeg().getEndWp().getPos(), dist);
-        }
+     * @param timeline1
+     *            the first timeline
+     * @param timeline2
+     *            the second timeline
+     * @param now
+     *            the current time
+     * @return if the timelines may come within filter distance of each other
+     */
+    protected boolean mayApproach(RouteTimeline timeline1, RouteTimeline timeline2, long now) {
+        long start = Math.max(timeline1.getStart(), timeline2.getStart());
+        long end = Math.min(Math.min(timeline1.getEnd(), timeline2.getEnd()), now + TCPA_HORIZON);
+        return start <= end && end > now && timeline1.boundsWithinDistance(timeline2, getMaxFilterDistance());
     }
 
     /**
-     * Rhumb line traversing
+     * Finds the TCPA for two route timelines and returns the corresponding {@linkplain FilteredIntendedRoute}.
+     * <p>
+     * Produces one filter message per minute, counted from the start of route 2, at which the routes are within filter distance.
+     * Rather than traversing the routes minute by minute, the time intervals where the routes are close are first solved
+     * analytically per pair of leg segments, and only the minutes within these intervals are evaluated. The filter messages are
+     * thus the same as those of a minute by minute traversal.
+     * <p>
+     * This method is only valid if the current start way point of route 1 is before route 2.
      * 
-     * @param startPosition
-     * @param bearing
-     * @param distanceTravelled
-     * @return
+     * @param timeline1
+     *            the timeline of route 1
+     * @param timeline2
+     *            the timeline of route 2
+     * @return the filtered intended route
      */
-    private Position traverseLineRL(Position startPosition, double bearing, double distanceTravelled) {
+    protected FilteredIntendedRoute findTCPA(RouteTimeline timeline1, RouteTimeline timeline2) {
+        Route route1 = timeline1.getRoute();
+        Route route2 = timeline2.getRoute();
+        FilteredIntendedRoute filteredIntendedRoute = new FilteredIntendedRoute(getMmsi(route1), getMmsi(route2));
 
-        // How long will we have travelled along our route (route 1)
-        // long timeTravelledSeconds = minutes * 60;
+        long route2Start = timeline2.getStart();
 
-        // double distanceTravelled = Calculator.distanceAfterTimeMph(speed,
-        // timeTravelledSeconds);
+        // Route 1 must be under way when route 2 starts
+        if (timeline1.getStart() >= route2Start || !timeline1.isWithinLeg(route2Start)) {
+            return filteredIntendedRoute;
+        }
 
-        Position position = Calculator.findPosition(startPosition, bearing, Converter.nmToMeters(distanceTravelled));
+        long now = PntTime.getDate().getTime();
+        long end = Math.min(Math.min(timeline1.getEnd(), timeline2.getEnd()), now + TCPA_HORIZON);
+        double maxDistance = getMaxFilterDistance();
+
+        // Allow for the error of the linear leg approximation. Candidates are verified below
+        double searchDistance = maxDistance * 1.02 + 0.1;
+        for (long[] interval : timeline1.findProximityIntervals(timeline2, Math.max(route2Start, now), end, searchDistance)) {
+            // Evaluate the minute steps, counted from the start of route 2, within the interval
+            long step = Math.max(0, (interval[0] - route2Start + TCPA_STEP - 1) / TCPA_STEP);
+            for (long time = route2Start + step * TCPA_STEP; time <= interval[1] && time <= end; time += TCPA_STEP) {
+                if (time <= now) {
+                    continue;
+                }
+                Position pos1 = timeline1.getPosition(time);
+                Position pos2 = timeline2.getPosition(time);
+                if (pos1 == null || pos2 == null) {
+                    continue;
+                }
+                double currentDistance = Converter.metersToNm(pos1.distanceTo(pos2, CoordinateSystem.CARTESIAN));
+                if (currentDistance <= maxDistance) {
+                    filteredIntendedRoute.getFilterMessages().add(
+                            createFilterMessage(route1, route2, pos1, pos2, currentDistance, new DateTime(time)));
+                }
+            }
+        }
 
-        return position;
+        return filteredIntendedRoute;
     }
 
     /**
-     * Great Circle Traversing
+     * Creates a filter message for two routes being within filter distance of each other
      * 
-     * @param startPosition
-     * @return
+     * @param route1
+     *            the first route
+     * @param route2
+     *            the second route
+     * @param pos1
+     *            the position on the first route
+     * @param pos2
+     *            the position on the second route
+     * @param currentDistance
+     *            the distance between the positions in nautical miles
+     * @param time
+     *            the time
+     * @return the filter message
      */
-    private Position traverseLineGC(Position startPosition, Position endPosition, double distanceTravelled) {
+    private IntendedRouteFilterMessage createFilterMessage(Route route1, Route route2, Position pos1, Position pos2,
+            double currentDistance, DateTime time) {
+        IntendedRouteFilterType filterType = IntendedRouteFilterType.FILTERONLY;
 
-        // How long will we have travelled along our route (route 1)
-        // long timeTravelledSeconds = minutes * 60;
+        // We want an ENC graphics but no warning
+        if (currentDistance <= ENC_DISTANCE_EPSILON) {
+            filterType = IntendedRouteFilterType.ENC;
+        }
+
+        // We want an alert
+        if (currentDistance <= ALERT_DISTANCE_EPSILON) {
+            filterType = IntendedRouteFilterType.ALERT;
+        }
 
-        // double distanceTravelled = Calculator.distanceAfterTimeMph(speed,
-        // timeTravelledSeconds);
+        DecimalFormat df = new DecimalFormat("#.##");
 
-        Position position = Calculator.findPosition(startPosition, endPosition, Converter.nmToMeters(distanceTravelled));
+        IntendedRouteFilterMessage filterMessage = new IntendedRouteFilterMessage(route1, route2, pos1, pos2,
+                "TCPA Warning, proxmity of " + df.format(currentDistance) + " nautical miles ", 0, 0, filterType);
 
-        return position;
+        filterMessage.setTime1(time);
+        filterMessage.setTime2(time);
+        return filterMessage;
     }
 
     /**
@@ -17,9 +17,9 @@ package dk.dma.epd.common.prototype.service;
 import com.bbn.openmap.MapHandlerChild;
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.status.CloudStatus;
 import dk.dma.epd.common.prototype.status.IStatusComponent;
-import dk.dma.epd.common.util.Util;
 import net.maritimecloud.core.id.MaritimeId;
 import net.maritimecloud.net.mms.MmsClient;
 import net.maritimecloud.net.mms.MmsClientConfiguration;
@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -63,7 +64,8 @@ public class MaritimeCloudService extends MapHandlerChild implements Runnable, I
     protected List<IMaritimeCloudListener> listeners = new CopyOnWriteArrayList<>();
     protected CloudStatus cloudStatus = new CloudStatus();
     protected String hostPort;
-    protected boolean stopped = true;
+    protected volatile boolean stopped = true;
+    private ScheduledFuture<?> connector;
 
     /**
      * Constructor
@@ -103,33 +105,50 @@ public class MaritimeCloudService extends MapHandlerChild implements Runnable, I
     /**
      * Starts the Maritime cloud client
      */
-    public void start() {
+    public synchronized void start() {
         if (!stopped) {
             return;
         }
         // Update the eNav settings
         readEnavSettings();
         stopped = false;
-        new Thread(this).start();
+        connector = ExecutionService.getInstance().scheduleWithFixedDelay("MaritimeCloudService", this,
+                MARITIME_CLOUD_SLEEP_TIME, MARITIME_CLOUD_SLEEP_TIME, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Stops the Maritime cloud client
      */
-    public synchronized void stop() {
-        if (stopped) {
-            return;
-        }
+    public void stop() {
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
 
-        this.stopped = true;
-        if (connection != null) {
-            try {
-                connection.close();
-                connection.awaitTermination(2, TimeUnit.SECONDS);
-            } catch (Exception e) {
-                LOG.error("Error terminating cloud connection");
+            this.stopped = true;
+            cancelConnector();
+            if (connection != null) {
+                try {
+                    connection.close();
+                    connection.awaitTermination(2, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    LOG.error("Error terminating cloud connection");
+                }
+                connection = null;
             }
-            connection = null;
+        }
+
+        // Flag that we are stopped
+        fireDisconnected();
+    }
+
+    /**
+     * Cancels the periodic connection attempts
+     */
+    private synchronized void cancelConnector() {
+        if (connector != null) {
+            connector.cancel(false);
+            connector = null;
         }
     }
 
@@ -144,35 +163,25 @@ public class MaritimeCloudService extends MapHandlerChild implements Runnable, I
     }
 
     /**
-     * Thread run method
+     * Attempts to connect to the Maritime Cloud. Run periodically until connected or stopped
      */
     @Override
     public void run() {
+        if (stopped) {
+            return;
+        }
 
-        // Start by connecting
-        while (!stopped) {
-            Util.sleep(MARITIME_CLOUD_SLEEP_TIME);
-            
-            MaritimeId id = EPD.getInstance().getMaritimeId();
-            if (id != null || !(MaritimeCloudUtils.toMmsi(id)==0)) {
-                if (initConnection(hostPort, id)) {
-                    try {
-                        fireConnected(connection);
-                    } catch (Exception e) {
-                        fireError(e.getMessage());
-                    }
-                    break;
+        MaritimeId id = EPD.getInstance().getMaritimeId();
+        if (id != null || !(MaritimeCloudUtils.toMmsi(id)==0)) {
+            if (initConnection(hostPort, id)) {
+                cancelConnector();
+                try {
+                    fireConnected(connection);
+                } catch (Exception e) {
+                    fireError(e.getMessage());
                 }
             }
         }
-
-        // Periodic tasks
-        while (!stopped) {
-            Util.sleep(MARITIME_CLOUD_SLEEP_TIME);
-        }
-
-        // Flag that we are stopped
-        fireDisconnected();
     }
 
     /**
@@ -14,13 +14,14 @@
  */
 package dk.dma.epd.common.prototype.service;
 
-import com.bbn.openmap.proj.Projection;
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.Heading;
 import dk.dma.epd.common.prototype.EPD;
 import dk.dma.epd.common.prototype.model.route.IRoutesUpdateListener;
 import dk.dma.epd.common.prototype.model.route.Route;
+import dk.dma.epd.common.prototype.model.route.RouteWaypoint;
 import dk.dma.epd.common.prototype.model.route.RoutesUpdateEvent;
+import dk.dma.epd.common.prototype.notification.MsiNmGeometry;
 import dk.dma.epd.common.prototype.notification.MsiNmNotification;
 import dk.dma.epd.common.prototype.route.RouteManagerCommon;
 import dk.dma.epd.common.prototype.sensor.pnt.IPntDataListener;
@@ -39,21 +40,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * An implementation of a Maritime Cloud MSI-NM service
+ * <p>
+ * The relevance filter is maintained incrementally. The messages are kept in a {@linkplain MsiNmSpatialIndex spatial index},
+ * and for every message the handler records the reasons it is relevant. When the own-ship position, the visible routes or
+ * the new route being drawn change, only the messages near the old and new geometry are re-evaluated.
  */
 public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implements IRoutesUpdateListener, IPntDataListener {
 
     public static final int CLOUD_TIMEOUT = 10; // Seconds
 
+    /** Delay used for coalescing mouse updates while a new route is being drawn */
+    public static final long NEW_ROUTE_UPDATE_DELAY = 40; // Milliseconds
+
+    // Reasons for a message to be relevant
+    private static final int NEAR_OWN_SHIP = 1;
+    private static final int NEAR_ROUTE = 2;
+    private static final int NEAR_MOUSE = 4;
+    private static final int NEAR_NEW_ROUTE = 8;
+    private static final int ALL_REASONS = NEAR_OWN_SHIP | NEAR_ROUTE | NEAR_MOUSE | NEAR_NEW_ROUTE;
+
     private static final Logger LOG = LoggerFactory.getLogger(MsiNmServiceHandlerCommon.class);
 
     protected List<IMsiNmServiceListener> listeners = new CopyOnWriteArrayList<>();
@@ -68,16 +87,22 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
     private MaritimeId msiNmServiceId;
     private Timestamp msiNmLastUpdate;
 
+    private MsiNmSpatialIndex msiNmIndex;
+    private Map<MsiNmNotification, Integer> relevance = new IdentityHashMap<>();
+
     private Position currentShipPosition;
+    private List<double[]> routeBoxes = new ArrayList<>();
     private Position newRouteMousePosition;
-    private Route newRoute;
-    private Projection newRouteProjection;
+    private List<Position> newRouteWaypoints = new ArrayList<>();
+
+    private volatile NewRouteUpdate pendingNewRouteUpdate;
+    private final AtomicBoolean newRouteUpdateScheduled = new AtomicBoolean();
 
     /**
      * Constructor
      */
     public MsiNmServiceHandlerCommon() {
-        super(2);
+        super();
 
         enavSettings = EPD.getInstance().getSettings().getEnavSettings();
 
@@ -90,6 +115,7 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
         msiNmStore = MsiNmStore.loadFromFile(EPD.getInstance().getHomePath());
         msiNmMessages = msiNmStore.getMsiNmMessages();
         deletedMsiNmIds = msiNmStore.getDeletedMsiNmIds();
+        msiNmIndex = new MsiNmSpatialIndex(msiNmMessages);
 
         // Schedule a refresh of the chat services and active MSI-NM messages
         // NB: The calls are combined to avoid too many internet connections on sea
@@ -268,6 +294,7 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
         }
 
         msiNmMessages = newMsiNmMessages;
+        msiNmIndex = new MsiNmSpatialIndex(msiNmMessages);
 
         // Update the store
         msiNmStore.setMsiNmMessages(msiNmMessages);
@@ -318,6 +345,7 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
     public synchronized void reloadMsiNmMessages() {
         msiNmLastUpdate = null;
         msiNmMessages = new ArrayList<>();
+        msiNmIndex = new MsiNmSpatialIndex(msiNmMessages);
         deletedMsiNmIds = new HashSet<>();
         msiNmStore.setMsiNmMessages(msiNmMessages);
         msiNmStore.setDeletedMsiNmIds(deletedMsiNmIds);
@@ -339,6 +367,7 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
     public synchronized void deleteMsiNmMessage(MsiNmNotification message) {
         if (message != null && msiNmMessages.remove(message)) {
             deletedMsiNmIds.add(message.getId());
+            msiNmIndex = new MsiNmSpatialIndex(msiNmMessages);
             doUpdate();
         }
     }
@@ -349,79 +378,211 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
      */
     public synchronized void recomputeMsiNmMessageFilter(boolean notifyListeners) {
         long t0 = System.currentTimeMillis();
-        boolean updated = false;
 
-        // Check if the MSI filter is on or not
-        if (!enavSettings.isMsiFilter()) {
-            // All MSI-NM are included in the filter
-            for (MsiNmNotification msg : msiNmMessages) {
-                updated |= !msg.isFiltered();
-                msg.setFiltered(true);
+        if (routeManager != null) {
+            routeBoxes = getRouteBoxes(routeManager.getVisibleRoutes());
+        }
+
+        // Only messages near the own-ship, the visible routes or the new route can be relevant
+        Set<MsiNmNotification> candidates = new LinkedHashSet<>();
+        if (currentShipPosition != null) {
+            msiNmIndex.queryNear(currentShipPosition, enavSettings.getMsiRelevanceFromOwnShipRange(), candidates);
+        }
+        for (double[] box : routeBoxes) {
+            msiNmIndex.query(box[0], box[1], box[2], box[3], candidates);
+        }
+        addNewRouteCandidates(newRouteWaypoints, newRouteMousePosition, true, candidates);
+
+        relevance = new IdentityHashMap<>();
+        for (MsiNmNotification msg : candidates) {
+            int reasons = computeReasons(msg, ALL_REASONS);
+            if (reasons != 0) {
+                relevance.put(msg, reasons);
             }
+        }
 
-        } else {
-            // MSI-NM filtering is on
+        boolean updated = false;
+        for (MsiNmNotification msg : msiNmMessages) {
+            updated |= applyFilter(msg);
+        }
 
-            for (MsiNmNotification msg : msiNmMessages) {
+        LOG.debug("RECOMPUTE MSI-NM IN " + (System.currentTimeMillis() - t0) + " MS");
 
-                boolean wasFiltered = msg.isFiltered();
-                msg.setFiltered(false);
+        // Has the MSI-NM been updated
+        if (notifyListeners && updated) {
+            fireMsiNmMessagesChanged();
+        }
+    }
 
-                // Messages without location always included
-                if (msg.getLocation() == null) {
-                    msg.setFiltered(true);
-                }
+    /**
+     * Re-evaluates the given reasons for the candidate messages and updates their filtered state.
+     * <p>
+     * The candidates must include every message that may have gained or lost one of the reasons.
+     *
+     * @param candidates the messages to re-evaluate
+     * @param mask the reasons to re-evaluate
+     * @return if the filtered state of any of the messages changed
+     */
+    private boolean updateRelevance(Set<MsiNmNotification> candidates, int mask) {
+        boolean updated = false;
+        for (MsiNmNotification msg : candidates) {
+            Integer oldReasons = relevance.get(msg);
+            int reasons = (oldReasons == null) ? 0 : oldReasons & ~mask;
+            reasons |= computeReasons(msg, mask);
+            if (reasons != 0) {
+                relevance.put(msg, reasons);
+            } else if (oldReasons != null) {
+                relevance.remove(msg);
+            }
+            updated |= applyFilter(msg);
+        }
+        return updated;
+    }
 
-                // 1) Check proximity to ship
-                if (!msg.isFiltered() && currentShipPosition != null) {
-                    Double dist = msg.getDistanceToPosition(currentShipPosition);
-                    if (dist != null && dist < enavSettings.getMsiRelevanceFromOwnShipRange()) {
-                        msg.setFiltered(true);
-                    }
-                }
+    /**
+     * Updates the filtered state of the message from the recorded reasons
+     * @param msg the message to update
+     * @return if the filtered state changed
+     */
+    private boolean applyFilter(MsiNmNotification msg) {
+        // Messages without location are always included, as are all messages if the MSI filter is off
+        boolean filtered = !enavSettings.isMsiFilter() || msg.getLocation() == null || relevance.containsKey(msg);
+        boolean updated = filtered != msg.isFiltered();
+        msg.setFiltered(filtered);
+        return updated;
+    }
 
-                // 2) Check proximity to routes
-                if (!msg.isFiltered() && msg.nearRoute(routeManager.getVisibleRoutes())) {
-                    msg.setFiltered(true);
-                }
+    /**
+     * Computes which of the given reasons currently make the message relevant
+     * @param msg the message to test
+     * @param mask the reasons to test
+     * @return the reasons that apply
+     */
+    private int computeReasons(MsiNmNotification msg, int mask) {
+        if (msg.getLocation() == null) {
+            return 0;
+        }
+        MsiNmGeometry geometry = msg.getGeometry();
+        double visibility = enavSettings.getMsiVisibilityFromNewWaypoint();
+        int reasons = 0;
+
+        // 1) Check proximity to ship
+        if ((mask & NEAR_OWN_SHIP) != 0 && currentShipPosition != null) {
+            Double dist = geometry.distanceTo(currentShipPosition);
+            if (dist != null && dist < enavSettings.getMsiRelevanceFromOwnShipRange()) {
+                reasons |= NEAR_OWN_SHIP;
+            }
+        }
 
-                // 3) Check proximity from a new route mouse position
-                if (!msg.isFiltered() && newRouteMousePosition != null) {
-                    Double dist = msg.getDistanceToPosition(newRouteMousePosition);
-                    if (dist != null && dist < enavSettings.getMsiVisibilityFromNewWaypoint()) {
-                        msg.setFiltered(true);
-                    }
+        // 2) Check if any of the points lie within the bounding box of a visible route
+        if ((mask & NEAR_ROUTE) != 0) {
+            for (double[] box : routeBoxes) {
+                if (geometry.hasPointWithin(box[0], box[1], box[2], box[3])) {
+                    reasons |= NEAR_ROUTE;
+                    break;
                 }
+            }
+        }
 
-                // 4) Check proximity to the new route
-                if (!msg.isFiltered() && newRoute != null && newRouteMousePosition != null && newRouteProjection != null &&
-                        msg.nearNewRoute(newRoute, newRouteMousePosition, newRouteProjection)) {
-                    msg.setFiltered(true);
+        // 3) Check proximity to the new route mouse position and the leg leading to it
+        if ((mask & NEAR_MOUSE) != 0 && newRouteMousePosition != null) {
+            Double dist = geometry.distanceTo(newRouteMousePosition);
+            if (dist != null && dist < visibility) {
+                reasons |= NEAR_MOUSE;
+            } else if (!newRouteWaypoints.isEmpty()) {
+                dist = geometry.distanceTo(newRouteWaypoints.get(newRouteWaypoints.size() - 1), newRouteMousePosition);
+                if (dist != null && dist <= visibility) {
+                    reasons |= NEAR_MOUSE;
                 }
+            }
+        }
 
-                updated |= wasFiltered != msg.isFiltered();
+        // 4) Check proximity to the fixed legs of the new route
+        if ((mask & NEAR_NEW_ROUTE) != 0 && newRouteMousePosition != null) {
+            for (int i = 1; i < newRouteWaypoints.size(); i++) {
+                Double dist = geometry.distanceTo(newRouteWaypoints.get(i - 1), newRouteWaypoints.get(i));
+                if (dist != null && dist <= visibility) {
+                    reasons |= NEAR_NEW_ROUTE;
+                    break;
+                }
             }
         }
 
-        LOG.debug("RECOMPUTE MSI-NM IN " + (System.currentTimeMillis() - t0) + " MS");
+        return reasons;
+    }
 
-        // Has the MSI-NM been updated
-        if (notifyListeners && updated) {
-            fireMsiNmMessagesChanged();
+    /**
+     * Adds the messages that may be near the new route to the candidates
+     * @param waypoints the way points of the new route
+     * @param mousePosition the mouse position
+     * @param includeLegs whether to include the legs between the way points
+     * @param candidates the candidate set to update
+     */
+    private void addNewRouteCandidates(List<Position> waypoints, Position mousePosition, boolean includeLegs,
+            Set<MsiNmNotification> candidates) {
+        if (mousePosition == null) {
+            return;
+        }
+        double visibility = enavSettings.getMsiVisibilityFromNewWaypoint();
+        msiNmIndex.queryNear(mousePosition, visibility, candidates);
+        if (!waypoints.isEmpty()) {
+            msiNmIndex.queryNear(waypoints.get(waypoints.size() - 1), mousePosition, visibility, candidates);
+        }
+        if (includeLegs) {
+            for (int i = 1; i < waypoints.size(); i++) {
+                msiNmIndex.queryNear(waypoints.get(i - 1), waypoints.get(i), visibility, candidates);
+            }
         }
     }
 
     /**
-     * Called by the MsiLayer to update the filter when a new route is being drawn
+     * Called by the MsiLayer to update the filter when a new route is being drawn.
+     * <p>
+     * The way points are copied on the calling thread, whereas the filter is updated in the background.
+     * Rapid successive calls are coalesced, so that only the latest mouse position is evaluated.
+     *
      * @param newRouteMousePosition the current mouse position
      * @param newRoute the new route
-     * @param newRouteProjection the new route projection
      */
-    public synchronized void updateNewRouteMousePosition(Position newRouteMousePosition, Route newRoute, Projection newRouteProjection) {
-        this.newRouteMousePosition = newRouteMousePosition;
-        this.newRoute = newRoute;
-        this.newRouteProjection = newRouteProjection;
-        recomputeMsiNmMessageFilter(true);
+    public void updateNewRouteMousePosition(Position newRouteMousePosition, Route newRoute) {
+        List<Position> waypoints = new ArrayList<>();
+        if (newRouteMousePosition != null && newRoute != null) {
+            for (RouteWaypoint wp : newRoute.getWaypoints()) {
+                waypoints.add(wp.getPos());
+            }
+        }
+        pendingNewRouteUpdate = new NewRouteUpdate(newRouteMousePosition, waypoints);
+
+        if (newRouteUpdateScheduled.compareAndSet(false, true)) {
+            getScheduler().schedule(new Runnable() {
+                @Override public void run() {
+                    newRouteUpdateScheduled.set(false);
+                    applyNewRouteUpdate(pendingNewRouteUpdate);
+                }
+            }, NEW_ROUTE_UPDATE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Updates the filter for the messages near the old and new mouse position and, if the way points have changed,
+     * for the messages near the old and new legs of the new route
+     * @param update the new route update to apply
+     */
+    private synchronized void applyNewRouteUpdate(NewRouteUpdate update) {
+        boolean legsChanged = (newRouteMousePosition == null) != (update.mousePosition == null)
+                || !samePositions(newRouteWaypoints, update.waypoints);
+        int mask = legsChanged ? NEAR_MOUSE | NEAR_NEW_ROUTE : NEAR_MOUSE;
+
+        Set<MsiNmNotification> candidates = new LinkedHashSet<>();
+        addNewRouteCandidates(newRouteWaypoints, newRouteMousePosition, legsChanged, candidates);
+        addNewRouteCandidates(update.waypoints, update.mousePosition, legsChanged, candidates);
+
+        newRouteMousePosition = update.mousePosition;
+        newRouteWaypoints = update.waypoints;
+
+        if (updateRelevance(candidates, mask)) {
+            fireMsiNmMessagesChanged();
+        }
     }
 
     /**
@@ -430,13 +591,28 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
     @Override
     public void pntDataUpdate(PntData pntData) {
         Position position = pntData.getPosition();
-
-        if (currentShipPosition == null ||
-                Calculator.range(position, currentShipPosition, Heading.GC) > enavSettings.getMsiRelevanceGpsUpdateRange()) {
-            currentShipPosition = position;
-            recomputeMsiNmMessageFilter(true);
+        if (position == null) {
+            return;
         }
 
+        synchronized (this) {
+            if (currentShipPosition == null ||
+                    Calculator.range(position, currentShipPosition, Heading.GC) > enavSettings.getMsiRelevanceGpsUpdateRange()) {
+
+                // Re-evaluate the messages near the old and new position
+                double range = enavSettings.getMsiRelevanceFromOwnShipRange();
+                Set<MsiNmNotification> candidates = new LinkedHashSet<>();
+                if (currentShipPosition != null) {
+                    msiNmIndex.queryNear(currentShipPosition, range, candidates);
+                }
+                msiNmIndex.queryNear(position, range, candidates);
+                currentShipPosition = position;
+
+                if (updateRelevance(candidates, NEAR_OWN_SHIP)) {
+                    fireMsiNmMessagesChanged();
+                }
+            }
+        }
     }
 
     /**
@@ -453,11 +629,90 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
                 case ROUTE_ADDED:
                 case ROUTE_REMOVED:
                 case ROUTE_CHANGED:
-                    recomputeMsiNmMessageFilter(true);
+                    updateRouteBoxes();
             }
         }
     }
 
+    /**
+     * Updates the filter for the messages within the old and new bounding boxes of the visible routes
+     */
+    private void updateRouteBoxes() {
+        RouteManagerCommon manager = routeManager;
+        if (manager == null) {
+            return;
+        }
+        List<double[]> boxes = getRouteBoxes(manager.getVisibleRoutes());
+
+        synchronized (this) {
+            if (sameBoxes(routeBoxes, boxes)) {
+                return;
+            }
+            Set<MsiNmNotification> candidates = new LinkedHashSet<>();
+            for (double[] box : routeBoxes) {
+                msiNmIndex.query(box[0], box[1], box[2], box[3], candidates);
+            }
+            for (double[] box : boxes) {
+                msiNmIndex.query(box[0], box[1], box[2], box[3], candidates);
+            }
+            routeBoxes = boxes;
+
+            if (updateRelevance(candidates, NEAR_ROUTE)) {
+                fireMsiNmMessagesChanged();
+            }
+        }
+    }
+
+    /**
+     * Returns the bounding boxes of the given routes as {minLat, minLon, maxLat, maxLon}
+     * @param routes the routes
+     * @return the bounding boxes of the routes
+     */
+    private static List<double[]> getRouteBoxes(List<Route> routes) {
+        List<double[]> boxes = new ArrayList<>(routes.size());
+        for (Route route : routes) {
+            if (route.getWaypoints() == null || route.getWaypoints().isEmpty()) {
+                continue;
+            }
+            double[] box = { 90, 180, -90, -180 };
+            for (RouteWaypoint wp : route.getWaypoints()) {
+                Position pos = wp.getPos();
+                box[0] = Math.min(box[0], pos.getLatitude());
+                box[1] = Math.min(box[1], pos.getLongitude());
+                box[2] = Math.max(box[2], pos.getLatitude());
+                box[3] = Math.max(box[3], pos.getLongitude());
+            }
+            boxes.add(box);
+        }
+        return boxes;
+    }
+
+    private static boolean sameBoxes(List<double[]> boxes1, List<double[]> boxes2) {
+        if (boxes1.size() != boxes2.size()) {
+            return false;
+        }
+        for (int i = 0; i < boxes1.size(); i++) {
+            if (!Arrays.equals(boxes1.get(i), boxes2.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean samePositions(List<Position> positions1, List<Position> positions2) {
+        if (positions1.size() != positions2.size()) {
+            return false;
+        }
+        for (int i = 0; i < positions1.size(); i++) {
+            Position pos1 = positions1.get(i);
+            Position pos2 = positions2.get(i);
+            if (pos1.getLatitude() != pos2.getLatitude() || pos1.getLongitude() != pos2.getLongitude()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void findAndInit(Object obj) {
         super.findAndInit(obj);
@@ -542,4 +797,17 @@ public class MsiNmServiceHandlerCommon extends EnavServiceHandlerCommon implemen
 
     }
 
+    /**
+     * The mouse position and way points of a new route, copied when the update was requested
+     */
+    private static final class NewRouteUpdate {
+        final Position mousePosition;
+        final List<Position> waypoints;
+
+        NewRouteUpdate(Position mousePosition, List<Position> waypoints) {
+            this.mousePosition = mousePosition;
+            this.waypoints = waypoints;
+        }
+    }
+
 }
@@ -0,0 +1,196 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.jcip.annotations.NotThreadSafe;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.notification.MsiNmGeometry;
+import dk.dma.epd.common.prototype.notification.MsiNmNotification;
+
+/**
+ * Grid index over the bounding boxes of MSI-NM messages.
+ * <p>
+ * Each message is registered in every grid cell overlapped by the bounding box of its locations. Messages with very large
+ * bounding boxes are kept in a separate list that is always checked. Queries return the messages whose bounding box
+ * intersects the query box, leaving the exact distance tests to the caller.
+ */
+@NotThreadSafe
+public class MsiNmSpatialIndex {
+
+    /** Cell size in degrees */
+    private static final double CELL_SIZE = 0.5;
+
+    /** Messages covering more cells than this are not registered in the grid */
+    private static final int MAX_CELLS = 256;
+
+    private final Map<Long, List<MsiNmNotification>> cells = new HashMap<>();
+    private final List<MsiNmNotification> large = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param messages
+     *            the messages to index. Messages without locations are not indexed
+     */
+    public MsiNmSpatialIndex(Collection<MsiNmNotification> messages) {
+        for (MsiNmNotification message : messages) {
+            if (message.getLocation() == null) {
+                continue;
+            }
+            MsiNmGeometry geometry = message.getGeometry();
+            if (geometry.isEmpty()) {
+                continue;
+            }
+            int lat0 = latIndex(geometry.getMinLat());
+            int lat1 = latIndex(geometry.getMaxLat());
+            int lon0 = lonIndex(geometry.getMinLon());
+            int lon1 = lonIndex(geometry.getMaxLon());
+            if ((long) (lat1 - lat0 + 1) * (lon1 - lon0 + 1) > MAX_CELLS) {
+                large.add(message);
+                continue;
+            }
+            for (int lat = lat0; lat <= lat1; lat++) {
+                for (int lon = lon0; lon <= lon1; lon++) {
+                    List<MsiNmNotification> cell = cells.get(cellKey(lat, lon));
+                    if (cell == null) {
+                        cell = new ArrayList<>(2);
+                        cells.put(cellKey(lat, lon), cell);
+                    }
+                    cell.add(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the messages whose bounding box intersects the given bounding box
+     *
+     * @param minLat
+     *            southern boundary
+     * @param minLon
+     *            western boundary
+     * @param maxLat
+     *            northern boundary
+     * @param maxLon
+     *            eastern boundary
+     * @return the matching messages
+     */
+    public Set<MsiNmNotification> query(double minLat, double minLon, double maxLat, double maxLon) {
+        Set<MsiNmNotification> result = new LinkedHashSet<>();
+        query(minLat, minLon, maxLat, maxLon, result);
+        return result;
+    }
+
+    /**
+     * Adds the messages whose bounding box intersects the given bounding box to the result
+     *
+     * @param minLat
+     *            southern boundary
+     * @param minLon
+     *            western boundary
+     * @param maxLat
+     *            northern boundary
+     * @param maxLon
+     *            eastern boundary
+     * @param result
+     *            the set to add the matching messages to
+     */
+    public void query(double minLat, double minLon, double maxLat, double maxLon, Set<MsiNmNotification> result) {
+        int lat0 = latIndex(minLat);
+        int lat1 = latIndex(maxLat);
+        int lon0 = lonIndex(minLon);
+        int lon1 = lonIndex(maxLon);
+        for (int lat = lat0; lat <= lat1; lat++) {
+            for (int lon = lon0; lon <= lon1; lon++) {
+                List<MsiNmNotification> cell = cells.get(cellKey(lat, lon));
+                if (cell != null) {
+                    for (MsiNmNotification message : cell) {
+                        if (intersects(message.getGeometry(), minLat, minLon, maxLat, maxLon)) {
+                            result.add(message);
+                        }
+                    }
+                }
+            }
+        }
+        for (MsiNmNotification message : large) {
+            if (intersects(message.getGeometry(), minLat, minLon, maxLat, maxLon)) {
+                result.add(message);
+            }
+        }
+    }
+
+    /**
+     * Adds the messages whose bounding box comes within the given distance of the position to the result
+     *
+     * @param pos
+     *            the position
+     * @param distance
+     *            the distance in nautical miles
+     * @param result
+     *            the set to add the matching messages to
+     */
+    public void queryNear(Position pos, double distance, Set<MsiNmNotification> result) {
+        queryNear(pos, pos, distance, result);
+    }
+
+    /**
+     * Adds the messages whose bounding box comes within the given distance of the bounding box of the two positions to the
+     * result
+     *
+     * @param pos1
+     *            the first position
+     * @param pos2
+     *            the second position
+     * @param distance
+     *            the distance in nautical miles
+     * @param result
+     *            the set to add the matching messages to
+     */
+    public void queryNear(Position pos1, Position pos2, double distance, Set<MsiNmNotification> result) {
+        double minLat = Math.min(pos1.getLatitude(), pos2.getLatitude());
+        double maxLat = Math.max(pos1.getLatitude(), pos2.getLatitude());
+        double minLon = Math.min(pos1.getLongitude(), pos2.getLongitude());
+        double maxLon = Math.max(pos1.getLongitude(), pos2.getLongitude());
+        double dLat = distance / 60.0;
+        double cosLat = Math.cos(Math.toRadians(Math.min(89.0, Math.max(Math.abs(minLat), Math.abs(maxLat)) + dLat)));
+        double dLon = dLat / Math.max(1e-6, cosLat);
+        query(minLat - dLat, minLon - dLon, maxLat + dLat, maxLon + dLon, result);
+    }
+
+    private static boolean intersects(MsiNmGeometry geometry, double minLat, double minLon, double maxLat, double maxLon) {
+        return geometry.getMinLat() <= maxLat && geometry.getMaxLat() >= minLat && geometry.getMinLon() <= maxLon
+                && geometry.getMaxLon() >= minLon;
+    }
+
+    private static int latIndex(double lat) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, lat)) + 90.0) / CELL_SIZE);
+    }
+
+    private static int lonIndex(double lon) {
+        return (int) Math.floor((Math.max(-180, Math.min(180, lon)) + 180.0) / CELL_SIZE);
+    }
+
+    private static long cellKey(int lat, int lon) {
+        return ((long) lat << 32) | (lon & 0xffffffffL);
+    }
+}
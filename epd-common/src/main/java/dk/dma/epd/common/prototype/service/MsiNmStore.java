@@ -15,18 +15,16 @@
 package dk.dma.epd.common.prototype.service;
 
 import dk.dma.epd.common.prototype.notification.MsiNmNotification;
+import dk.dma.epd.common.util.SnapshotFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -74,11 +72,8 @@ public class MsiNmStore implements Serializable {
      */
     public synchronized void saveToFile() {
 
-        try (FileOutputStream fileOut = new FileOutputStream(msiNmFile);
-             ObjectOutputStream objectOut = new ObjectOutputStream(fileOut)) {
-
-            objectOut.writeObject(deletedMsiNmIds);
-            objectOut.writeObject(msiNmMessages);
+        try {
+            SnapshotFile.writeObjects(Paths.get(msiNmFile), "msinm", deletedMsiNmIds, msiNmMessages);
 
             LOG.info("Saved MSI-NM store");
         } catch (IOException e) {
@@ -97,13 +92,13 @@ public class MsiNmStore implements Serializable {
         msiNmFile = homePath.resolve(".msinm").toString();
         MsiNmStore store = new MsiNmStore(homePath);
 
-        try (FileInputStream fileIn = new FileInputStream(msiNmFile);
-             ObjectInputStream objectIn = new ObjectInputStream(fileIn)) {
+        try {
+            Object[] objects = SnapshotFile.readObjects(Paths.get(msiNmFile), "msinm", 2);
 
-            Set<Integer> deletedMsiNmIds = (Set<Integer>)objectIn.readObject();
+            Set<Integer> deletedMsiNmIds = (Set<Integer>)objects[0];
             store.setDeletedMsiNmIds(deletedMsiNmIds);
 
-            List<MsiNmNotification> msiNmMessages = (List<MsiNmNotification>)objectIn.readObject();
+            List<MsiNmNotification> msiNmMessages = (List<MsiNmNotification>)objects[1];
             store.setMsiNmMessages(msiNmMessages);
 
             return  store;
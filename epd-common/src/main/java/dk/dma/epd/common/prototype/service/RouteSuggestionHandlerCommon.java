@@ -44,7 +44,7 @@ public class RouteSuggestionHandlerCommon extends EnavServiceHandlerCommon {
      * Constructor
      */
     public RouteSuggestionHandlerCommon() {
-        super(2);
+        super();
     }
 
     /**
@@ -55,7 +55,7 @@ public abstract class StrategicRouteHandlerCommon extends EnavServiceHandlerComm
      * Constructor
      */
     public StrategicRouteHandlerCommon() {
-        super(2);
+        super();
     }
 
     /**
@@ -48,6 +48,7 @@ public class AisSettings implements Serializable {
     private int pastTrackDisplayTime = 30; // In minutes
     private int pastTrackMinDist = 100; // In meters
     private int pastTrackOwnShipMinDist = 20; // In meters
+    private boolean pastTrackRingBuffer; // Use primitive ring buffers for past-tracks
 
     /**
      * The minimum length of the COG vector in minutes.
@@ -117,6 +118,7 @@ public class AisSettings implements Serializable {
         pastTrackDisplayTime = PropUtils.intFromProperties(props, PREFIX + "pastTrackDisplayTime", pastTrackDisplayTime);
         pastTrackMinDist = PropUtils.intFromProperties(props, PREFIX + "pastTrackMinDist", pastTrackMinDist);
         pastTrackOwnShipMinDist = PropUtils.intFromProperties(props, PREFIX + "pastTrackOwnShipMinDist", pastTrackOwnShipMinDist);
+        pastTrackRingBuffer = PropUtils.booleanFromProperties(props, PREFIX + "pastTrackRingBuffer", pastTrackRingBuffer);
 
         this.cogVectorLengthMin = PropUtils.intFromProperties(props, PREFIX + this.varNameCogVectorLengthMin,
                 this.cogVectorLengthMin);
@@ -150,6 +152,7 @@ public class AisSettings implements Serializable {
         props.put(PREFIX + "pastTrackDisplayTime", Integer.toString(pastTrackDisplayTime));
         props.put(PREFIX + "pastTrackMinDist", Integer.toString(pastTrackMinDist));
         props.put(PREFIX + "pastTrackOwnShipMinDist", Integer.toString(pastTrackOwnShipMinDist));
+        props.put(PREFIX + "pastTrackRingBuffer", Boolean.toString(pastTrackRingBuffer));
 
         props.put(PREFIX + this.varNameCogVectorLengthMin, Integer.toString(this.cogVectorLengthMin));
         props.put(PREFIX + this.varNameCogVectorLengthMax, Integer.toString(this.cogVectorLengthMax));
@@ -258,6 +261,14 @@ public class AisSettings implements Serializable {
         this.pastTrackOwnShipMinDist = pastTrackOwnShipMinDist;
     }
 
+    public boolean isPastTrackRingBuffer() {
+        return pastTrackRingBuffer;
+    }
+
+    public void setPastTrackRingBuffer(boolean pastTrackRingBuffer) {
+        this.pastTrackRingBuffer = pastTrackRingBuffer;
+    }
+
     public int getCogVectorLengthMin() {
         return cogVectorLengthMin;
     }
@@ -174,6 +174,11 @@ public class SensorSettings implements Serializable {
     
     private boolean useTimeFromPnt = true;
 
+    /**
+     * Minimum interval in milliseconds between PNT updates published to listeners
+     */
+    private long pntPublishInterval = 1000;
+
     /**
      * Constructor
      */
@@ -232,6 +237,7 @@ public class SensorSettings implements Serializable {
         }
         pntSource = PntSourceSetting.parseString(props.getProperty(PREFIX + "pntSource", pntSource.name()));
         useTimeFromPnt = PropUtils.booleanFromProperties(props, PREFIX + "useTimeFromPnt", useTimeFromPnt);
+        pntPublishInterval = PropUtils.longFromProperties(props, PREFIX + "pntPublishInterval", pntPublishInterval);
     }
 
     /**
@@ -275,6 +281,7 @@ public class SensorSettings implements Serializable {
         props.put(PREFIX + "replayStartDate", replayStartStr);
         props.put(PREFIX + "pntSource", pntSource.name());
         props.put(PREFIX + "useTimeFromPnt", Boolean.toString(useTimeFromPnt));
+        props.put(PREFIX + "pntPublishInterval", Long.toString(pntPublishInterval));
     }
 
     /**
@@ -516,4 +523,12 @@ public class SensorSettings implements Serializable {
         this.useTimeFromPnt = useTimeFromPnt;
     }
 
+    public long getPntPublishInterval() {
+        return pntPublishInterval;
+    }
+
+    public void setPntPublishInterval(long pntPublishInterval) {
+        this.pntPublishInterval = pntPublishInterval;
+    }
+
 }
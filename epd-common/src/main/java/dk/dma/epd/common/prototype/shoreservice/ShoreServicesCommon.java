@@ -396,7 +396,7 @@ public class ShoreServicesCommon extends MapHandlerChild implements IStatusCompo
                 StringReader sr = new StringReader(xmlReturnRoute);
 
                 try {
-                    jc = JAXBContext.newInstance("dk.dma.epd.common.prototype.monalisa.sspa");
+                    jc = ShoreHttp.getJaxbContext("dk.dma.epd.common.prototype.monalisa.sspa");
                     u = jc.createUnmarshaller();
 
                     routeResponse = (RouteresponseType) ((javax.xml.bind.JAXBElement) u.unmarshal(sr)).getValue();
@@ -34,6 +34,16 @@ public class AisStatus extends ComponentStatus {
     private Status sendStatus = Status.UNKNOWN;
     private Status receiveStatus = Status.UNKNOWN;
     
+    // Ingest pipeline counters
+    private long droppedMessages;
+    private Date lastDropped;
+    private long coalescedMessages;
+    private long batches;
+    private int lastBatchSize;
+    private int backlog;
+    private int maxBacklog;
+    private int bufferCapacity;
+    
     public AisStatus() {
         super("AIS");
     }
@@ -51,6 +61,31 @@ public class AisStatus extends ComponentStatus {
         lastReceived = new Date();
     }
     
+    /**
+     * Marks that a received message was dropped because the ingest buffer was full
+     */
+    public synchronized void markAisDropped() {
+        droppedMessages++;
+        lastDropped = new Date();
+    }
+    
+    /**
+     * Marks that a batch of messages has been applied by the ingest pipeline
+     * 
+     * @param batchSize the number of messages in the batch
+     * @param coalesced the number of messages superseded by later messages for the same MMSI
+     * @param backlog the number of messages left in the ingest buffer
+     * @param capacity the capacity of the ingest buffer
+     */
+    public synchronized void markAisBatch(int batchSize, int coalesced, int backlog, int capacity) {
+        batches++;
+        lastBatchSize = batchSize;
+        coalescedMessages += coalesced;
+        this.backlog = backlog;
+        maxBacklog = Math.max(maxBacklog, backlog);
+        bufferCapacity = capacity;
+    }
+    
     public synchronized void markSuccesfullSend() {
         lastSent = new Date();
         sendOk = true;
@@ -102,6 +137,15 @@ public class AisStatus extends ComponentStatus {
         } else {
             buf.append("Last send: " + Formatter.formatLongDateTime(lastSent));
         }
+        if (batches > 0 || droppedMessages > 0) {
+            buf.append("<br/>Ingest backlog: " + backlog + " / " + bufferCapacity + " (max " + maxBacklog + ")<br/>");
+            buf.append("Batches: " + batches + " (last " + lastBatchSize + " msgs)<br/>");
+            buf.append("Coalesced: " + coalescedMessages + "<br/>");
+            buf.append("Dropped: " + droppedMessages);
+            if (lastDropped != null) {
+                buf.append(" (last " + Formatter.formatLongDateTime(lastDropped) + ")");
+            }
+        }
         return buf.toString();
     }
     
@@ -116,5 +160,21 @@ public class AisStatus extends ComponentStatus {
     public synchronized Date getLastSent() {
         return lastSent;
     }
+    
+    public synchronized long getDroppedMessages() {
+        return droppedMessages;
+    }
+    
+    public synchronized long getCoalescedMessages() {
+        return coalescedMessages;
+    }
+    
+    public synchronized int getBacklog() {
+        return backlog;
+    }
+    
+    public synchronized int getMaxBacklog() {
+        return maxBacklog;
+    }
 
 }
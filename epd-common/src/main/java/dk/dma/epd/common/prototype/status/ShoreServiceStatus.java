@@ -17,6 +17,8 @@ package dk.dma.epd.common.prototype.status;
 import java.util.Date;
 
 import net.jcip.annotations.ThreadSafe;
+import dk.dma.epd.common.prototype.communication.webservice.ShoreEndpointMetrics;
+import dk.dma.epd.common.prototype.communication.webservice.ShoreHttp;
 import dk.dma.epd.common.prototype.communication.webservice.ShoreServiceException;
 import dk.dma.epd.common.text.Formatter;
 
@@ -69,8 +71,10 @@ public class ShoreServiceStatus extends ComponentStatus {
         } else {
             buf.append("Last contact: " + Formatter.formatLongDateTime(lastContact));
         }
-        
-        
+        for (ShoreEndpointMetrics metrics : ShoreHttp.getAllMetrics().values()) {
+            buf.append("<br/>" + metrics);
+        }
+
         return buf.toString();
     }
 
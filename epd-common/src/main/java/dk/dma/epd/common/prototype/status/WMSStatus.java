@@ -28,6 +28,13 @@ public class WMSStatus extends ComponentStatus {
     private Date lastFailed;
     private Exception lastException;
 
+    private long tilesLoaded;
+    private long lastConnectMillis;
+    private long lastDecodeMillis;
+    private long totalConnectMillis;
+    private long totalDecodeMillis;
+    private long maxTileMillis;
+
     public WMSStatus() {
         super("WMS services");
         shortStatusText = "No services performed yet";
@@ -46,6 +53,39 @@ public class WMSStatus extends ComponentStatus {
         shortStatusText = "Last failed wms contact: " + Formatter.formatLongDateTime(lastFailed);
     }
 
+    /**
+     * Records the timing of a loaded tile
+     * 
+     * @param connectMillis
+     *            the time spent until the tile data could be read, i.e. connecting or reading the disk cache
+     * @param decodeMillis
+     *            the time spent reading, decoding and masking the tile image
+     */
+    public synchronized void markTileLoaded(long connectMillis, long decodeMillis) {
+        tilesLoaded++;
+        lastConnectMillis = connectMillis;
+        lastDecodeMillis = decodeMillis;
+        totalConnectMillis += connectMillis;
+        totalDecodeMillis += decodeMillis;
+        maxTileMillis = Math.max(maxTileMillis, connectMillis + decodeMillis);
+    }
+
+    public synchronized long getTilesLoaded() {
+        return tilesLoaded;
+    }
+
+    public synchronized long getLastConnectMillis() {
+        return lastConnectMillis;
+    }
+
+    public synchronized long getLastDecodeMillis() {
+        return lastDecodeMillis;
+    }
+
+    public synchronized long getMaxTileMillis() {
+        return maxTileMillis;
+    }
+
     public Date getLastContact() {
         return lastContact;
     }
@@ -55,7 +95,7 @@ public class WMSStatus extends ComponentStatus {
     }
 
     @Override
-    public String getStatusHtml() {
+    public synchronized String getStatusHtml() {
         StringBuilder buf = new StringBuilder();
         buf.append("Contact: " + status.name() + "<br/>");
         if (status == Status.ERROR) {
@@ -67,6 +107,13 @@ public class WMSStatus extends ComponentStatus {
         } else {
             buf.append("Last contact: " + Formatter.formatLongDateTime(lastContact));
         }
+        if (tilesLoaded > 0) {
+            buf.append("<br/>Tiles loaded: " + tilesLoaded + "<br/>");
+            buf.append("Last tile: " + lastConnectMillis + " ms connect, " + lastDecodeMillis + " ms decode<br/>");
+            buf.append("Average tile: " + totalConnectMillis / tilesLoaded + " ms connect, " + totalDecodeMillis / tilesLoaded
+                    + " ms decode<br/>");
+            buf.append("Slowest tile: " + maxTileMillis + " ms");
+        }
 
 
         return buf.toString();
@@ -15,14 +15,17 @@
 package dk.dma.epd.common.prototype.voct;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import javax.swing.SwingUtilities;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -32,6 +35,8 @@ import com.bbn.openmap.MapHandlerChild;
 
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
+import dk.dma.epd.common.prototype.model.voct.SARDriftSimulation;
 import dk.dma.epd.common.prototype.model.voct.SAROperation;
 import dk.dma.epd.common.prototype.model.voct.SAR_TYPE;
 import dk.dma.epd.common.prototype.model.voct.SearchPatternGenerator;
@@ -41,9 +46,10 @@ import dk.dma.epd.common.prototype.model.voct.sardata.DatumPointDataSARIS;
 import dk.dma.epd.common.prototype.model.voct.sardata.EffortAllocationData;
 import dk.dma.epd.common.prototype.model.voct.sardata.RapidResponseData;
 import dk.dma.epd.common.prototype.model.voct.sardata.SARData;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARProbabilityGrid;
 import dk.dma.epd.common.prototype.model.voct.sardata.SARWeatherData;
 import dk.dma.epd.common.prototype.model.voct.sardata.SearchPatternRoute;
-import dk.dma.epd.common.util.Util;
+import dk.dma.epd.common.util.SnapshotFile;
 
 /**
  * The VOCTManager is responsible for maintaining current VOCT Status and all information relevant to the VOCT
@@ -53,7 +59,7 @@ import dk.dma.epd.common.util.Util;
  * 
  */
 
-public class VOCTManagerCommon extends MapHandlerChild implements Runnable, Serializable {
+public class VOCTManagerCommon extends MapHandlerChild implements Serializable {
 
     private static final long serialVersionUID = 1L;
     protected SAROperation sarOperation;
@@ -65,7 +71,12 @@ public class VOCTManagerCommon extends MapHandlerChild implements Runnable, Seri
     private CopyOnWriteArrayList<VOCTUpdateListener> listeners = new CopyOnWriteArrayList<>();
 
     protected SARData sarData;
-    protected List<SARData> sarFutureData;
+    protected volatile List<SARData> sarFutureData;
+    protected transient volatile List<SARProbabilityGrid> sarProbabilityGrids;
+    private transient Future<?> sarFutureTask;
+
+    /** The future horizon selected for display, in minutes after the CSS */
+    protected volatile int sarFutureHorizon;
 
     protected static final String VOCT_FILE = EPD.getInstance().getHomePath().resolve(".voct").toString();
     protected static final Logger LOG = LoggerFactory.getLogger(VOCTManagerCommon.class);
@@ -150,6 +161,8 @@ public class VOCTManagerCommon extends MapHandlerChild implements Runnable, Seri
      * User has clicked the Cancel button, abort operation and reset
      */
     public void cancelSarOperation() {
+        cancelSarFuture();
+        sarFutureHorizon = 0;
         deleteAllRoutes();
         sarOperation = null;
         hasSar = false;
@@ -193,26 +206,14 @@ public class VOCTManagerCommon extends MapHandlerChild implements Runnable, Seri
 
         if (hasSar || loadSarFromSerialize) {
 
-            try (FileOutputStream fileOut = new FileOutputStream(VOCT_FILE);
-                    ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);) {
-                objectOut.writeObject(sarData);
+            try {
+                SnapshotFile.writeObjects(Paths.get(VOCT_FILE), "voct", sarData);
             } catch (IOException e) {
                 LOG.error("Failed to save VOCT data: " + e.getMessage());
             }
         }
     }
 
-    @Override
-    public void run() {
-
-        // Maintanaince routines
-        while (true) {
-            Util.sleep(10000);
-
-        }
-
-    }
-
     public void notifyListeners(VOCTUpdateEvent e) {
         for (VOCTUpdateListener listener : listeners) {
             listener.voctUpdated(e);
@@ -255,12 +256,107 @@ public class VOCTManagerCommon extends MapHandlerChild implements Runnable, Seri
 
         this.sarData = sarData;
 
+        cancelSarFuture();
         if (!(sarData instanceof DatumPointDataSARIS)) {
-            sarFutureData = sarOperation.sarFutureCalculations(sarData);
+            calculateSarFuture(sarOperation, sarData);
         }
         notifyListeners(VOCTUpdateEvent.SAR_READY);
     }
 
+    /**
+     * Calculates the future horizons and the drift simulation of the SAR data in the background, off the EDT. The result is
+     * discarded if the SAR data has been replaced in the meantime.
+     * 
+     * @param operation
+     *            the SAR operation
+     * @param data
+     *            the SAR data
+     */
+    private synchronized void calculateSarFuture(final SAROperation operation, final SARData data) {
+        sarFutureTask = ExecutionService.getInstance().submit("VOCT future calculations", new Runnable() {
+            @Override
+            public void run() {
+                List<SARData> futureData = operation.sarFutureCalculations(data);
+                List<SARProbabilityGrid> grids = null;
+                try {
+                    grids = operation.driftSimulation(data, new SARDriftSimulation());
+                } catch (CancellationException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    LOG.error("Failed to run the SAR drift simulation: " + e.getMessage());
+                }
+                synchronized (VOCTManagerCommon.this) {
+                    if (Thread.currentThread().isInterrupted() || sarData != data) {
+                        return;
+                    }
+                    sarFutureData = futureData;
+                    sarProbabilityGrids = grids;
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        sarFutureReady(data);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Called on the EDT when the future horizons of the SAR data are ready. Draws the selected horizon, which could not be
+     * drawn while the calculations were running, and notifies the listeners.
+     * 
+     * @param data
+     *            the SAR data the future horizons were calculated from
+     */
+    private void sarFutureReady(SARData data) {
+        if (sarData != data || sarFutureData == null) {
+            return;
+        }
+        if (sarFutureHorizon > 0) {
+            showSARFuture(sarFutureHorizon);
+        }
+        notifyListeners(VOCTUpdateEvent.SAR_FUTURE_READY);
+    }
+
+    /**
+     * Cancels the future calculations still running for the previous input
+     */
+    private synchronized void cancelSarFuture() {
+        if (sarFutureTask != null) {
+            sarFutureTask.cancel(true);
+            sarFutureTask = null;
+        }
+        sarFutureData = null;
+        sarProbabilityGrids = null;
+    }
+
+    /**
+     * Returns the SAR data of the given future horizon
+     * 
+     * @param minutes
+     *            the horizon in minutes after the CSS, a multiple of 30
+     * @return the SAR data of the horizon, or null if the future calculations are not ready
+     */
+    protected SARData getSarFutureData(int minutes) {
+        List<SARData> futureData = sarFutureData;
+        int index = minutes / 30 - 1;
+        if (futureData == null || index < 0 || index >= futureData.size()) {
+            LOG.debug("SAR future data not ready for " + minutes + " minutes");
+            return null;
+        }
+        return futureData.get(index);
+    }
+
+    /**
+     * Returns the probability grids of the drift simulation, at the CSS and the following eight 30 minute horizons
+     * 
+     * @return the probability grids, or null if the simulation is not ready
+     */
+    public List<SARProbabilityGrid> getSarProbabilityGrids() {
+        return sarProbabilityGrids;
+    }
+
     public void EffortAllocationDataEntered() {
         notifyListeners(VOCTUpdateEvent.EFFORT_ALLOCATION_READY);
         sarOperation.calculateEffortAllocation(sarData);
@@ -22,7 +22,7 @@ import java.util.EnumSet;
  */
 public enum VOCTUpdateEvent {
     NEW_SAR, SAR_CANCEL, SAR_READY, SAR_DISPLAY, EFFORT_ALLOCATION_READY, EFFORT_ALLOCATION_DISPLAY, SEARCH_PATTERN_GENERATED, SAR_RECEIVED_CLOUD
-    , EFFORT_ALLOCATION_SERIALIZED;
+    , EFFORT_ALLOCATION_SERIALIZED, SAR_FUTURE_READY;
     
     public boolean is(VOCTUpdateEvent... events) {
         return EnumSet.copyOf(Arrays.asList(events)).contains(this);
@@ -0,0 +1,131 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Bounded, lock-free ring buffer with multiple producers and a single consumer.
+ * <p>
+ * Producers claim a slot by advancing the tail with a CAS and then publish the element into the slot. The consumer drains
+ * published elements from the head in order and clears the slots behind it. When the buffer is full, {@link #offer(Object)}
+ * fails immediately rather than blocking the producer, leaving it to the caller to count or otherwise handle the drop.
+ * <p>
+ * Only a single thread may call {@link #drainTo(Collection, int)}.
+ */
+@ThreadSafe
+public class BoundedRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Constructor
+     * 
+     * @param capacity
+     *            the capacity, rounded up to the nearest power of two
+     */
+    public BoundedRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Adds the element to the buffer if there is room for it
+     * 
+     * @param element
+     *            the element to add
+     * @return if the element was added, false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long t = tail.get();
+            if (t - head.get() >= slots.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.set((int) t & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code maxElements} published elements to the given collection, in the order they were added.
+     * <p>
+     * Must only be called by the consumer thread.
+     * 
+     * @param target
+     *            the collection to add the elements to
+     * @param maxElements
+     *            the max number of elements to move
+     * @return the number of elements moved
+     */
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        long h = head.get();
+        int count = 0;
+        while (count < maxElements) {
+            int idx = (int) h & mask;
+            E element = slots.get(idx);
+            if (element == null) {
+                // Empty, or the producer has claimed the slot but not yet published to it
+                break;
+            }
+            slots.lazySet(idx, null);
+            target.add(element);
+            h++;
+            count++;
+        }
+        if (count > 0) {
+            head.set(h);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the approximate number of elements in the buffer
+     * 
+     * @return the approximate number of elements in the buffer
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, slots.length()));
+    }
+
+    /**
+     * Returns the capacity of the buffer
+     * 
+     * @return the capacity of the buffer
+     */
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,319 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Versioned binary snapshot files.
+ * <p>
+ * A snapshot file consists of a header, identifying the file as a snapshot of a given type and payload version, followed
+ * by the payload and its CRC32 checksum. The payload may optionally be GZip compressed. Files are written to a temporary
+ * file which is atomically moved into place, so a crash during a write never leaves a truncated snapshot behind.
+ * <p>
+ * Files written with plain Java serialization before the snapshot format was introduced are recognized and can still be
+ * read by {@linkplain #readObjects(Path, String, int)}.
+ */
+public final class SnapshotFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotFile.class);
+
+    /** Magic number identifying a snapshot file ("EPDS") */
+    public static final int MAGIC = 0x45504453;
+
+    /** The version of the snapshot container format */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_COMPRESSED = 1;
+
+    /** Payload version of snapshots holding Java serialized objects */
+    private static final int SERIALIZED_VERSION = 1;
+
+    /** Value written for a null date */
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes the payload of a snapshot
+     */
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the payload of a snapshot
+     */
+    public interface Reader<T> {
+        T read(DataInputStream in, int version) throws IOException;
+    }
+
+    /**
+     * Thrown when a file is not a snapshot of the expected type or version
+     */
+    public static class SnapshotFormatException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public SnapshotFormatException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Atomically writes a snapshot file
+     * 
+     * @param file
+     *            the file to write
+     * @param type
+     *            the type of the snapshot
+     * @param version
+     *            the version of the payload format
+     * @param compress
+     *            whether to compress the payload
+     * @param writer
+     *            writes the payload
+     */
+    public static void write(Path file, String type, int version, boolean compress, Writer writer) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64 * 1024);
+        OutputStream os = compress ? new GZIPOutputStream(payload, 64 * 1024) : payload;
+        try (DataOutputStream out = new DataOutputStream(os)) {
+            writer.write(out);
+        }
+        byte[] data = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT_VERSION);
+                out.writeUTF(type);
+                out.writeInt(version);
+                out.writeByte(compress ? FLAG_COMPRESSED : 0);
+                out.writeInt(data.length);
+                out.writeLong(crc.getValue());
+                out.write(data);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Reads a snapshot file
+     * 
+     * @param file
+     *            the file to read
+     * @param type
+     *            the expected type of the snapshot
+     * @param reader
+     *            reads the payload
+     * @return the result of the reader
+     * @throws FileNotFoundException
+     *             if the file does not exist
+     * @throws SnapshotFormatException
+     *             if the file is not a valid snapshot of the given type
+     */
+    public static <T> T read(Path file, String type, Reader<T> reader) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(file.toString());
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new SnapshotFormatException("Not a snapshot file: " + file);
+            }
+            int formatVersion = in.readShort();
+            if (formatVersion > FORMAT_VERSION) {
+                throw new SnapshotFormatException("Unsupported snapshot format " + formatVersion + ": " + file);
+            }
+            String fileType = in.readUTF();
+            if (!fileType.equals(type)) {
+                throw new SnapshotFormatException("Expected snapshot of type " + type + " but found " + fileType);
+            }
+            int version = in.readInt();
+            int flags = in.readByte();
+            // Validate the length before allocating, a corrupt header must not trigger a huge allocation
+            int length = in.readInt();
+            if (length < 0 || length > Files.size(file)) {
+                throw new SnapshotFormatException("Invalid snapshot payload length " + length + ": " + file);
+            }
+            byte[] data = new byte[length];
+            long checksum = in.readLong();
+            in.readFully(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if (crc.getValue() != checksum) {
+                throw new SnapshotFormatException("Snapshot checksum mismatch: " + file);
+            }
+
+            InputStream is = new ByteArrayInputStream(data);
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                is = new GZIPInputStream(is, 64 * 1024);
+            }
+            try (DataInputStream payload = new DataInputStream(is)) {
+                return reader.read(payload, version);
+            }
+        }
+    }
+
+    /**
+     * Returns if the file is a snapshot file, as opposed to e.g. a legacy Java serialized file
+     * 
+     * @param file
+     *            the file to check
+     * @return if the file is a snapshot file
+     */
+    public static boolean isSnapshot(Path file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Atomically writes the given objects as a compressed snapshot using Java serialization for the payload
+     * 
+     * @param file
+     *            the file to write
+     * @param type
+     *            the type of the snapshot
+     * @param objects
+     *            the serializable objects to write
+     */
+    public static void writeObjects(Path file, String type, final Object... objects) throws IOException {
+        write(file, type, SERIALIZED_VERSION, true, new Writer() {
+            @Override
+            public void write(DataOutputStream out) throws IOException {
+                ObjectOutputStream objectOut = new ObjectOutputStream(out);
+                for (Object obj : objects) {
+                    objectOut.writeObject(obj);
+                }
+                objectOut.flush();
+            }
+        });
+    }
+
+    /**
+     * Reads objects written by {@linkplain #writeObjects(Path, String, Object...)}. If the file is a legacy file,
+     * containing just the Java serialized objects, it is read as such.
+     * 
+     * @param file
+     *            the file to read
+     * @param type
+     *            the type of the snapshot
+     * @param count
+     *            the number of objects to read
+     * @return the objects read
+     * @throws FileNotFoundException
+     *             if the file does not exist
+     */
+    public static Object[] readObjects(Path file, String type, final int count) throws IOException, ClassNotFoundException {
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(file.toString());
+        }
+        if (!isSnapshot(file)) {
+            LOG.info("Reading legacy file " + file);
+            try (ObjectInputStream objectIn = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                return readObjects(objectIn, count);
+            }
+        }
+        try {
+            return read(file, type, new Reader<Object[]>() {
+                @Override
+                public Object[] read(DataInputStream in, int version) throws IOException {
+                    try {
+                        return readObjects(new ObjectInputStream(in), count);
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException(e);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            if (e.getCause() instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Object[] readObjects(ObjectInputStream in, int count) throws IOException, ClassNotFoundException {
+        Object[] result = new Object[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = in.readObject();
+        }
+        return result;
+    }
+
+    /**
+     * Writes a string which may be null
+     */
+    public static void writeString(DataOutput out, String str) throws IOException {
+        out.writeBoolean(str != null);
+        if (str != null) {
+            out.writeUTF(str);
+        }
+    }
+
+    /**
+     * Reads a string written by {@linkplain #writeString(DataOutput, String)}
+     */
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes a date which may be null
+     */
+    public static void writeDate(DataOutput out, Date date) throws IOException {
+        out.writeLong((date == null) ? NULL_DATE : date.getTime());
+    }
+
+    /**
+     * Reads a date written by {@linkplain #writeDate(DataOutput, Date)}
+     */
+    public static Date readDate(DataInput in) throws IOException {
+        long time = in.readLong();
+        return (time == NULL_DATE) ? null : new Date(time);
+    }
+}
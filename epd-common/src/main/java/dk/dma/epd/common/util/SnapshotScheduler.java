@@ -0,0 +1,94 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.util;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.dma.epd.common.prototype.ExecutionService;
+
+/**
+ * Runs snapshot writes in the background on the shared {@linkplain ExecutionService}, either periodically or on demand.
+ * <p>
+ * All snapshot writes are serialized, so that two writes of the same file never overlap. The periodic writes stop when
+ * the execution service is shut down.
+ */
+public final class SnapshotScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotScheduler.class);
+
+    private static final ScheduledExecutorService EXECUTOR = ExecutionService.getInstance().createGroup("Snapshot-Writer");
+
+    // Held while writing a snapshot
+    private static final Object WRITE_LOCK = new Object();
+
+    private SnapshotScheduler() {
+    }
+
+    /**
+     * Schedules a periodic snapshot write
+     * 
+     * @param name
+     *            the name of the snapshot, used for logging
+     * @param task
+     *            the task writing the snapshot
+     * @param period
+     *            the period between writes
+     * @param unit
+     *            the unit of the period
+     * @return the scheduled task
+     */
+    public static ScheduledFuture<?> schedule(String name, Runnable task, long period, TimeUnit unit) {
+        return EXECUTOR.scheduleWithFixedDelay(wrap(name, task), period, period, unit);
+    }
+
+    /**
+     * Submits a single snapshot write
+     * 
+     * @param name
+     *            the name of the snapshot, used for logging
+     * @param task
+     *            the task writing the snapshot
+     * @return the future of the write
+     */
+    public static Future<?> submit(String name, Runnable task) {
+        return EXECUTOR.submit(wrap(name, task));
+    }
+
+    /**
+     * Wraps the task, so that writes never overlap and a failing write does not cancel future periodic writes
+     */
+    private static Runnable wrap(final String name, final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (WRITE_LOCK) {
+                    long start = System.nanoTime();
+                    try {
+                        task.run();
+                        LOG.debug("Wrote " + name + " snapshot in " + (System.nanoTime() - start) / 1000000L + " ms");
+                    } catch (Exception e) {
+                        LOG.error("Failed writing " + name + " snapshot: " + e.getMessage(), e);
+                    }
+                }
+            }
+        };
+    }
+}
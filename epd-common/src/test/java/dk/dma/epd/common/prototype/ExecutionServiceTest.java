@@ -0,0 +1,128 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import dk.dma.epd.common.prototype.ExecutionService.TaskMetrics;
+
+/**
+ * Tests the {@linkplain ExecutionService}
+ */
+public class ExecutionServiceTest {
+
+    @Test
+    public void testPeriodicTaskSurvivesFailures() throws Exception {
+        ExecutionService service = new ExecutionService(1, 2);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        ScheduledFuture<?> future = service.scheduleWithFixedDelay("Failing", new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                latch.countDown();
+                throw new IllegalStateException("Test");
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        future.cancel(false);
+        assertTrue(future.isCancelled());
+
+        // No further runs once cancelled
+        Thread.sleep(50);
+        int cancelledRuns = runs.get();
+        Thread.sleep(50);
+        assertEquals(cancelledRuns, runs.get());
+
+        TaskMetrics metrics = service.getMetrics().get(0);
+        assertEquals("Failing", metrics.getName());
+        assertEquals(metrics.getRuns(), metrics.getFailures());
+        assertTrue(metrics.getRuns() >= 3);
+        service.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        ExecutionService service = new ExecutionService(1, 2);
+        int result = service.submit("Answer", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 42;
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(42, result);
+        assertEquals(1, service.getMetrics().get(0).getRuns());
+        service.shutdown(1, TimeUnit.SECONDS);
+        assertTrue(service.isShutdown());
+    }
+
+    @Test
+    public void testGroupShutdown() throws Exception {
+        ExecutionService service = new ExecutionService(1, 2);
+        ScheduledExecutorService group1 = service.createGroup("Group1");
+        ScheduledExecutorService group2 = service.createGroup("Group2");
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        ScheduledFuture<?> task1 = group1.scheduleWithFixedDelay(noop, 0, 5, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> task2 = group2.scheduleWithFixedDelay(noop, 0, 5, TimeUnit.MILLISECONDS);
+
+        group1.shutdownNow();
+        assertTrue(group1.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(task1.isCancelled());
+        assertFalse(task2.isDone());
+
+        group2.shutdown();
+        assertTrue(group2.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(task2.isCancelled());
+        service.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testGroupMetrics() throws Exception {
+        ExecutionService service = new ExecutionService(1, 2);
+        ScheduledExecutorService group = service.createGroup("Group");
+        for (int i = 0; i < 10; i++) {
+            group.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get(5, TimeUnit.SECONDS);
+        }
+
+        // All tasks of the group are recorded under the group name
+        assertEquals(1, service.getMetrics().size());
+        assertEquals("Group", service.getMetrics().get(0).getName());
+        assertEquals(10, service.getMetrics().get(0).getRuns());
+        service.shutdown(1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,111 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@linkplain StartupOrchestrator}
+ */
+public class StartupOrchestratorTest {
+
+    @Test
+    public void testDependencies() {
+        StartupOrchestrator startup = new StartupOrchestrator("Test", 4);
+        final List<String> order = new CopyOnWriteArrayList<>();
+
+        startup.run("Settings", new Runnable() {
+            @Override
+            public void run() {
+                order.add("Settings");
+            }
+        });
+        startup.submit("Store", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(50);
+                order.add("Store");
+                return "store";
+            }
+        }, "Settings");
+        startup.submit("Index", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                order.add("Index");
+                return 42;
+            }
+        }, "Store");
+
+        int index = startup.get("Index");
+        assertEquals(42, index);
+        assertEquals("store", startup.<String> get("Store"));
+        assertEquals("Settings", order.get(0));
+        assertEquals("Store", order.get(1));
+        assertEquals("Index", order.get(2));
+
+        startup.finish().join();
+        String report = startup.getReport();
+        for (String component : startup.getComponents()) {
+            assertTrue(report.contains(component));
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        StartupOrchestrator startup = new StartupOrchestrator("Test", 1);
+        startup.submit("Broken", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("broken");
+            }
+        });
+        startup.submit("Dependent", new Runnable() {
+            @Override
+            public void run() {
+                fail("Must not run when a dependency failed");
+            }
+        }, "Broken");
+
+        try {
+            startup.get("Dependent");
+            fail("Expected failure");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+        CompletableFuture<String> tracked = startup.track("Tracked", CompletableFuture.completedFuture("done"));
+        assertEquals("done", tracked.join());
+        startup.finish().join();
+        assertTrue(startup.getReport().contains("FAILED"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency() {
+        StartupOrchestrator startup = new StartupOrchestrator("Test", 1);
+        startup.submit("Store", new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, "Missing");
+    }
+}
@@ -0,0 +1,67 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@linkplain AisTargetDeltaSubscription}
+ */
+public class AisTargetDeltaSubscriptionTest {
+
+    private static VesselTarget target(long mmsi, AisTarget.Status status) {
+        VesselTarget target = new VesselTarget();
+        target.setMmsi(mmsi);
+        target.setStatus(status);
+        return target;
+    }
+
+    @Test
+    public void testDeduplication() {
+        AisTargetDeltaSubscription subscription = new AisTargetDeltaSubscription();
+        assertFalse(subscription.hasChanges());
+
+        subscription.record(target(1, AisTarget.Status.OK));
+        subscription.record(target(1, AisTarget.Status.OK));
+        subscription.record(target(2, AisTarget.Status.OK));
+        // Added and gone within the same delta
+        subscription.record(target(3, AisTarget.Status.OK));
+        subscription.record(target(3, AisTarget.Status.GONE));
+
+        AisTargetDelta delta = subscription.poll();
+        assertEquals(2, delta.size());
+        assertEquals(2, delta.getAdded().size());
+        assertTrue(delta.getMoved().isEmpty());
+        assertTrue(delta.getGone().isEmpty());
+        assertFalse(subscription.hasChanges());
+
+        subscription.record(target(1, AisTarget.Status.OK));
+        subscription.record(target(2, AisTarget.Status.GONE));
+        delta = subscription.poll();
+        assertTrue(delta.getAdded().isEmpty());
+        assertTrue(delta.getMoved().contains(1L));
+        assertTrue(delta.getGone().contains(2L));
+        assertTrue(delta.getTarget(2L).isGone());
+
+        // Target 2 re-appears
+        subscription.record(target(2, AisTarget.Status.OK));
+        delta = subscription.poll();
+        assertTrue(delta.getAdded().contains(2L));
+    }
+}
@@ -0,0 +1,130 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * Tests the {@linkplain AisTargetIndex} queries
+ */
+public class AisTargetIndexTest {
+
+    private static VesselTarget target(long mmsi) {
+        VesselTarget target = new VesselTarget();
+        target.setMmsi(mmsi);
+        return target;
+    }
+
+    @Test
+    public void testBoxQuery() {
+        AisTargetIndex index = new AisTargetIndex();
+        index.update(target(1), Position.create(55.5, 11.5));
+        index.update(target(2), Position.create(56.5, 12.5));
+        index.update(target(3), Position.create(10.0, 10.0));
+
+        List<AisTarget> result = index.queryBox(55.0, 11.0, 57.0, 13.0);
+        assertEquals(2, result.size());
+
+        result = index.queryBox(55.0, 11.0, 56.0, 12.0);
+        assertEquals(1, result.size());
+        assertEquals(1L, result.get(0).getMmsi());
+
+        // World wide query
+        assertEquals(3, index.queryBox(-90, -180, 90, 180).size());
+    }
+
+    @Test
+    public void testDateLineBoxQuery() {
+        AisTargetIndex index = new AisTargetIndex();
+        index.update(target(1), Position.create(0.0, 179.9));
+        index.update(target(2), Position.create(0.0, -179.9));
+        index.update(target(3), Position.create(0.0, 0.0));
+
+        assertEquals(2, index.queryBox(-1, 179, 1, -179).size());
+    }
+
+    @Test
+    public void testMoveAndRemove() {
+        AisTargetIndex index = new AisTargetIndex();
+        VesselTarget target = target(1);
+        index.update(target, Position.create(55.5, 11.5));
+        index.update(target, Position.create(40.0, 2.0));
+
+        assertEquals(1, index.size());
+        assertEquals(0, index.queryBox(55.0, 11.0, 56.0, 12.0).size());
+        assertEquals(1, index.queryBox(39.0, 1.0, 41.0, 3.0).size());
+
+        index.remove(1);
+        assertEquals(0, index.size());
+        assertEquals(0, index.queryBox(39.0, 1.0, 41.0, 3.0).size());
+        assertNull(index.getPosition(1));
+    }
+
+    @Test
+    public void testEmptyCellsDropped() {
+        AisTargetIndex index = new AisTargetIndex();
+        VesselTarget target = target(1);
+        index.update(target(2), Position.create(55.5, 11.5));
+        index.update(target, Position.create(55.5, 11.5));
+        assertEquals(1, index.getCellCount());
+
+        // Moving a target out of a shared cell keeps the cell
+        index.update(target, Position.create(40.0, 2.0));
+        assertEquals(2, index.getCellCount());
+
+        // Moving along a track leaves no empty cells behind
+        for (int i = 0; i < 100; i++) {
+            index.update(target, Position.create(40.0 + i * 0.3, 2.0));
+        }
+        assertEquals(2, index.getCellCount());
+
+        index.remove(1);
+        index.remove(2);
+        assertEquals(0, index.getCellCount());
+    }
+
+    @Test
+    public void testRadiusAndNearest() {
+        AisTargetIndex index = new AisTargetIndex();
+        Position center = Position.create(55.0, 11.0);
+        // Targets placed 1, 2, ... 10 nautical miles north of the center
+        for (int i = 1; i <= 10; i++) {
+            index.update(target(i), Position.create(55.0 + i / 60.0, 11.0));
+        }
+        // Far away target
+        index.update(target(100), Position.create(-30.0, 100.0));
+
+        List<AisTarget> result = index.queryRadius(center, 5.5 * 1852.0);
+        assertEquals(5, result.size());
+
+        result = index.nearest(center, 3);
+        assertEquals(3, result.size());
+        assertEquals(1L, result.get(0).getMmsi());
+        assertEquals(2L, result.get(1).getMmsi());
+        assertEquals(3L, result.get(2).getMmsi());
+
+        result = index.nearest(center, 20);
+        assertEquals(11, result.size());
+        assertTrue(result.get(10).getMmsi() == 100L);
+    }
+}
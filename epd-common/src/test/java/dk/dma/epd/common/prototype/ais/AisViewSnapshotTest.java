@@ -0,0 +1,134 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import dk.dma.ais.message.ShipTypeCargo;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.util.SnapshotFile;
+
+/**
+ * Tests the {@linkplain AisViewSnapshot}
+ */
+public class AisViewSnapshotTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Map<Long, VesselTarget> vessels = new HashMap<>();
+        for (long mmsi = 1; mmsi <= 100; mmsi++) {
+            VesselTarget vessel = new VesselTarget();
+            vessel.setMmsi(mmsi);
+            vessel.setLastReceived(new Date(1000000L + mmsi));
+            if (mmsi % 2 == 0) {
+                VesselPositionData positionData = new VesselPositionData();
+                positionData.setPos(Position.create(55.0 + mmsi * 0.001, 11.0 - mmsi * 0.001));
+                positionData.setCog(mmsi);
+                positionData.setSog(12.5f);
+                positionData.setNavStatus(5);
+                vessel.setPositionData(positionData);
+            }
+            if (mmsi % 3 == 0) {
+                VesselStaticData staticData = new VesselStaticData();
+                staticData.setName("VESSEL " + mmsi);
+                staticData.setShipType(new ShipTypeCargo(70));
+                staticData.setDimBow(100);
+                vessel.setStaticData(staticData);
+            }
+            vessel.getSettings().setShowPastTrack(mmsi % 5 == 0);
+            vessels.put(mmsi, vessel);
+        }
+        vessels.get(7L).setStatus(AisTarget.Status.GONE);
+
+        Map<Long, SarTarget> sars = new HashMap<>();
+        SarTarget sar = new SarTarget();
+        sar.setMmsi(970000001L);
+        sar.setFirstReceived(new Date(42L));
+        sars.put(sar.getMmsi(), sar);
+
+        Map<Integer, AtoNTarget> atons = new HashMap<>();
+        AtoNTarget aton = new AtoNTarget();
+        aton.setMmsi(992190001L);
+        aton.setPos(Position.create(56.0, 12.0));
+        aton.setAtonType(AtoNTargetType.RACON);
+        aton.setName("RACON");
+        atons.put((int) aton.getMmsi(), aton);
+
+        Path file = Files.createTempFile("aisview", ".snapshot");
+        try {
+            new AisViewSnapshot(vessels, sars, atons).write(file, true);
+            assertTrue(SnapshotFile.isSnapshot(file));
+            AisViewSnapshot loaded = AisViewSnapshot.read(file);
+
+            assertEquals(100, loaded.getVesselTargets().size());
+            VesselTarget v6 = loaded.getVesselTargets().get(6L);
+            assertEquals(1000006L, v6.getLastReceived().getTime());
+            assertEquals(55.006, v6.getPositionData().getPos().getLatitude(), 1e-12);
+            assertEquals(10.994, v6.getPositionData().getPos().getLongitude(), 1e-12);
+            assertEquals(6.0f, v6.getPositionData().getCog(), 0.0f);
+            assertEquals(12.5f, v6.getPositionData().getSog(), 0.0f);
+            assertEquals(5, v6.getPositionData().getNavStatus());
+            assertEquals("VESSEL 6", v6.getStaticData().getName());
+            assertEquals(70, v6.getStaticData().getShipType().getIntShipType());
+            assertEquals(100, v6.getStaticData().getDimBow());
+            assertNull(loaded.getVesselTargets().get(5L).getPositionData());
+            assertNull(loaded.getVesselTargets().get(5L).getStaticData());
+            assertTrue(loaded.getVesselTargets().get(5L).getSettings().isShowPastTrack());
+            assertFalse(v6.getSettings().isShowPastTrack());
+            assertEquals(AisTarget.Status.GONE, loaded.getVesselTargets().get(7L).getStatus());
+
+            assertEquals(42L, loaded.getSarTargets().get(970000001L).getFirstReceived().getTime());
+            AtoNTarget loadedAton = loaded.getAtonTargets().get((int) 992190001L);
+            assertEquals(AtoNTargetType.RACON, loadedAton.getAtonType());
+            assertEquals("RACON", loadedAton.getName());
+            assertEquals(56.0, loadedAton.getPos().getLatitude(), 0.0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testLegacyFileIsNotSnapshot() throws Exception {
+        Path file = Files.createTempFile("legacy", ".ser");
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+                out.writeObject("legacy");
+            }
+            assertFalse(SnapshotFile.isSnapshot(file));
+            assertEquals("legacy", SnapshotFile.readObjects(file, "test", 1)[0]);
+
+            SnapshotFile.writeObjects(file, "test", "snapshot", 42);
+            assertTrue(SnapshotFile.isSnapshot(file));
+            Object[] objects = SnapshotFile.readObjects(file, "test", 2);
+            assertEquals("snapshot", objects[0]);
+            assertEquals(42, objects[1]);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.ais;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * Tests the {@linkplain PastTrackRingBuffer}
+ */
+public class PastTrackRingBufferTest {
+
+    @Test
+    public void testAddAndGrow() {
+        PastTrackRingBuffer pastTrack = new PastTrackRingBuffer(2);
+        for (int i = 0; i < 10; i++) {
+            pastTrack.addPosition(Position.create(55.0 + i * 0.01, 11.0), 100);
+        }
+        // Too close to the last point
+        pastTrack.addPosition(Position.create(55.0901, 11.0), 100);
+        assertEquals(10, pastTrack.size());
+
+        final List<Double> lats = new ArrayList<>();
+        pastTrack.visitPointsNewerThan(0L, new IPastTrack.PastTrackVisitor() {
+            @Override
+            public void visit(long time, double lat, double lon, boolean gone) {
+                lats.add(lat);
+            }
+        });
+        assertEquals(10, lats.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(55.0 + i * 0.01, lats.get(i), 1e-9);
+        }
+        assertEquals(10, pastTrack.getPoints().size());
+        assertEquals(0, pastTrack.getPointsNewerThan(new Date(System.currentTimeMillis() + 1000L)).size());
+    }
+
+    @Test
+    public void testFlagGoneAndCleanup() {
+        PastTrackRingBuffer pastTrack = new PastTrackRingBuffer();
+        pastTrack.addPosition(Position.create(55.0, 11.0), 100);
+        pastTrack.addPosition(Position.create(56.0, 11.0), 100);
+        pastTrack.flagGone();
+
+        List<PastTrackPoint> points = new ArrayList<>(pastTrack.getPoints());
+        assertFalse(points.get(0).hasGone());
+        assertTrue(points.get(1).hasGone());
+
+        IPastTrack copy = pastTrack.copy();
+        pastTrack.cleanup(3600);
+        assertEquals(2, pastTrack.size());
+        pastTrack.cleanup(-1);
+        assertEquals(0, pastTrack.size());
+        assertEquals(2, copy.getPoints().size());
+    }
+}
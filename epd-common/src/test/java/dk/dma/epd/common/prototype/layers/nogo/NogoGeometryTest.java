@@ -0,0 +1,95 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.layers.nogo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NogoGeometryTest {
+
+    /**
+     * Returns a square outline with {@code perSide} vertices on each side, slightly jittered
+     */
+    private static double[] square(int perSide, double jitter) {
+        double[] latLon = new double[perSide * 4 * 2];
+        int j = 0;
+        for (int side = 0; side < 4; side++) {
+            for (int i = 0; i < perSide; i++) {
+                double t = (double) i / perSide;
+                double wobble = (i % 2 == 0) ? jitter : -jitter;
+                double lat;
+                double lon;
+                switch (side) {
+                case 0:
+                    lat = 55.0 + wobble;
+                    lon = 11.0 + t;
+                    break;
+                case 1:
+                    lat = 55.0 + t;
+                    lon = 12.0 + wobble;
+                    break;
+                case 2:
+                    lat = 56.0 + wobble;
+                    lon = 12.0 - t;
+                    break;
+                default:
+                    lat = 56.0 - t;
+                    lon = 11.0 + wobble;
+                    break;
+                }
+                latLon[j++] = lat;
+                latLon[j++] = lon;
+            }
+        }
+        return latLon;
+    }
+
+    @Test
+    public void simplifyToCorners() {
+        double[] simplified = NogoGeometry.simplify(square(100, 0.00001), 0.001);
+        assertEquals(4, simplified.length / 2);
+        assertArrayEquals(new double[] { 55.00001, 11.0, 55.0, 12.00001, 56.00001, 12.0, 56.0, 11.00001 },
+                simplified, 1e-9);
+    }
+
+    @Test
+    public void keepWithinTolerance() {
+        double[] outline = square(100, 0.01);
+        assertSame(outline, NogoGeometry.simplify(outline, 0.001));
+        assertSame(outline, NogoGeometry.simplify(outline, 0));
+    }
+
+    @Test
+    public void tolerancePerBand() {
+        assertEquals(0, NogoGeometry.toleranceOf(0), 0);
+        assertEquals(NogoGeometry.BASE_TOLERANCE, NogoGeometry.toleranceOf(1), 0);
+        assertEquals(4 * NogoGeometry.BASE_TOLERANCE, NogoGeometry.toleranceOf(3), 0);
+    }
+
+    @Test
+    public void bandWithinHalfPixel() {
+        double degreesPerPixel = 0.001;
+        for (double lat : new double[] { 0, 56, 70 }) {
+            double pixel = degreesPerPixel * Math.cos(Math.toRadians(lat));
+            double tolerance = NogoGeometry.toleranceOf(NogoGeometry.bandFor(degreesPerPixel, lat));
+            assertTrue(tolerance <= pixel / 2);
+            assertTrue(tolerance > pixel / 4);
+        }
+    }
+}
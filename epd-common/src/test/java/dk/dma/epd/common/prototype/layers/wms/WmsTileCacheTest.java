@@ -0,0 +1,78 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.layers.wms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class WmsTileCacheTest {
+
+    private static final String QUERY = "http://localhost/wms?";
+
+    @Test
+    public void diskBudget() throws Exception {
+        Path dir = Files.createTempDirectory("wmscache");
+        WmsTileCache cache = new WmsTileCache(1024, dir, 250, TimeUnit.DAYS.toMillis(1));
+        WmsTileKey k1 = new WmsTileKey(10, 1, 1);
+        WmsTileKey k2 = new WmsTileKey(10, 1, 2);
+        WmsTileKey k3 = new WmsTileKey(10, 1, 3);
+
+        cache.writeToDisk(QUERY, k1, new byte[100]);
+        cache.writeToDisk(QUERY, k2, new byte[100]);
+        // Make k1 the most recently used tile
+        assertNotNull(cache.readFromDisk(QUERY, k1));
+        cache.writeToDisk(QUERY, k3, new byte[100]);
+
+        assertEquals(200, cache.getDiskBytes());
+        assertArrayEquals(new byte[100], cache.readFromDisk(QUERY, k1));
+        assertNull(cache.readFromDisk(QUERY, k2));
+        assertNotNull(cache.readFromDisk(QUERY, k3));
+
+        // A new session picks up the tiles of the earlier session
+        assertEquals(200, new WmsTileCache(1024, dir, 250, TimeUnit.DAYS.toMillis(1)).getDiskBytes());
+        // ... and enforces its own budget
+        assertEquals(100, new WmsTileCache(1024, dir, 150, TimeUnit.DAYS.toMillis(1)).getDiskBytes());
+    }
+
+    @Test
+    public void diskTtl() throws Exception {
+        Path dir = Files.createTempDirectory("wmscache");
+        WmsTileCache cache = new WmsTileCache(1024, dir, 1024, TimeUnit.HOURS.toMillis(1));
+        WmsTileKey key = new WmsTileKey(10, 1, 1);
+        cache.writeToDisk(QUERY, key, new byte[10]);
+        assertNotNull(cache.readFromDisk(QUERY, key));
+
+        // Age the tile beyond the time-to-live
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path f : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                Files.setLastModifiedTime(f, old);
+            }
+        }
+        assertNull(cache.readFromDisk(QUERY, key));
+        assertEquals(0, cache.getDiskBytes());
+    }
+}
@@ -0,0 +1,67 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.layers.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+public class WmsTileDecoderTest {
+
+    @Test
+    public void maskWhite() {
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xFFFFFFFF);
+        image.setRGB(1, 0, 0xFF102030);
+        WmsTileDecoder.maskWhite(image);
+        assertEquals(0x00FFFFFF, image.getRGB(0, 0));
+        assertEquals(0xFF102030, image.getRGB(1, 0));
+
+        BufferedImage pre = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB_PRE);
+        pre.setRGB(0, 0, 0xFFFFFFFF);
+        pre.setRGB(1, 0, 0xFF102030);
+        WmsTileDecoder.maskWhite(pre);
+        assertEquals(0, pre.getRGB(0, 0) >>> 24);
+        assertEquals(0xFF102030, pre.getRGB(1, 0));
+    }
+
+    @Test
+    public void decode() throws Exception {
+        BufferedImage source = new BufferedImage(3, 2, BufferedImage.TYPE_3BYTE_BGR);
+        source.setRGB(0, 0, 0xFFFFFF);
+        source.setRGB(1, 0, 0x102030);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(source, "png", png);
+
+        BufferedImage image = WmsTileDecoder.decode(new ByteArrayInputStream(png.toByteArray()));
+        assertEquals(3, image.getWidth());
+        assertEquals(2, image.getHeight());
+        assertEquals(0, image.getRGB(0, 0) >>> 24);
+        assertEquals(0xFF102030, image.getRGB(1, 0));
+        assertEquals(0xFF000000, image.getRGB(2, 1));
+    }
+
+    @Test
+    public void decodeGarbage() throws Exception {
+        assertNull(WmsTileDecoder.decode(new ByteArrayInputStream(new byte[] { 1, 2, 3 })));
+    }
+}
@@ -0,0 +1,129 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedList;
+
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * Tests the {@linkplain RouteGeometry} snapshots of a {@linkplain Route}
+ */
+public class RouteGeometryTest {
+
+    /**
+     * Creates a route sailing north along the 11th meridian, with a leg for each degree of latitude
+     */
+    private static Route createRoute(int legs, double speed) {
+        LinkedList<RouteWaypoint> waypoints = new LinkedList<>();
+        RouteWaypoint prev = null;
+        for (int i = 0; i <= legs; i++) {
+            RouteWaypoint wp = new RouteWaypoint();
+            wp.setPos(Position.create(55.0 + i, 11.0));
+            if (prev != null) {
+                RouteLeg leg = new RouteLeg(prev, wp);
+                leg.setSpeed(speed);
+                prev.setOutLeg(leg);
+                wp.setInLeg(leg);
+            }
+            waypoints.add(wp);
+            prev = wp;
+        }
+        Route route = new Route();
+        route.setWaypoints(waypoints);
+        return route;
+    }
+
+    @Test
+    public void testCumulativeRange() {
+        RouteGeometry geometry = createRoute(3, 10.0).getGeometry();
+        assertEquals(4, geometry.getWaypointCount());
+        assertEquals(3, geometry.getLegCount());
+
+        // A degree of latitude is 60 nautical miles
+        assertEquals(0.0, geometry.getCumulativeRange(0), 0.0);
+        double sum = 0.0;
+        for (int i = 0; i < geometry.getLegCount(); i++) {
+            assertEquals(60.0, geometry.getLegRange(i), 0.2);
+            assertEquals(0.0, geometry.getLegBearing(i), 1e-6);
+            assertEquals(10.0, geometry.getLegSpeed(i), 0.0);
+            sum += geometry.getLegRange(i);
+            assertEquals(sum, geometry.getCumulativeRange(i + 1), 1e-9);
+        }
+        assertEquals(sum, geometry.getTotalRange(), 1e-9);
+        assertEquals(geometry.getLegRange(1) + geometry.getLegRange(2), geometry.getRangeBetween(3, 1), 1e-9);
+
+        // 60 nm at 10 knots is 6 hours
+        assertEquals(6 * 3600 * 1000L, geometry.getLegTtg(0, 10.0), 0.2 / 10.0 * 3600 * 1000);
+        assertEquals(-1L, geometry.getLegTtg(0, 0.0));
+    }
+
+    @Test
+    public void testInvalidation() {
+        Route route = createRoute(2, 10.0);
+        RouteGeometry geometry = route.getGeometry();
+        assertSame(geometry, route.getGeometry());
+
+        // Editing the speed of a leg
+        route.getWaypoints().get(0).getOutLeg().setSpeed(5.0);
+        RouteGeometry edited = route.getGeometry();
+        assertNotSame(geometry, edited);
+        assertEquals(5.0, edited.getLegSpeed(0), 0.0);
+        assertEquals(geometry.getVersion() + 1, edited.getVersion());
+
+        // Setting the same speed is not an edit
+        route.getWaypoints().get(0).setSpeed(5.0);
+        assertSame(edited, route.getGeometry());
+
+        // Moving a way point
+        route.getWaypoints().get(2).setPos(Position.create(56.0, 12.0));
+        geometry = route.getGeometry();
+        assertNotSame(edited, geometry);
+        assertEquals(90.0, geometry.getLegBearing(1), 1.0);
+        assertEquals(edited.getCumulativeRange(1), geometry.getCumulativeRange(1), 1e-9);
+        assertEquals(geometry.getCumulativeRange(1) + geometry.getLegRange(1), geometry.getTotalRange(), 1e-9);
+
+        // Explicit invalidation
+        route.invalidateGeometry();
+        assertNotSame(geometry, route.getGeometry());
+    }
+
+    @Test
+    public void testInvalidationPerRoute() {
+        Route route1 = createRoute(2, 10.0);
+        Route route2 = createRoute(2, 10.0);
+        RouteGeometry geometry1 = route1.getGeometry();
+        RouteGeometry geometry2 = route2.getGeometry();
+
+        // Editing one route leaves the geometry of the other route cached
+        route2.getWaypoints().get(1).setPos(Position.create(56.0, 12.0));
+        assertSame(geometry1, route1.getGeometry());
+        assertNotSame(geometry2, route2.getGeometry());
+
+        // A route sharing the way points, like an active route, is invalidated as well
+        Route shared = new Route();
+        shared.setWaypoints(route1.getWaypoints());
+        RouteGeometry sharedGeometry = shared.getGeometry();
+        route1.getWaypoints().get(0).getOutLeg().setSpeed(5.0);
+        assertNotSame(geometry1, route1.getGeometry());
+        assertNotSame(sharedGeometry, shared.getGeometry());
+    }
+}
@@ -0,0 +1,171 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+
+/**
+ * Known-answer tests of the closed form proximity calculations of {@linkplain RouteTimeline}
+ */
+public class RouteTimelineTest {
+
+    private static final long START = 1400000000000L;
+
+    /** Distance between the 11th and the 11.1th meridian at 55.5N, in nautical miles */
+    private static final double OFFSET = 0.1 * 60.0 * Math.cos(Math.toRadians(55.5));
+
+    /**
+     * Creates a single leg route between the two positions, starting at {@code START}
+     */
+    private static Route createRoute(Position from, Position to, double speed) {
+        return createRoute(START, speed, from, to);
+    }
+
+    /**
+     * Creates a route through the given positions with a constant speed
+     */
+    private static Route createRoute(long start, double speed, Position... positions) {
+        LinkedList<RouteWaypoint> waypoints = new LinkedList<>();
+        for (Position pos : positions) {
+            RouteWaypoint wp = new RouteWaypoint();
+            wp.setPos(pos);
+            if (!waypoints.isEmpty()) {
+                RouteWaypoint prev = waypoints.getLast();
+                RouteLeg leg = new RouteLeg(prev, wp);
+                leg.setSpeed(speed);
+                prev.setOutLeg(leg);
+                wp.setInLeg(leg);
+            }
+            waypoints.add(wp);
+        }
+        Route route = new Route();
+        route.setWaypoints(waypoints);
+        route.setStarttime(new Date(start));
+        return route;
+    }
+
+    /**
+     * Two ships on reciprocal courses along the 11th and 11.1th meridians, passing each other at 55.5N
+     */
+    private static RouteTimeline[] createReciprocal() {
+        Route northbound = createRoute(Position.create(55.0, 11.0), Position.create(56.0, 11.0), 10.0);
+        Route southbound = createRoute(Position.create(56.0, 11.1), Position.create(55.0, 11.1), 10.0);
+        RouteTimeline north = RouteTimeline.create(northbound, 0);
+        RouteTimeline south = RouteTimeline.create(southbound, 0);
+        assertNotNull(north);
+        assertNotNull(south);
+        return new RouteTimeline[] { north, south };
+    }
+
+    @Test
+    public void closestApproach() {
+        RouteTimeline[] t = createReciprocal();
+        long end = t[0].getEnd();
+        // About 60 nm at 10 knots
+        assertEquals(6 * 3600 * 1000L, end - START, 2 * 60 * 1000L);
+
+        // The ships pass abeam half way, at the distance between the meridians
+        double[] cpa = t[0].findClosestApproach(t[1], START, end);
+        assertNotNull(cpa);
+        assertEquals(START + (end - START) / 2, cpa[0], 1000);
+        assertEquals(OFFSET, cpa[1], 1e-3);
+
+        // Before the passage the closest approach is at the end of the window
+        long window = START + (end - START) / 4;
+        cpa = t[0].findClosestApproach(t[1], START, window);
+        assertEquals(window, cpa[0], 1000);
+        // Half way between passing and the start of the routes, the ships are 30 nm apart along the meridians
+        assertEquals(Math.sqrt(30.0 * 30.0 + OFFSET * OFFSET), cpa[1], 0.1);
+
+        // No overlap within the time window
+        assertNull(t[0].findClosestApproach(t[1], end + 1000, end + 2000));
+    }
+
+    @Test
+    public void localFramePerLegPair() {
+        // A long northbound route along the 11th meridian and a short southbound route along the 11.1th meridian,
+        // passing each other at 59.8333N after 29 hours. A frame spanning both routes would be centered around 58.9N
+        Route northbound = createRoute(START, 10.0, Position.create(55.0, 11.0), Position.create(59.5, 11.0),
+                Position.create(60.5, 11.0));
+        Route southbound = createRoute(START + 25 * 3600 * 1000L, 10.0, Position.create(60.5, 11.1),
+                Position.create(59.5, 11.1));
+        RouteTimeline north = RouteTimeline.create(northbound, 0);
+        RouteTimeline south = RouteTimeline.create(southbound, 0);
+
+        double[] cpa = north.findClosestApproach(south, south.getStart(), south.getEnd());
+        assertNotNull(cpa);
+        assertEquals(START + 29 * 3600 * 1000L, cpa[0], 2 * 60 * 1000L);
+        assertEquals(0.1 * 60.0 * Math.cos(Math.toRadians(59.8333)), cpa[1], 0.03);
+    }
+
+    @Test
+    public void proximityIntervals() {
+        RouteTimeline[] t = createReciprocal();
+        long end = t[0].getEnd();
+        double distance = 5.0;
+
+        List<long[]> intervals = t[0].findProximityIntervals(t[1], START, end, distance);
+        assertEquals(1, intervals.size());
+
+        // The ships close at twice the speed, so they are within the distance while
+        // |along track separation| <= sqrt(distance^2 - offset^2)
+        double closingSpeed = 2.0 * 60.0 / (end - START);
+        double halfWidth = Math.sqrt(distance * distance - OFFSET * OFFSET) / closingSpeed;
+        long mid = START + (end - START) / 2;
+        assertEquals(mid - halfWidth, intervals.get(0)[0], 1000);
+        assertEquals(mid + halfWidth, intervals.get(0)[1], 1000);
+
+        // Never within a distance below the offset
+        assertTrue(t[0].findProximityIntervals(t[1], START, end, OFFSET - 0.1).isEmpty());
+    }
+
+    @Test
+    public void proximityIntervalsOfLongLegs() {
+        // Two routes crossing each other on legs of several hundred nautical miles, where a straight line in latitude and
+        // longitude deviates by miles from the rhumb line
+        Route northEast = createRoute(Position.create(55.0, 5.0), Position.create(63.0, 15.0), 12.0);
+        Route southEast = createRoute(Position.create(63.0, 5.0), Position.create(55.0, 15.0), 12.0);
+        RouteTimeline t1 = RouteTimeline.create(northEast, 0);
+        RouteTimeline t2 = RouteTimeline.create(southEast, 0);
+        long end = Math.min(t1.getEnd(), t2.getEnd());
+        double distance = 5.0;
+
+        // Every minute within the distance must be covered by the intervals
+        List<long[]> intervals = t1.findProximityIntervals(t2, START, end, distance);
+        int minutes = 0;
+        for (long time = START; time <= end; time += 60 * 1000L) {
+            if (t1.getPosition(time).rhumbLineDistanceTo(t2.getPosition(time)) / 1852.0 <= distance) {
+                minutes++;
+                boolean covered = false;
+                for (long[] interval : intervals) {
+                    covered |= time >= interval[0] && time <= interval[1];
+                }
+                assertTrue("Minute " + (time - START) / 60000 + " not covered", covered);
+            }
+        }
+        assertTrue(minutes > 0);
+    }
+}
@@ -0,0 +1,105 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.model.voct;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.model.voct.sardata.RapidResponseData;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARProbabilityGrid;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARWeatherData;
+
+public class SARDriftSimulationTest {
+
+    private static RapidResponseData createData(DateTime lkpDate) {
+        RapidResponseData data = new RapidResponseData("1", lkpDate, lkpDate.plusHours(1), Position.create(61, -51), 0.011,
+                0.068, 1.0, 0);
+        List<SARWeatherData> weatherPoints = new ArrayList<>();
+        weatherPoints.add(new SARWeatherData(45.0, 5.0, 15.0, 30.0, lkpDate));
+        data.setWeatherPoints(weatherPoints);
+        return data;
+    }
+
+    private static SARDriftSimulation createSimulation() {
+        SARDriftSimulation simulation = new SARDriftSimulation();
+        simulation.setParticles(20000);
+        simulation.setSeed(42);
+        return simulation;
+    }
+
+    /**
+     * The mean of the particles should be close to the datum of the rapid response calculation in {@code SarOperationTest}
+     */
+    @Test
+    public void meanNearDatum() {
+        DateTime lkpDate = new DateTime(2015, 3, 17, 12, 0);
+        RapidResponseData data = createData(lkpDate);
+
+        List<SARProbabilityGrid> grids = createSimulation().simulate(data, Arrays.asList(lkpDate.plusHours(1)));
+        assertEquals(1, grids.size());
+        Position mean = grids.get(0).getMeanPosition();
+        // Datum 61 03.328N 050 52.939W
+        assertEquals(61 + 3.328 / 60, mean.getLatitude(), 0.05 / 60);
+        assertEquals(-(50 + 52.939 / 60), mean.getLongitude(), 0.1 / 60);
+    }
+
+    @Test
+    public void probabilities() {
+        DateTime lkpDate = new DateTime(2015, 3, 17, 12, 0);
+        RapidResponseData data = createData(lkpDate);
+
+        List<SARProbabilityGrid> grids = createSimulation().simulate(data,
+                Arrays.asList(lkpDate.plusMinutes(30), lkpDate.plusHours(1), lkpDate.plusHours(2)));
+        assertEquals(3, grids.size());
+        for (SARProbabilityGrid grid : grids) {
+            assertEquals(1.0, grid.getProbabilityOfContainment(grid.getMinLat(), grid.getMinLon(), grid.getMaxLat(),
+                    grid.getMaxLon()), 1e-4);
+            double threshold = grid.getContainmentThreshold(0.9);
+            double poc = 0;
+            for (int row = 0; row < grid.getRows(); row++) {
+                for (int col = 0; col < grid.getCols(); col++) {
+                    if (grid.getProbability(row, col) >= threshold) {
+                        poc += grid.getProbability(row, col);
+                    }
+                }
+            }
+            assertTrue(poc >= 0.9);
+        }
+        // The uncertainty grows with time
+        double span0 = grids.get(0).getMaxLat() - grids.get(0).getMinLat();
+        double span2 = grids.get(2).getMaxLat() - grids.get(2).getMinLat();
+        assertTrue(span2 > span0);
+    }
+
+    @Test
+    public void reproducible() {
+        DateTime lkpDate = new DateTime(2015, 3, 17, 12, 0);
+        RapidResponseData data = createData(lkpDate);
+
+        SARProbabilityGrid g1 = createSimulation().simulate(data, Arrays.asList(lkpDate.plusHours(1))).get(0);
+        SARProbabilityGrid g2 = createSimulation().simulate(data, Arrays.asList(lkpDate.plusHours(1))).get(0);
+        assertEquals(g1.getMeanPosition().getLatitude(), g2.getMeanPosition().getLatitude(), 0.0);
+        assertEquals(g1.getMeanPosition().getLongitude(), g2.getMeanPosition().getLongitude(), 0.0);
+        assertEquals(g1.getProbability(0, 0), g2.getProbability(0, 0), 0.0);
+    }
+}
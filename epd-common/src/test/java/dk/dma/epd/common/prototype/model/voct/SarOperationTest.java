@@ -16,6 +16,7 @@ package dk.dma.epd.common.prototype.model.voct;
 
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.model.voct.sardata.RapidResponseData;
+import dk.dma.epd.common.prototype.model.voct.sardata.SARData;
 import dk.dma.epd.common.prototype.model.voct.sardata.SARWeatherData;
 import org.joda.time.DateTime;
 import org.junit.Test;
@@ -76,4 +77,41 @@ public class SarOperationTest {
         assertEquals("61 03.357N", data.getD().getLatitudeAsString());
         assertEquals("050 57.352W", data.getD().getLongitudeAsString());
     }
+
+    /**
+     * The future horizons, which share the drift legs of all but the last weather point, should match a full calculation
+     * with the CSS moved to the horizon
+     */
+    @Test
+    public void futureCalculations() {
+        SAROperation operation = new SAROperation(SAR_TYPE.RAPID_RESPONSE);
+
+        DateTime css = DateTime.now();
+        DateTime lastKnowPositionTs = css.minusHours(3);
+        Position lastKnowPosition = Position.create(61, -51);
+
+        List<SARWeatherData> surfaceDriftData = new ArrayList<>();
+        surfaceDriftData.add(new SARWeatherData(45.0, 5.0, 15.0, 30.0, lastKnowPositionTs));
+        surfaceDriftData.add(new SARWeatherData(90.0, 2.0, 10.0, 120.0, lastKnowPositionTs.plusHours(2)));
+
+        RapidResponseData data = new RapidResponseData("1", lastKnowPositionTs, css, lastKnowPosition, 0.011, 0.068, 1.0, 0);
+        data.setWeatherPoints(surfaceDriftData);
+        operation.startRapidResponseCalculations(data);
+
+        List<SARData> futureData = operation.sarFutureCalculations(data);
+        assertEquals(8, futureData.size());
+
+        for (int i = 0; i < futureData.size(); i++) {
+            RapidResponseData expected = new RapidResponseData("1", lastKnowPositionTs, css.plusMinutes((i + 1) * 30),
+                    lastKnowPosition, 0.011, 0.068, 1.0, 0);
+            expected.setWeatherPoints(surfaceDriftData);
+            operation.startRapidResponseCalculations(expected);
+
+            RapidResponseData actual = (RapidResponseData) futureData.get(i);
+            assertEquals(expected.getDatum().getLatitude(), actual.getDatum().getLatitude(), 0.0);
+            assertEquals(expected.getDatum().getLongitude(), actual.getDatum().getLongitude(), 0.0);
+            assertEquals(expected.getRadius(), actual.getRadius(), 0.0);
+            assertEquals(2, actual.getWindList().size());
+        }
+    }
 }
@@ -0,0 +1,161 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.nogo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+import dk.frv.enav.common.xml.nogo.types.NogoPoint;
+import dk.frv.enav.common.xml.nogo.types.NogoPolygon;
+
+public class NogoCacheTest {
+
+    private static final DateTime FROM = new DateTime(2014, 3, 1, 12, 0);
+    private static final DateTime TO = FROM.plusMinutes(30);
+
+    private static NoGoDataEntry result(DateTime from, DateTime to) {
+        NoGoDataEntry result = new NoGoDataEntry(from, to);
+        result.setNogoPolygons(new ArrayList<NogoPolygon>());
+        result.setNoGoErrorCode(0);
+        return result;
+    }
+
+    private static NogoPolygon polygon(double... latLons) {
+        List<NogoPoint> points = new ArrayList<>();
+        for (int i = 0; i < latLons.length; i += 2) {
+            NogoPoint point = new NogoPoint();
+            point.setLat(latLons[i]);
+            point.setLon(latLons[i + 1]);
+            points.add(point);
+        }
+        NogoPolygon polygon = new NogoPolygon();
+        polygon.setPolygon(points);
+        return polygon;
+    }
+
+    private static double area(NogoPolygon polygon) {
+        List<NogoPoint> points = polygon.getPolygon();
+        double area = 0;
+        for (int i = 0; i < points.size(); i++) {
+            NogoPoint p1 = points.get(i);
+            NogoPoint p2 = points.get((i + 1) % points.size());
+            area += p1.getLon() * p2.getLat() - p2.getLon() * p1.getLat();
+        }
+        return Math.abs(area) / 2;
+    }
+
+    @Test
+    public void sameAndSubArea() {
+        NogoCache cache = new NogoCache();
+        cache.put(-7.0, Position.create(56, 10), Position.create(55, 12), result(FROM, TO));
+
+        assertNotNull(cache.get(-7.0, Position.create(56, 10), Position.create(55, 12), FROM, TO));
+        assertNotNull(cache.get(-7.0, Position.create(55.8, 10.5), Position.create(55.2, 11.5), FROM, TO));
+
+        // Larger area, other draught or other window
+        assertNull(cache.get(-7.0, Position.create(57, 10), Position.create(55, 12), FROM, TO));
+        assertNull(cache.get(-8.0, Position.create(56, 10), Position.create(55, 12), FROM, TO));
+        assertNull(cache.get(-7.0, Position.create(56, 10), Position.create(55, 12), FROM, TO.plusMinutes(30)));
+    }
+
+    @Test
+    public void supersededAndEvicted() {
+        NogoCache cache = new NogoCache(2);
+        cache.put(-7.0, Position.create(55.8, 10.5), Position.create(55.2, 11.5), result(FROM, TO));
+        cache.put(-7.0, Position.create(56, 10), Position.create(55, 12), result(FROM, TO));
+        assertEquals(1, cache.size());
+
+        cache.put(-7.0, Position.create(56, 10), Position.create(55, 12), result(TO, TO.plusMinutes(30)));
+        cache.put(-7.0, Position.create(56, 10), Position.create(55, 12), result(TO.plusMinutes(30), TO.plusMinutes(60)));
+        assertEquals(2, cache.size());
+        assertNull(cache.get(-7.0, Position.create(56, 10), Position.create(55, 12), FROM, TO));
+    }
+
+    @Test
+    public void slices() {
+        NogoCache cache = new NogoCache();
+        NoGoDataEntry slice1 = result(FROM, TO);
+        slice1.setNogoPolygons(Arrays.asList(polygon(55.2, 10.2, 55.8, 10.2, 55.8, 10.8)));
+        NoGoDataEntry slice2 = result(TO, TO.plusMinutes(30));
+        slice2.setNogoPolygons(Arrays.asList(polygon(55.2, 11.2, 55.8, 11.2, 55.8, 11.8),
+                polygon(55.2, 10.2, 55.4, 10.2, 55.4, 10.4)));
+        cache.put(-7.0, Position.create(56, 10), Position.create(55, 12), slice1);
+        cache.put(-7.0, Position.create(56, 10), Position.create(55, 12), slice2);
+
+        // Each slice gets its own result
+        NoGoDataEntry cached1 = cache.get(-7.0, Position.create(56, 10), Position.create(55, 12), FROM, TO);
+        NoGoDataEntry cached2 = cache.get(-7.0, Position.create(56, 10), Position.create(55, 12), TO, TO.plusMinutes(30));
+        assertEquals(1, cached1.getNogoPolygons().size());
+        assertEquals(2, cached2.getNogoPolygons().size());
+        assertEquals(TO, cached2.getValidFrom());
+
+        // A wider result is not used for the slices within it
+        NogoCache wide = new NogoCache();
+        wide.put(-7.0, Position.create(56, 10), Position.create(55, 12), result(FROM, TO.plusMinutes(30)));
+        assertNull(wide.get(-7.0, Position.create(56, 10), Position.create(55, 12), FROM, TO));
+        assertNull(wide.get(-7.0, Position.create(56, 10), Position.create(55, 12), TO, TO.plusMinutes(30)));
+        assertNotNull(wide.get(-7.0, Position.create(56, 10), Position.create(55, 12), FROM, TO.plusMinutes(30)));
+    }
+
+    @Test
+    public void clip() {
+        NogoCache.Area area = new NogoCache.Area(Position.create(56, 10), Position.create(55, 11));
+
+        // Inside, outside and bounding box overlapping but outside
+        NogoPolygon inside = polygon(55.2, 10.2, 55.8, 10.2, 55.8, 10.8);
+        assertSame(inside, area.clip(inside));
+        assertNull(area.clip(polygon(57, 10, 57, 11, 58, 11)));
+        assertFalse(area.intersects(polygon(56.5, 10.6, 56.5, 11.5, 55.6, 11.5)));
+        assertTrue(area.intersects(polygon(55.5, 10.5, 56.5, 10.5, 56.5, 11.5, 55.5, 11.5)));
+
+        // A square straddling the east edge is cut in half
+        NogoPolygon clipped = area.clip(polygon(55.2, 10.8, 55.6, 10.8, 55.6, 11.2, 55.2, 11.2));
+        assertEquals(4, clipped.getPolygon().size());
+        assertEquals(0.4 * 0.2, area(clipped), 1e-9);
+        for (NogoPoint point : clipped.getPolygon()) {
+            assertTrue(point.getLon() <= 11);
+        }
+
+        // A triangle covering the north east corner of the area
+        clipped = area.clip(polygon(55.5, 10.5, 56.5, 10.5, 55.5, 11.5));
+        assertEquals(0.5 * 0.5, area(clipped), 1e-9);
+    }
+
+    @Test
+    public void clippedResult() {
+        NoGoDataEntry result = result(FROM, TO);
+        result.setNogoPolygons(Arrays.asList(polygon(55.2, 10.2, 55.8, 10.2, 55.8, 10.8),
+                polygon(55.2, 11.8, 55.8, 11.8, 55.8, 12.2), polygon(55.2, 10.9, 55.4, 10.9, 55.4, 11.1, 55.2, 11.1)));
+        NogoCache cache = new NogoCache();
+        cache.put(-7.0, Position.create(56, 10), Position.create(55, 13), result);
+
+        NoGoDataEntry clipped = cache.get(-7.0, Position.create(56, 10), Position.create(55, 11), FROM, TO);
+        assertEquals(2, clipped.getNogoPolygons().size());
+        assertEquals(0.2 * 0.1, area(clipped.getNogoPolygons().get(1)), 1e-9);
+        assertEquals(3, cache.get(-7.0, Position.create(56, 10), Position.create(55, 13), FROM, TO).getNogoPolygons().size());
+    }
+}
@@ -0,0 +1,104 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.notification;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+import dma.msinm.MCLocation;
+import dma.msinm.MCLocationType;
+import dma.msinm.MCPoint;
+
+/**
+ * Known-answer tests of the segment distances and the point-in-polygon test of {@linkplain MsiNmGeometry}
+ */
+public class MsiNmGeometryTest {
+
+    /**
+     * Creates a geometry with a single location through the corners of the 55N-56N, 11E-12E square
+     */
+    private static MsiNmGeometry createSquare(MCLocationType type) {
+        MCLocation loc = new MCLocation();
+        loc.setType(type);
+        double[][] corners = { { 55.0, 11.0 }, { 55.0, 12.0 }, { 56.0, 12.0 }, { 56.0, 11.0 } };
+        for (double[] corner : corners) {
+            MCPoint point = new MCPoint();
+            point.setLat(corner[0]);
+            point.setLon(corner[1]);
+            loc.addPoints(point);
+        }
+        return new MsiNmGeometry(Collections.singletonList(loc));
+    }
+
+    /** Nautical miles per degree of longitude at the given latitude */
+    private static double nmPerLon(double lat) {
+        return 60.0 * Math.cos(Math.toRadians(lat));
+    }
+
+    @Test
+    public void pointToSegment() {
+        assertEquals(1.0, MsiNmGeometry.pointToSegment(0, 1, -1, 0, 1, 0), 1e-12);
+        // Beyond the end of the segment
+        assertEquals(Math.sqrt(2.0), MsiNmGeometry.pointToSegment(2, 1, -1, 0, 1, 0), 1e-12);
+        // Zero length segment
+        assertEquals(5.0, MsiNmGeometry.pointToSegment(3, 4, 0, 0, 0, 0), 1e-12);
+    }
+
+    @Test
+    public void segmentToSegment() {
+        // Crossing
+        assertEquals(0.0, MsiNmGeometry.segmentToSegment(-1, 0, 1, 0, 0, -1, 0, 1), 0.0);
+        // Parallel
+        assertEquals(2.0, MsiNmGeometry.segmentToSegment(0, 0, 4, 0, 1, 2, 3, 2), 1e-12);
+        // Collinear and disjoint
+        assertEquals(1.0, MsiNmGeometry.segmentToSegment(0, 0, 1, 0, 2, 0, 3, 0), 1e-12);
+        // End point of one segment closest to the interior of the other
+        assertEquals(1.0, MsiNmGeometry.segmentToSegment(0, 0, 4, 0, 2, 1, 2, 3), 1e-12);
+    }
+
+    @Test
+    public void polygon() {
+        MsiNmGeometry square = createSquare(MCLocationType.POLYGON);
+
+        // Inside
+        assertEquals(0.0, square.distanceTo(Position.create(55.5, 11.5)), 0.0);
+        assertEquals(0.0, square.distanceTo(Position.create(55.5, 11.1)), 0.0);
+
+        // North and east of the polygon
+        assertEquals(30.0, square.distanceTo(Position.create(56.5, 11.5)), 1e-9);
+        assertEquals(0.5 * nmPerLon(55.5), square.distanceTo(Position.create(55.5, 12.5)), 1e-9);
+
+        // A leg crossing the polygon with both ends outside
+        assertEquals(0.0, square.distanceTo(Position.create(55.5, 10.5), Position.create(55.5, 12.5)), 0.0);
+        // A leg passing north of the polygon
+        assertEquals(30.0, square.distanceTo(Position.create(56.5, 10.5), Position.create(56.5, 12.5)), 1e-9);
+    }
+
+    @Test
+    public void polyline() {
+        // The same corners as an open polyline, leaving out the western side
+        MsiNmGeometry line = createSquare(MCLocationType.POLYLINE);
+
+        // No containment, the closest segments are the southern and northern sides
+        assertEquals(30.0, line.distanceTo(Position.create(55.5, 11.1)), 1e-9);
+        // The western side is not a segment, so the closest points are the western corners
+        double dx = 0.5 * nmPerLon(55.5);
+        assertEquals(Math.sqrt(dx * dx + 30.0 * 30.0), line.distanceTo(Position.create(55.5, 10.5)), 1e-9);
+    }
+}
@@ -0,0 +1,113 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.sensor.nmea;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import dk.dma.epd.common.prototype.sensor.nmea.NmeaDecoder.SentenceType;
+
+public class NmeaDecoderTest {
+
+    private static final String VDM = "!AIVDM,1,1,,A,13u?etPv2;0n:dDPwUM1U1Cb069D,0*24";
+    private static final String RMC = "$GPRMC,105823.00,A,5547.14216,N,01236.03920,E,0.027,,070214,,,A*75";
+    private static final String GSV = "$GPGSV,1,1,00*79";
+    private static final String PRPNT = "$PRPNT,1,GPS*3D";
+
+    private final List<SentenceType> types = new ArrayList<>();
+    private final List<String> sentences = new ArrayList<>();
+
+    private final NmeaDecoder.Listener listener = new NmeaDecoder.Listener() {
+        @Override
+        public boolean isInterested(SentenceType type) {
+            return type != SentenceType.OTHER;
+        }
+
+        @Override
+        public void receive(SentenceType type, String sentence) {
+            types.add(type);
+            sentences.add(sentence);
+        }
+    };
+
+    @Test
+    public void multiSentenceDatagram() {
+        NmeaDecoder decoder = new NmeaDecoder(listener, 0);
+        String datagram = VDM + "\r\n" + GSV + "\r\n" + RMC + "\r\n" + PRPNT;
+        decoder.decode(ByteBuffer.wrap(datagram.getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals(3, sentences.size());
+        assertEquals(VDM, sentences.get(0));
+        assertEquals(SentenceType.VDM, types.get(0));
+        assertEquals(SentenceType.RMC, types.get(1));
+        assertEquals(PRPNT, sentences.get(2));
+        assertEquals(SentenceType.PROPRIETARY, types.get(2));
+    }
+
+    @Test
+    public void checksumError() {
+        NmeaDecoder decoder = new NmeaDecoder(listener, 0);
+        String datagram = VDM.replace("*24", "*25") + "\n" + RMC + "\n";
+        decoder.decode(ByteBuffer.wrap(datagram.getBytes(StandardCharsets.US_ASCII)));
+
+        assertEquals(1, sentences.size());
+        assertEquals(RMC, sentences.get(0));
+        assertEquals(1, decoder.getChecksumErrors());
+    }
+
+    @Test
+    public void sentencesSplitAcrossReads() throws IOException {
+        // A buffer smaller than the input forces sentences to span reads
+        NmeaDecoder decoder = new NmeaDecoder(listener, 100);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            input.append(VDM).append("\r\n").append(RMC).append("\r\n");
+        }
+        input.append(PRPNT);
+        ByteArrayInputStream in = new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.US_ASCII));
+        while (decoder.read(in)) {
+            continue;
+        }
+
+        assertEquals(21, sentences.size());
+        assertEquals(VDM, sentences.get(18));
+        assertEquals(RMC, sentences.get(19));
+        assertEquals(PRPNT, sentences.get(20));
+        assertEquals(0, decoder.getOverflows());
+    }
+
+    private static SentenceType classify(String sentence) {
+        byte[] bytes = sentence.getBytes(StandardCharsets.US_ASCII);
+        return NmeaDecoder.classify(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Test
+    public void talkers() {
+        assertEquals(SentenceType.VDM, classify("!AIVDO,1,1,,,B3u?etP0=4eHt5Hg?ifQ3wTUoP06,0*78"));
+        assertEquals(SentenceType.VDM, classify("!BSVDM,1,1,,A,13u?etPv2;0n:dDPwUM1U1Cb069D,0*3D"));
+        assertEquals(SentenceType.VDM, classify("!ABVDM,1,1,,A,13u?etPv2;0n:dDPwUM1U1Cb069D,0*2F"));
+        assertEquals(SentenceType.OTHER, classify("!BSVDO,1,1,,,B3u?etP0=4eHt5Hg?ifQ3wTUoP06,0*61"));
+        assertEquals(SentenceType.OTHER, classify("!ABVDO,1,1,,,B3u?etP0=4eHt5Hg?ifQ3wTUoP06,0*73"));
+        assertEquals(SentenceType.RMC, classify(RMC.replace("$GP", "$GN")));
+    }
+}
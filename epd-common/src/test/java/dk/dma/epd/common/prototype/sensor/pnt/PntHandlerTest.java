@@ -0,0 +1,112 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.common.prototype.sensor.pnt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.epd.common.prototype.predictor.DynamicPrediction;
+import dk.dma.epd.common.prototype.sensor.predictor.DynamicPredictorPredictionData;
+import dk.dma.epd.common.prototype.sensor.predictor.DynamicPredictorStateData;
+
+/**
+ * Tests the dead reckoning of the {@linkplain PntHandler}
+ */
+public class PntHandlerTest {
+
+    private static PntData createData(long time, double sog, double cog) {
+        PntData data = new PntData();
+        data.setPosition(Position.create(55.0, 11.0));
+        data.setBadPosition(false);
+        data.setLastUpdated(new Date(time));
+        data.setSog(sog);
+        data.setCog(cog);
+        return data;
+    }
+
+    @Test
+    public void testDeadReckonNorth() {
+        PntData data = createData(1000L, 10.0, 0.0);
+        Position pos = PntHandler.deadReckon(data, null, 7000L);
+        // 10 knots for 6 seconds is 30.87 meters
+        double meters = (pos.getLatitude() - 55.0) * Math.PI / 180.0 * 6371000.0;
+        assertEquals(30.87, meters, 0.01);
+        assertEquals(11.0, pos.getLongitude(), 1e-9);
+    }
+
+    @Test
+    public void testDeadReckonIsCapped() {
+        PntData data = createData(0L, 10.0, 90.0);
+        Position capped = PntHandler.deadReckon(data, null, PntHandler.MAX_DEAD_RECKONING);
+        Position later = PntHandler.deadReckon(data, null, PntHandler.MAX_DEAD_RECKONING * 10);
+        assertEquals(capped.getLongitude(), later.getLongitude(), 1e-12);
+        assertEquals(55.0, later.getLatitude(), 1e-9);
+    }
+
+    @Test
+    public void testDeadReckonAlongPrediction() {
+        // Predicted to sail north until 30 seconds and then east. The fix is received 20 seconds into the prediction
+        DynamicPredictorStateData header = new DynamicPredictorStateData(0, Position.create(55.0, 11.0), 0f, 0f, 0f, 0f, 0f, 0L);
+        DynamicPrediction prediction = new DynamicPrediction(0L, header, Arrays.asList(
+                new DynamicPredictorPredictionData(0, Position.create(55.01, 11.0), 0f, 0f, 0f, 30000L),
+                new DynamicPredictorPredictionData(1, Position.create(55.01, 11.02), 0f, 0f, 0f, 60000L)));
+        PntData data = createData(20000L, 0.0, 0.0);
+
+        // The displacement is taken along the prediction from the time of the fix, not from the start of the prediction
+        Position pos = PntHandler.deadReckon(data, prediction, 40000L);
+        assertEquals(55.0 + 0.01 / 3, pos.getLatitude(), 1e-9);
+        assertEquals(11.0 + 0.02 / 3, pos.getLongitude(), 1e-9);
+
+        // A fix before the start of the prediction falls back to SOG and COG
+        data = createData(-1000L, 0.0, 0.0);
+        assertEquals(55.0, PntHandler.deadReckon(data, prediction, 10000L).getLatitude(), 1e-12);
+    }
+
+    @Test
+    public void testNoDeadReckoningOfBadPosition() {
+        PntData data = createData(0L, 10.0, 90.0);
+        data.setBadPosition(true);
+        assertSame(data.getPosition(), PntHandler.deadReckon(data, null, 5000L));
+        // Nor before the fix
+        data.setBadPosition(false);
+        assertSame(data.getPosition(), PntHandler.deadReckon(data, null, -5000L));
+    }
+
+    @Test
+    public void testUnmodifiable() {
+        PntData data = PntData.unmodifiable(createData(1000L, 10.0, 0.0));
+        assertSame(data, PntData.unmodifiable(data));
+        data.getLastUpdated().setTime(0L);
+        assertEquals(1000L, data.getLastUpdated().getTime());
+        try {
+            data.setPosition(Position.create(56.0, 11.0));
+            fail("PNT data should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        // Copies can be modified
+        PntData copy = new PntData(data);
+        copy.setBadPosition(true);
+        assertFalse(data.isBadPosition());
+    }
+}
@@ -19,7 +19,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Properties;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import javax.swing.AbstractAction;
@@ -49,7 +51,9 @@ import dk.dma.epd.common.ExceptionHandler;
 import dk.dma.epd.common.graphics.Resources;
 import dk.dma.epd.common.prototype.Bootstrap;
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.PluginLoader;
+import dk.dma.epd.common.prototype.StartupOrchestrator;
 import dk.dma.epd.common.prototype.ais.VesselTarget;
 import dk.dma.epd.common.prototype.gui.SystemTrayCommon;
 import dk.dma.epd.common.prototype.model.identity.IdentityHandler;
@@ -106,6 +110,10 @@ public final class EPDShip extends EPD implements IOwnShipListener {
 
     private static Logger LOG;
 
+    /** The number of threads used for loading stored state at start-up */
+    private static final int STARTUP_THREADS = 4;
+    private static final long SHUTDOWN_TIMEOUT = 5; // secs
+
     MainFrame mainFrame;
     private MapHandler mapHandler;
     private NmeaSensor aisSensor;
@@ -183,13 +191,21 @@ public final class EPDShip extends EPD implements IOwnShipListener {
         LOG.info("This is free software, and you are welcome to redistribute it under certain conditions.");
         LOG.info("For details see LICENSE file.");
 
+        // Orchestrate the start-up. The stored state of independent components is loaded in parallel
+        final StartupOrchestrator startup = new StartupOrchestrator("EPD Ship", STARTUP_THREADS);
+
         // Create the bean context (map handler)
         mapHandler = new MapHandler();
 
         // Load settings or get defaults and add to bean context
-        settings = new EPDSettings();
-        LOG.info("Using settings file: " + getSettings().getSettingsFile());
-        settings.loadFromFile();
+        startup.run("Settings", new Runnable() {
+            @Override
+            public void run() {
+                settings = new EPDSettings();
+                LOG.info("Using settings file: " + getSettings().getSettingsFile());
+                settings.loadFromFile();
+            }
+        });
         mapHandler.add(settings);
 
         // Determine if instance already running and if that is allowed
@@ -198,6 +214,26 @@ public final class EPDShip extends EPD implements IOwnShipListener {
             handleEpdAlreadyRunning();
         }
 
+        // Load the FAL, SAR and route suggestion stores in the background
+        startup.submit("FAL reports", new Callable<FALManager>() {
+            @Override
+            public FALManager call() {
+                return FALManager.loadFALManager();
+            }
+        }, "Settings");
+        startup.submit("SAR operation", new Callable<VOCTManager>() {
+            @Override
+            public VOCTManager call() {
+                return VOCTManager.loadVOCTManager();
+            }
+        }, "Settings");
+        startup.submit("Route suggestions", new Callable<RouteSuggestionHandler>() {
+            @Override
+            public RouteSuggestionHandler call() {
+                return RouteSuggestionHandler.loadRouteSuggestionHandler();
+            }
+        }, "Settings");
+
         // start riskHandler
         startRiskHandler();
 
@@ -207,6 +243,7 @@ public final class EPDShip extends EPD implements IOwnShipListener {
 
         // Start position handler and add to bean context
         pntHandler = new PntHandler();
+        pntHandler.setPublishInterval(settings.getSensorSettings().getPntPublishInterval());
         mapHandler.add(pntHandler);
 
         // Start the multi-source PNT handler and add to bean context
@@ -214,15 +251,20 @@ public final class EPDShip extends EPD implements IOwnShipListener {
         msPntHandler.addPntListener(pntHandler);
         mapHandler.add(msPntHandler);
 
-        // Start AIS target monitoring
+        // Start AIS target monitoring. The AIS history is loaded in the background
         aisHandler = new AisHandler(settings.getSensorSettings(), settings.getAisSettings());
-        aisHandler.loadView();
-        EPD.startThread(aisHandler, "AisHandler");
+        startup.track("AIS view", aisHandler.loadViewAsync());
+        aisHandler.start();
         mapHandler.add(aisHandler);
 
         // Start own-ship handler
         ownShipHandler = new OwnShipHandler(settings.getAisSettings());
-        ownShipHandler.loadView();
+        startup.submit("Own-ship view", new Runnable() {
+            @Override
+            public void run() {
+                ownShipHandler.loadView();
+            }
+        }, "Settings");
         ownShipHandler.addListener(this);
         mapHandler.add(ownShipHandler);
 
@@ -240,16 +282,95 @@ public final class EPDShip extends EPD implements IOwnShipListener {
             mapHandler.add(dynamicPredictor);
         }
 
-        // Load routeManager and register as GPS data listener
-        routeManager = RouteManager.loadRouteManager();
+        // Create the route manager and register as GPS data listener. The routes are loaded in the background
+        routeManager = new RouteManager();
+        startup.track("Routes", routeManager.loadFromFileAsync());
         mapHandler.add(routeManager);
 
-        falManager = FALManager.loadFALManager();
+        // Create the service handlers
+        startup.run("Service handlers", new Runnable() {
+            @Override
+            public void run() {
+                createServiceHandlers();
+            }
+        });
+
+        // Add the components loaded in the background
+        falManager = startup.get("FAL reports");
         mapHandler.add(falManager);
 
-        voctManager = VOCTManager.loadVOCTManager();
+        voctManager = startup.get("SAR operation");
         mapHandler.add(voctManager);
 
+        routeSuggestionHandler = startup.get("Route suggestions");
+        mapHandler.add(routeSuggestionHandler);
+
+        // Start sensors once the own-ship view has been loaded
+        startup.get("Own-ship view");
+        startup.run("Sensors", new Runnable() {
+            @Override
+            public void run() {
+                startSensors();
+            }
+        });
+
+        // Create plugin components
+        startup.run("Plugins", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pluginLoader = new PluginLoader(getProperties(), getHomePath(), getPropertyFileName());
+                    pluginLoader.createPluginComponents(new Consumer<Object>() {
+                        public void accept(Object comp) {
+                            mapHandler.add(comp);
+                        }
+                    });
+                } catch (Exception e) {
+                    LOG.error("Failed to load plugin container " + e.getMessage());
+                }
+            }
+        });
+
+        // pluginLoader.createPluginComponents(comp -> mapHandler.add(comp));
+
+        // Create and show GUI and wait for it to be created
+        final CompletableFuture<Void> guiCreated = new CompletableFuture<>();
+        startup.track("GUI", guiCreated);
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    createAndShowGUI();
+                    guiCreated.complete(null);
+                } catch (RuntimeException e) {
+                    guiCreated.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        });
+        startup.get("GUI");
+
+        // Create embedded transponder frame
+        startup.run("Transponder", new Runnable() {
+            @Override
+            public void run() {
+                transponderFrame = new TransponderFrame(getHomePath().resolve("transponder.xml").toString(), true, mainFrame);
+                mapHandler.add(transponderFrame);
+
+                if (settings.getSensorSettings().isStartTransponder()) {
+                    transponderFrame.startTransponder();
+                }
+            }
+        });
+
+        // Log the timing breakdown once the AIS history and routes have been loaded
+        startup.finish();
+    }
+
+    /**
+     * Creates the shore, Maritime Cloud and service handlers and adds them to the bean context
+     */
+    private void createServiceHandlers() {
         // Create shore services
         shoreServices = new ShoreServices(getSettings().getEnavSettings());
         mapHandler.add(shoreServices);
@@ -275,11 +396,6 @@ public final class EPDShip extends EPD implements IOwnShipListener {
         intendedRouteHandler.updateSettings(settings.getEnavSettings());
         mapHandler.add(intendedRouteHandler);
 
-        // Create the route suggestion handler
-        // routeSuggestionHandler = new RouteSuggestionHandler();
-        routeSuggestionHandler = RouteSuggestionHandler.loadRouteSuggestionHandler();
-        mapHandler.add(routeSuggestionHandler);
-
         // Create a new MSI-NM handler
         msiNmHandler = new MsiNmServiceHandlerCommon();
         mapHandler.add(msiNmHandler);
@@ -302,51 +418,6 @@ public final class EPDShip extends EPD implements IOwnShipListener {
         // Create FAL Handler
         falHandler = new FALHandler();
         mapHandler.add(falHandler);
-
-        // Start sensors
-        startSensors();
-
-        // Create plugin components
-
-        try {
-            pluginLoader = new PluginLoader(getProperties(), getHomePath(), getPropertyFileName());
-            pluginLoader.createPluginComponents(new Consumer<Object>() {
-                public void accept(Object comp) {
-                    mapHandler.add(comp);
-                }
-            });
-        } catch (Exception e) {
-            LOG.error("Failed to load plugin container " + e.getMessage());
-        }
-
-        // pluginLoader.createPluginComponents(comp -> mapHandler.add(comp));
-
-        final CountDownLatch guiCreated = new CountDownLatch(1);
-
-        // Create and show GUI
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                createAndShowGUI();
-                guiCreated.countDown();
-            }
-        });
-
-        // Wait for gui to be created
-        try {
-            guiCreated.await();
-        } catch (InterruptedException e) {
-            LOG.error("Interrupted while waiting for GUI to be created", e);
-        }
-
-        // Create embedded transponder frame
-        transponderFrame = new TransponderFrame(getHomePath().resolve("transponder.xml").toString(), true, mainFrame);
-        mapHandler.add(transponderFrame);
-
-        if (settings.getSensorSettings().isStartTransponder()) {
-            transponderFrame.startTransponder();
-        }
-
     }
 
     /**
@@ -804,6 +875,9 @@ public final class EPDShip extends EPD implements IOwnShipListener {
 
         pluginLoader.closePlugins();
 
+        // Let running background tasks complete
+        ExecutionService.getInstance().shutdown(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+
         LOG.info("Closing EPD-ship");
         this.restart = restart;
         System.exit(restart ? 2 : 0);
@@ -838,7 +912,7 @@ public final class EPDShip extends EPD implements IOwnShipListener {
      */
     @Override
     public Position getPosition() {
-        return getPntHandler().getCurrentData().getPosition();
+        return getPntHandler().getLatestData().getPosition();
     }
 
     public NmeaSensor getAisSensor() {
@@ -54,7 +54,7 @@ public class AisHandler extends AisHandlerCommon implements IOwnShipListener {
         if (getAisRange() <= 0) {
             return true;
         }
-        PntData pntData = EPDShip.getInstance().getPntHandler().getCurrentData();
+        PntData pntData = EPDShip.getInstance().getPntHandler().getLatestData();
         if (pntData == null) {
             return false;
         }
@@ -16,6 +16,7 @@ package dk.dma.epd.ship.gui.ais;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
@@ -146,35 +147,57 @@ public class AisTableModel extends AbstractTableModel implements IAisTargetListe
             
             @Override
             public void run() {
-                
-                if(!(aisTarget instanceof VesselTarget)) {
-                    // We are only interested in vessels.
-                    return;
-                }
-                
-                VesselTarget vessel = (VesselTarget) aisTarget;
-                if(vessel.isGone() && !mappedItems.containsKey(vessel.getMmsi())) {
-                    // Vessel is gone and not managed in model, do nothing.
-                    return;
-                }
-                
-                if(vessel.isGone()) {
-                    // If target is gone but managed in model, we remove it from the model.
-                    AisTableModel.this.deleteVessel(vessel.getMmsi());
-                    return;
-                }
-                
-                // Update or add new?
-                if(mappedItems.containsKey(vessel.getMmsi())) {
-                    AisTableModel.this.updateVessel(vessel);
-                } else {
-                    AisTableModel.this.addVessel(vessel);
+                applyTargetUpdate(aisTarget);
+            }
+            
+        });
+    }
+
+    @Override
+    public void targetsUpdated(final Collection<AisTarget> aisTargets) {
+        // Model must be updated on the EDT. Apply the whole batch in one go.
+        SwingUtilities.invokeLater(new Runnable() {
+            
+            @Override
+            public void run() {
+                for (AisTarget aisTarget : aisTargets) {
+                    applyTargetUpdate(aisTarget);
                 }
             }
             
         });
     }
     
+    /**
+     * Adds, updates or removes the model item of the given target. <b>Should always be called on the EDT.</b>
+     * @param aisTarget the updated target
+     */
+    private void applyTargetUpdate(AisTarget aisTarget) {
+        if(!(aisTarget instanceof VesselTarget)) {
+            // We are only interested in vessels.
+            return;
+        }
+        
+        VesselTarget vessel = (VesselTarget) aisTarget;
+        if(vessel.isGone() && !mappedItems.containsKey(vessel.getMmsi())) {
+            // Vessel is gone and not managed in model, do nothing.
+            return;
+        }
+        
+        if(vessel.isGone()) {
+            // If target is gone but managed in model, we remove it from the model.
+            AisTableModel.this.deleteVessel(vessel.getMmsi());
+            return;
+        }
+        
+        // Update or add new?
+        if(mappedItems.containsKey(vessel.getMmsi())) {
+            AisTableModel.this.updateVessel(vessel);
+        } else {
+            AisTableModel.this.addVessel(vessel);
+        }
+    }
+    
     /**
      * Adds a new vessel to the model. <b>Should always be called on the EDT.</b>
      * @param vessel The vessel to add to the model.
@@ -15,9 +15,12 @@
 package dk.dma.epd.ship.gui.component_panels;
 
 import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.Date;
 import java.util.List;
 
+import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JSlider;
 import javax.swing.border.EtchedBorder;
@@ -41,6 +44,7 @@ public class NoGoComponentPanel extends OMComponentPanel implements DockableComp
     private NogoHandler nogoHandler;
 
     private final NoGoPanel nogoPanel = new NoGoPanel();
+    private final JButton cancelButton = new JButton("Cancel NoGo request");
 
     private JLabel statusLabel;
     private JLabel validFromLabel;
@@ -60,6 +64,17 @@ public class NoGoComponentPanel extends OMComponentPanel implements DockableComp
         setLayout(new BorderLayout(0, 0));
         add(nogoPanel, BorderLayout.NORTH);
 
+        cancelButton.setVisible(false);
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (nogoHandler != null) {
+                    nogoHandler.cancelNogo();
+                }
+            }
+        });
+        add(cancelButton, BorderLayout.SOUTH);
+
         nogoPanel.initLabels();
 
         setVisible(false);
@@ -101,6 +116,24 @@ public class NoGoComponentPanel extends OMComponentPanel implements DockableComp
         nogoPanel.multipleRequestFailed();
     }
 
+    public void requestCancelledSingle() {
+        nogoPanel.requestCancelledSingle();
+    }
+
+    public void requestCancelledMultiple() {
+        nogoPanel.requestCancelledMultiple();
+    }
+
+    /**
+     * Shows or hides the button for cancelling the NoGo request in progress
+     * 
+     * @param enabled
+     *            whether a NoGo request is in progress
+     */
+    public void setCancelEnabled(boolean enabled) {
+        cancelButton.setVisible(enabled);
+    }
+
     public void noConnectionSingle() {
 
         nogoPanel.noConnectionSingle();
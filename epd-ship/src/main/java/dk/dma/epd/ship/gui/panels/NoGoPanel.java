@@ -430,6 +430,24 @@ public class NoGoPanel extends JPanel {
         draughtTxtLabelSlider.setEnabled(false);
     }
 
+    public void requestCancelledSingle() {
+        statusLabel.setText("Cancelled");
+        statusLabel.setForeground(Color.ORANGE);
+        additionalTxtTitleLabel.setText("NoGo request cancelled");
+        additionalTxtTitleLabel2.setText(" ");
+
+        validFromTxtLabel.setEnabled(false);
+        validToTxtLabel.setEnabled(false);
+        draughtTxtLabel.setEnabled(false);
+    }
+
+    public void requestCancelledMultiple() {
+        // The slices that have arrived can still be browsed
+        statusLabelSlider.setText("Cancelled");
+        statusLabelSlider.setForeground(Color.ORANGE);
+        additionalTxtTitleLabelSlider.setText("NoGo request cancelled");
+    }
+
     public void noConnectionSingle() {
         statusLabel.setText("Failed");
         statusLabel.setForeground(Color.RED);
@@ -608,11 +626,10 @@ public class NoGoPanel extends JPanel {
     public void setCompletedRequests(int completed, int total) {
         additionalTxtTitleLabel2Slider.setText("Completed: " + completed + " / " + total);
 
-        if (completed == total) {
-            slider.setEnabled(true);
+        // The slices can be browsed as soon as the first one has arrived
+        slider.setEnabled(completed > 0);
+        if (completed == 1) {
             slider.setValue(0);
-        } else {
-            slider.setEnabled(false);
         }
     }
 
@@ -123,15 +123,17 @@ public class OwnShipLayer extends EPDLayerCommon implements IOwnShipListener, Pr
             return;
         }
 
-        // Set location of ship
-        currentPos = ownShipHandler.getPositionData().getPos();
+        // Set location of ship, dead reckoned to the time of rendering
+        long renderTime = System.currentTimeMillis();
+        VesselPositionData positionData = ownShipHandler.getPositionData(renderTime);
+        currentPos = positionData.getPos();
 
         // check if proper zoom level and if data is available for ship outline drawing
         if (this.currentZoomLevel == ZoomLevel.VESSEL_OUTLINE && ownShipHandler.getStaticData() != null) {
-            this.drawOwnShipOutline();
+            this.drawOwnShipOutline(renderTime);
         } else {
             // draw standard version of own ship for all other zoom levels than VESSEL_OUTLINE
-            this.drawOwnShipStandard(ownShipHandler.getPositionData());
+            this.drawOwnShipStandard(positionData);
         }
 
         // Update the past-track graphics
@@ -176,8 +178,11 @@ public class OwnShipLayer extends EPDLayerCommon implements IOwnShipListener, Pr
     
     /**
      * Draws/updates own ship in outline mode.
+     * 
+     * @param renderTime
+     *            the time to render the own-ship position at
      */
-    private void drawOwnShipOutline() {
+    private void drawOwnShipOutline(long renderTime) {
         if (this.ownShipGraphic != null) {
             // hide standard display of own ship
             this.ownShipGraphic.setVisible(false);
@@ -189,7 +194,8 @@ public class OwnShipLayer extends EPDLayerCommon implements IOwnShipListener, Pr
         }
         // re-show outline graphic in case it was hidden by standard ownship graphic
         this.vesselOutlineGraphic.setVisible(true);
-        this.vesselOutlineGraphic.update(this.ownShipHandler.getComputedAisTarget(), null, null, this.getProjection().getScale());
+        this.vesselOutlineGraphic.update(this.ownShipHandler.getComputedAisTarget(renderTime), null, null, this.getProjection()
+                .getScale());
         
         // Handle resilient PNT error graphic
         if (rpntErrorGraphic == null) {
@@ -197,7 +203,7 @@ public class OwnShipLayer extends EPDLayerCommon implements IOwnShipListener, Pr
             graphics.add(rpntErrorGraphic);
         }
         rpntErrorGraphic.setVisible(true);
-        rpntErrorGraphic.update(ownShipHandler.getPositionData(), multiSourcePntHandler.getRpntData());
+        rpntErrorGraphic.update(ownShipHandler.getPositionData(renderTime), multiSourcePntHandler.getRpntData());
     }
 
     /**
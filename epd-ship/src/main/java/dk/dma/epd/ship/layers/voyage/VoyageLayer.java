@@ -273,6 +273,7 @@ public class VoyageLayer extends EPDLayerCommon implements Runnable, IVoyageUpda
                 Position newLocation = Position.create(newLatLon.getLatitude(),
                         newLatLon.getLongitude());
                 routeWaypoint.setPos(newLocation);
+                modifiedSTCCRoute.invalidateGeometry();
 
                 drawAllRoutes();
 
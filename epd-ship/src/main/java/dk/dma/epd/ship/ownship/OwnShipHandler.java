@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,7 @@ import dk.dma.ais.message.AisMessage5;
 import dk.dma.ais.message.AisPositionMessage;
 import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.ais.VesselPositionData;
 import dk.dma.epd.common.prototype.ais.VesselStaticData;
 import dk.dma.epd.common.prototype.ais.VesselTarget;
@@ -43,7 +45,6 @@ import dk.dma.epd.common.prototype.sensor.pnt.PntData;
 import dk.dma.epd.common.prototype.sensor.pnt.PntHandler;
 import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
 import dk.dma.epd.common.prototype.settings.AisSettings;
-import dk.dma.epd.common.util.Util;
 import net.jcip.annotations.ThreadSafe;
 
 /**
@@ -57,6 +58,7 @@ public class OwnShipHandler extends MapHandlerChild implements Runnable,
             .getLogger(OwnShipHandler.class);
     private static final String OWN_SHIP_FILE = EPD.getInstance().getHomePath()
             .resolve(".ownship").toString();
+    private static final long UPDATE_INTERVAL = 10000; // 10 secs
 
     private final AisSettings aisSettings;
     private PntHandler pntHandler;
@@ -77,7 +79,8 @@ public class OwnShipHandler extends MapHandlerChild implements Runnable,
         initAisTarget();
         publishOwnShipChanged(null, aisTarget);
         
-        EPD.startThread(this, "OwnShipHandler");
+        ExecutionService.getInstance().scheduleWithFixedDelay("OwnShipHandler", this, UPDATE_INTERVAL, UPDATE_INTERVAL,
+                TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -243,6 +246,38 @@ public class OwnShipHandler extends MapHandlerChild implements Runnable,
         return pos;
     }
 
+    /**
+     * Returns the computed {@linkplain VesselPositionData} like {@linkplain #getPositionData()}, but with the PNT position
+     * dead reckoned to the given time, e.g. the time the own-ship is rendered.
+     * 
+     * @param time
+     *            the time in epoch millis
+     * @return the own-ship position data at the given time
+     */
+    public synchronized VesselPositionData getPositionData(long time) {
+        VesselPositionData pos = getPositionData();
+        if (pntHandler != null && pntData != null && pntData.getPosition() != null) {
+            Position reckoned = pntHandler.getPosition(time);
+            if (reckoned != null) {
+                pos.setPos(reckoned);
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Returns a computed AIS target like {@linkplain #getComputedAisTarget()}, but with the position data at the given time
+     * 
+     * @param time
+     *            the time in epoch millis
+     * @return a computed AIS target
+     */
+    public synchronized VesselTarget getComputedAisTarget(long time) {
+        VesselTarget vesselTarget = new VesselTarget(aisTarget);
+        vesselTarget.setPositionData(getPositionData(time));
+        return vesselTarget;
+    }
+
     /**
      * Returns if the own-ship has an associated position
      * 
@@ -379,14 +414,11 @@ public class OwnShipHandler extends MapHandlerChild implements Runnable,
     }
 
     /**
-     * Called after the OwnShipHandler has been initialized.
+     * Called periodically after the OwnShipHandler has been initialized.
      */
     @Override
     public void run() {
-        while (true) {
-            Util.sleep(10000);
-            // Update status of own-ship
-            updatePeriodic();
-        }
+        // Update status of own-ship
+        updatePeriodic();
     }
 }
@@ -18,12 +18,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import dk.dma.epd.common.prototype.communication.webservice.ShoreServiceException;
-import dk.dma.epd.common.util.Util;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.ship.EPDShip;
 import dk.frv.enav.common.xml.risk.response.Risk;
 import dk.frv.enav.common.xml.risk.response.RiskList;
@@ -36,33 +38,51 @@ public class RiskHandler implements Runnable {
         HIGH, MEDIUM, LOW, UNKNOWN
     };
 
+    private static final long POLL_INTERVAL = 10000; // 10 secs
+
     private Map<Long, RiskList> riskListMap = new HashMap<>();
     private static final Object MUTEX = new Object();
+    private ScheduledFuture<?> poller;
 
     public RiskHandler() {
         super();
-        EPDShip.startThread(this, "RiskHandler");
+        // The first poll runs right away, so hold the lock until the poller has been assigned
+        synchronized (this) {
+            poller = ExecutionService.getInstance().scheduleWithFixedDelay("RiskHandler", this, 0, POLL_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+        }
     }
 
+    /**
+     * Polls the risk indexes. Run periodically until risk is no longer shown
+     */
     @Override
     public void run() {
 
-        while (EPDShip.getInstance().getSettings().getAisSettings().isShowRisk()) {
-            List<RiskList> riskLists = new ArrayList<>();
-            try {
-                riskLists = EPDShip.getInstance().getShoreServices().getRiskIndexes(54.75, 56.0, 10.65, 11.25);
-            } catch (ShoreServiceException e) {
-                LOG.warn("cannot get risk indexes", e);
-            }
-            synchronized (MUTEX) {
-                riskListMap.clear();
-                for (RiskList list : riskLists) {
-                    riskListMap.put(list.getMmsi().longValue(), list);
-                }
+        if (!EPDShip.getInstance().getSettings().getAisSettings().isShowRisk()) {
+            stopPolling();
+            return;
+        }
+
+        List<RiskList> riskLists = new ArrayList<>();
+        try {
+            riskLists = EPDShip.getInstance().getShoreServices().getRiskIndexes(54.75, 56.0, 10.65, 11.25);
+        } catch (ShoreServiceException e) {
+            LOG.warn("cannot get risk indexes", e);
+        }
+        synchronized (MUTEX) {
+            riskListMap.clear();
+            for (RiskList list : riskLists) {
+                riskListMap.put(list.getMmsi().longValue(), list);
             }
-            Util.sleep(10000);
         }
+    }
 
+    /**
+     * Cancels the periodic polling
+     */
+    private synchronized void stopPolling() {
+        poller.cancel(false);
     }
 
     public void toggleRiskHandler(boolean onOff) {
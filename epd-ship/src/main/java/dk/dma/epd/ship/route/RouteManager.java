@@ -15,14 +15,12 @@
 package dk.dma.epd.ship.route;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
@@ -41,6 +39,7 @@ import dk.dma.epd.common.prototype.sensor.pnt.IPntDataListener;
 import dk.dma.epd.common.prototype.sensor.pnt.PntData;
 import dk.dma.epd.common.prototype.sensor.pnt.PntHandler;
 import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
+import dk.dma.epd.common.util.SnapshotFile;
 import dk.dma.epd.ship.EPDShip;
 import dk.dma.epd.ship.gui.component_panels.ShowDockableDialog;
 import dk.dma.epd.ship.gui.component_panels.ShowDockableDialog.dock_type;
@@ -55,10 +54,12 @@ public class RouteManager extends RouteManagerCommon implements
     private static final long serialVersionUID = -9019124285849351709L;
     private static final String ROUTES_FILE = EPD.getInstance().getHomePath()
             .resolve(".routes").toString();
+    private static final String SNAPSHOT_TYPE = "routes";
     private static final Logger LOG = LoggerFactory
             .getLogger(RouteManager.class);
 
     private volatile PntHandler pntHandler;
+    private volatile CompletableFuture<Void> routesLoader;
 
     @GuardedBy("routeSuggestions")
     private List<RouteSuggestionData> routeSuggestions = new LinkedList<>();
@@ -214,20 +215,46 @@ public class RouteManager extends RouteManagerCommon implements
      */
     public static RouteManager loadRouteManager() {
         RouteManager manager = new RouteManager();
+        manager.loadFromFile();
+        return manager;
+    }
 
-        try (FileInputStream fileIn = new FileInputStream(ROUTES_FILE);
-                ObjectInputStream objectIn = new ObjectInputStream(fileIn);) {
-            RouteStore routeStore = (RouteStore) objectIn.readObject();
-            manager.setRoutes(routeStore.getRoutes());
-            manager.activeRoute = routeStore.getActiveRoute();
-            manager.activeRouteIndex = routeStore.getActiveRouteIndex();
-
-            // manager.setTempActiveRouteIndex(routeStore.getActiveRouteIndex());
-            // activeRouteIndex = routeStore.getActiveRouteIndex();
+    /**
+     * Loads the routes of the default routes file in the background.
+     * <p>
+     * The route manager is usable while the routes are loading. Routes added in the meantime are kept, and saving the
+     * routes waits for the load to complete.
+     * 
+     * @return the future completion of the load
+     */
+    public CompletableFuture<Void> loadFromFileAsync() {
+        routesLoader = CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                loadFromFile();
+            }
+        });
+        return routesLoader;
+    }
 
-            if (routeStore.getActiveRouteIndex() > -1) {
-                manager.deactivateRoute();
+    /**
+     * Adds the routes of the default routes file to the route manager.
+     * <p>
+     * A route that was active when the routes were saved is not re-activated.
+     */
+    private void loadFromFile() {
+        try {
+            RouteStore routeStore = (RouteStore) SnapshotFile.readObjects(Paths.get(ROUTES_FILE), SNAPSHOT_TYPE, 1)[0];
+            if (routeStore.getRoutes() == null || routeStore.getRoutes().isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                // Append the loaded routes to keep the index of an already active route valid
+                List<Route> loadedRoutes = new LinkedList<>(getRoutes());
+                loadedRoutes.addAll(routeStore.getRoutes());
+                setRoutes(loadedRoutes);
             }
+            notifyListeners(RoutesUpdateEvent.ROUTE_ADDED);
 
         } catch (FileNotFoundException e) {
             // Not an error
@@ -236,19 +263,25 @@ public class RouteManager extends RouteManagerCommon implements
             // Delete possible corrupted or old file
             new File(ROUTES_FILE).delete();
         }
-
-        return manager;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void saveToFile() {
-        RouteStore routeStore = new RouteStore(this);
-        try (FileOutputStream fileOut = new FileOutputStream(ROUTES_FILE);
-                ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);) {
-            objectOut.writeObject(routeStore);
+    public void saveToFile() {
+        // Do not overwrite the stored routes before they have been loaded
+        CompletableFuture<Void> loader = routesLoader;
+        if (loader != null) {
+            loader.join();
+        }
+
+        RouteStore routeStore;
+        synchronized (this) {
+            routeStore = new RouteStore(this);
+        }
+        try {
+            SnapshotFile.writeObjects(Paths.get(ROUTES_FILE), SNAPSHOT_TYPE, routeStore);
         } catch (IOException e) {
             LOG.error("Failed to save routes file: " + e.getMessage());
         }
@@ -19,7 +19,6 @@ import dk.dma.epd.common.prototype.enavcloud.FALReportingService.FALReportMessag
 import dk.dma.epd.common.prototype.enavcloud.FALReportingService.FALReportReply;
 import dk.dma.epd.common.prototype.enavcloud.TODO;
 import dk.dma.epd.common.prototype.service.FALHandlerCommon;
-import dk.dma.epd.common.util.Util;
 import dk.dma.epd.ship.fal.FALManager;
 import net.maritimecloud.net.mms.MmsClient;
 import org.slf4j.Logger;
@@ -28,6 +27,8 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Ship specific intended route service implementation.
@@ -42,10 +43,12 @@ import java.util.List;
 @SuppressWarnings("unused")
 public class FALHandler extends FALHandlerCommon implements Runnable {
 
+    private static final long POLL_INTERVAL = 5000L;
+
     /**
      * Protocols needed for VOCT Communication - may be further split or combined in future
      */
-    private boolean running;
+    private ScheduledFuture<?> poller;
     private FALManager falManager;
 
     private List<TODO.ServiceEndpoint<FALReportMessage, FALReportReply>> falRecievers = new ArrayList<>();
@@ -93,9 +96,8 @@ public class FALHandler extends FALHandlerCommon implements Runnable {
         // e.printStackTrace();
         // }
         //
-        // Start thread to find recievers of FAL reports
-        running = true;
-        new Thread(this).start();
+        // Periodically find recievers of FAL reports
+        startPolling();
     }
 
     /**
@@ -103,18 +105,33 @@ public class FALHandler extends FALHandlerCommon implements Runnable {
      */
     @Override
     public void cloudDisconnected() {
-        running = false;
+        stopPolling();
     }
 
     /**
-     * Main thread run method. Broadcasts the intended route
+     * Schedules the periodic fetching of the receivers of FAL reports, unless already scheduled
      */
-    public void run() {
-        while (running) {
-            Util.sleep(5000L);
-            fetchSTCCList();
+    private synchronized void startPolling() {
+        if (poller == null || poller.isDone()) {
+            poller = getScheduler().scheduleWithFixedDelay(this, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
         }
+    }
 
+    /**
+     * Cancels the periodic fetching of the receivers of FAL reports
+     */
+    private synchronized void stopPolling() {
+        if (poller != null) {
+            poller.cancel(false);
+            poller = null;
+        }
+    }
+
+    /**
+     * Fetches the receivers of FAL reports. Run periodically while connected to the maritime cloud
+     */
+    public void run() {
+        fetchSTCCList();
     }
 
     /**
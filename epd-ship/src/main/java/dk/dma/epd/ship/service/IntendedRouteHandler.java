@@ -14,15 +14,24 @@
  */
 package dk.dma.epd.ship.service;
 
+import java.util.Date;
 import java.util.Iterator;
 import java.util.Map.Entry;
-
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.maritimecloud.net.BroadcastMessage;
 import net.maritimecloud.net.mms.MmsClient;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import dk.dma.enav.model.geometry.Position;
 import dk.dma.epd.common.prototype.model.intendedroute.FilteredIntendedRoute;
 import dk.dma.epd.common.prototype.model.intendedroute.FilteredIntendedRoutes;
 import dk.dma.epd.common.prototype.model.intendedroute.IntendedRouteFilterMessage;
@@ -31,41 +40,55 @@ import dk.dma.epd.common.prototype.model.route.IRoutesUpdateListener;
 import dk.dma.epd.common.prototype.model.route.IntendedRoute;
 import dk.dma.epd.common.prototype.model.route.PartialRouteFilter;
 import dk.dma.epd.common.prototype.model.route.Route;
+import dk.dma.epd.common.prototype.model.route.RouteTimeline;
 import dk.dma.epd.common.prototype.model.route.RoutesUpdateEvent;
+import dk.dma.epd.common.prototype.sensor.pnt.IPntDataListener;
+import dk.dma.epd.common.prototype.sensor.pnt.PntData;
+import dk.dma.epd.common.prototype.sensor.pnt.PntHandler;
+import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
 import dk.dma.epd.common.prototype.service.IntendedRouteHandlerCommon;
 import dk.dma.epd.common.prototype.settings.EnavSettings;
 import dk.dma.epd.common.text.Formatter;
 import dk.dma.epd.common.util.Converter;
-import dk.dma.epd.common.util.Util;
 import dk.dma.epd.ship.EPDShip;
 import dk.dma.epd.ship.layers.intendedroute.IntendedRouteLayer;
 import dk.dma.epd.ship.route.RouteManager;
 import dk.dma.epd.ship.settings.handlers.IIntendedRouteHandlerSettingsObserver;
 import dma.route.IntendedRouteBroadcast;
+import dma.route.IntendedRouteDeltaBroadcast;
 
 /**
  * Ship specific intended route service implementation.
  * <p>
- * Listens for changes to the active route and broadcasts it. Also broadcasts the route periodically.
+ * Listens for changes to the active route and broadcasts it. The full route is broadcast as a keyframe when the route changes
+ * and periodically. In between, only compact deltas with the active way point and the revised ETA's are broadcast, either
+ * periodically or when own-ship position updates change the ETA of the active way point by more than the adaptive time.
  * <p>
- * Improvements:
- * <ul>
- * <li>Use a worker pool rather than spawning a new thread for each broadcast.</li>
- * </ul>
+ * If a broadcast radius is configured, receivers further away from own-ship than the radius ignore the broadcasts.
  */
-public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements IRoutesUpdateListener, Runnable,
-        IIntendedRouteHandlerSettingsObserver {
+public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements IRoutesUpdateListener, IPntDataListener,
+        Runnable, IIntendedRouteHandlerSettingsObserver {
 
     private static final Logger LOG = LoggerFactory.getLogger(IntendedRouteHandler.class);
     private static long BROADCAST_TIME = 60; // Broadcast intended route every
                                              // minute for now
     private static long ADAPTIVE_TIME = 60 * 10; // Set to 10 minutes?
-    private static final int BROADCAST_RADIUS = Integer.MAX_VALUE;
 
-    private DateTime lastTransmitActiveWp;
-    private DateTime lastSend = new DateTime(1);
+    /**
+     * Time between keyframes in seconds. Must be well below the intended route TTL of the receivers
+     */
+    private static final long KEYFRAME_TIME = 60 * 5;
+
+    private volatile DateTime lastTransmitActiveWp;
+    private long lastKeyframeTime;
+    private IntendedRouteBroadcast lastKeyframe;
+    private int keyframe = new Random().nextInt();
+    private volatile Position ownShipPosition;
     private RouteManager routeManager;
-    private boolean running;
+    private PntHandler pntHandler;
+    private volatile boolean running;
+    private ScheduledFuture<?> broadcaster;
+    private final AtomicBoolean updatePending = new AtomicBoolean();
 
     private IntendedRouteLayer intendedRouteLayer;
 
@@ -86,7 +109,10 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
 
         // Start broadcasting our own active route
         running = true;
-        new Thread(this).start();
+        startBroadcaster();
+        if (routeManager != null && routeManager.getActiveRoute() != null) {
+            broadcastIntendedRoute();
+        }
     }
 
     /**
@@ -95,6 +121,30 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
     @Override
     public void cloudDisconnected() {
         running = false;
+        stopBroadcaster();
+        synchronized (this) {
+            // Start over with a keyframe when re-connected
+            lastKeyframe = null;
+        }
+    }
+
+    /**
+     * Schedules the periodic broadcast of the intended route, unless already scheduled
+     */
+    private synchronized void startBroadcaster() {
+        if (broadcaster == null || broadcaster.isDone()) {
+            broadcaster = getScheduler().scheduleWithFixedDelay(this, BROADCAST_TIME, BROADCAST_TIME, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Cancels the periodic broadcast of the intended route
+     */
+    private synchronized void stopBroadcaster() {
+        if (broadcaster != null) {
+            broadcaster.cancel(false);
+            broadcaster = null;
+        }
     }
 
     /**
@@ -107,87 +157,84 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
         // so that other clients will remove the intended route of this ship
         broadcastIntendedRoute(null, false);
 
+        stopBroadcaster();
         super.shutdown();
     }
 
     /**
-     * Main thread run method. Broadcasts the intended route
+     * Periodically broadcasts the intended route while connected to the maritime cloud. Broadcasts a keyframe if the last one
+     * is older than the keyframe time, and otherwise a delta.
      */
+    @Override
     public void run() {
+        // We have no active route, nothing to broadcast
+        if (!running || routeManager == null || routeManager.getActiveRoute() == null) {
+            return;
+        }
 
-        // Initialize first send
-        // lastSend = new DateTime();
-        // broadcastIntendedRoute();
-
-        while (running) {
-
-            if (routeManager != null) {
-
-                // We have no active route, keep sleeping
-                if (routeManager.getActiveRoute() == null) {
-                    Util.sleep(BROADCAST_TIME * 1000L);
-                } else {
-
-                    // Here we handle the periodical broadcasts
-                    DateTime calculatedTimeOfLastSend = new DateTime();
-                    calculatedTimeOfLastSend = calculatedTimeOfLastSend.minus(BROADCAST_TIME * 1000L);
-
-                    // Do we need to rebroadcast based on the broadcast time
-                    // setting
-                    if (calculatedTimeOfLastSend.isAfter(lastSend)) {
-                        LOG.debug("Periodically rebroadcasting");
-                        broadcastIntendedRoute();
-                        lastSend = new DateTime();
-                    } else if (lastTransmitActiveWp != null) {
-
-                        // We check for the adaptive route broadcast here
-                        // We need to compare lastTransmitActiveWp which is the
-                        // last stored
-                        // ETA of the waypoint we sent to the current one
-                        DateTime currentActiveWaypointETA = new DateTime(routeManager.getActiveRoute().getActiveWaypointEta());
-
-                        // LOG.debug("The ETA at last transmission was : " +
-                        // lastTransmitActiveWp);
-                        // LOG.debug("It is now                        : " +
-                        // currentActiveWaypointETA);
-
-                        // //It can either be before or after
-                        //
-                        if (currentActiveWaypointETA.isAfter(lastTransmitActiveWp)
-                                || currentActiveWaypointETA.isBefore(lastTransmitActiveWp)) {
-
-                            long etaTimeChange;
-
-                            // Is it before?
-                            if (currentActiveWaypointETA.isAfter(lastTransmitActiveWp)) {
-
-                                etaTimeChange = currentActiveWaypointETA.minus(lastTransmitActiveWp.getMillis()).getMillis();
+        if (System.currentTimeMillis() - lastKeyframeTime >= KEYFRAME_TIME * 1000L) {
+            LOG.debug("Periodically rebroadcasting");
+            broadcastIntendedRoute();
+        } else {
+            broadcastIntendedRouteUpdate();
+        }
+    }
 
-                                // Must be after
-                            } else {
-                                etaTimeChange = currentActiveWaypointETA.plus(lastTransmitActiveWp.getMillis()).getMillis();
-                            }
+    /**
+     * Called when receiving a position update. Records the own-ship position and broadcasts a delta if the ETA of the active way
+     * point has changed by more than the adaptive time since the last broadcast
+     * 
+     * @param pntData
+     *            the updated position
+     */
+    @Override
+    public void pntDataUpdate(PntData pntData) {
+        if (pntData == null || pntData.isBadPosition() || pntData.getPosition() == null) {
+            return;
+        }
+        ownShipPosition = pntData.getPosition();
 
-                            if (etaTimeChange > ADAPTIVE_TIME * 1000L) {
-                                LOG.debug("Broadcast based on adaptive time!");
-                                broadcastIntendedRoute();
-                                lastSend = new DateTime();
-                            }
+        ActiveRoute activeRoute = (routeManager != null) ? routeManager.getActiveRoute() : null;
+        DateTime lastTransmitActiveWp = this.lastTransmitActiveWp;
+        if (!running || activeRoute == null || lastTransmitActiveWp == null) {
+            return;
+        }
 
-                            // LOG.debug("ETA has changed with " + etaTimeChange
-                            // + " mili seconds" );
+        Date activeWaypointEta = activeRoute.getActiveWaypointEta();
+        if (activeWaypointEta != null
+                && Math.abs(activeWaypointEta.getTime() - lastTransmitActiveWp.getMillis()) > ADAPTIVE_TIME * 1000L) {
+            LOG.debug("Broadcast based on adaptive time!");
+            submitIntendedRouteUpdate();
+        }
+    }
 
+    /**
+     * Submits a broadcast of the changes to the intended route, unless one is already pending.
+     * <p>
+     * Position updates arrive far more often than a broadcast completes, so without this all the updates received before the
+     * first broadcast has updated the last transmitted ETA would each queue a broadcast.
+     */
+    private void submitIntendedRouteUpdate() {
+        if (!updatePending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            getScheduler().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (isConnected()) {
+                            broadcastIntendedRouteUpdate();
                         }
-
+                    } finally {
+                        updatePending.set(false);
                     }
-
-                    Util.sleep(1000L);
-
                 }
-            }
-
+            });
+        } catch (RejectedExecutionException e) {
+            // The handler has been shut down
+            updatePending.set(false);
         }
-
     }
 
     /**
@@ -198,7 +245,7 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
     }
 
     /**
-     * Broadcast intended route
+     * Broadcast the intended route as a keyframe
      * 
      * @param activeRoute
      *            the active route to broadcast
@@ -217,20 +264,142 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
         if (activeRoute != null) {
             PartialRouteFilter filter = EPDShip.getInstance().getSettings().getCloudSettings().getIntendedRouteFilter();
             message = activeRoute.getPartialRouteData(filter);
-
             lastTransmitActiveWp = new DateTime(activeRoute.getActiveWaypointEta());
 
         } else {
             message.setRoute(new dma.route.Route());
         }
 
-        // send message
-        LOG.debug("Broadcasting intended route");
-        final IntendedRouteBroadcast broadcast = message;
+        synchronized (this) {
+            message.setKeyframe(++keyframe);
+            lastKeyframe = message;
+            lastKeyframeTime = System.currentTimeMillis();
+        }
+
+        LOG.debug("Broadcasting intended route keyframe");
+        broadcast(scope(message), async);
+    }
+
+    /**
+     * Broadcasts the changes to the intended route since the last keyframe.
+     * <p>
+     * If the way points of the partial route have changed since the last keyframe, a new keyframe is broadcast instead.
+     */
+    public void broadcastIntendedRouteUpdate() {
+        ActiveRoute activeRoute = (routeManager != null) ? routeManager.getActiveRoute() : null;
+        if (!running || activeRoute == null || getMmsClient() == null) {
+            return;
+        }
+
+        PartialRouteFilter filter = EPDShip.getInstance().getSettings().getCloudSettings().getIntendedRouteFilter();
+        IntendedRouteBroadcast message = activeRoute.getPartialRouteData(filter);
+
+        IntendedRouteDeltaBroadcast delta;
+        synchronized (this) {
+            if (lastKeyframe == null || !sameWaypoints(lastKeyframe.getRoute(), message.getRoute())) {
+                delta = null;
+            } else {
+                delta = new IntendedRouteDeltaBroadcast();
+                delta.setKeyframe(lastKeyframe.getKeyframe());
+                delta.setActiveWaypointIndex(message.getActiveWaypointIndex());
+                for (dma.route.Waypoint waypoint : message.getRoute().getWaypoints()) {
+                    delta.addEtas(waypoint.getEta());
+                }
+            }
+        }
+
+        if (delta == null) {
+            broadcastIntendedRoute(activeRoute, false);
+            return;
+        }
+
+        lastTransmitActiveWp = new DateTime(activeRoute.getActiveWaypointEta());
+        LOG.debug("Broadcasting intended route delta");
+        broadcast(scope(delta), false);
+    }
+
+    /**
+     * Returns whether the two routes have the same way points and legs, disregarding the ETA's
+     * 
+     * @param route1
+     *            the first route
+     * @param route2
+     *            the second route
+     * @return whether the two routes have the same way points and legs
+     */
+    private static boolean sameWaypoints(dma.route.Route route1, dma.route.Route route2) {
+        if (route1 == null || route2 == null || route1.getWaypoints().size() != route2.getWaypoints().size()) {
+            return false;
+        }
+        for (int i = 0; i < route1.getWaypoints().size(); i++) {
+            dma.route.Waypoint wp1 = route1.getWaypoints().get(i);
+            dma.route.Waypoint wp2 = route2.getWaypoints().get(i);
+            if (!Objects.equals(wp1.getWaypointPosition(), wp2.getWaypointPosition())) {
+                return false;
+            }
+            dma.route.Leg leg1 = wp1.getOutLeg();
+            dma.route.Leg leg2 = wp2.getOutLeg();
+            if (leg1 == null || leg2 == null) {
+                if (leg1 != leg2) {
+                    return false;
+                }
+            } else if (!Objects.equals(leg1.getSpeed(), leg2.getSpeed())
+                    || !Objects.equals(leg1.getHeadingType(), leg2.getHeadingType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the sender position and broadcast radius of the intended route keyframe
+     */
+    private IntendedRouteBroadcast scope(IntendedRouteBroadcast message) {
+        Position pos = ownShipPosition;
+        int radius = getBroadcastRadius();
+        if (pos != null && radius > 0) {
+            message.setSenderPosition(net.maritimecloud.util.geometry.Position.create(pos.getLatitude(), pos.getLongitude()));
+            message.setBroadcastRadius(radius);
+        }
+        return message;
+    }
+
+    /**
+     * Sets the sender position and broadcast radius of the intended route delta
+     */
+    private IntendedRouteDeltaBroadcast scope(IntendedRouteDeltaBroadcast message) {
+        Position pos = ownShipPosition;
+        int radius = getBroadcastRadius();
+        if (pos != null && radius > 0) {
+            message.setSenderPosition(net.maritimecloud.util.geometry.Position.create(pos.getLatitude(), pos.getLongitude()));
+            message.setBroadcastRadius(radius);
+        }
+        return message;
+    }
+
+    /**
+     * Returns the configured broadcast radius in meters, or 0 if unlimited
+     * 
+     * @return the broadcast radius in meters
+     */
+    private int getBroadcastRadius() {
+        double radius = EPDShip.getInstance().getSettings().getCloudSettings().getIntendedRouteBroadcastRadius();
+        return (radius > 0) ? (int) Math.min(Integer.MAX_VALUE, Converter.nmToMeters(radius)) : 0;
+    }
+
+    /**
+     * Broadcasts the given message over the maritime cloud
+     * 
+     * @param message
+     *            the message to broadcast
+     * @param async
+     *            whether to broadcast the message asynchronously or not
+     */
+    private void broadcast(final BroadcastMessage message, boolean async) {
         Runnable broadcastMessage = new Runnable() {
             @Override
             public void run() {
-                getMmsClient().broadcast(broadcast);
+                getMmsClient().broadcast(message);
             }
         };
 
@@ -241,20 +410,31 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Position getBroadcastReceiverPosition() {
+        return ownShipPosition;
+    }
+
     /**
      * Handle event of active route change
      */
     @Override
     public void routesChanged(RoutesUpdateEvent e) {
         if (e != null) {
-            if (e.is(RoutesUpdateEvent.ACTIVE_ROUTE_UPDATE, RoutesUpdateEvent.ACTIVE_ROUTE_FINISHED,
-                    RoutesUpdateEvent.ROUTE_ACTIVATED, RoutesUpdateEvent.ROUTE_DEACTIVATED)) {
+            if (e.is(RoutesUpdateEvent.ACTIVE_ROUTE_FINISHED, RoutesUpdateEvent.ROUTE_ACTIVATED,
+                    RoutesUpdateEvent.ROUTE_DEACTIVATED)) {
 
-                lastSend = new DateTime();
                 broadcastIntendedRoute();
-
                 updateFilter();
 
+            } else if (e.is(RoutesUpdateEvent.ACTIVE_ROUTE_UPDATE)) {
+
+                // The active way point has changed. Only a delta is needed unless the partial route has changed
+                submitIntendedRouteUpdate();
+                updateFilter();
             }
         }
     }
@@ -269,6 +449,9 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
         if (obj instanceof RouteManager) {
             routeManager = (RouteManager) obj;
             routeManager.addListener(this);
+        } else if (obj instanceof PntHandler) {
+            pntHandler = (PntHandler) obj;
+            pntHandler.addListener(this);
         } else if (obj instanceof IntendedRouteLayer) {
             intendedRouteLayer = (IntendedRouteLayer) obj;
         }
@@ -282,6 +465,9 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
         if (obj instanceof RouteManager) {
             routeManager.removeListener(this);
             routeManager = null;
+        } else if (obj instanceof PntHandler) {
+            pntHandler.removeListener(this);
+            pntHandler = null;
         }
         super.findAndUndo(obj);
     }
@@ -350,17 +536,22 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
 
             // The route we're comparing against
             ActiveRoute activeRoute = routeManager.getActiveRoute();
+            RouteTimeline activeTimeline = getTimeline(activeRoute);
+            long now = PntTime.getDate().getTime();
 
             Iterator<Entry<Long, IntendedRoute>> it = intendedRoutes.entrySet().iterator();
-            while (it.hasNext()) {
+            while (activeTimeline != null && it.hasNext()) {
                 Entry<Long, IntendedRoute> intendedRoute = it.next();
 
-                IntendedRoute recievedRoute = intendedRoute.getValue();
+                RouteTimeline recievedTimeline = getTimeline(intendedRoute.getValue());
+                if (recievedTimeline == null || !mayApproach(activeTimeline, recievedTimeline, now)) {
+                    continue;
+                }
 
-                FilteredIntendedRoute filter = findTCPA(activeRoute, recievedRoute);
+                FilteredIntendedRoute filter = findTCPA(activeTimeline, recievedTimeline);
                 // Try other way around
                 if (!filter.include()) {
-                    filter = findTCPA(recievedRoute, activeRoute);
+                    filter = findTCPA(recievedTimeline, activeTimeline);
                 }
 
                 // No warnings, ignore it
@@ -396,11 +587,18 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
 
         if (routeManager.getActiveRoute() != null) {
 
-            FilteredIntendedRoute filter = findTCPA(routeManager.getActiveRoute(), route);
+            RouteTimeline activeTimeline = getTimeline(routeManager.getActiveRoute());
+            RouteTimeline recievedTimeline = getTimeline(route);
+            FilteredIntendedRoute filter = new FilteredIntendedRoute(getOwnShipMmsi(), route.getMmsi());
+            if (activeTimeline != null && recievedTimeline != null
+                    && mayApproach(activeTimeline, recievedTimeline, PntTime.getDate().getTime())) {
 
-            // Try other way around or dont
-            if (!filter.include()) {
-                filter = findTCPA(route, routeManager.getActiveRoute());
+                filter = findTCPA(activeTimeline, recievedTimeline);
+
+                // Try other way around or dont
+                if (!filter.include()) {
+                    filter = findTCPA(recievedTimeline, activeTimeline);
+                }
             }
 
             // No warnings, ignore it
@@ -432,6 +630,10 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon implements
     @Override
     public void broadcastTimeChanged(long value) {
         BROADCAST_TIME = value;
+        if (running) {
+            stopBroadcaster();
+            startBroadcaster();
+        }
     }
 
     @Override
@@ -15,12 +15,9 @@
 package dk.dma.epd.ship.service.voct;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Map.Entry;
 
@@ -43,7 +40,7 @@ import dk.dma.epd.common.prototype.model.voct.sardata.SearchPatternRoute;
 import dk.dma.epd.common.prototype.voct.VOCTManagerCommon;
 import dk.dma.epd.common.prototype.voct.VOCTUpdateEvent;
 import dk.dma.epd.common.prototype.voct.VOCTUpdateListener;
-import dk.dma.epd.common.util.Util;
+import dk.dma.epd.common.util.SnapshotFile;
 import dk.dma.epd.ship.EPDShip;
 import dk.dma.epd.ship.gui.voct.SARInput;
 import dk.dma.epd.ship.gui.voct.SARInvitationRequest;
@@ -70,7 +67,6 @@ public class VOCTManager extends VOCTManagerCommon {
     VoctLayer voctLayer;
 
     public VOCTManager() {
-        EPDShip.startThread(this, "VOCTManager");
         LOG.info("Started VOCT Manager");
     }
 
@@ -144,24 +140,13 @@ public class VOCTManager extends VOCTManagerCommon {
         }
     }
 
-    @Override
-    public void run() {
-
-        // Maintanaince routines
-        while (true) {
-            Util.sleep(10000);
-
-        }
-
-    }
-
     public static VOCTManager loadVOCTManager() {
 
         // Where we load or serialize old VOCTS
         VOCTManager voctManager = new VOCTManager();
-        try (FileInputStream fileIn = new FileInputStream(VOCT_FILE); ObjectInputStream objectIn = new ObjectInputStream(fileIn);) {
+        try {
 
-            SARData sarDataLoaded = (SARData) objectIn.readObject();
+            SARData sarDataLoaded = (SARData) SnapshotFile.readObjects(Paths.get(VOCT_FILE), "voct", 1)[0];
             voctManager.setLoadSarFromSerialize(true);
             voctManager.initializeFromSerializedFile(sarDataLoaded);
 
@@ -182,9 +167,8 @@ public class VOCTManager extends VOCTManagerCommon {
 
         if (hasSar || loadSarFromSerialize) {
 
-            try (FileOutputStream fileOut = new FileOutputStream(VOCT_FILE);
-                    ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);) {
-                objectOut.writeObject(sarData);
+            try {
+                SnapshotFile.writeObjects(Paths.get(VOCT_FILE), "voct", sarData);
             } catch (IOException e) {
                 LOG.error("Failed to save VOCT data: " + e.getMessage());
             }
@@ -375,13 +359,18 @@ public class VOCTManager extends VOCTManagerCommon {
 
     @Override
     public void showSARFuture(int i) {
+        sarFutureHorizon = i;
 
         if (this.sarOperation.getOperationType() != SAR_TYPE.SARIS_DATUM_POINT && this.sarOperation.getOperationType() != SAR_TYPE.DATUM_LINE) {
 
             if (i == 0) {
                 voctLayer.showFutureData(sarData);
             } else {
-                voctLayer.showFutureData(sarFutureData.get((i / 30) - 1));
+                // The future horizons are calculated in the background
+                SARData futureData = getSarFutureData(i);
+                if (futureData != null) {
+                    voctLayer.showFutureData(futureData);
+                }
             }
         }
     }
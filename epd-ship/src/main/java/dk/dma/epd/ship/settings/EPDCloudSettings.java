@@ -16,6 +16,8 @@ package dk.dma.epd.ship.settings;
 
 import java.util.Properties;
 
+import com.bbn.openmap.util.PropUtils;
+
 import dk.dma.epd.common.prototype.model.route.PartialRouteFilter;
 import dk.dma.epd.common.prototype.settings.CloudSettings;
 
@@ -26,6 +28,7 @@ public class EPDCloudSettings extends CloudSettings {
 
     private static final long serialVersionUID = 1L;
     private PartialRouteFilter intendedRouteFilter = PartialRouteFilter.DEFAULT;
+    private double intendedRouteBroadcastRadius; // Nautical miles, 0 means unlimited
 
     /**
      * Constructor
@@ -42,6 +45,7 @@ public class EPDCloudSettings extends CloudSettings {
         super.readProperties(props);
         
         intendedRouteFilter = PartialRouteFilter.fromString(props.getProperty(getPrefix() + "intendedRouteFilter", intendedRouteFilter.toString()));
+        intendedRouteBroadcastRadius = PropUtils.doubleFromProperties(props, getPrefix() + "intendedRouteBroadcastRadius", intendedRouteBroadcastRadius);
     }
 
     /**
@@ -52,6 +56,7 @@ public class EPDCloudSettings extends CloudSettings {
         super.setProperties(props);
         
         props.put(getPrefix() + "intendedRouteFilter", intendedRouteFilter.toString());        
+        props.put(getPrefix() + "intendedRouteBroadcastRadius", Double.toString(intendedRouteBroadcastRadius));
     }
 
 
@@ -62,4 +67,23 @@ public class EPDCloudSettings extends CloudSettings {
     public void setIntendedRouteFilter(PartialRouteFilter intendedRouteFilter) {
         this.intendedRouteFilter = intendedRouteFilter;
     }    
+
+    /**
+     * Returns the radius around own ship in nautical miles within which the intended route is broadcast. 0 means unlimited.
+     * 
+     * @return the intended route broadcast radius in nautical miles
+     */
+    public double getIntendedRouteBroadcastRadius() {
+        return intendedRouteBroadcastRadius;
+    }
+
+    /**
+     * Sets the radius around own ship in nautical miles within which the intended route is broadcast. 0 means unlimited.
+     * 
+     * @param intendedRouteBroadcastRadius
+     *            the intended route broadcast radius in nautical miles
+     */
+    public void setIntendedRouteBroadcastRadius(double intendedRouteBroadcastRadius) {
+        this.intendedRouteBroadcastRadius = intendedRouteBroadcastRadius;
+    }
 }
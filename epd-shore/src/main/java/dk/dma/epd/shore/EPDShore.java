@@ -19,7 +19,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Properties;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import javax.swing.JFrame;
@@ -44,7 +46,9 @@ import dk.dma.epd.common.ExceptionHandler;
 import dk.dma.epd.common.graphics.Resources;
 import dk.dma.epd.common.prototype.Bootstrap;
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.ExecutionService;
 import dk.dma.epd.common.prototype.PluginLoader;
+import dk.dma.epd.common.prototype.StartupOrchestrator;
 import dk.dma.epd.common.prototype.gui.SystemTrayCommon;
 import dk.dma.epd.common.prototype.model.identity.IdentityHandler;
 import dk.dma.epd.common.prototype.model.voyage.VoyageEventDispatcher;
@@ -93,6 +97,11 @@ import dk.dma.epd.shore.voyage.VoyageManager;
 public final class EPDShore extends EPD {
 
     private static Logger LOG;
+
+    /** The number of threads used for loading stored state at start-up */
+    private static final int STARTUP_THREADS = 4;
+    private static final long SHUTDOWN_TIMEOUT = 5; // secs
+
     private MainFrame mainFrame;
     private BeanContextServicesSupport beanHandler;
     private NmeaSensor aisSensor;
@@ -159,14 +168,22 @@ public final class EPDShore extends EPD {
         LOG.info("This is free software, and you are welcome to redistribute it under certain conditions.");
         LOG.info("For details see LICENSE file.");
 
+        // Orchestrate the start-up. The stored state of independent components is loaded in parallel
+        final StartupOrchestrator startup = new StartupOrchestrator("EPD Shore", STARTUP_THREADS);
+
         // Create the bean context (map handler)
         // mapHandler = new MapHandler();
         beanHandler = new BeanContextServicesSupport();
 
         // Load settings or get defaults and add to bean context
-        settings = new EPDSettings();
-        LOG.info("Using settings file: " + getSettings().getSettingsFile());
-        settings.loadFromFile();
+        startup.run("Settings", new Runnable() {
+            @Override
+            public void run() {
+                settings = new EPDSettings();
+                LOG.info("Using settings file: " + getSettings().getSettingsFile());
+                settings.loadFromFile();
+            }
+        });
         beanHandler.add(settings);
 
         // Determine if instance already running and if that is allowed
@@ -176,35 +193,158 @@ public final class EPDShore extends EPD {
             handleEpdAlreadyRunning();
         }
 
+        // Load the FAL, voyage, SRU and route suggestion stores in the background
+        startup.submit("FAL reports", new Callable<FALManager>() {
+            @Override
+            public FALManager call() {
+                return FALManager.loadFALManager();
+            }
+        }, "Settings");
+        startup.submit("Voyages", new Callable<VoyageManager>() {
+            @Override
+            public VoyageManager call() {
+                return VoyageManager.loadVoyageManager();
+            }
+        }, "Settings");
+        startup.submit("SRUs", new Callable<SRUManager>() {
+            @Override
+            public SRUManager call() {
+                return SRUManager.loadSRUManager();
+            }
+        }, "Settings");
+        startup.submit("Route suggestions", new Callable<RouteSuggestionHandler>() {
+            @Override
+            public RouteSuggestionHandler call() {
+                return RouteSuggestionHandler.loadRouteSuggestionHandler();
+            }
+        }, "Settings");
+
         // Enable GPS timer by adding it to bean context
         PntTime.init(settings.getSensorSettings().isUseTimeFromPnt());
         beanHandler.add(PntTime.getInstance());
 
+        // Start AIS target monitoring. The AIS history is loaded in the background
         // aisHandler = new AisHandlerCommon();
         aisHandler = new AisHandler(settings.getAisSettings());
-        aisHandler.loadView();
-        EPD.startThread(aisHandler, "AisHandler");
+        startup.track("AIS view", aisHandler.loadViewAsync());
+        aisHandler.start();
         beanHandler.add(aisHandler);
 
         // Add StaticImages handler
         staticImages = new StaticImages();
         beanHandler.add(staticImages);
 
-        // Load routeManager
-        routeManager = RouteManager.loadRouteManager();
+        // Create the route manager. The routes are loaded in the background
+        routeManager = new RouteManager();
+        startup.track("Routes", routeManager.loadFromFileAsync());
         beanHandler.add(routeManager);
 
-        falManager = FALManager.loadFALManager();
+        // Create the service handlers
+        startup.run("Service handlers", new Runnable() {
+            @Override
+            public void run() {
+                createServiceHandlers();
+            }
+        });
+
+        // Add the components loaded in the background
+        falManager = startup.get("FAL reports");
         beanHandler.add(falManager);
 
         // To be changed to load similar to routeManager
         // voyageManager = new VoyageManager();
-        voyageManager = VoyageManager.loadVoyageManager();
+        voyageManager = startup.get("Voyages");
         beanHandler.add(voyageManager);
 
-        sruManager = SRUManager.loadSRUManager();
+        sruManager = startup.get("SRUs");
         beanHandler.add(sruManager);
 
+        routeSuggestionHandler = startup.get("Route suggestions");
+        beanHandler.add(routeSuggestionHandler);
+
+        // Start sensors
+        startup.run("Sensors", new Runnable() {
+            @Override
+            public void run() {
+                startSensors();
+            }
+        });
+
+        // Create plugin components
+        startup.run("Plugins", new Runnable() {
+            @Override
+            public void run() {
+                pluginLoader = new PluginLoader(getProperties(), getHomePath(), getPropertyFileName());
+
+                try {
+                    pluginLoader.createPluginComponents(new Consumer<Object>() {
+                        public void accept(Object comp) {
+                            beanHandler.add(comp);
+                        }
+                    });
+                } catch (Exception e) {
+                    LOG.error("Failed to load plugin container " + e.getMessage());
+                }
+            }
+        });
+
+        // Create and show GUI and wait for it to be created
+        final CompletableFuture<Void> guiCreated = new CompletableFuture<>();
+        startup.track("GUI", guiCreated);
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    createAndShowGUI();
+                    guiCreated.complete(null);
+                } catch (RuntimeException e) {
+                    guiCreated.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        });
+        startup.get("GUI");
+
+        // Create vocthandler
+        voctHandler = new VoctHandler();
+        beanHandler.add(voctHandler);
+
+        // Create voct manager and restore the SAR operation now the GUI is shown
+        voctManager = new VOCTManager();
+        beanHandler.add(voctManager);
+        startup.run("SAR operation", new Runnable() {
+            @Override
+            public void run() {
+                voctManager.loadVOCTManager();
+            }
+        });
+
+        // Create FAL Handler
+        falHandler = new FALHandler();
+        beanHandler.add(falHandler);
+
+        // Create embedded transponder frame
+        startup.run("Transponder", new Runnable() {
+            @Override
+            public void run() {
+                transponderFrame = new TransponderFrame(getHomePath().resolve("transponder.xml").toString(), true, mainFrame);
+                mainFrame.getTopMenu().setTransponderFrame(transponderFrame);
+                beanHandler.add(transponderFrame);
+
+                if (settings.getSensorSettings().isStartTransponder()) {
+                    transponderFrame.startTransponder();
+                }
+            }
+        });
+
+        // Log the timing breakdown once the AIS history and routes have been loaded
+        startup.finish();
+    }
+
+    /**
+     * Creates the shore, Maritime Cloud and service handlers and adds them to the bean context
+     */
+    private void createServiceHandlers() {
         // Create shore services
         shoreServicesCommon = new ShoreServices(getSettings().getEnavSettings());
         beanHandler.add(shoreServicesCommon);
@@ -226,11 +366,6 @@ public final class EPDShore extends EPD {
         intendedRouteHandler = new IntendedRouteHandler();
         beanHandler.add(intendedRouteHandler);
 
-        // Create the route suggestion handler
-        // routeSuggestionHandler = new RouteSuggestionHandler();
-        routeSuggestionHandler = RouteSuggestionHandler.loadRouteSuggestionHandler();
-        beanHandler.add(routeSuggestionHandler);
-
         // Create a new MSI-NM handler
         msiNmHandler = new MsiNmServiceHandlerCommon();
         beanHandler.add(msiNmHandler);
@@ -242,62 +377,6 @@ public final class EPDShore extends EPD {
         // Create identity handler
         identityHandler = new IdentityHandler();
         beanHandler.add(identityHandler);
-
-        // Start sensors
-        startSensors();
-
-        pluginLoader = new PluginLoader(getProperties(), getHomePath(), getPropertyFileName());
-
-        try {
-            pluginLoader.createPluginComponents(new Consumer<Object>() {
-                public void accept(Object comp) {
-                    beanHandler.add(comp);
-                }
-            });
-        } catch (Exception e) {
-            LOG.error("Failed to load plugin container " + e.getMessage());
-        }
-
-        final CountDownLatch guiCreated = new CountDownLatch(1);
-
-        // Create and show GUI
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                createAndShowGUI();
-                guiCreated.countDown();
-            }
-        });
-
-        // Wait for gui to be created
-        try {
-            guiCreated.await();
-
-        } catch (InterruptedException e) {
-            LOG.error("Interrupted while waiting for GUI to be created", e);
-        }
-
-        // Create vocthandler
-        voctHandler = new VoctHandler();
-        beanHandler.add(voctHandler);
-
-        // Create voct manager
-        voctManager = new VOCTManager();
-        beanHandler.add(voctManager);
-        voctManager.loadVOCTManager();
-
-        // Create FAL Handler
-        falHandler = new FALHandler();
-        beanHandler.add(falHandler);
-
-        // Create embedded transponder frame
-        transponderFrame = new TransponderFrame(getHomePath().resolve("transponder.xml").toString(), true, mainFrame);
-        mainFrame.getTopMenu().setTransponderFrame(transponderFrame);
-        beanHandler.add(transponderFrame);
-
-        if (settings.getSensorSettings().isStartTransponder()) {
-            transponderFrame.startTransponder();
-        }
     }
 
     /**
@@ -421,6 +500,9 @@ public final class EPDShore extends EPD {
         // Close all plugins
         pluginLoader.closePlugins();
 
+        // Let running background tasks complete
+        ExecutionService.getInstance().shutdown(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+
         LOG.info("Closing EPDShore");
         this.restart = restart;
         System.exit(restart ? 2 : 0);
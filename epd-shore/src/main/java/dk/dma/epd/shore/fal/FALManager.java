@@ -15,12 +15,9 @@
 package dk.dma.epd.shore.fal;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import dk.dma.enav.model.fal.FALReport;
 import dk.dma.epd.common.prototype.EPD;
 import dk.dma.epd.common.prototype.fal.FALManagerCommon;
+import dk.dma.epd.common.util.SnapshotFile;
 
 public class FALManager extends FALManagerCommon {
 
@@ -53,9 +51,9 @@ public class FALManager extends FALManagerCommon {
         FALManager manager = new FALManager();
 
         // Load all stored fal reports
-        try (FileInputStream fileIn = new FileInputStream(FAL_REPORTS); ObjectInputStream objectIn = new ObjectInputStream(fileIn);) {
+        try {
             @SuppressWarnings("unchecked")
-            List<FALReport> falReports = (List<FALReport>) objectIn.readObject();
+            List<FALReport> falReports = (List<FALReport>) SnapshotFile.readObjects(Paths.get(FAL_REPORTS), "fal-reports", 1)[0];
             manager.setFalReports(falReports);
         } catch (FileNotFoundException e) {
             // Not an error
@@ -71,9 +69,8 @@ public class FALManager extends FALManagerCommon {
     @Override
     public synchronized void saveToFile() {
 
-        try (FileOutputStream fileOut = new FileOutputStream(FAL_REPORTS);
-                ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);) {
-            objectOut.writeObject(falReports);
+        try {
+            SnapshotFile.writeObjects(Paths.get(FAL_REPORTS), "fal-reports", falReports);
         } catch (IOException e) {
             LOG.error("Failed to save FAL reports: " + e.getMessage());
         }
@@ -102,6 +102,8 @@ public class NoGoPanel extends JPanel implements MouseListener, ChangeListener {
 
     private NogoHandler nogoHandler;
 
+    private final JLabel cancel = new JLabel("Cancel");
+
     /**
      * Create the panel.
      * 
@@ -398,6 +400,21 @@ public class NoGoPanel extends JPanel implements MouseListener, ChangeListener {
         close.setBorder(BorderFactory.createEmptyBorder(1, 1, 1, 1));
         moveHandler.add(close, BorderLayout.EAST);
 
+        // Cancels the NoGo request in progress
+        cancel.setFont(new Font("Arial", Font.PLAIN, 9));
+        cancel.setForeground(new Color(200, 200, 200));
+        cancel.setBorder(BorderFactory.createEmptyBorder(1, 3, 1, 1));
+        cancel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        cancel.setVisible(false);
+        cancel.addMouseListener(new MouseAdapter() {
+            public void mouseReleased(MouseEvent e) {
+                if (nogoHandler != null) {
+                    nogoHandler.cancelNogo();
+                }
+            }
+        });
+        moveHandler.add(cancel, BorderLayout.WEST);
+
         // Create the grid for the toolitems
         nogoInternalPanel = new JPanel();
         nogoInternalPanel.setLayout(new BoxLayout(nogoInternalPanel, BoxLayout.PAGE_AXIS));
@@ -644,6 +661,34 @@ public class NoGoPanel extends JPanel implements MouseListener, ChangeListener {
         draughtTxtLabelSlider.setEnabled(false);
     }
 
+    /**
+     * Shows or hides the label for cancelling the NoGo request in progress
+     * 
+     * @param enabled
+     *            whether a NoGo request is in progress
+     */
+    public void setCancelEnabled(boolean enabled) {
+        cancel.setVisible(enabled);
+    }
+
+    public void requestCancelledSingle() {
+        statusLabel.setText("Cancelled");
+        statusLabel.setForeground(Color.ORANGE);
+        additionalTxtTitleLabel.setText("NoGo request cancelled");
+        additionalTxtTitleLabel2.setText(" ");
+
+        validFromTxtLabel.setEnabled(false);
+        validToTxtLabel.setEnabled(false);
+        draughtTxtLabel.setEnabled(false);
+    }
+
+    public void requestCancelledMultiple() {
+        // The slices that have arrived can still be browsed
+        statusLabelSlider.setText("Cancelled");
+        statusLabelSlider.setForeground(Color.ORANGE);
+        additionalTxtTitleLabelSlider.setText("NoGo request cancelled");
+    }
+
     public void noConnectionSingle() {
         statusLabel.setText("Failed");
         statusLabel.setForeground(Color.RED);
@@ -822,11 +867,10 @@ public class NoGoPanel extends JPanel implements MouseListener, ChangeListener {
     public void setCompletedSlices(int completed, int total) {
         additionalTxtTitleLabel2Slider.setText("Completed: " + completed + " / " + total);
 
-        if (completed == total) {
-            slider.setEnabled(true);
+        // The slices can be browsed as soon as the first one has arrived
+        slider.setEnabled(completed > 0);
+        if (completed == 1) {
             slider.setValue(0);
-        } else {
-            slider.setEnabled(false);
         }
     }
 
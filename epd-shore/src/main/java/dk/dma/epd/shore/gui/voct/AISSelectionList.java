@@ -20,8 +20,6 @@ import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import javax.swing.JButton;
 import javax.swing.JComponent;
@@ -36,7 +34,7 @@ import javax.swing.event.ListSelectionListener;
 
 import dk.dma.ais.virtualnet.common.table.TargetTableEntry;
 import dk.dma.ais.virtualnet.transponder.gui.SelectTargetList;
-import dk.dma.epd.common.prototype.ais.VesselTarget;
+import dk.dma.epd.common.prototype.ais.AisHandlerCommon.AisMessageExtended;
 import dk.dma.epd.shore.ais.AisHandler;
 
 public class AISSelectionList extends JDialog implements ActionListener, ListSelectionListener {
@@ -81,28 +79,11 @@ public class AISSelectionList extends JDialog implements ActionListener, ListSel
         getContentPane().add(list.getFilterField(), BorderLayout.NORTH);
         list.getFilterField().setPreferredSize(new Dimension(294, 24));
 
-        Map<Long, VesselTarget> vesselMap = aisHandler.getVesselTargets();
-
-        for (Entry<Long, VesselTarget> entry : vesselMap.entrySet()) {
-            // String mmsi = " (" + String.valueOf(entry.getKey()) + ")";
-
-            String name;
-
-            VesselTarget vesselTarget = entry.getValue();
-            if (vesselTarget.getStaticData() != null) {
-                if (vesselTarget.getStaticData().getName() != null) {
-                    name = vesselTarget.getStaticData().getTrimmedName();
-
-                } else {
-                    name = "N/A";
-                }
-            } else {
-                name = "N/A";
-            }
+        // The ship list is maintained by the AIS handler, so the vessel targets are not scanned here
+        for (AisMessageExtended ship : aisHandler.getShipList()) {
             TargetTableEntry tableEntry = new TargetTableEntry();
-            tableEntry.setMmsi(entry.getKey().intValue());
-            tableEntry.setName(name);
-            // targetList.add(name + mmsi);
+            tableEntry.setMmsi((int) ship.MMSI);
+            tableEntry.setName(ship.name.trim());
             list.addTarget(tableEntry);
         }
 
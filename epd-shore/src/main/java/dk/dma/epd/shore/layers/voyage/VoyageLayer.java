@@ -18,6 +18,7 @@ import java.awt.Color;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -272,16 +273,44 @@ public class VoyageLayer extends EPDLayerCommon implements VoyageUpdateListener,
      */
     @Override
     public void targetUpdated(AisTarget aisTarget) {
+        if (hasNegotiationData(aisTarget)) {
+            // only run update if this vessel has negotiation data
+            this.updateDialogLocations();
+        }
+    }
 
+    /**
+     * Called by the {@linkplain AisHandler} when a batch of AIS targets have been updated
+     * 
+     * @param aisTargets
+     *            the AIS targets that have been updated
+     */
+    @Override
+    public void targetsUpdated(Collection<AisTarget> aisTargets) {
+        for (AisTarget aisTarget : aisTargets) {
+            if (hasNegotiationData(aisTarget)) {
+                this.updateDialogLocations();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns if there is strategic route negotiation data for the given AIS target
+     * 
+     * @param aisTarget
+     *            the AIS target
+     * @return if there is negotiation data for the target
+     */
+    private boolean hasNegotiationData(AisTarget aisTarget) {
         if (strategicRouteHandler != null && strategicRouteHandler.getStrategicNegotiationData() != null) {
             for (StrategicRouteNegotiationData data : strategicRouteHandler.getStrategicNegotiationData().values()) {
                 if (data.getMmsi() == aisTarget.getMmsi()) {
-                    // only run update if this vessel has negotiation data
-                    this.updateDialogLocations();
-                    break;
+                    return true;
                 }
             }
         }
+        return false;
     }
 
     /**
@@ -17,8 +17,6 @@ package dk.dma.epd.shore.nogo;
 import java.util.Date;
 import java.util.List;
 
-import javax.swing.JOptionPane;
-
 import net.jcip.annotations.ThreadSafe;
 
 import org.joda.time.DateTime;
@@ -47,36 +45,34 @@ public class NogoHandler extends NogoHandlerCommon {
     public synchronized void updateNogo(boolean useSlices, int minutesBetween) {
 
         if (requestInProgress) {
-            JOptionPane.showMessageDialog(EPDShore.getInstance().getMainFrame(),
-                    "Please wait for the previous NoGo request to be completed before initiating a new",
-                    "Unable to comply with NoGo request", JOptionPane.WARNING_MESSAGE);
-        } else {
+            LOG.info("Cancelling the NoGo request in progress");
+        }
 
-            LOG.info("New NoGo Requested Initiated");
-            requestInProgress = true;
-            // If the dock isn't visible should it show it?
+        LOG.info("New NoGo Requested Initiated");
+        requestInProgress = true;
+        // If the dock isn't visible should it show it?
 
-            this.useSlices = useSlices;
+        this.useSlices = useSlices;
 
-            resetLayer();
+        resetLayer();
 
-            // Setup the panel
-            if (this.useSlices) {
-                nogoPanel.activateSliderPanel();
-                nogoPanel.newRequestMultiple();
-            } else {
-                nogoPanel.activateSingle();
-                nogoPanel.newRequestSingle();
+        // Setup the panel
+        if (this.useSlices) {
+            nogoPanel.activateSliderPanel();
+            nogoPanel.newRequestMultiple();
+        } else {
+            nogoPanel.activateSingle();
+            nogoPanel.newRequestSingle();
 
-            }
+        }
 
-            super.updateNogo(useSlices, minutesBetween);
+        nogoPanel.setCancelEnabled(true);
 
-            // Calculate slices
-            if (this.useSlices) {
-                nogoPanel.initializeSlider(nogoData.size());
+        super.updateNogo(useSlices, minutesBetween);
 
-            }
+        // Calculate slices
+        if (this.useSlices) {
+            nogoPanel.initializeSlider(nogoData.size());
 
         }
     }
@@ -93,6 +89,22 @@ public class NogoHandler extends NogoHandlerCommon {
         }
     }
 
+    @Override
+    protected void nogoCancelled() {
+        nogoPanel.setCancelEnabled(false);
+        if (this.useSlices) {
+            nogoPanel.requestCancelledMultiple();
+        } else {
+            nogoPanel.requestCancelledSingle();
+        }
+    }
+
+    @Override
+    public synchronized void setNoGoRequestCompleted() {
+        super.setNoGoRequestCompleted();
+        nogoPanel.setCancelEnabled(false);
+    }
+
     @Override
     public void noNetworkConnection() {
         if (this.useSlices) {
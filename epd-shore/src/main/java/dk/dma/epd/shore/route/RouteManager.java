@@ -15,20 +15,23 @@
 package dk.dma.epd.shore.route;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import dk.dma.epd.common.prototype.EPD;
+import dk.dma.epd.common.prototype.model.route.Route;
 import dk.dma.epd.common.prototype.model.route.RoutesUpdateEvent;
 import dk.dma.epd.common.prototype.route.RouteManagerCommon;
+import dk.dma.epd.common.util.SnapshotFile;
 import dk.dma.epd.shore.EPDShore;
+import dk.dma.epd.shore.voct.VOCTManager;
 
 /**
  * Manager for handling a collection of routes and active route
@@ -37,8 +40,11 @@ public class RouteManager extends RouteManagerCommon {
 
     private static final long serialVersionUID = -8815260482774695988L;
     private static final String ROUTESFILE = EPD.getInstance().getHomePath().resolve(".routes").toString();
+    private static final String SNAPSHOT_TYPE = "routes";
     private static final Logger LOG = LoggerFactory.getLogger(RouteManager.class);
 
+    private volatile CompletableFuture<Void> routesLoader;
+
     /**
      * Constructor
      */
@@ -57,13 +63,43 @@ public class RouteManager extends RouteManagerCommon {
      */
     public static RouteManager loadRouteManager() {
         RouteManager manager = new RouteManager();
+        manager.loadFromFile();
+        return manager;
+    }
+
+    /**
+     * Loads the routes of the default routes file in the background.
+     * <p>
+     * The route manager is usable while the routes are loading. Routes added in the meantime are kept, and saving the
+     * routes waits for the load to complete.
+     * 
+     * @return the future completion of the load
+     */
+    public CompletableFuture<Void> loadFromFileAsync() {
+        routesLoader = CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                loadFromFile();
+            }
+        });
+        return routesLoader;
+    }
+
+    /**
+     * Adds the routes of the default routes file to the route manager
+     */
+    private void loadFromFile() {
         try {
-            FileInputStream fileIn = new FileInputStream(ROUTESFILE);
-            ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-            RouteStore routeStore = (RouteStore) objectIn.readObject();
-            objectIn.close();
-            fileIn.close();
-            manager.setRoutes(routeStore.getRoutes());
+            RouteStore routeStore = (RouteStore) SnapshotFile.readObjects(Paths.get(ROUTESFILE), SNAPSHOT_TYPE, 1)[0];
+            if (routeStore.getRoutes() == null || routeStore.getRoutes().isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                List<Route> loadedRoutes = new LinkedList<>(getRoutes());
+                loadedRoutes.addAll(routeStore.getRoutes());
+                setRoutes(loadedRoutes);
+            }
+            notifyListeners(RoutesUpdateEvent.ROUTE_ADDED);
 
         } catch (FileNotFoundException e) {
             // Not an error
@@ -72,8 +108,6 @@ public class RouteManager extends RouteManagerCommon {
             // Delete possible corrupted or old file
             new File(ROUTESFILE).delete();
         }
-
-        return manager;
     }
 
     /**
@@ -81,14 +115,16 @@ public class RouteManager extends RouteManagerCommon {
      */
     @Override
     public void saveToFile() {
+        // Do not overwrite the stored routes before they have been loaded
+        CompletableFuture<Void> loader = routesLoader;
+        if (loader != null) {
+            loader.join();
+        }
+
         synchronized (routes) {
             RouteStore routeStore = new RouteStore(this);
             try {
-                FileOutputStream fileOut = new FileOutputStream(ROUTESFILE);
-                ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-                objectOut.writeObject(routeStore);
-                objectOut.close();
-                fileOut.close();
+                SnapshotFile.writeObjects(Paths.get(ROUTESFILE), SNAPSHOT_TYPE, routeStore);
             } catch (IOException e) {
                 LOG.error("Failed to save routes file: " + e.getMessage());
             }
@@ -99,6 +135,10 @@ public class RouteManager extends RouteManagerCommon {
     public void notifyListeners(RoutesUpdateEvent e) {
         super.notifyListeners(e);
 
-        EPDShore.getInstance().getVoctManager().saveToFile();
+        // The VOCT manager is created once the GUI has been created
+        VOCTManager voctManager = EPDShore.getInstance().getVoctManager();
+        if (voctManager != null) {
+            voctManager.saveToFile();
+        }
     }
 }
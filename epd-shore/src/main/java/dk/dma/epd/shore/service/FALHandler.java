@@ -26,7 +26,6 @@ import dk.dma.epd.common.prototype.notification.NotificationAlert.AlertType;
 import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
 import dk.dma.epd.common.prototype.service.FALHandlerCommon;
 import dk.dma.epd.common.prototype.service.VoctHandlerCommon;
-import dk.dma.epd.common.util.Util;
 import dk.dma.epd.shore.fal.FALManager;
 import net.maritimecloud.net.mms.MmsClient;
 import org.slf4j.Logger;
@@ -49,7 +48,7 @@ import java.util.concurrent.TimeoutException;
  * </ul>
  */
 @SuppressWarnings("unused")
-public class FALHandler extends FALHandlerCommon implements Runnable {
+public class FALHandler extends FALHandlerCommon {
 
     private boolean listenToSAR;
     /**
@@ -57,7 +56,6 @@ public class FALHandler extends FALHandlerCommon implements Runnable {
      */
 
     private List<TODO.ServiceEndpoint<FALReportMessage, FALReportReply>> voctMessageList = new ArrayList<>();
-    private boolean running;
     private static final Logger LOG = LoggerFactory.getLogger(VoctHandlerCommon.class);
 
     public FALManager falManager;
@@ -121,9 +119,6 @@ public class FALHandler extends FALHandlerCommon implements Runnable {
 ////            System.out.println("Failed to register services?");
 //        }
 
-        // Start broadcasting our own active route
-        running = true;
-        new Thread(this).start();
         // }
     }
 
@@ -186,29 +181,6 @@ public class FALHandler extends FALHandlerCommon implements Runnable {
     // return MaritimeCloudUtils.findServiceWithMmsi(falReportRecievers, (int) mmsi) != null;
     // }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void cloudDisconnected() {
-        running = false;
-    }
-
-    /**
-     * Main thread run method. Broadcasts the intended route
-     */
-    public void run() {
-
-        // Initialize first send
-        // lastSend = new DateTime();
-        // broadcastIntendedRoute();
-
-        while (running) {
-            Util.sleep(1000L);
-        }
-
-    }
-
     /**
      * {@inheritDoc}
      */
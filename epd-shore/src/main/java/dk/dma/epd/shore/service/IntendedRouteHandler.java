@@ -14,13 +14,22 @@
  */
 package dk.dma.epd.shore.service;
 
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import dk.dma.epd.common.prototype.model.intendedroute.FilteredIntendedRoute;
 import dk.dma.epd.common.prototype.model.intendedroute.FilteredIntendedRoutes;
 import dk.dma.epd.common.prototype.model.intendedroute.IntendedRouteFilterMessage;
 import dk.dma.epd.common.prototype.model.route.IntendedRoute;
+import dk.dma.epd.common.prototype.model.route.RouteTimeline;
+import dk.dma.epd.common.prototype.sensor.pnt.PntTime;
 import dk.dma.epd.common.prototype.service.IntendedRouteHandlerCommon;
 import dk.dma.epd.common.prototype.settings.EnavSettings;
 import dk.dma.epd.common.text.Formatter;
@@ -29,14 +38,42 @@ import dk.dma.epd.shore.EPDShore;
 
 /**
  * Shore specific intended route service implementation.
+ * <p>
+ * All intended routes are compared pairwise. The filter is maintained incrementally, i.e. when an intended route is received
+ * only the pairs involving that route are re-computed. Route pairs that cannot come within filter distance are pruned using
+ * space-time bounding boxes, and the remaining pairs are evaluated in parallel in a dedicated fork-join pool.
+ * <p>
+ * Since the pairs are only compared from the current time and within {@linkplain #TCPA_HORIZON}, all pairs are
+ * re-evaluated every {@linkplain #TCPA_STEP}, so that passed encounters are dropped and new encounters entering the
+ * horizon are found.
  */
 public class IntendedRouteHandler extends IntendedRouteHandlerCommon {
 
+    private static final Logger LOG = LoggerFactory.getLogger(IntendedRouteHandler.class);
+
+    /**
+     * The minimum number of route pairs computed by each parallel task
+     */
+    private static final int PARALLEL_THRESHOLD = 8;
+
+    /**
+     * Pool computing the route pairs in parallel, separate from the bounded shared execution service
+     */
+    private final ForkJoinPool filterPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
     /**
      * Constructor
      */
     public IntendedRouteHandler() {
         super();
+
+        // Re-evaluates all route pairs as time passes
+        getScheduler().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshFilter();
+            }
+        }, TCPA_STEP, TCPA_STEP, TimeUnit.MILLISECONDS);
     }
 
     /****************************************/
@@ -81,67 +118,205 @@ public class IntendedRouteHandler extends IntendedRouteHandlerCommon {
     protected void updateFilter() {
 
         // Recalculate everything
-        // Compare all routes to current active route
+        // Compare all intended routes against all other intended routes
+        long now = PntTime.getDate().getTime();
+        List<RouteTimeline> routeTimelines = getTimelines();
+
+        List<Callable<FilteredIntendedRoute>> tasks = new ArrayList<>();
+        for (int i = 0; i < routeTimelines.size(); i++) {
+            for (int j = i + 1; j < routeTimelines.size(); j++) {
+                addPairTask(tasks, routeTimelines.get(i), routeTimelines.get(j), now);
+            }
+        }
 
         FilteredIntendedRoutes filteredIntendedRoutes = new FilteredIntendedRoutes();
+        for (FilteredIntendedRoute filter : computeFilters(tasks)) {
+            filteredIntendedRoutes.add(filter);
+        }
 
-        // Compare all intended routes against all other intended routes
+        // Check if we need to raise any alerts
+        checkGenerateNotifications(this.filteredIntendedRoutes, filteredIntendedRoutes);
 
-        Iterator<Entry<Long, IntendedRoute>> outerIterator = intendedRoutes
-                .entrySet().iterator();
-        while (outerIterator.hasNext()) {
-            Entry<Long, IntendedRoute> intendedRoute = outerIterator.next();
+        // Override the old set of filtered intended route
+        this.filteredIntendedRoutes = filteredIntendedRoutes;
+    }
 
-            IntendedRoute route1 = intendedRoute.getValue();
+    /**
+     * Re-computes all filters from the current time and notifies the listeners
+     */
+    private synchronized void refreshFilter() {
+        updateFilter();
+        fireIntendedEvent(null);
+    }
 
-            Iterator<Entry<Long, IntendedRoute>> innerIterator = intendedRoutes
-                    .entrySet().iterator();
-            while (innerIterator.hasNext()) {
-                Entry<Long, IntendedRoute> intendedRoute2 = innerIterator
-                        .next();
+    /**
+     * Update filter with new intended route.
+     * <p>
+     * Only the route pairs involving the new intended route are re-computed.
+     * 
+     * @param route
+     */
+    @Override
+    protected void applyFilter(IntendedRoute route) {
+        long now = PntTime.getDate().getTime();
+        Long mmsi = route.getMmsi();
+        RouteTimeline changed = getTimeline(route);
 
-                IntendedRoute route2 = intendedRoute2.getValue();
+        List<Callable<FilteredIntendedRoute>> tasks = new ArrayList<>();
+        if (changed != null) {
+            for (RouteTimeline other : getTimelines()) {
+                if (getMmsi(other.getRoute()).longValue() != mmsi) {
+                    addPairTask(tasks, changed, other, now);
+                }
+            }
+        }
+        List<FilteredIntendedRoute> filters = computeFilters(tasks);
 
-                if (route1.getMmsi() != route2.getMmsi()) {
-                    FilteredIntendedRoute filter = findTCPA(route1, route2);
+        // Build the new filter from the unaffected pairs and the re-computed pairs
+        FilteredIntendedRoutes oldFilteredRoutes = this.filteredIntendedRoutes;
+        FilteredIntendedRoutes filteredIntendedRoutes = new FilteredIntendedRoutes();
+        for (FilteredIntendedRoute filter : oldFilteredRoutes.values()) {
+            if (!filter.getMmsi1().equals(mmsi) && !filter.getMmsi2().equals(mmsi)) {
+                filteredIntendedRoutes.add(filter);
+            }
+        }
+        for (FilteredIntendedRoute filter : filters) {
+            // Check if we need to raise any alerts
+            checkGenerateNotifications(oldFilteredRoutes, filter);
+            filteredIntendedRoutes.add(filter);
+        }
+
+        this.filteredIntendedRoutes = filteredIntendedRoutes;
+    }
 
-                    // No warnings, ignore it
-                    if (filter.include()) {
-                        // Add the filtered route to the list
-                        filteredIntendedRoutes.add(filter);
-                    }
+    /**
+     * Adds a task computing the filter of the given route pair, unless the pair can be pruned
+     * 
+     * @param tasks
+     *            the list of tasks to add the task to
+     * @param timeline1
+     *            the first route timeline
+     * @param timeline2
+     *            the second route timeline
+     * @param now
+     *            the current time
+     */
+    private void addPairTask(List<Callable<FilteredIntendedRoute>> tasks, final RouteTimeline timeline1,
+            final RouteTimeline timeline2, long now) {
+        if (!mayApproach(timeline1, timeline2, now)) {
+            return;
+        }
+        tasks.add(new Callable<FilteredIntendedRoute>() {
+            @Override
+            public FilteredIntendedRoute call() {
+                FilteredIntendedRoute filter = findTCPA(timeline1, timeline2);
+                // Try other way around
+                if (!filter.include()) {
+                    filter = findTCPA(timeline2, timeline1);
                 }
+                return filter.include() ? filter : null;
+            }
+        });
+    }
 
+    /**
+     * Computes the filters of the given tasks and returns the included ones.
+     * <p>
+     * The pairs are computed by a fork-join decomposition in the dedicated {@linkplain #filterPool}, so the calling thread,
+     * which may be a worker of the shared execution service, never waits on tasks queued to its own pool.
+     * 
+     * @param tasks
+     *            the tasks to compute
+     * @return the included filters
+     */
+    private List<FilteredIntendedRoute> computeFilters(List<Callable<FilteredIntendedRoute>> tasks) {
+        try {
+            if (tasks.size() < 2 * PARALLEL_THRESHOLD) {
+                return computeAll(tasks);
             }
+            return filterPool.invoke(new FilterTask(tasks));
+        } catch (Exception e) {
+            LOG.error("Error computing intended route filter", e);
         }
+        return new ArrayList<>();
+    }
 
-        // Check if we need to raise any alerts
-        checkGenerateNotifications(this.filteredIntendedRoutes,
-                filteredIntendedRoutes);
+    /**
+     * Computes the filters of the given tasks on the calling thread and returns the included ones
+     */
+    private static List<FilteredIntendedRoute> computeAll(List<Callable<FilteredIntendedRoute>> tasks) throws Exception {
+        List<FilteredIntendedRoute> result = new ArrayList<>();
+        for (Callable<FilteredIntendedRoute> task : tasks) {
+            FilteredIntendedRoute filter = task.call();
+            if (filter != null) {
+                result.add(filter);
+            }
+        }
+        return result;
+    }
 
-        // Override the old set of filtered intended route
-        this.filteredIntendedRoutes = filteredIntendedRoutes;
+    /**
+     * Splits the route pair tasks in halves until at most {@linkplain #PARALLEL_THRESHOLD} pairs are left, which are
+     * computed directly
+     */
+    private static final class FilterTask extends RecursiveTask<List<FilteredIntendedRoute>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Callable<FilteredIntendedRoute>> tasks;
+
+        FilterTask(List<Callable<FilteredIntendedRoute>> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected List<FilteredIntendedRoute> compute() {
+            if (tasks.size() <= PARALLEL_THRESHOLD) {
+                try {
+                    return computeAll(tasks);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            int mid = tasks.size() / 2;
+            FilterTask left = new FilterTask(tasks.subList(0, mid));
+            left.fork();
+            List<FilteredIntendedRoute> result = new ArrayList<>(new FilterTask(tasks.subList(mid, tasks.size())).compute());
+            result.addAll(0, left.join());
+            return result;
+        }
     }
 
     /**
-     * Update filter with new intended route
+     * Returns the timelines of all current intended routes
      * 
-     * @param route
+     * @return the timelines of all current intended routes
+     */
+    private List<RouteTimeline> getTimelines() {
+        List<RouteTimeline> result = new ArrayList<>();
+        for (IntendedRoute route : intendedRoutes.values()) {
+            RouteTimeline timeline = getTimeline(route);
+            if (timeline != null) {
+                result.add(timeline);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
      */
     @Override
-    protected void applyFilter(IntendedRoute route) {
-        updateFilter();
+    public synchronized void shutdown() {
+        super.shutdown();
+        filterPool.shutdownNow();
     }
 
     @Override
     public void updateSettings(EnavSettings settings) {
         super.updateSettings(settings);
-        // re apply filter with new values
-        this.updateFilter();
-        /*
-         * Fire dummy event such that any listening IntendedRouteTCPALayer will
-         * redraw TCPAs.
-         */
-        this.fireIntendedEvent(null);
+        // re apply filter with new values. The dummy event makes any listening
+        // IntendedRouteTCPALayer redraw TCPAs.
+        refreshFilter();
     }
 }
@@ -15,12 +15,9 @@
 package dk.dma.epd.shore.voct;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -41,13 +38,13 @@ import dk.dma.epd.common.prototype.model.route.IntendedRoute;
 import dk.dma.epd.common.prototype.service.EnavServiceHandlerCommon.CloudMessageStatus;
 import dk.dma.epd.common.prototype.service.IIntendedRouteListener;
 import dk.dma.epd.common.prototype.voct.VOCTManagerCommon.VoctMsgStatus;
-import dk.dma.epd.shore.EPDShore;
+import dk.dma.epd.common.util.SnapshotFile;
 import dk.dma.epd.shore.layers.voct.VoctLayerTracking;
 import dk.dma.epd.shore.service.IntendedRouteHandler;
 import dk.dma.epd.shore.service.VoctHandler;
 import dk.dma.epd.shore.voct.SRU.sru_status;
 
-public class SRUManager extends MapHandlerChild implements Runnable, IIntendedRouteListener {
+public class SRUManager extends MapHandlerChild implements IIntendedRouteListener {
 
     private VOCTManager voctManager;
     private VoctHandler voctHandler;
@@ -62,7 +59,6 @@ public class SRUManager extends MapHandlerChild implements Runnable, IIntendedRo
     private CopyOnWriteArrayList<SRUUpdateListener> listeners = new CopyOnWriteArrayList<>();
 
     public SRUManager() {
-        EPDShore.startThread(this, "sruManager");
     }
 
     public void setVoctTrackingLayer(VoctLayerTracking layer) {
@@ -79,9 +75,8 @@ public class SRUManager extends MapHandlerChild implements Runnable, IIntendedRo
     }
 
     public synchronized void saveToFile() {
-        try (FileOutputStream fileOut = new FileOutputStream(SRU_FILE);
-                ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);) {
-            objectOut.writeObject(srus);
+        try {
+            SnapshotFile.writeObjects(Paths.get(SRU_FILE), "srus", srus);
         } catch (IOException e) {
             LOG.error("Failed to save VOCT data: " + e.getMessage());
         }
@@ -95,20 +90,6 @@ public class SRUManager extends MapHandlerChild implements Runnable, IIntendedRo
         listeners.remove(listener);
     }
 
-    @Override
-    public void run() {
-
-        // Maintanaince routines
-
-        // while (true) {
-        // EPDShore.sleep(1000);
-        // updateSRUsStatus();
-        // maintainAvailableSRUs();
-        // Maintain list of available SRUs
-        // }
-
-    }
-
     public void updateSRUsStatus() {
 
         for (int i = 0; i < voctHandler.getVoctMessageList().size(); i++) {
@@ -400,12 +381,7 @@ public class SRUManager extends MapHandlerChild implements Runnable, IIntendedRo
         SRUManager manager = new SRUManager();
 
         try {
-            FileInputStream fileIn = new FileInputStream(SRU_FILE);
-            ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-
-            manager.setSrus((Map<Long, SRU>) objectIn.readObject());
-            objectIn.close();
-            fileIn.close();
+            manager.setSrus((Map<Long, SRU>) SnapshotFile.readObjects(Paths.get(SRU_FILE), "srus", 1)[0]);
 
         } catch (FileNotFoundException e) {
             // Not an error
@@ -14,10 +14,9 @@
  */
 package dk.dma.epd.shore.voct;
 
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -38,7 +37,7 @@ import dk.dma.epd.common.prototype.service.EnavServiceHandlerCommon.CloudMessage
 import dk.dma.epd.common.prototype.voct.VOCTManagerCommon;
 import dk.dma.epd.common.prototype.voct.VOCTUpdateEvent;
 import dk.dma.epd.common.prototype.voct.VOCTUpdateListener;
-import dk.dma.epd.common.util.Util;
+import dk.dma.epd.common.util.SnapshotFile;
 import dk.dma.epd.shore.EPDShore;
 import dk.dma.epd.shore.gui.views.JMenuWorkspaceBar;
 import dk.dma.epd.shore.gui.views.MapFrameType;
@@ -74,7 +73,6 @@ public class VOCTManager extends VOCTManagerCommon implements IRoutesUpdateListe
     private long voctID = -1;
 
     public VOCTManager() {
-        EPDShore.startThread(this, "VOCTManager");
         LOG.info("Started VOCT Manager");
     }
 
@@ -154,17 +152,6 @@ public class VOCTManager extends VOCTManagerCommon implements IRoutesUpdateListe
         }
     }
 
-    @Override
-    public void run() {
-
-        // Maintanaince routines
-        while (true) {
-            Util.sleep(10000);
-
-        }
-
-    }
-
     @Override
     protected void checkSRU(SARData sarData) {
         // Check SRU data
@@ -226,9 +213,9 @@ public class VOCTManager extends VOCTManagerCommon implements IRoutesUpdateListe
 
         // Where we load or serialize old VOCTS
 
-        try (FileInputStream fileIn = new FileInputStream(VOCT_FILE); ObjectInputStream objectIn = new ObjectInputStream(fileIn);) {
+        try {
 
-            SARData sarDataLoaded = (SARData) objectIn.readObject();
+            SARData sarDataLoaded = (SARData) SnapshotFile.readObjects(Paths.get(VOCT_FILE), "voct", 1)[0];
             setLoadSarFromSerialize(true);
             initializeFromSerializedFile(sarDataLoaded);
             // System.out.println("Loaded");
@@ -438,13 +425,18 @@ public class VOCTManager extends VOCTManagerCommon implements IRoutesUpdateListe
 
     @Override
     public void showSARFuture(int i) {
+        sarFutureHorizon = i;
 
         if (this.sarOperation.getOperationType() != SAR_TYPE.SARIS_DATUM_POINT) {
 
             if (i == 0) {
                 voctLayers.get(0).showFutureData(sarData);
             } else {
-                voctLayers.get(0).showFutureData(sarFutureData.get((i / 30) - 1));
+                // The future horizons are calculated in the background
+                SARData futureData = getSarFutureData(i);
+                if (futureData != null) {
+                    voctLayers.get(0).showFutureData(futureData);
+                }
             }
         }
 
@@ -15,23 +15,23 @@
 package dk.dma.epd.shore.voyage;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.bbn.openmap.MapHandlerChild;
 
+import dk.dma.epd.common.prototype.ExecutionService;
+import dk.dma.epd.common.util.SnapshotFile;
 import dk.dma.epd.shore.EPDShore;
 import dk.dma.epd.shore.ais.AisHandler;
 import dk.dma.epd.shore.services.shore.ShoreServices;
@@ -45,6 +45,7 @@ public class VoyageManager extends MapHandlerChild implements Runnable, Serializ
     private static final long serialVersionUID = 1L;
     private static final String VOYAGESFILE = EPDShore.getInstance().getHomePath().resolve(".voyages").toString();
     private static final Logger LOG = LoggerFactory.getLogger(VoyageManager.class);
+    private static final long EXPIRY_CHECK_INTERVAL = 10000; // 10 secs
 
     private List<Voyage> voyages = new LinkedList<Voyage>();
 
@@ -54,7 +55,8 @@ public class VoyageManager extends MapHandlerChild implements Runnable, Serializ
     private Set<VoyageUpdateListener> listeners = new HashSet<VoyageUpdateListener>();
 
     public VoyageManager() {
-        EPDShore.startThread(this, "VoyageManager");
+        ExecutionService.getInstance().scheduleWithFixedDelay("VoyageManager", this, EXPIRY_CHECK_INTERVAL,
+                EXPIRY_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     public void notifyListeners(VoyageUpdateEvent e) {
@@ -133,11 +135,7 @@ public class VoyageManager extends MapHandlerChild implements Runnable, Serializ
     public static VoyageManager loadVoyageManager() {
         VoyageManager manager = new VoyageManager();
         try {
-            FileInputStream fileIn = new FileInputStream(VOYAGESFILE);
-            ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-            VoyageStore voyageStore = (VoyageStore) objectIn.readObject();
-            objectIn.close();
-            fileIn.close();
+            VoyageStore voyageStore = (VoyageStore) SnapshotFile.readObjects(Paths.get(VOYAGESFILE), "voyages", 1)[0];
             manager.setVoyages(voyageStore.getVoyages());
 
         } catch (FileNotFoundException e) {
@@ -177,11 +175,7 @@ public class VoyageManager extends MapHandlerChild implements Runnable, Serializ
             VoyageStore voyageStore = new VoyageStore(this);
             
             try {
-                FileOutputStream fileOut = new FileOutputStream(VOYAGESFILE);
-                ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-                objectOut.writeObject(voyageStore);
-                objectOut.close();
-                fileOut.close();
+                SnapshotFile.writeObjects(Paths.get(VOYAGESFILE), "voyages", voyageStore);
             } catch (IOException e) {
                 LOG.error("Failed to save routes file: " + e.getMessage());
             }
@@ -219,15 +213,12 @@ public class VoyageManager extends MapHandlerChild implements Runnable, Serializ
       }
     }
 
+    /**
+     * Removes the expired voyages. Run periodically on the shared execution service
+     */
     @Override
     public void run() {
-
-        // Maintanaince routines
-        while (true) {
-            EPDShore.sleep(10000);
-            checkForExpires();
-        }
-
+        checkForExpires();
     }
 
 }
@@ -14,10 +14,23 @@
  */
 package dk.dma.epd.util.route;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,16 +38,23 @@ import org.slf4j.LoggerFactory;
 import com.beust.jcommander.Parameter;
 import com.google.inject.Injector;
 
-import dk.dma.ais.message.AisMessage;
 import dk.dma.ais.reader.AisReader;
 import dk.dma.ais.reader.AisReaders;
 import dk.dma.commons.app.AbstractCommandLineTool;
-import dk.dma.enav.util.function.Consumer;
 
+/**
+ * Command line tool generating routes from the AIS tracks of an AIS file.
+ * <p>
+ * The input is read in a single pass, where the position messages are split into per-MMSI tracks. The routes are then
+ * generated and written in parallel, one task per vessel.
+ */
 public class AisToRoute extends AbstractCommandLineTool {
     
     /** The logger. */
     static final Logger LOG = LoggerFactory.getLogger(AisToRoute.class);
+
+    /** Interval between progress reports in seconds */
+    private static final int PROGRESS_INTERVAL = 10;
     
     @Parameter(names = "-in", required = true, description = "Input AIS file")
     String in;
@@ -44,43 +64,132 @@ public class AisToRoute extends AbstractCommandLineTool {
     
     @Parameter(names = "-mmsi", required = false, description = "MMSI numbers to make route for, comma separated. Default all.")
     List<Integer> mmsis;
+
+    @Parameter(names = "-threads", required = false, description = "Number of threads generating routes. Default number of processors.")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "-maxPoints", required = false, description = "Max number of track points held in memory before spilling tracks to disk.")
+    long maxPoints = 5000000L;
     
     @Override
     protected void run(Injector injector) throws Exception {
-        inject(in, outDir, mmsis);        
+        inject(in, outDir, mmsis, threads, maxPoints);        
     }
     
     public static void main(String[] args) throws Exception {
         new AisToRoute().execute(args);
     }
     
-    private static void inject(String inFilename, String outDir, Collection<Integer> mmsis) throws Exception {
-        if (mmsis == null) {
-            final Set<Integer> mmsisFromFile = new HashSet<Integer>();
+    private static void inject(String inFilename, String outDir, Collection<Integer> mmsis, int threads, long maxPoints)
+            throws Exception {
+        Path spillDir = Files.createTempDirectory("aistoroute");
+        try {
+            TrackDemultiplexer demultiplexer = collectTracks(inFilename, mmsis, spillDir, maxPoints);
+            generateRoutes(demultiplexer.getCollectors(), outDir, Math.max(1, threads));
+        } finally {
+            deleteDirectory(spillDir);
+        }
+    }
+
+    /**
+     * Reads the input file once, splitting the position messages into per-MMSI tracks
+     */
+    private static TrackDemultiplexer collectTracks(String inFilename, Collection<Integer> mmsis, Path spillDir,
+            long maxPoints) throws Exception {
+        final TrackDemultiplexer demultiplexer = new TrackDemultiplexer(mmsis, spillDir, maxPoints);
+        final long start = System.currentTimeMillis();
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                logCollectProgress(demultiplexer, start);
+            }
+        }, PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.SECONDS);
+
+        LOG.info("Collecting tracks from " + inFilename);
+        try {
             AisReader reader = AisReaders.createReaderFromFile(inFilename);
-            reader.registerHandler(new Consumer<AisMessage>() {         
-                @Override
-                public void accept(AisMessage aisMessage) {
-                    mmsisFromFile.add(aisMessage.getUserId());
-                }
-            });
+            reader.registerHandler(demultiplexer);
             reader.start();
             reader.join();
-            mmsis = mmsisFromFile;
-        }        
-        
-        for (Integer mmsi : mmsis) {
-            LOG.info("Generate for MMSI: " + mmsi);
-            RouteGenerator routeInjector = new RouteGenerator(inFilename, outDir, mmsi);
-            LOG.info("First pass - collect track");
-            routeInjector.collectTrack();
-            LOG.info("Generate route");
-            routeInjector.generateRoute();
-            LOG.info("Save route");
-            routeInjector.saveRoute();
-
+        } finally {
+            progress.shutdownNow();
         }
-}
+        logCollectProgress(demultiplexer, start);
+        return demultiplexer;
+    }
+
+    private static void logCollectProgress(TrackDemultiplexer demultiplexer, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        long messages = demultiplexer.getMessageCount();
+        LOG.info(String.format("Read %d messages (%.0f msg/s), %d track points for %d vessels", messages, messages * 1000.0
+                / elapsed, demultiplexer.getPointCount(), demultiplexer.getVesselCount()));
+    }
 
+    /**
+     * Generates and saves the routes of the given tracks in parallel. Each route is written as soon as it is generated
+     */
+    private static void generateRoutes(Collection<TrackCollector> collectors, final String outDir, int threads)
+            throws Exception {
+        // Start with the longest tracks to balance the load across the threads
+        List<TrackCollector> tracks = new ArrayList<>(collectors);
+        Collections.sort(tracks, new Comparator<TrackCollector>() {
+            @Override
+            public int compare(TrackCollector o1, TrackCollector o2) {
+                return Integer.compare(o2.size(), o1.size());
+            }
+        });
 
+        LOG.info("Generating routes for " + tracks.size() + " vessels using " + threads + " threads");
+        long start = System.currentTimeMillis();
+        long lastReport = start;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<TrackCollector> completionService = new ExecutorCompletionService<>(pool);
+            for (final TrackCollector track : tracks) {
+                completionService.submit(new Callable<TrackCollector>() {
+                    @Override
+                    public TrackCollector call() throws Exception {
+                        try {
+                            RouteGenerator routeGenerator = new RouteGenerator(track, outDir);
+                            routeGenerator.generateRoute();
+                            routeGenerator.saveRoute();
+                        } finally {
+                            track.release();
+                        }
+                        return track;
+                    }
+                });
+            }
+
+            int failed = 0;
+            for (int i = 1; i <= tracks.size(); i++) {
+                try {
+                    TrackCollector track = completionService.take().get();
+                    LOG.debug("Saved route for MMSI: " + track.getMmsi());
+                } catch (ExecutionException e) {
+                    failed++;
+                    LOG.error("Failed generating route", e.getCause());
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= PROGRESS_INTERVAL * 1000L || i == tracks.size()) {
+                    LOG.info(String.format("Generated %d/%d routes (%.1f routes/s), %d failed", i, tracks.size(), i * 1000.0
+                            / Math.max(1, now - start), failed));
+                    lastReport = now;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
 }
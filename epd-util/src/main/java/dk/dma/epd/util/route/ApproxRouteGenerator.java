@@ -35,7 +35,6 @@ public class ApproxRouteGenerator extends SimpleRouteGenerator {
         }
         this.track = track;
         // Create geo points for each track points
-        System.out.println("\tCreating geo points");
         for (TimePoint point : track) {
             geoPoints.add(new Geo(point.getLatitude(), point.getLongitude()));
         }
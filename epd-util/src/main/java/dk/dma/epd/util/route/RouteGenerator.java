@@ -16,6 +16,7 @@ package dk.dma.epd.util.route;
 
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
@@ -48,6 +49,19 @@ public class RouteGenerator {
         trackCollector = new TrackCollector(mmsi);
     }
 
+    /**
+     * Constructor for generating a route from an already collected track
+     * 
+     * @param trackCollector
+     *            the collected track
+     * @param outDir
+     *            the output directory
+     */
+    public RouteGenerator(TrackCollector trackCollector, String outDir) {
+        this.outFilename = outDir + "/route-" + trackCollector.getMmsi() + ".txt";
+        this.trackCollector = trackCollector;
+    }
+
     public void collectTrack() throws Exception {
         // Make reader for input file
         AisReader aisReader = AisReaders.createReaderFromInputStream(new FileInputStream(inFilename));
@@ -59,7 +73,7 @@ public class RouteGenerator {
         aisReader.join();
     }
 
-    public void generateRoute() {
+    public void generateRoute() throws IOException {
         // Create route generator
         IRouteGenerator generator;
         //generator = new SimpleRouteGenerator();
@@ -14,6 +14,14 @@
  */
 package dk.dma.epd.util.route;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -26,6 +34,9 @@ import dk.dma.enav.util.function.Consumer;
 
 /**
  * Utility for collecting tracks from AIS feed.
+ * <p>
+ * For large inputs, the collected points can be spilled to a file with {@linkplain #spill(Path)}, in which case they are
+ * read back by {@linkplain #getSortedTrack()}.
  */
 public class TrackCollector implements Consumer<AisMessage>{
     
@@ -35,6 +46,8 @@ public class TrackCollector implements Consumer<AisMessage>{
     private final List<TimePoint> track = new ArrayList<>();
     private Position lastPos;
     private Date time;
+    private Path spillFile;
+    private int spilled;
     
     public TrackCollector(long mmsi) {
         this.mmsi = mmsi;
@@ -77,9 +90,91 @@ public class TrackCollector implements Consumer<AisMessage>{
         track.add(point);
     }
     
-    public List<TimePoint> getSortedTrack() {
+    /**
+     * Returns the collected track sorted by time, including any spilled points
+     * 
+     * @return the sorted track
+     * @throws IOException
+     */
+    public List<TimePoint> getSortedTrack() throws IOException {
+        if (spilled > 0) {
+            List<TimePoint> points = new ArrayList<>(spilled + track.size());
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile)))) {
+                for (int i = 0; i < spilled; i++) {
+                    double lat = in.readDouble();
+                    double lon = in.readDouble();
+                    points.add(new TimePoint(Position.create(lat, lon), new Date(in.readLong())));
+                }
+            }
+            points.addAll(track);
+            track.clear();
+            track.addAll(points);
+            Files.deleteIfExists(spillFile);
+            spilled = 0;
+        }
         Collections.sort(track);
         return track;
     }
 
+    /**
+     * Appends the points held in memory to the spill file of this track in the given directory, and releases them
+     * 
+     * @param dir
+     *            the directory to spill to
+     * @throws IOException
+     */
+    public void spill(Path dir) throws IOException {
+        if (track.isEmpty()) {
+            return;
+        }
+        if (spillFile == null) {
+            spillFile = dir.resolve("track-" + mmsi + ".bin");
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            for (TimePoint point : track) {
+                out.writeDouble(point.getLatitude());
+                out.writeDouble(point.getLongitude());
+                out.writeLong(point.getTime().getTime());
+            }
+        }
+        spilled += track.size();
+        track.clear();
+    }
+
+    /**
+     * Releases the collected track and deletes any spill file
+     * 
+     * @throws IOException
+     */
+    public void release() throws IOException {
+        track.clear();
+        if (spillFile != null) {
+            Files.deleteIfExists(spillFile);
+        }
+        spilled = 0;
+    }
+
+    /**
+     * Returns the number of points held in memory
+     * 
+     * @return the number of points held in memory
+     */
+    public int getBufferedSize() {
+        return track.size();
+    }
+
+    /**
+     * Returns the total number of collected points, including spilled points
+     * 
+     * @return the total number of collected points
+     */
+    public int size() {
+        return track.size() + spilled;
+    }
+
+    public long getMmsi() {
+        return mmsi;
+    }
+
 }
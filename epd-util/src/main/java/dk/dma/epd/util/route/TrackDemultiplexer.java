@@ -0,0 +1,166 @@
+/* Copyright (c) 2011 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.dma.epd.util.route;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.message.AisPositionMessage;
+import dk.dma.enav.util.function.Consumer;
+
+/**
+ * Splits a single AIS stream into per-MMSI tracks.
+ * <p>
+ * Every position message is handed to the {@linkplain TrackCollector} of its MMSI, so that the input only has to be read
+ * once regardless of the number of vessels. When the number of points held in memory exceeds the given limit, the largest
+ * tracks are spilled to the spill directory.
+ * <p>
+ * The demultiplexer is meant to be fed by a single reader thread, whereas the counters may be read from any thread.
+ */
+public class TrackDemultiplexer implements Consumer<AisMessage> {
+
+    static final Logger LOG = LoggerFactory.getLogger(TrackDemultiplexer.class);
+
+    private final Set<Integer> mmsis;
+    private final Path spillDir;
+    private final long maxBufferedPoints;
+    private final Map<Integer, TrackCollector> collectors = new HashMap<>();
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong points = new AtomicLong();
+    private long bufferedPoints;
+    private volatile int vessels;
+
+    /**
+     * Constructor
+     * 
+     * @param mmsis
+     *            the MMSI's to collect tracks for, or null for all
+     * @param spillDir
+     *            the directory to spill tracks to
+     * @param maxBufferedPoints
+     *            the max number of points to hold in memory before spilling
+     */
+    public TrackDemultiplexer(Collection<Integer> mmsis, Path spillDir, long maxBufferedPoints) {
+        this.mmsis = (mmsis == null) ? null : new HashSet<>(mmsis);
+        this.spillDir = spillDir;
+        this.maxBufferedPoints = maxBufferedPoints;
+    }
+
+    @Override
+    public void accept(AisMessage aisMessage) {
+        messages.incrementAndGet();
+        if (!(aisMessage instanceof AisPositionMessage)) {
+            return;
+        }
+        Integer mmsi = aisMessage.getUserId();
+        if (mmsis != null && !mmsis.contains(mmsi)) {
+            return;
+        }
+        TrackCollector collector = collectors.get(mmsi);
+        if (collector == null) {
+            collector = new TrackCollector(mmsi);
+            collectors.put(mmsi, collector);
+            vessels = collectors.size();
+        }
+        int before = collector.getBufferedSize();
+        collector.accept(aisMessage);
+        if (collector.getBufferedSize() > before) {
+            points.incrementAndGet();
+            if (++bufferedPoints > maxBufferedPoints) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Spills the largest tracks until at most half of the max number of points are held in memory
+     */
+    private void spill() {
+        List<TrackCollector> sorted = new ArrayList<>(collectors.values());
+        Collections.sort(sorted, new Comparator<TrackCollector>() {
+            @Override
+            public int compare(TrackCollector o1, TrackCollector o2) {
+                return Integer.compare(o2.getBufferedSize(), o1.getBufferedSize());
+            }
+        });
+        long start = System.currentTimeMillis();
+        int spilledTracks = 0;
+        for (TrackCollector collector : sorted) {
+            if (bufferedPoints <= maxBufferedPoints / 2) {
+                break;
+            }
+            int size = collector.getBufferedSize();
+            try {
+                collector.spill(spillDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed spilling track of MMSI " + collector.getMmsi(), e);
+            }
+            bufferedPoints -= size;
+            spilledTracks++;
+        }
+        LOG.info("Spilled " + spilledTracks + " tracks to disk in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Returns the collected tracks. Should only be called once the input has been read
+     * 
+     * @return the collected tracks
+     */
+    public Collection<TrackCollector> getCollectors() {
+        return collectors.values();
+    }
+
+    /**
+     * Returns the number of AIS messages read
+     * 
+     * @return the number of AIS messages read
+     */
+    public long getMessageCount() {
+        return messages.get();
+    }
+
+    /**
+     * Returns the number of track points collected
+     * 
+     * @return the number of track points collected
+     */
+    public long getPointCount() {
+        return points.get();
+    }
+
+    /**
+     * Returns the number of vessels with a track
+     * 
+     * @return the number of vessels with a track
+     */
+    public int getVesselCount() {
+        return vessels;
+    }
+}